@@ -0,0 +1,43 @@
+package com.penguineering.cleanuri.site;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading the sites from the classpath, without the loader cache.
+ * <p>
+ * The synthetic sites are listed in {@code benchmark-sites.txt} and served as provider-configuration
+ * file by a class loader, so that they are not picked up by other code on the test classpath.
+ * This benchmark is in the site package to use the loader's constructor for tests.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SiteLoaderBenchmark {
+    private static final String SERVICES = "META-INF/services/" + Site.class.getName();
+
+    private final ClassLoader classLoader = new ClassLoader(SiteLoaderBenchmark.class.getClassLoader()) {
+        @Override
+        public Enumeration<URL> getResources(String name) throws IOException {
+            return SERVICES.equals(name)
+                    ? Collections.enumeration(List.of(getParent().getResource("benchmark-sites.txt")))
+                    : super.getResources(name);
+        }
+    };
+
+    @Benchmark
+    public List<Site> findSitesOnClasspath() {
+        return new SiteLoader(ServiceLoader.load(Site.class, classLoader), null).findSitesOnClasspath();
+    }
+}
@@ -0,0 +1,60 @@
+package com.penguineering.cleanuri.site.jmh;
+
+import com.penguineering.cleanuri.site.canon.CanonicalUri;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures set lookups of canonical URIs as {@link URI} and as {@link CanonicalUri} keys.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CanonicalUriBenchmark {
+    private static final int SIZE = 10_000;
+
+    private final Set<URI> uris = new HashSet<>();
+    private final Set<CanonicalUri> canonicalUris = new HashSet<>();
+    private URI[] uriKeys;
+    private CanonicalUri[] canonicalKeys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        uriKeys = new URI[SIZE];
+        canonicalKeys = new CanonicalUri[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            String uri = "https://www.example.com/category/" + (i % 97) + "/item/" + i + "?variant=red";
+            uris.add(URI.create(uri));
+            canonicalUris.add(CanonicalUri.of(uri));
+            // Lookups use fresh instances, as keys of a request would be
+            uriKeys[i] = URI.create(uri);
+            canonicalKeys[i] = CanonicalUri.of(uri);
+        }
+    }
+
+    @Benchmark
+    public boolean uriLookup() {
+        next = (next + 1) % SIZE;
+        return uris.contains(uriKeys[next]);
+    }
+
+    @Benchmark
+    public boolean canonicalUriLookup() {
+        next = (next + 1) % SIZE;
+        return canonicalUris.contains(canonicalKeys[next]);
+    }
+
+    @Benchmark
+    public CanonicalUri canonicalUriFromUri() {
+        next = (next + 1) % SIZE;
+        return CanonicalUri.of(uriKeys[next]);
+    }
+}
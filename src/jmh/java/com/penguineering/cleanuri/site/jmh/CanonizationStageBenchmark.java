@@ -0,0 +1,66 @@
+package com.penguineering.cleanuri.site.jmh;
+
+import com.penguineering.cleanuri.site.canon.CanonizationPipeline;
+import com.penguineering.cleanuri.site.canon.CanonizationStage;
+import com.penguineering.cleanuri.site.canon.TrackingParameterFilter;
+import com.penguineering.cleanuri.site.canon.UriNormalizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the canonization stages on URIs with and without parameters to remove, and the
+ * {@link UriNormalizer} against a round trip through {@link URI#normalize()}. A site pipeline with its own tracking
+ * filter is measured with fused and unfused stages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CanonizationStageBenchmark {
+    @Param({
+            "https://www.example.com/item/42?variant=red&size=m",
+            "https://www.example.com/item/42?variant=red&utm_source=news&utm_medium=mail&fbclid=abc",
+            "HTTPS://WWW.Example.com:443/a/./item/../item/%7e42?variant=red"})
+    private String uri;
+
+    private final TrackingParameterFilter filter = TrackingParameterFilter.defaults();
+    private final UriNormalizer normalizer = UriNormalizer.defaults();
+    private final List<CanonizationStage> siteStages = List.of(
+            normalizer,
+            new TrackingParameterFilter.Builder().exact("variant").build(),
+            filter);
+    private final CanonizationPipeline pipeline = CanonizationPipeline.of(siteStages);
+
+    @Benchmark
+    public CharSequence trackingParameterFilter() {
+        return filter.apply(uri);
+    }
+
+    @Benchmark
+    public CharSequence uriNormalizer() {
+        return normalizer.apply(uri);
+    }
+
+    @Benchmark
+    public String javaNetUriRoundTrip() {
+        return URI.create(uri).normalize().toString();
+    }
+
+    @Benchmark
+    public CharSequence fusedPipeline() {
+        return pipeline.apply(uri).orElseThrow();
+    }
+
+    @Benchmark
+    public CharSequence unfusedStages() {
+        CharSequence result = uri;
+        for (CanonizationStage stage : siteStages)
+            result = stage.apply(result);
+        return result;
+    }
+}
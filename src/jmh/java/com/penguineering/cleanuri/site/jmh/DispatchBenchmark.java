@@ -0,0 +1,61 @@
+package com.penguineering.cleanuri.site.jmh;
+
+import com.penguineering.cleanuri.site.Site;
+import com.penguineering.cleanuri.site.SiteRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the dispatch of URIs to sites by linear {@code canProcessURI} scan and by {@link SiteRegistry}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+    @Param({"10", "100", "1000"})
+    private int siteCount;
+
+    private List<Site> sites;
+    private SiteRegistry registry;
+    private URI[] uris;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        sites = new ArrayList<>(siteCount);
+        for (int i = 0; i < siteCount; i++)
+            sites.add(new SyntheticSite(i));
+        registry = new SiteRegistry(sites);
+
+        uris = new URI[64];
+        for (int i = 0; i < uris.length; i++)
+            uris[i] = URI.create("https://shop" + (i * 7919 % siteCount) + ".example.com/item/" + i);
+    }
+
+    private URI nextUri() {
+        next = (next + 1) & (uris.length - 1);
+        return uris[next];
+    }
+
+    @Benchmark
+    public Optional<Site> linearScan() {
+        URI uri = nextUri();
+        for (Site site : sites)
+            if (site.canProcessURI(uri))
+                return Optional.of(site);
+        return Optional.empty();
+    }
+
+    @Benchmark
+    public Optional<Site> registry() {
+        return registry.resolve(nextUri());
+    }
+}
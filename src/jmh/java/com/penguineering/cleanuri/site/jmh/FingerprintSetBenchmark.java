@@ -0,0 +1,68 @@
+package com.penguineering.cleanuri.site.jmh;
+
+import com.penguineering.cleanuri.site.canon.CanonicalUri;
+import com.penguineering.cleanuri.site.dedup.FingerprintSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures dedup lookups of known and unknown canonical URIs in a {@link FingerprintSet}
+ * with and without Bloom filter, and in a {@link HashSet} of strings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FingerprintSetBenchmark {
+    private static final int SIZE = 1_000_000;
+
+    @Param({"0", "8"})
+    private int bloomFilterBitsPerEntry;
+
+    private FingerprintSet fingerprints;
+    private final Set<String> strings = new HashSet<>();
+    private String[] keys;
+    private CanonicalUri[] canonicalKeys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        fingerprints = new FingerprintSet.Builder()
+                .expectedSize(SIZE)
+                .bloomFilterBitsPerEntry(bloomFilterBitsPerEntry)
+                .build();
+        // Every other key is known
+        keys = new String[2 * SIZE];
+        canonicalKeys = new CanonicalUri[2 * SIZE];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "https://www.example.com/item/" + i;
+            canonicalKeys[i] = CanonicalUri.of(keys[i]);
+            if (i % 2 == 0) {
+                fingerprints.add(canonicalKeys[i]);
+                strings.add(keys[i]);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fingerprints.close();
+    }
+
+    @Benchmark
+    public boolean fingerprintSetContains() {
+        next = (next + 1) % keys.length;
+        return fingerprints.contains(canonicalKeys[next]);
+    }
+
+    @Benchmark
+    public boolean hashSetContains() {
+        next = (next + 1) % keys.length;
+        return strings.contains(keys[next]);
+    }
+}
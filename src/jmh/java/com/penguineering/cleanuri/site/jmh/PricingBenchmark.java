@@ -0,0 +1,79 @@
+package com.penguineering.cleanuri.site.jmh;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.penguineering.cleanuri.site.data.Pricing;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building, querying and (de)serializing {@link Pricing} with varying numbers of tiers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PricingBenchmark {
+    @Param({"1", "10", "100"})
+    private int tiers;
+
+    private final ObjectMapper mapper = new ObjectMapper().registerModule(new Jdk8Module());
+    private Pricing pricing;
+    private String json;
+    private int maxQuantity;
+    private int quantity;
+
+    @Setup
+    public void setUp() throws Exception {
+        pricing = builder().build().orElseThrow();
+        json = mapper.writeValueAsString(pricing);
+        maxQuantity = tiers * 10 + 10;
+    }
+
+    private Pricing.Builder builder() {
+        Pricing.Builder builder = new Pricing.Builder().setUnitPrice(new BigDecimal("100.00"));
+        for (int i = 1; i < tiers; i++)
+            builder.addDiscount(i * 10, BigDecimal.valueOf(10_000 - i * 10L, 2));
+        return builder;
+    }
+
+    private int nextQuantity() {
+        quantity = quantity % maxQuantity + 1;
+        return quantity;
+    }
+
+    @Benchmark
+    public Optional<Pricing> build() {
+        return builder().build();
+    }
+
+    @Benchmark
+    public Optional<BigDecimal> findDiscountedUnitPrice() {
+        return pricing.findDiscountedUnitPrice(nextQuantity());
+    }
+
+    @Benchmark
+    public Optional<BigDecimal> calculateTotalPrice() {
+        return pricing.calculateTotalPrice(nextQuantity());
+    }
+
+    @Benchmark
+    public boolean areDiscountsSane() {
+        return pricing.areDiscountsSane();
+    }
+
+    @Benchmark
+    public String serialize() throws Exception {
+        return mapper.writeValueAsString(pricing);
+    }
+
+    @Benchmark
+    public Pricing deserialize() throws Exception {
+        return mapper.readValue(json, Pricing.class);
+    }
+}
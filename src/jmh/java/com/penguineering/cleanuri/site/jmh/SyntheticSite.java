@@ -0,0 +1,49 @@
+package com.penguineering.cleanuri.site.jmh;
+
+import com.penguineering.cleanuri.site.AbstractSiteBase;
+import com.penguineering.cleanuri.site.SiteDescriptor;
+
+import java.net.URI;
+
+/**
+ * A site for benchmarks that accepts the URIs of one synthetic shop host.
+ */
+public class SyntheticSite extends AbstractSiteBase {
+    private final String host;
+
+    public SyntheticSite() {
+        this(0);
+    }
+
+    public SyntheticSite(int index) {
+        this("shop" + index + ".example.com");
+    }
+
+    private SyntheticSite(String host) {
+        super(new SiteDescriptor.Builder(host)
+                .description("Synthetic benchmark site")
+                .hosts(host)
+                .build());
+        this.host = host;
+    }
+
+    @Override
+    public boolean canProcessURI(URI uri) {
+        return host.equals(uri.getHost());
+    }
+
+    /**
+     * Service-loadable variants, so that the loader benchmark instantiates more than one class.
+     */
+    public static class First extends SyntheticSite {
+        public First() {
+            super(1);
+        }
+    }
+
+    public static class Second extends SyntheticSite {
+        public Second() {
+            super(2);
+        }
+    }
+}
@@ -14,7 +14,10 @@ import java.util.Optional;
  * <p>Subclasses must implement the {@link Site#canProcessURI(URI)} method to
  * determine whether a given URI can be processed by the site. They may also
  * override the {@link Site#newCanonizer(URI)} and {@link Site#newExtractor(URI)}
- * methods to provide site-specific canonizers and extractors.</p>
+ * methods to provide site-specific canonizers and extractors. Sites that work on the page content
+ * should override {@link Site#newCanonizer(PageContext)} and {@link Site#newExtractor(PageContext)}
+ * instead, which receive the page shared by all components of a request. Their interface defaults
+ * delegate to the URI-based methods.</p>
  *
  * <p>Example usage:</p>
  * <pre>
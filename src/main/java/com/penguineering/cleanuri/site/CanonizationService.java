@@ -0,0 +1,219 @@
+package com.penguineering.cleanuri.site;
+
+import com.penguineering.cleanuri.site.cache.Cache;
+import com.penguineering.cleanuri.site.cache.CacheStats;
+import com.penguineering.cleanuri.site.canon.CanonicalUri;
+import com.penguineering.cleanuri.site.canon.CanonizationPipeline;
+import com.penguineering.cleanuri.site.canon.CanonizationStage;
+import com.penguineering.cleanuri.site.canon.TrackingParameterFilter;
+import com.penguineering.cleanuri.site.canon.UriNormalizer;
+import com.penguineering.cleanuri.site.dedup.FingerprintSet;
+import com.penguineering.cleanuri.site.dedup.MarkedUri;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * Canonizes URIs with the site that can process them.
+ * <p>
+ * The service resolves the site for a URI with a {@link SiteRegistry}, creates a new
+ * {@link Canonizer} and returns its result. If a {@link Cache} is configured, results are cached
+ * by the raw URI string, including URIs that could not be canonized, so that repeated requests
+ * for the same URI do not create a new canonizer.
+ * </p>
+ * <p>
+ * The result of the site's canonizer is passed through a list of site-independent
+ * {@link CanonizationStage}s. By default, the result is normalized by the {@link UriNormalizer#defaults() RFC 3986
+ * normalizer}, so that equal URIs have equal string forms, and the
+ * {@link TrackingParameterFilter#defaults() tracking parameter filter} removes common tracking parameters.
+ * Sites therefore do not need to implement these steps themselves. The stages are run as a
+ * {@link CanonizationPipeline}, which fuses them into as few passes as possible.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * CanonizationService service = new CanonizationService.Builder(registry)
+ *     .cache(new TinyLfuCache.Builder&lt;String, Optional&lt;URI&gt;&gt;().maximumSize(100_000).build())
+ *     .build();
+ * Optional&lt;URI&gt; canonical = service.canonize(URI.create("https://www.example.com/item/42?ref=abc"));
+ * </pre>
+ */
+public class CanonizationService implements ExceptionPassing {
+    private final SiteRegistry registry;
+    private final Cache<String, Optional<URI>> cache;
+    private final CanonizationPipeline pipeline;
+    private volatile BiConsumer<Level, Throwable> exceptionHandler = (level, throwable) -> {};
+
+    private CanonizationService(Builder builder) {
+        this.registry = builder.registry;
+        this.cache = builder.cache;
+        this.pipeline = builder.pipeline;
+    }
+
+    @Override
+    public CanonizationService withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+        this.exceptionHandler = Objects.requireNonNull(exceptionHandler, "Exception handler cannot be null");
+        return this;
+    }
+
+    /**
+     * Transforms the provided URI into its canonical form.
+     *
+     * @param uri the URI to canonize
+     * @return an Optional containing the canonical form, or an empty Optional if no site
+     * can canonize the URI
+     * @throws NullPointerException     if the URI is null
+     * @throws IllegalArgumentException if the URI cannot be canonized by the site's canonizer
+     *                                  or a stage produces an invalid URI
+     */
+    public Optional<URI> canonize(URI uri) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+
+        return cache != null
+                ? cache.get(uri.toString(), key -> canonizeWithSite(uri))
+                : canonizeWithSite(uri);
+    }
+
+    /**
+     * Transforms the URI of the given page into its canonical form.
+     * <p>
+     * The page is passed to the site's canonizer, so that it can be shared with an extractor for the same request.
+     * </p>
+     *
+     * @param page the context of the page to canonize
+     * @return an Optional containing the canonical form, or an empty Optional if no site
+     * can canonize the URI
+     * @throws NullPointerException     if the page is null
+     * @throws IllegalArgumentException if the URI cannot be canonized by the site's canonizer
+     */
+    public Optional<URI> canonize(PageContext page) {
+        Objects.requireNonNull(page, "Page cannot be null");
+
+        return cache != null
+                ? cache.get(page.getUri().toString(), key -> canonizeWithSite(page))
+                : canonizeWithSite(page);
+    }
+
+    /**
+     * Transforms the provided URI into its canonical form as a compact key.
+     * <p>
+     * The result is suited as key of caches, dedup sets and database rows, see {@link CanonicalUri}.
+     * </p>
+     *
+     * @param uri the URI to canonize
+     * @return an Optional containing the canonical form, or an empty Optional if no site
+     * can canonize the URI
+     * @throws NullPointerException     if the URI is null
+     * @throws IllegalArgumentException if the URI cannot be canonized by the site's canonizer
+     *                                  or a stage produces an invalid URI
+     */
+    public Optional<CanonicalUri> canonicalUri(URI uri) {
+        return canonize(uri).map(CanonicalUri::of);
+    }
+
+    /**
+     * Transforms the provided URI into its canonical form and marks it as seen.
+     * <p>
+     * This is the dedup check of a crawler: the result tells if the canonical form of the URI
+     * has been seen before, so that links to the same resource are only processed once.
+     * </p>
+     *
+     * @param uri  the URI to canonize
+     * @param seen the fingerprints of the canonical URIs that have been seen
+     * @return an Optional containing the canonical form and whether it is new, or an empty Optional if no site
+     * can canonize the URI
+     * @throws NullPointerException     if the URI or the set is null
+     * @throws IllegalArgumentException if the URI cannot be canonized by the site's canonizer
+     *                                  or a stage produces an invalid URI
+     * @throws IllegalStateException    if the set is full or closed
+     */
+    public Optional<MarkedUri> canonizeAndMark(URI uri, FingerprintSet seen) {
+        Objects.requireNonNull(seen, "Fingerprint set cannot be null");
+
+        return canonicalUri(uri).map(canonical -> new MarkedUri(canonical, seen.add(canonical)));
+    }
+
+    /**
+     * Returns the statistics of the result cache.
+     *
+     * @return an Optional containing the cache statistics, or an empty Optional if no cache is configured
+     */
+    public Optional<CacheStats> getCacheStats() {
+        return Optional.ofNullable(cache).map(Cache::stats);
+    }
+
+    private Optional<URI> canonizeWithSite(URI uri) {
+        return registry.resolve(uri)
+                .flatMap(site -> site.newCanonizer(uri))
+                .flatMap(this::runCanonizer);
+    }
+
+    private Optional<URI> canonizeWithSite(PageContext page) {
+        return registry.resolve(page.getUri())
+                .flatMap(site -> site.newCanonizer(page))
+                .flatMap(this::runCanonizer);
+    }
+
+    private Optional<URI> runCanonizer(Canonizer canonizer) {
+        canonizer.withExceptionHandler(exceptionHandler);
+        return canonizer.canonize().flatMap(pipeline::canonize);
+    }
+
+    /**
+     * Builds CanonizationService instances.
+     */
+    public static class Builder {
+        private final SiteRegistry registry;
+        private Cache<String, Optional<URI>> cache;
+        private CanonizationPipeline pipeline = CanonizationPipeline.of(
+                List.of(UriNormalizer.defaults(), TrackingParameterFilter.defaults()));
+
+        public Builder(SiteRegistry registry) {
+            this.registry = Objects.requireNonNull(registry, "Registry cannot be null");
+        }
+
+        /**
+         * Sets the cache for canonization results, keyed by the raw URI string.
+         *
+         * @param cache the cache, or null to disable caching
+         * @return the builder
+         */
+        public Builder cache(Cache<String, Optional<URI>> cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Sets the stages that are applied to the results of the site canonizers, in order.
+         *
+         * @param stages the stages, or an empty list to return the site results unchanged
+         * @return the builder
+         */
+        public Builder stages(List<CanonizationStage> stages) {
+            this.pipeline = CanonizationPipeline.of(stages);
+            return this;
+        }
+
+        /**
+         * Sets the pipeline that is applied to the results of the site canonizers.
+         * <p>
+         * Results that are rejected by a requirement of the pipeline are not canonized.
+         * </p>
+         *
+         * @param pipeline the pipeline, or {@link CanonizationPipeline#empty()} to return the site results unchanged
+         * @return the builder
+         */
+        public Builder pipeline(CanonizationPipeline pipeline) {
+            this.pipeline = Objects.requireNonNull(pipeline, "Pipeline cannot be null");
+            return this;
+        }
+
+        public CanonizationService build() {
+            return new CanonizationService(this);
+        }
+    }
+}
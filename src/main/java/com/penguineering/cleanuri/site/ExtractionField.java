@@ -0,0 +1,19 @@
+package com.penguineering.cleanuri.site;
+
+/**
+ * The fields that can be extracted from a site by an {@link Extractor}.
+ */
+public enum ExtractionField {
+    /**
+     * The document title, see {@link Extractor#extractDocumentTitle()}.
+     */
+    TITLE,
+    /**
+     * The product description, see {@link Extractor#extractProductDescription()}.
+     */
+    PRODUCT_DESCRIPTION,
+    /**
+     * The pricing information, see {@link Extractor#extractPricing()}.
+     */
+    PRICING
+}
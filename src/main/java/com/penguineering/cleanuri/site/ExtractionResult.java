@@ -0,0 +1,98 @@
+package com.penguineering.cleanuri.site;
+
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Holds the results of a combined extraction, see {@link Extractor#extractAll(java.util.Set)}.
+ *
+ * <p>Fields that have not been requested or could not be extracted are empty. If the extraction had a deadline,
+ * fields that did not finish in time are empty as well and the result is {@link #isPartial() partial}.</p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * ExtractionResult result = new ExtractionResult.Builder()
+ *     .setTitle("Product Page")
+ *     .setPricing(pricing)
+ *     .build();
+ * </pre>
+ */
+public class ExtractionResult {
+    private final String title;
+    private final ProductDescription productDescription;
+    private final Pricing pricing;
+    private final Set<ExtractionField> timedOutFields;
+
+    private ExtractionResult(Builder builder) {
+        this.title = builder.title;
+        this.productDescription = builder.productDescription;
+        this.pricing = builder.pricing;
+        this.timedOutFields = Collections.unmodifiableSet(EnumSet.copyOf(builder.timedOutFields));
+    }
+
+    public Optional<String> getTitle() {
+        return Optional.ofNullable(title);
+    }
+
+    public Optional<ProductDescription> getProductDescription() {
+        return Optional.ofNullable(productDescription);
+    }
+
+    public Optional<Pricing> getPricing() {
+        return Optional.ofNullable(pricing);
+    }
+
+    /**
+     * Checks if some requested fields have not been extracted because the deadline expired.
+     *
+     * @return true if a field has timed out, false otherwise
+     */
+    public boolean isPartial() {
+        return !timedOutFields.isEmpty();
+    }
+
+    /**
+     * Returns the requested fields that have not been extracted because the deadline expired.
+     *
+     * @return an unmodifiable set of the timed out fields
+     */
+    public Set<ExtractionField> getTimedOutFields() {
+        return timedOutFields;
+    }
+
+    public static class Builder {
+        private String title;
+        private ProductDescription productDescription;
+        private Pricing pricing;
+        private final EnumSet<ExtractionField> timedOutFields = EnumSet.noneOf(ExtractionField.class);
+
+        public Builder setTitle(String title) {
+            this.title = title;
+            return this;
+        }
+
+        public Builder setProductDescription(ProductDescription productDescription) {
+            this.productDescription = productDescription;
+            return this;
+        }
+
+        public Builder setPricing(Pricing pricing) {
+            this.pricing = pricing;
+            return this;
+        }
+
+        public Builder addTimedOutField(ExtractionField field) {
+            this.timedOutFields.add(field);
+            return this;
+        }
+
+        public ExtractionResult build() {
+            return new ExtractionResult(this);
+        }
+    }
+}
@@ -3,13 +3,20 @@ package com.penguineering.cleanuri.site;
 import com.penguineering.cleanuri.site.data.Pricing;
 import com.penguineering.cleanuri.site.data.ProductDescription;
 
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Interface for an extractor.
  * <p>
  * An extractor is responsible for extracting specific information from a site.
  * </p>
+ * <p>
+ * The fields can be extracted one by one, or in one call with {@link #extractAll(Set)}.
+ * Implementations that need to fetch or parse the page for every field should override
+ * {@link #extractAll(Set)} to do this work only once.
+ * </p>
  */
 public interface Extractor extends ExceptionPassing {
     /**
@@ -32,4 +39,33 @@ public interface Extractor extends ExceptionPassing {
      * @return An Optional containing the pricing information if it could be extracted, or an empty Optional otherwise.
      */
     Optional<Pricing> extractPricing();
+
+    /**
+     * Extracts the requested fields from the site in one call.
+     * <p>
+     * The default implementation calls the extraction method for each requested field.
+     * </p>
+     *
+     * @param fields The fields to extract.
+     * @return The extraction result, where fields that have not been requested or could not be extracted are empty.
+     */
+    default ExtractionResult extractAll(Set<ExtractionField> fields) {
+        ExtractionResult.Builder builder = new ExtractionResult.Builder();
+        if (fields.contains(ExtractionField.TITLE))
+            extractDocumentTitle().ifPresent(builder::setTitle);
+        if (fields.contains(ExtractionField.PRODUCT_DESCRIPTION))
+            extractProductDescription().ifPresent(builder::setProductDescription);
+        if (fields.contains(ExtractionField.PRICING))
+            extractPricing().ifPresent(builder::setPricing);
+        return builder.build();
+    }
+
+    /**
+     * Extracts all fields from the site in one call.
+     *
+     * @return The extraction result, where fields that could not be extracted are empty.
+     */
+    default ExtractionResult extractAll() {
+        return extractAll(EnumSet.allOf(ExtractionField.class));
+    }
 }
\ No newline at end of file
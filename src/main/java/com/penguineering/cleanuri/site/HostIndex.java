@@ -0,0 +1,148 @@
+package com.penguineering.cleanuri.site;
+
+import java.util.*;
+
+/**
+ * An index that maps host patterns to values.
+ * <p>
+ * The patterns are compiled into a trie over the reversed domain labels, so a lookup only
+ * walks the labels of the requested host instead of comparing it against every pattern.
+ * Two kinds of patterns are supported:
+ * </p>
+ * <ul>
+ *     <li>{@code example.com} matches exactly the host {@code example.com}.</li>
+ *     <li>{@code *.example.com} matches every subdomain of {@code example.com},
+ *     but not {@code example.com} itself.</li>
+ * </ul>
+ * <p>
+ * Hosts and patterns are compared case-insensitively and a trailing dot is ignored.
+ * Wildcards on public suffixes (e.g. {@code *.com} or {@code *.co.uk}) are rejected,
+ * as they would claim hosts from unrelated registrants.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * HostIndex&lt;String&gt; index = new HostIndex&lt;&gt;();
+ * index.add("example.com", "apex");
+ * index.add("*.example.com", "sub");
+ * index.lookup("www.example.com"); // ["sub"]
+ * </pre>
+ *
+ * <p>This class is not thread-safe for modification. Once populated, concurrent lookups are safe.</p>
+ *
+ * @param <T> the type of the indexed values
+ */
+public class HostIndex<T> {
+    /**
+     * Common public suffixes with more than one label.
+     * Single-label suffixes (top-level domains) are detected by their label count.
+     */
+    private static final Set<String> MULTI_LABEL_PUBLIC_SUFFIXES = Set.of(
+            "co.uk", "org.uk", "ac.uk", "gov.uk", "me.uk", "ltd.uk", "plc.uk",
+            "com.au", "net.au", "org.au", "edu.au",
+            "co.jp", "ne.jp", "or.jp", "ac.jp",
+            "co.nz", "org.nz",
+            "co.za", "co.in", "co.kr", "co.il",
+            "com.br", "com.cn", "com.mx", "com.tr", "com.ar", "com.tw", "com.sg", "com.hk");
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private final List<T> exact = new ArrayList<>(1);
+        private final List<T> wildcard = new ArrayList<>(1);
+    }
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Adds a value for the given host pattern.
+     *
+     * @param pattern the host pattern
+     * @param value   the value to return for matching hosts
+     * @throws NullPointerException     if the pattern or value is null
+     * @throws IllegalArgumentException if the pattern is malformed or a wildcard on a public suffix
+     */
+    public void add(String pattern, T value) {
+        Objects.requireNonNull(pattern, "Pattern cannot be null");
+        Objects.requireNonNull(value, "Value cannot be null");
+
+        String host = normalize(pattern);
+        boolean wildcard = host.startsWith("*.");
+        if (wildcard)
+            host = host.substring(2);
+
+        if (host.isEmpty() || host.contains("*"))
+            throw new IllegalArgumentException("Invalid host pattern: " + pattern);
+        if (wildcard && isPublicSuffix(host))
+            throw new IllegalArgumentException("Wildcard on public suffix: " + pattern);
+
+        String[] labels = host.split("\\.", -1);
+        Node<T> node = root;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            if (labels[i].isEmpty())
+                throw new IllegalArgumentException("Invalid host pattern: " + pattern);
+            node = node.children.computeIfAbsent(labels[i], l -> new Node<>());
+        }
+
+        (wildcard ? node.wildcard : node.exact).add(value);
+    }
+
+    /**
+     * Finds the values whose patterns match the given host.
+     * <p>
+     * Exact matches come first, followed by wildcard matches from the most specific
+     * to the least specific pattern. Values of the same pattern are returned in insertion order.
+     * </p>
+     *
+     * @param host the host to look up, may be null
+     * @return the list of matching values, empty if there are none
+     */
+    public List<T> lookup(String host) {
+        if (host == null || host.isEmpty())
+            return List.of();
+
+        String normalized = normalize(host);
+
+        // Wildcard matches are collected from the least specific node while walking down
+        List<List<T>> wildcards = new ArrayList<>(4);
+        Node<T> node = root;
+        int end = normalized.length();
+        while (end > 0) {
+            int start = normalized.lastIndexOf('.', end - 1) + 1;
+            Node<T> child = node.children.get(normalized.substring(start, end));
+            if (child == null) {
+                node = null;
+                break;
+            }
+            // The wildcard of the child only applies if there are labels left
+            if (start > 0 && !child.wildcard.isEmpty())
+                wildcards.add(child.wildcard);
+            node = child;
+            end = start - 1;
+        }
+
+        List<T> result = new ArrayList<>();
+        if (node != null && end <= 0)
+            result.addAll(node.exact);
+        for (int i = wildcards.size() - 1; i >= 0; i--)
+            result.addAll(wildcards.get(i));
+        return result;
+    }
+
+    /**
+     * Checks if the index contains no patterns.
+     *
+     * @return true if no pattern has been added, false otherwise
+     */
+    public boolean isEmpty() {
+        return root.children.isEmpty();
+    }
+
+    private static String normalize(String host) {
+        String h = host.toLowerCase(Locale.ROOT);
+        return h.endsWith(".") ? h.substring(0, h.length() - 1) : h;
+    }
+
+    private static boolean isPublicSuffix(String host) {
+        return host.indexOf('.') < 0 || MULTI_LABEL_PUBLIC_SUFFIXES.contains(host);
+    }
+}
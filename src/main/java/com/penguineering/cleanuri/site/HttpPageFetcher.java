@@ -0,0 +1,88 @@
+package com.penguineering.cleanuri.site;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Fetches pages with the Java {@link HttpClient}.
+ * <p>
+ * Redirects are followed, except from HTTPS to HTTP.
+ * </p>
+ */
+public class HttpPageFetcher implements PageFetcher {
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient client;
+    private final Duration timeout;
+
+    /**
+     * Creates a fetcher with a default HTTP client and a timeout of 10 seconds.
+     */
+    public HttpPageFetcher() {
+        this(HttpClient.newBuilder()
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .connectTimeout(DEFAULT_TIMEOUT)
+                        .build(),
+                DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Creates a fetcher with the given HTTP client.
+     *
+     * @param client  the HTTP client
+     * @param timeout the timeout for a single request
+     */
+    public HttpPageFetcher(HttpClient client, Duration timeout) {
+        this.client = Objects.requireNonNull(client, "Client cannot be null");
+        this.timeout = Objects.requireNonNull(timeout, "Timeout cannot be null");
+    }
+
+    @Override
+    public FetchedPage fetch(URI uri) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .GET()
+                .build();
+
+        try {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            return new FetchedPage(response.statusCode(), lowerCaseHeaders(response.headers().map()), response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + uri);
+        }
+    }
+
+    @Override
+    public StreamedPage stream(URI uri) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .GET()
+                .build();
+
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            return new StreamedPage(response.statusCode(), lowerCaseHeaders(response.headers().map()), response.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + uri);
+        }
+    }
+
+    static Map<String, List<String>> lowerCaseHeaders(Map<String, List<String>> headers) {
+        Map<String, List<String>> result = new HashMap<>();
+        headers.forEach((name, values) -> result.merge(name.toLowerCase(Locale.ROOT), values, (a, b) -> {
+            List<String> merged = new ArrayList<>(a);
+            merged.addAll(b);
+            return merged;
+        }));
+        return Collections.unmodifiableMap(result);
+    }
+}
@@ -0,0 +1,155 @@
+package com.penguineering.cleanuri.site;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A site that is instantiated from its service provider on first use.
+ * <p>
+ * If the site class is annotated with {@link SiteProvider}, the label and host patterns are
+ * taken from the annotation, so that a {@link SiteRegistry} can index the site without creating it.
+ * Sites read from the compile-time {@link SiteIndex} are indexed without even loading their class.
+ * The site is instantiated when it is first asked via {@link #canProcessURI(URI)}, i.e. when a URI
+ * matches its host patterns, or when its descriptor is requested. Sites without the annotation are
+ * instantiated as soon as their host patterns are requested.
+ * </p>
+ * <p>
+ * Instances are created by {@link SiteLoader#findSitesLazily()} and {@link SiteLoader#findSitesFromIndex()}.
+ * </p>
+ *
+ * <p>This class is thread-safe. The site is instantiated at most once.</p>
+ */
+public class LazySite implements Site {
+    private final String className;
+    private final Supplier<? extends Site> factory;
+    private final Consumer<SiteDescriptor> siteReporter;
+    /**
+     * The label and host patterns declared with {@link SiteProvider}, or null if not declared.
+     */
+    private final String label;
+    private final List<String> hostPatterns;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Site site;
+
+    LazySite(ServiceLoader.Provider<? extends Site> provider, Consumer<SiteDescriptor> siteReporter) {
+        Objects.requireNonNull(provider, "Provider cannot be null");
+        SiteProvider annotation = provider.type().getAnnotation(SiteProvider.class);
+        this.className = provider.type().getName();
+        this.factory = provider::get;
+        this.siteReporter = Objects.requireNonNull(siteReporter, "Site reporter cannot be null");
+        this.label = annotation != null ? annotation.label() : null;
+        this.hostPatterns = annotation != null ? List.of(annotation.hosts()) : null;
+    }
+
+    LazySite(SiteIndex.Entry entry, ClassLoader classLoader, Consumer<SiteDescriptor> siteReporter) {
+        Objects.requireNonNull(entry, "Index entry cannot be null");
+        Objects.requireNonNull(classLoader, "Class loader cannot be null");
+        this.className = entry.className();
+        this.factory = () -> instantiate(entry.className(), classLoader);
+        this.siteReporter = Objects.requireNonNull(siteReporter, "Site reporter cannot be null");
+        this.label = entry.label();
+        this.hostPatterns = entry.hostPatterns();
+    }
+
+    /**
+     * Returns the name of the implementation class of the site, without loading the class.
+     *
+     * @return the binary name of the site class
+     */
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * Returns the label of the site, without instantiating it if the label is declared with {@link SiteProvider}.
+     *
+     * @return the label of the site
+     */
+    public String getLabel() {
+        return label != null ? label : getSiteDescriptor().getLabel();
+    }
+
+    /**
+     * Checks if the site has already been instantiated.
+     *
+     * @return true if the site has been instantiated, false otherwise
+     */
+    public boolean isInstantiated() {
+        return site != null;
+    }
+
+    /**
+     * Returns the site, instantiating it on first call.
+     *
+     * @return the site
+     * @throws java.util.ServiceConfigurationError if the site cannot be instantiated
+     */
+    public Site getSite() {
+        Site s = site;
+        if (s != null)
+            return s;
+
+        lock.lock();
+        try {
+            if (site == null) {
+                Site created = factory.get();
+                siteReporter.accept(created.getSiteDescriptor());
+                site = created;
+            }
+            return site;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SiteDescriptor getSiteDescriptor() {
+        return getSite().getSiteDescriptor();
+    }
+
+    @Override
+    public List<String> getHostPatterns() {
+        return hostPatterns != null ? hostPatterns : getSite().getHostPatterns();
+    }
+
+    @Override
+    public boolean canProcessURI(URI uri) {
+        return getSite().canProcessURI(uri);
+    }
+
+    @Override
+    public Optional<Canonizer> newCanonizer(URI uri) {
+        return getSite().newCanonizer(uri);
+    }
+
+    @Override
+    public Optional<Extractor> newExtractor(URI uri) {
+        return getSite().newExtractor(uri);
+    }
+
+    @Override
+    public Optional<Canonizer> newCanonizer(PageContext page) {
+        return getSite().newCanonizer(page);
+    }
+
+    @Override
+    public Optional<Extractor> newExtractor(PageContext page) {
+        return getSite().newExtractor(page);
+    }
+
+    private static Site instantiate(String className, ClassLoader classLoader) {
+        try {
+            Class<? extends Site> type = Class.forName(className, true, classLoader).asSubclass(Site.class);
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new ServiceConfigurationError("Cannot instantiate site " + className, e);
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.penguineering.cleanuri.site;
+
+import com.penguineering.cleanuri.site.html.HeadMetadata;
+import com.penguineering.cleanuri.site.html.HeadMetadataScanner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The page behind a URI, shared by all site components that process one request.
+ * <p>
+ * The page is fetched on first access and at most once, so that a {@link Canonizer} and an
+ * {@link Extractor} working on the same request do not fetch it twice. If no component needs
+ * the page, it is not fetched at all. The decoded text is likewise computed on first access.
+ * </p>
+ * <p>
+ * Components that only need the head metadata should use {@link #getHeadMetadata()}: if the page
+ * has not been fetched yet, the response is streamed and only read up to the end of the head. The bytes
+ * read so far are kept, so that a later access to the body finishes reading the same response.
+ * </p>
+ * <p>
+ * Closing the context releases a response that has only been read up to the head. It does not have to be
+ * closed if the page has been fetched completely.
+ * </p>
+ * <p>
+ * Fetch errors are thrown as {@link UncheckedIOException} from the accessors and are remembered,
+ * so the fetch is not retried within the same context.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * try (PageContext page = new PageContext(uri, new HttpPageFetcher())) {
+ *     Optional&lt;Canonizer&gt; canonizer = site.newCanonizer(page);
+ *     Optional&lt;Extractor&gt; extractor = site.newExtractor(page);
+ * }
+ * </pre>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class PageContext implements AutoCloseable {
+    private static final HeadMetadataScanner HEAD_SCANNER = new HeadMetadataScanner();
+
+    private final URI uri;
+    private final PageFetcher fetcher;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile PageFetcher.FetchedPage page;
+    // The response that has been read up to the head, and the bytes read from it
+    private volatile PageFetcher.StreamedPage streamed;
+    private ByteArrayOutputStream prefix;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private volatile String text;
+    private volatile HeadMetadata headMetadata;
+
+    /**
+     * Creates a context for the given URI.
+     *
+     * @param uri     the URI of the page
+     * @param fetcher the fetcher used on first access to the page
+     */
+    public PageContext(URI uri, PageFetcher fetcher) {
+        this.uri = Objects.requireNonNull(uri, "URI cannot be null");
+        this.fetcher = Objects.requireNonNull(fetcher, "Fetcher cannot be null");
+    }
+
+    /**
+     * Creates a context for a page that has already been fetched.
+     *
+     * @param uri  the URI of the page
+     * @param page the fetched page
+     */
+    public PageContext(URI uri, PageFetcher.FetchedPage page) {
+        this(uri, u -> page);
+        this.page = Objects.requireNonNull(page, "Page cannot be null");
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * Checks if the page has already been fetched.
+     *
+     * @return true if the page is available without fetching, false otherwise
+     */
+    public boolean isFetched() {
+        return page != null;
+    }
+
+    /**
+     * Returns the response status code, fetching the page if necessary.
+     *
+     * @return the status code
+     * @throws UncheckedIOException if the page cannot be fetched
+     */
+    public int getStatusCode() {
+        PageFetcher.StreamedPage s = streamed;
+        return s != null ? s.statusCode() : page().statusCode();
+    }
+
+    /**
+     * Returns all response headers, fetching the page if necessary.
+     *
+     * @return an unmodifiable map of lower-case header names to their values
+     * @throws UncheckedIOException if the page cannot be fetched
+     */
+    public Map<String, List<String>> getHeaders() {
+        PageFetcher.StreamedPage s = streamed;
+        return s != null ? s.headers() : page().headers();
+    }
+
+    /**
+     * Returns the first value of a response header, fetching the page if necessary.
+     *
+     * @param name the header name, case-insensitive
+     * @return an Optional containing the header value, or an empty Optional if the header is not present
+     * @throws UncheckedIOException if the page cannot be fetched
+     */
+    public Optional<String> getHeader(String name) {
+        List<String> values = getHeaders().get(name.toLowerCase(Locale.ROOT));
+        return values == null || values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+    }
+
+    /**
+     * Opens a stream over the response body, fetching the page if necessary.
+     *
+     * @return a new stream over the body bytes
+     * @throws UncheckedIOException if the page cannot be fetched
+     */
+    public InputStream openBody() {
+        return new ByteArrayInputStream(page().body());
+    }
+
+    /**
+     * Returns the charset of the response body, as declared in the content type header.
+     *
+     * @return the declared charset, or UTF-8 if none or an unsupported charset is declared
+     * @throws UncheckedIOException if the page cannot be fetched
+     */
+    public Charset getCharset() {
+        return getHeader("content-type")
+                .flatMap(PageContext::parseCharset)
+                .orElse(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the response body decoded as text, fetching the page if necessary.
+     *
+     * @return the body text
+     * @throws UncheckedIOException if the page cannot be fetched
+     */
+    public String getText() {
+        String t = text;
+        if (t == null) {
+            t = new String(page().body(), getCharset());
+            text = t;
+        }
+        return t;
+    }
+
+    /**
+     * Returns the metadata from the head of the HTML page.
+     * <p>
+     * If the page has already been fetched, its body is scanned. Otherwise, the response is streamed and
+     * only read up to the end of the head; a later access to the body reads the rest of the same response.
+     * </p>
+     *
+     * @return the head metadata
+     * @throws UncheckedIOException if the page cannot be fetched or read
+     */
+    public HeadMetadata getHeadMetadata() {
+        HeadMetadata m = headMetadata;
+        if (m != null)
+            return m;
+
+        lock.lock();
+        try {
+            if (headMetadata == null)
+                headMetadata = page != null || failure != null || closed ? scanBody() : scanStream();
+            return headMetadata;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private HeadMetadata scanBody() {
+        try {
+            return HEAD_SCANNER.scan(openBody(), getCharset());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + uri, e);
+        }
+    }
+
+    private HeadMetadata scanStream() {
+        try {
+            PageFetcher.StreamedPage s = Objects.requireNonNull(fetcher.stream(uri), "Fetcher returned null");
+            prefix = new ByteArrayOutputStream();
+            streamed = s;
+            // Pairs with close(), which may have missed the stream
+            if (closed)
+                closeStream(s);
+            return HEAD_SCANNER.scan(new RecordingInputStream(s.body(), prefix), getCharset());
+        } catch (IOException e) {
+            failure = e;
+            discardStream();
+            throw new UncheckedIOException("Cannot fetch " + uri, e);
+        }
+    }
+
+    private PageFetcher.FetchedPage finishStream() throws IOException {
+        PageFetcher.StreamedPage s = streamed;
+        s.body().transferTo(prefix);
+        return new PageFetcher.FetchedPage(s.statusCode(), s.headers(), prefix.toByteArray());
+    }
+
+    private void discardStream() {
+        PageFetcher.StreamedPage s = streamed;
+        if (s != null)
+            closeStream(s);
+        streamed = null;
+        prefix = null;
+    }
+
+    private static void closeStream(PageFetcher.StreamedPage s) {
+        try {
+            s.close();
+        } catch (IOException e) {
+            // The connection is released either way
+        }
+    }
+
+    /**
+     * Releases a response that has only been read up to the head.
+     * <p>
+     * The rest of a released response can no longer be read, so a later access to its body fails.
+     * A page that has not been streamed is still fetched completely on access.
+     * </p>
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PageFetcher.StreamedPage s = streamed;
+        if (s != null)
+            closeStream(s);
+    }
+
+    private PageFetcher.FetchedPage page() {
+        PageFetcher.FetchedPage p = page;
+        if (p != null)
+            return p;
+
+        lock.lock();
+        try {
+            if (page == null && failure == null) {
+                try {
+                    page = streamed != null
+                            ? finishStream()
+                            : Objects.requireNonNull(fetcher.fetch(uri), "Fetcher returned null");
+                } catch (IOException e) {
+                    failure = e;
+                } finally {
+                    discardStream();
+                }
+            }
+            if (failure != null)
+                throw new UncheckedIOException("Cannot fetch " + uri, failure);
+            return page;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the bytes read from a stream, so that they are not lost to a later reader of the same stream.
+     */
+    private static class RecordingInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        RecordingInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                copy.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                copy.write(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must be kept as well
+            return n > 0 ? Math.max(0, read(new byte[(int) Math.min(n, 8192)])) : 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    static Optional<Charset> parseCharset(String contentType) {
+        for (String parameter : contentType.split(";")) {
+            String p = parameter.trim();
+            if (p.regionMatches(true, 0, "charset=", 0, 8)) {
+                String name = p.substring(8).replace("\"", "").trim();
+                try {
+                    return Optional.of(Charset.forName(name));
+                } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,67 @@
+package com.penguineering.cleanuri.site;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interface for fetching the page behind a URI.
+ *
+ * @see HttpPageFetcher
+ * @see PageContext
+ */
+@FunctionalInterface
+public interface PageFetcher {
+    /**
+     * A fetched page.
+     *
+     * @param statusCode the response status code
+     * @param headers    the response headers, with lower-case names
+     * @param body       the response body
+     */
+    record FetchedPage(int statusCode, Map<String, List<String>> headers, byte[] body) {
+    }
+
+    /**
+     * A page whose body is read as a stream. Closing it releases the connection,
+     * also if the body has not been read completely.
+     *
+     * @param statusCode the response status code
+     * @param headers    the response headers, with lower-case names
+     * @param body       the response body stream
+     */
+    record StreamedPage(int statusCode, Map<String, List<String>> headers, InputStream body) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+
+    /**
+     * Fetches the page behind the URI.
+     *
+     * @param uri the URI to fetch
+     * @return the fetched page
+     * @throws IOException if the page cannot be fetched
+     */
+    FetchedPage fetch(URI uri) throws IOException;
+
+    /**
+     * Opens the page behind the URI as a stream, so that callers can stop reading early.
+     * <p>
+     * The default implementation fetches the complete page.
+     * </p>
+     *
+     * @param uri the URI to fetch
+     * @return the streamed page, which must be closed by the caller
+     * @throws IOException if the page cannot be fetched
+     */
+    default StreamedPage stream(URI uri) throws IOException {
+        FetchedPage page = fetch(uri);
+        return new StreamedPage(page.statusCode(), page.headers(), new ByteArrayInputStream(page.body()));
+    }
+}
@@ -1,6 +1,7 @@
 package com.penguineering.cleanuri.site;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -17,6 +18,19 @@ public interface Site {
      */
     SiteDescriptor getSiteDescriptor();
 
+    /**
+     * Returns the host patterns handled by the site.
+     * <p>
+     * The patterns are used by the {@link SiteRegistry} to narrow down the candidate sites
+     * for a URI. The default implementation returns the patterns declared in the site descriptor.
+     * </p>
+     *
+     * @return The host patterns, or an empty list if the site does not declare any.
+     */
+    default List<String> getHostPatterns() {
+        return getSiteDescriptor().getHostPatterns();
+    }
+
     /**
      * Checks if the site can process the given URI.
      *
@@ -39,4 +53,33 @@ public interface Site {
      * @return An Optional containing the extractor if one could be created, or an empty Optional otherwise.
      */
     Optional<Extractor> newExtractor(URI uri);
+
+    /**
+     * Creates a new canonizer for the page in the given context.
+     * <p>
+     * Sites that need the page content to canonize a URI should override this method and use
+     * the shared page instead of fetching it themselves. The default implementation calls
+     * {@link #newCanonizer(URI)} with the page URI.
+     * </p>
+     *
+     * @param page The context of the page to canonize.
+     * @return An Optional containing the canonizer if one could be created, or an empty Optional otherwise.
+     */
+    default Optional<Canonizer> newCanonizer(PageContext page) {
+        return newCanonizer(page.getUri());
+    }
+
+    /**
+     * Creates a new extractor for the page in the given context.
+     * <p>
+     * Sites should override this method to extract from the shared page instead of fetching it
+     * themselves. The default implementation calls {@link #newExtractor(URI)} with the page URI.
+     * </p>
+     *
+     * @param page The context of the page to extract from.
+     * @return An Optional containing the extractor if one could be created, or an empty Optional otherwise.
+     */
+    default Optional<Extractor> newExtractor(PageContext page) {
+        return newExtractor(page.getUri());
+    }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.penguineering.cleanuri.site;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -14,6 +17,7 @@ import java.util.Optional;
  *     .site(URI.create("http://example.com"))
  *     .author("author")
  *     .license("license")
+ *     .hosts("example.com", "*.example.com")
  *     .build();
  * }
  * </pre>
@@ -28,6 +32,10 @@ public class SiteDescriptor {
     private final URI site;
     private final String author;
     private final String license;
+    /**
+     * Host patterns handled by the site, see {@link HostIndex} for the pattern syntax.
+     */
+    private final List<String> hostPatterns;
 
     private SiteDescriptor(Builder builder) {
         this.label = builder.label;
@@ -35,6 +43,7 @@ public class SiteDescriptor {
         this.site = builder.site;
         this.author = builder.author;
         this.license = builder.license;
+        this.hostPatterns = List.copyOf(builder.hostPatterns);
     }
 
     public String getLabel() {
@@ -57,6 +66,19 @@ public class SiteDescriptor {
         return Optional.ofNullable(license);
     }
 
+    /**
+     * Returns the host patterns handled by the site.
+     * <p>
+     * An empty list means that the site does not declare any hosts and must be asked
+     * via {@link Site#canProcessURI(URI)} for every URI.
+     * </p>
+     *
+     * @return an unmodifiable list of host patterns
+     */
+    public List<String> getHostPatterns() {
+        return hostPatterns;
+    }
+
     /**
      * Builds SiteDescriptor instances.
      */
@@ -66,6 +88,7 @@ public class SiteDescriptor {
         private URI site;
         private String author;
         private String license;
+        private final List<String> hostPatterns = new ArrayList<>();
 
         public Builder(String label) {
             this.label = label;
@@ -91,6 +114,16 @@ public class SiteDescriptor {
             return this;
         }
 
+        public Builder host(String hostPattern) {
+            this.hostPatterns.add(hostPattern);
+            return this;
+        }
+
+        public Builder hosts(String... hostPatterns) {
+            this.hostPatterns.addAll(Arrays.asList(hostPatterns));
+            return this;
+        }
+
         public SiteDescriptor build() {
             return new SiteDescriptor(this);
         }
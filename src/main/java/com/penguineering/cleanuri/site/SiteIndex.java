@@ -0,0 +1,94 @@
+package com.penguineering.cleanuri.site;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The compile-time index of the sites annotated with {@link SiteProvider}.
+ * <p>
+ * The index is generated by the {@code SiteProviderProcessor} annotation processor as the resource
+ * {@value #RESOURCE} next to the services file. It lists the class name, label and host patterns of each
+ * site, so that a {@link SiteLoader} can index the sites without loading their classes.
+ * </p>
+ * <p>
+ * Each line of the file describes one site with tab-separated fields: the binary class name, the label
+ * and the comma-separated host patterns. Empty lines and lines starting with {@code #} are ignored.
+ * </p>
+ */
+public final class SiteIndex {
+    /**
+     * The resource name of the index.
+     */
+    public static final String RESOURCE = "META-INF/cleanuri/site-index";
+
+    /**
+     * An indexed site.
+     *
+     * @param className    the binary name of the site class
+     * @param label        the label of the site
+     * @param hostPatterns the host patterns of the site
+     */
+    public record Entry(String className, String label, List<String> hostPatterns) {
+        public Entry {
+            Objects.requireNonNull(className, "Class name cannot be null");
+            Objects.requireNonNull(label, "Label cannot be null");
+            hostPatterns = List.copyOf(hostPatterns);
+        }
+    }
+
+    private SiteIndex() {
+    }
+
+    /**
+     * Reads the entries of an index.
+     *
+     * @param in the stream to read the index from
+     * @return the entries in the order of the file
+     * @throws IOException if the index cannot be read or is malformed
+     */
+    public static List<Entry> read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<Entry> entries = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank() || line.startsWith("#"))
+                continue;
+
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 3)
+                throw new IOException("Malformed site index entry: " + line);
+            List<String> hosts = fields[2].isEmpty() ? List.of() : Arrays.asList(fields[2].split(","));
+            entries.add(new Entry(fields[0], fields[1], hosts));
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the entries of an index.
+     *
+     * @param out     the stream to write the index to
+     * @param entries the entries to write
+     * @throws IOException              if the index cannot be written
+     * @throws IllegalArgumentException if a label or host pattern contains a tab, comma or line break
+     */
+    public static void write(OutputStream out, List<Entry> entries) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("# Generated by SiteProviderProcessor\n");
+        for (Entry entry : entries) {
+            checkField(entry.label(), "\t\r\n");
+            entry.hostPatterns().forEach(pattern -> checkField(pattern, "\t\r\n,"));
+            writer.write(entry.className() + "\t" + entry.label() + "\t" + String.join(",", entry.hostPatterns()) + "\n");
+        }
+        writer.flush();
+    }
+
+    private static void checkField(String value, String forbidden) {
+        for (char c : forbidden.toCharArray())
+            if (value.indexOf(c) >= 0)
+                throw new IllegalArgumentException("Invalid character in site index field: " + value);
+    }
+}
@@ -1,8 +1,15 @@
 package com.penguineering.cleanuri.site;
 
-import java.util.List;
-import java.util.ServiceLoader;
+import com.penguineering.cleanuri.site.jfr.SiteLoadingEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.StreamSupport;
 
 /**
@@ -17,10 +24,22 @@ import java.util.stream.StreamSupport;
  * class name of the Site interface (com.penguineering.cleanuri.site.Site). The file should contain the
  * fully-qualified class name of your implementations, one per line.
  * </p>
+ * <p>
+ * The loaded sites are cached as immutable lists, which are read without locking. To load sites from
+ * JAR files in a directory that can change at runtime, use {@link SitePluginDirectory}.
+ * </p>
  */
 public class SiteLoader {
-    private List<Site> sites = null;
+    /*
+     * The loaded lists are immutable snapshots, so reads are lock-free. The lock only serializes
+     * loading and clearing, so that the sites are not loaded twice by concurrent first calls.
+     */
+    private final AtomicReference<List<Site>> sites = new AtomicReference<>();
+    private final AtomicReference<List<Site>> lazySites = new AtomicReference<>();
+    private final AtomicReference<List<Site>> indexedSites = new AtomicReference<>();
+    private final ReentrantLock lock = new ReentrantLock();
     private final ServiceLoader<Site> loader;
+    private final ClassLoader classLoader;
     private final Consumer<SiteDescriptor> siteReporter;
 
     /**
@@ -39,6 +58,8 @@ public class SiteLoader {
      * <p>
      * This constructor initializes the ServiceLoader for loading Site implementations.
      * It also accepts a Consumer that is called for each site found with the site's descriptor.
+     * The Consumer is called from the thread that loads the sites, or for lazy sites from the thread
+     * that instantiates them.
      * </p>
      *
      * @param siteReporter a Consumer that is called for each site found
@@ -58,7 +79,22 @@ public class SiteLoader {
      * @param siteReporter a Consumer that is called for each site found
      */
     SiteLoader(ServiceLoader<Site> loader, Consumer<SiteDescriptor> siteReporter) {
+        this(loader, Thread.currentThread().getContextClassLoader(), siteReporter);
+    }
+
+    /**
+     * Constructor for testing.
+     * <p>
+     * In addition to the ServiceLoader, this constructor allows the class loader for the {@link SiteIndex} to be passed in.
+     * </p>
+     *
+     * @param loader the ServiceLoader to use for loading Site implementations
+     * @param classLoader the class loader to read the site index from and to load indexed sites with
+     * @param siteReporter a Consumer that is called for each site found
+     */
+    SiteLoader(ServiceLoader<Site> loader, ClassLoader classLoader, Consumer<SiteDescriptor> siteReporter) {
         this.loader = loader;
+        this.classLoader = classLoader != null ? classLoader : SiteLoader.class.getClassLoader();
         this.siteReporter = siteReporter != null ? siteReporter : s -> {};  // Initialize with the provided consumer or a no-operation consumer
     }
 
@@ -73,22 +109,139 @@ public class SiteLoader {
      *
      * @return a List of all loaded Site implementations
      */
-    public synchronized List<Site> findSitesOnClasspath() {
-        if (sites == null) {
-            sites = StreamSupport.stream(loader.spliterator(), false)
-                    .peek(site -> siteReporter.accept(site.getSiteDescriptor()))  // Call the siteReporter consumer for each site
+    public List<Site> findSitesOnClasspath() {
+        return getOrLoad(sites, () -> StreamSupport.stream(loader.spliterator(), false)
+                .peek(site -> siteReporter.accept(site.getSiteDescriptor()))  // Call the siteReporter consumer for each site
+                .toList());
+    }
+
+    /**
+     * Finds and loads all Site implementations available on the classpath, optionally in parallel.
+     * <p>
+     * With parallel loading, the providers are looked up first and the sites are then instantiated
+     * on the common fork-join pool, which shortens startup if site constructors are expensive.
+     * The order of the sites is the same as with sequential loading. The siteReporter is called
+     * once all sites have been instantiated, from the calling thread and in the order of the sites.
+     * The loaded sites are cached as with {@link #findSitesOnClasspath()}.
+     * </p>
+     *
+     * @param parallel true to instantiate the sites in parallel
+     * @return a List of all loaded Site implementations
+     */
+    public List<Site> findSitesOnClasspath(boolean parallel) {
+        if (!parallel)
+            return findSitesOnClasspath();
+
+        return getOrLoad(sites, () -> {
+            List<Site> loaded = loader.stream()
+                    .toList()
+                    .parallelStream()
+                    .map(ServiceLoader.Provider::get)
                     .toList();
-        }
-        return sites;
+            // The reporter is not called from the pool, so it does not have to be thread-safe
+            loaded.forEach(site -> siteReporter.accept(site.getSiteDescriptor()));
+            return loaded;
+        });
+    }
+
+    /**
+     * Finds all Site implementations available on the classpath without instantiating them.
+     * <p>
+     * The providers are looked up with {@link ServiceLoader#stream()}, which only loads the site classes.
+     * Each site is wrapped into a {@link LazySite} that instantiates it on first use, so that startup cost
+     * does not grow with the number of sites. Sites should be annotated with {@link SiteProvider}, so that a
+     * {@link SiteRegistry} can index their host patterns without instantiating them. The siteReporter
+     * is called when a site is instantiated.
+     * </p>
+     * <p>
+     * The lazy sites are cached, so subsequent calls to this method return the cached list.
+     * </p>
+     *
+     * @return a List of lazy sites for all Site implementations
+     */
+    public List<Site> findSitesLazily() {
+        return getOrLoad(lazySites, () -> loader.stream()
+                .<Site>map(provider -> new LazySite(provider, siteReporter))
+                .toList());
+    }
+
+    /**
+     * Finds the Site implementations listed in the compile-time site index, without loading their classes.
+     * <p>
+     * The {@link SiteIndex} is generated for all sites annotated with {@link SiteProvider} by the
+     * {@code SiteProviderProcessor} annotation processor. Each site is wrapped into a {@link LazySite} with the
+     * label and host patterns from the index, so a {@link SiteRegistry} can dispatch URIs before any site class
+     * is loaded. Sites that are not annotated are not listed in the index and can be found with
+     * {@link #findSitesLazily()}. The siteReporter is called when a site is instantiated.
+     * </p>
+     * <p>
+     * The indexed sites are cached, so subsequent calls to this method return the cached list.
+     * </p>
+     *
+     * @return a List of lazy sites for all indexed Site implementations
+     * @throws ServiceConfigurationError if an index cannot be read
+     */
+    public List<Site> findSitesFromIndex() {
+        return getOrLoad(indexedSites, this::readIndex);
     }
 
     /**
      * Clears the cache of loaded Site implementations.
      * <p>
-     * After calling this method, the next call to {@link #findSitesOnClasspath()} will reload the Site implementations.
+     * After calling this method, the next call to {@link #findSitesOnClasspath()}, {@link #findSitesLazily()}
+     * or {@link #findSitesFromIndex()} will reload the Site implementations.
      * </p>
      */
-    public synchronized void clearCache() {
-        sites = null;
+    public void clearCache() {
+        lock.lock();
+        try {
+            sites.set(null);
+            lazySites.set(null);
+            indexedSites.set(null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Site> getOrLoad(AtomicReference<List<Site>> cache, Supplier<List<Site>> load) {
+        List<Site> cached = cache.get();
+        if (cached != null)
+            return cached;
+
+        lock.lock();
+        try {
+            if (cache.get() == null) {
+                SiteLoadingEvent event = new SiteLoadingEvent();
+                event.begin();
+                List<Site> loaded = load.get();
+                event.sites = loaded.size();
+                event.commit();
+                cache.set(loaded);
+            }
+            return cache.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Site> readIndex() {
+        List<Site> indexed = new ArrayList<>();
+        Set<String> classNames = new HashSet<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(SiteIndex.RESOURCE);
+            while (resources.hasMoreElements()) {
+                URL resource = resources.nextElement();
+                try (InputStream in = resource.openStream()) {
+                    for (SiteIndex.Entry entry : SiteIndex.read(in))
+                        if (classNames.add(entry.className()))
+                            indexed.add(new LazySite(entry, classLoader, siteReporter));
+                } catch (IOException e) {
+                    throw new ServiceConfigurationError("Cannot read site index " + resource, e);
+                }
+            }
+        } catch (IOException e) {
+            throw new ServiceConfigurationError("Cannot find site indexes", e);
+        }
+        return List.copyOf(indexed);
     }
-}
\ No newline at end of file
+}
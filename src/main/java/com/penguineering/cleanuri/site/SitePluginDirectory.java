@@ -0,0 +1,375 @@
+package com.penguineering.cleanuri.site;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+
+/**
+ * Loads site implementations from the JAR files in a plugin directory.
+ * <p>
+ * Every JAR file is loaded with its own {@link URLClassLoader}, so that plugins are isolated from each
+ * other and can be replaced independently. The sites of a JAR are discovered with the
+ * {@link java.util.ServiceLoader} mechanism, see {@link SiteLoader}. Sites found in the parent class
+ * loader are ignored.
+ * </p>
+ * <p>
+ * {@link #reload()} rescans the directory. Unchanged JAR files are kept, new and modified files are
+ * loaded, and the class loaders of removed or replaced files are closed. The active site list is
+ * swapped atomically and listeners are notified with the new list. Notifications of concurrent reloads
+ * are delivered in order, and a list that has been replaced by a newer one is not delivered anymore,
+ * so the last list a listener receives is the one returned by {@link #getSites()}. Reads with
+ * {@link #getSites()} are lock-free. With {@link #start()}, the directory is watched with a
+ * {@link WatchService} and reloaded whenever a JAR file changes.
+ * </p>
+ * <p>
+ * Requests may still run on the sites of a removed or replaced file. Their class loaders are therefore
+ * closed only after {@link Builder#unloadDelay(Duration)}, or when the directory is closed. Calls that
+ * are still running on such a site after the delay can fail with a {@link NoClassDefFoundError}
+ * for classes that have not been loaded before.
+ * </p>
+ * <p>
+ * If a JAR file cannot be loaded, the exception is passed to the exception handler with
+ * {@link Level#WARNING} and the previously loaded version of the file, if any, stays active.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * AtomicReference&lt;SiteRegistry&gt; registry = new AtomicReference&lt;&gt;();
+ * SitePluginDirectory plugins = new SitePluginDirectory.Builder(Path.of("plugins")).build();
+ * plugins.addListener(sites -&gt; registry.set(new SiteRegistry(sites)));
+ * plugins.reload();
+ * plugins.start();
+ * </pre>
+ */
+public class SitePluginDirectory implements ExceptionPassing, AutoCloseable {
+    /**
+     * The sites loaded from one JAR file.
+     */
+    private record Plugin(URLClassLoader classLoader, FileTime lastModified, long size, List<Site> sites) {
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return lastModified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
+
+    private final Path directory;
+    private final ClassLoader parent;
+    private final Consumer<SiteDescriptor> siteReporter;
+    private final Duration unloadDelay;
+    private final List<Consumer<List<Site>>> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock notificationLock = new ReentrantLock();
+    private volatile BiConsumer<Level, Throwable> exceptionHandler = (level, throwable) -> {};
+    private volatile List<Site> sites = List.of();
+    // Guarded by lock
+    private Map<Path, Plugin> plugins = Map.of();
+    private final Set<Plugin> retired = new HashSet<>();
+    private long generation;
+    private WatchService watchService;
+    private Thread watcher;
+    // Guarded by notificationLock
+    private long notifiedGeneration;
+
+    private SitePluginDirectory(Builder builder) {
+        this.directory = builder.directory;
+        this.parent = builder.parent != null ? builder.parent : SitePluginDirectory.class.getClassLoader();
+        this.siteReporter = builder.siteReporter != null ? builder.siteReporter : s -> {};
+        this.unloadDelay = builder.unloadDelay;
+    }
+
+    @Override
+    public SitePluginDirectory withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+        this.exceptionHandler = Objects.requireNonNull(exceptionHandler, "Exception handler cannot be null");
+        return this;
+    }
+
+    /**
+     * Adds a listener that is called with the new site list after every change.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<List<Site>> listener) {
+        listeners.add(Objects.requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    /**
+     * Returns the active sites.
+     *
+     * @return an unmodifiable list of the sites, ordered by JAR file name
+     */
+    public List<Site> getSites() {
+        return sites;
+    }
+
+    /**
+     * Rescans the plugin directory and swaps the active sites if a JAR file has changed.
+     *
+     * @return true if the active sites have changed, false otherwise
+     * @throws UncheckedIOException if the directory cannot be listed
+     */
+    public boolean reload() {
+        List<Site> changed;
+        long changedGeneration;
+        lock.lock();
+        try {
+            Map<Path, Plugin> previous = plugins;
+            Map<Path, Plugin> current = new TreeMap<>();
+            for (Path jar : listJars()) {
+                Plugin plugin = previous.get(jar);
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+                    if (plugin == null || !plugin.isCurrent(attributes))
+                        plugin = load(jar, attributes);
+                } catch (IOException | RuntimeException | ServiceConfigurationError e) {
+                    exceptionHandler.accept(Level.WARNING, e);
+                }
+                if (plugin != null)
+                    current.put(jar, plugin);
+            }
+
+            if (current.equals(previous))
+                return false;
+
+            plugins = current;
+            changed = current.values().stream()
+                    .flatMap(plugin -> plugin.sites().stream())
+                    .toList();
+            sites = changed;
+            changedGeneration = ++generation;
+
+            previous.values().stream()
+                    .filter(plugin -> !current.containsValue(plugin))
+                    .forEach(this::retire);
+        } finally {
+            lock.unlock();
+        }
+
+        notifyListeners(changed, changedGeneration);
+        return true;
+    }
+
+    /**
+     * Notifies the listeners with the site list of a reload, unless a newer list has already been delivered.
+     */
+    private void notifyListeners(List<Site> changed, long changedGeneration) {
+        notificationLock.lock();
+        try {
+            for (Consumer<List<Site>> listener : listeners) {
+                // A listener may have reloaded the directory itself
+                if (changedGeneration < notifiedGeneration)
+                    return;
+                notifiedGeneration = changedGeneration;
+                listener.accept(changed);
+            }
+        } finally {
+            notificationLock.unlock();
+        }
+    }
+
+    /**
+     * Starts watching the plugin directory and reloads it whenever a JAR file is created, modified or deleted.
+     *
+     * @throws UncheckedIOException  if the directory cannot be watched
+     * @throws IllegalStateException if the directory is already being watched
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (watcher != null)
+                throw new IllegalStateException("Plugin directory is already being watched");
+
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watcher = Thread.ofVirtual()
+                    .name("site-plugin-watcher")
+                    .start(() -> watch(watchService));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops watching the plugin directory and closes the class loaders of all plugins,
+     * including the ones that have been replaced and are waiting for their unload delay.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (watcher != null) {
+                watcher.interrupt();
+                watchService.close();
+                watcher = null;
+            }
+            plugins.values().forEach(this::unload);
+            retired.forEach(this::unload);
+            retired.clear();
+            plugins = Map.of();
+            sites = List.of();
+        } catch (IOException e) {
+            exceptionHandler.accept(Level.WARNING, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void watch(WatchService watchService) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean jarChanged = key.pollEvents().stream()
+                        .anyMatch(event -> event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || isJar((Path) event.context()));
+                key.reset();
+                if (!jarChanged)
+                    continue;
+                try {
+                    reload();
+                } catch (RuntimeException e) {
+                    exceptionHandler.accept(Level.WARNING, e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The directory is no longer watched
+        }
+    }
+
+    private List<Path> listJars() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.jar")) {
+            List<Path> jars = new ArrayList<>();
+            stream.forEach(jars::add);
+            return jars;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Plugin load(Path jar, BasicFileAttributes attributes) throws IOException {
+        // The class loader silently ignores unreadable files, so check the file first
+        try (JarFile file = new JarFile(jar.toFile())) {
+            file.getManifest();
+        }
+
+        URLClassLoader classLoader = new URLClassLoader(
+                "site-plugin:" + jar.getFileName(), new URL[]{jar.toUri().toURL()}, parent);
+        try {
+            List<Site> loaded = ServiceLoader.load(Site.class, classLoader).stream()
+                    .filter(provider -> provider.type().getClassLoader() == classLoader)
+                    .<Site>map(ServiceLoader.Provider::get)
+                    .peek(site -> siteReporter.accept(site.getSiteDescriptor()))
+                    .toList();
+            return new Plugin(classLoader, attributes.lastModifiedTime(), attributes.size(), loaded);
+        } catch (RuntimeException | ServiceConfigurationError e) {
+            classLoader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the class loader of a removed or replaced plugin after the unload delay.
+     * Must be called with the lock held.
+     */
+    private void retire(Plugin plugin) {
+        if (unloadDelay.isZero()) {
+            unload(plugin);
+            return;
+        }
+
+        retired.add(plugin);
+        CompletableFuture.delayedExecutor(unloadDelay.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            lock.lock();
+            try {
+                // The plugin has already been closed with the directory otherwise
+                if (retired.remove(plugin))
+                    unload(plugin);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    private void unload(Plugin plugin) {
+        try {
+            plugin.classLoader().close();
+        } catch (IOException e) {
+            exceptionHandler.accept(Level.WARNING, e);
+        }
+    }
+
+    private static boolean isJar(Path path) {
+        return path != null && path.getFileName().toString().endsWith(".jar");
+    }
+
+    /**
+     * Builds SitePluginDirectory instances.
+     */
+    public static class Builder {
+        private final Path directory;
+        private ClassLoader parent;
+        private Consumer<SiteDescriptor> siteReporter;
+        private Duration unloadDelay = Duration.ofMinutes(1);
+
+        public Builder(Path directory) {
+            this.directory = Objects.requireNonNull(directory, "Directory cannot be null");
+        }
+
+        /**
+         * Sets the parent class loader of the plugin class loaders.
+         *
+         * @param parent the parent class loader, defaults to the class loader of this library
+         * @return the builder
+         */
+        public Builder parent(ClassLoader parent) {
+            this.parent = parent;
+            return this;
+        }
+
+        /**
+         * Sets a Consumer that is called with the descriptor of each loaded site.
+         *
+         * @param siteReporter the consumer
+         * @return the builder
+         */
+        public Builder siteReporter(Consumer<SiteDescriptor> siteReporter) {
+            this.siteReporter = siteReporter;
+            return this;
+        }
+
+        /**
+         * Sets the time after which the class loader of a removed or replaced JAR file is closed,
+         * so that requests that are still running on its sites can finish.
+         *
+         * @param unloadDelay the delay, defaults to one minute, or zero to close immediately
+         * @return the builder
+         * @throws IllegalArgumentException if the delay is negative
+         */
+        public Builder unloadDelay(Duration unloadDelay) {
+            if (Objects.requireNonNull(unloadDelay, "Unload delay cannot be null").isNegative())
+                throw new IllegalArgumentException("Unload delay cannot be negative");
+            this.unloadDelay = unloadDelay;
+            return this;
+        }
+
+        public SitePluginDirectory build() {
+            return new SitePluginDirectory(this);
+        }
+    }
+}
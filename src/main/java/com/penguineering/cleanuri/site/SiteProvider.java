@@ -0,0 +1,38 @@
+package com.penguineering.cleanuri.site;
+
+import java.lang.annotation.*;
+
+/**
+ * Declares the label and host patterns of a {@link Site} implementation on its class.
+ * <p>
+ * The annotation can be read from the class without creating an instance, so that a
+ * {@link SiteLoader} in lazy mode can dispatch URIs to the site before it is instantiated.
+ * The values must match the {@link SiteDescriptor} of the site.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * &#64;SiteProvider(label = "MySite", hosts = {"mysite.com", "*.mysite.com"})
+ * public class MySite extends AbstractSiteBase {
+ *     ...
+ * }
+ * </pre>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface SiteProvider {
+    /**
+     * The label of the site, see {@link SiteDescriptor#getLabel()}.
+     *
+     * @return the label
+     */
+    String label();
+
+    /**
+     * The host patterns handled by the site, see {@link SiteDescriptor#getHostPatterns()}.
+     *
+     * @return the host patterns, empty if the site does not declare any
+     */
+    String[] hosts() default {};
+}
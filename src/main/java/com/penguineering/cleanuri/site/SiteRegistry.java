@@ -0,0 +1,113 @@
+package com.penguineering.cleanuri.site;
+
+import com.penguineering.cleanuri.site.jfr.SiteResolutionEvent;
+
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Dispatches URIs to the site that can process them.
+ * <p>
+ * The registry indexes the {@link Site#getHostPatterns() host patterns} of all sites in a
+ * {@link HostIndex}. To resolve a URI, only the sites whose patterns match the URI host are asked
+ * via {@link Site#canProcessURI(URI)}, followed by the sites that do not declare any host patterns.
+ * With host patterns declared, resolution cost therefore does not grow with the number of sites.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * SiteRegistry registry = new SiteRegistry(new SiteLoader().findSitesOnClasspath());
+ * Optional&lt;Site&gt; site = registry.resolve(URI.create("https://www.example.com/item/42"));
+ * </pre>
+ *
+ * <p>The registry is immutable and can be shared between threads.</p>
+ */
+public class SiteRegistry {
+    private final List<Site> sites;
+    private final HostIndex<Site> index = new HostIndex<>();
+    /**
+     * Sites without host patterns, which are candidates for every URI.
+     */
+    private final List<Site> unindexed = new ArrayList<>();
+
+    /**
+     * Creates a registry for the given sites.
+     * <p>
+     * The order of the sites is preserved among candidates of the same specificity.
+     * </p>
+     *
+     * @param sites the sites to register
+     * @throws NullPointerException     if the collection or one of the sites is null
+     * @throws IllegalArgumentException if a site declares an invalid host pattern
+     */
+    public SiteRegistry(Collection<? extends Site> sites) {
+        this.sites = List.copyOf(sites);
+
+        for (Site site : this.sites) {
+            List<String> patterns = site.getHostPatterns();
+            if (patterns.isEmpty())
+                unindexed.add(site);
+            else
+                patterns.forEach(pattern -> index.add(pattern, site));
+        }
+    }
+
+    /**
+     * Finds the site that can process the given URI.
+     *
+     * @param uri the URI to resolve
+     * @return an Optional containing the first candidate site that can process the URI,
+     * or an empty Optional if there is none
+     * @throws NullPointerException if the URI is null
+     */
+    public Optional<Site> resolve(URI uri) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+
+        SiteResolutionEvent event = new SiteResolutionEvent();
+        event.begin();
+
+        List<Site> indexed = index.lookup(uri.getHost());
+        Optional<Site> site = findSite(indexed, uri).or(() -> findSite(unindexed, uri));
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.host = uri.getHost();
+            event.siteLabel = site.map(s -> s.getSiteDescriptor().getLabel()).orElse(null);
+            event.candidates = indexed.size() + unindexed.size();
+            event.commit();
+        }
+        return site;
+    }
+
+    /**
+     * Returns the candidate sites for the given URI, without asking them via
+     * {@link Site#canProcessURI(URI)}.
+     *
+     * @param uri the URI to find candidates for
+     * @return the candidate sites in the order in which they would be asked
+     * @throws NullPointerException if the URI is null
+     */
+    public List<Site> candidates(URI uri) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+
+        List<Site> candidates = new ArrayList<>(index.lookup(uri.getHost()));
+        candidates.addAll(unindexed);
+        return candidates;
+    }
+
+    private static Optional<Site> findSite(List<Site> candidates, URI uri) {
+        for (Site site : candidates)
+            if (site.canProcessURI(uri))
+                return Optional.of(site);
+        return Optional.empty();
+    }
+
+    /**
+     * Returns all registered sites.
+     *
+     * @return an unmodifiable list of the sites in registration order
+     */
+    public List<Site> getSites() {
+        return sites;
+    }
+}
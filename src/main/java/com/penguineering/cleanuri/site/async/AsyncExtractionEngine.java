@@ -0,0 +1,551 @@
+package com.penguineering.cleanuri.site.async;
+
+import com.penguineering.cleanuri.site.*;
+import com.penguineering.cleanuri.site.canon.CanonicalUri;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Runs canonizers and extractors asynchronously on virtual threads.
+ * <p>
+ * Blocking site implementations only block a cheap virtual thread instead of the caller's thread.
+ * For an extraction, every requested field is extracted concurrently by its own {@link Extractor}
+ * instance, so that a slow field does not delay the others. The extractors share one
+ * {@link PageContext}, so the page is fetched only once. The fields of one request belong to
+ * one scope: cancelling the returned future interrupts all of them.
+ * </p>
+ * <p>
+ * Exceptions thrown by a canonizer complete the returned future exceptionally. Exceptions thrown
+ * while extracting a field are passed to the exception handler with {@link Level#WARNING} and the
+ * field is left empty.
+ * </p>
+ * <p>
+ * Concurrent extractions of URIs with the same canonical form and fields are coalesced into one
+ * extraction with a {@link SingleFlight}, so that a burst of requests for a popular page creates
+ * one set of extractors and fetches the page once. All callers receive the result of this extraction,
+ * which works on the page of the first caller's URI. This can be disabled with
+ * {@link Builder#coalesceRequests(boolean)}.
+ * </p>
+ * <p>
+ * Extractions can be given a time budget. When it expires, the remaining field extractions are
+ * interrupted and the future completes with a partial result of the fields that have finished in time.
+ * </p>
+ * <p>
+ * With a {@link HostScheduler}, extractions are queued per host of the page URI, so that the fetches for a
+ * batch of URIs of the same shop respect its rate and concurrency limits, while other hosts are served in
+ * between. An extraction holds its host slot until all of its fields have finished. The time an extraction
+ * waits in the queue counts against its budget.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * try (AsyncExtractionEngine engine = new AsyncExtractionEngine.Builder(registry).build()) {
+ *     engine.extract(URI.create("https://www.example.com/item/42"))
+ *         .thenAccept(result -&gt; result.getTitle().ifPresent(System.out::println));
+ * }
+ * </pre>
+ */
+public class AsyncExtractionEngine implements ExceptionPassing, AutoCloseable {
+    private record FlightKey(CanonicalUri uri, Set<ExtractionField> fields) {
+    }
+
+    /**
+     * The point in time at which a budget expires.
+     */
+    private record Deadline(long nanoTime, Duration budget) {
+        static Deadline after(Duration budget) {
+            Objects.requireNonNull(budget, "Budget cannot be null");
+            if (budget.isNegative())
+                throw new IllegalArgumentException("Budget cannot be negative");
+            return new Deadline(System.nanoTime() + budget.toNanos(), budget);
+        }
+
+        long remaining() {
+            return nanoTime - System.nanoTime();
+        }
+    }
+
+    private final SiteRegistry registry;
+    private final CanonizationService canonizationService;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final PageFetcher pageFetcher;
+    private final SingleFlight<FlightKey, ExtractionResult> flights;
+    private final HostScheduler scheduler;
+    private volatile BiConsumer<Level, Throwable> exceptionHandler = (level, throwable) -> {};
+
+    private AsyncExtractionEngine(Builder builder) {
+        this.registry = builder.registry;
+        this.canonizationService = builder.canonizationService != null
+                ? builder.canonizationService
+                : new CanonizationService.Builder(builder.registry).build();
+        this.ownsExecutor = builder.executor == null;
+        this.executor = ownsExecutor ? Executors.newVirtualThreadPerTaskExecutor() : builder.executor;
+        this.pageFetcher = builder.pageFetcher != null ? builder.pageFetcher : new HttpPageFetcher();
+        this.flights = builder.coalesceRequests ? new SingleFlight<>() : null;
+        this.scheduler = builder.scheduler;
+    }
+
+    @Override
+    public AsyncExtractionEngine withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+        this.exceptionHandler = Objects.requireNonNull(exceptionHandler, "Exception handler cannot be null");
+        return this;
+    }
+
+    /**
+     * Canonizes a URI asynchronously.
+     *
+     * @param uri the URI to canonize
+     * @return a future with the canonical form, see {@link CanonizationService#canonize(URI)}
+     */
+    public CompletableFuture<Optional<URI>> canonize(URI uri) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+
+        return submit(() -> canonizationService.canonize(uri));
+    }
+
+    /**
+     * Canonizes the URI of a page asynchronously.
+     *
+     * @param page the context of the page to canonize, which can be shared with an extraction
+     * @return a future with the canonical form, see {@link CanonizationService#canonize(PageContext)}
+     */
+    public CompletableFuture<Optional<URI>> canonize(PageContext page) {
+        Objects.requireNonNull(page, "Page cannot be null");
+
+        return submit(() -> canonizationService.canonize(page));
+    }
+
+    /**
+     * Creates a context for the page behind a URI with the engine's page fetcher.
+     * <p>
+     * The context can be passed to {@link #canonize(PageContext)} and {@link #extract(PageContext, Set)}
+     * to fetch the page only once for both, and is closed by the caller when both have completed.
+     * </p>
+     *
+     * @param uri the URI of the page
+     * @return a new page context
+     */
+    public PageContext newPageContext(URI uri) {
+        return new PageContext(uri, pageFetcher);
+    }
+
+    /**
+     * Extracts all fields for a URI asynchronously.
+     *
+     * @param uri the URI to extract from
+     * @return a future with the extraction result
+     */
+    public CompletableFuture<ExtractionResult> extract(URI uri) {
+        return extract(uri, EnumSet.allOf(ExtractionField.class));
+    }
+
+    /**
+     * Extracts the requested fields for a URI asynchronously.
+     * <p>
+     * If no site can process the URI, the future completes with an empty result. Unless disabled,
+     * the extraction is shared with concurrent extractions of the same fields for the same canonical URI.
+     * If the URI cannot be canonized, it is only shared for the same URI.
+     * </p>
+     *
+     * @param uri    the URI to extract from
+     * @param fields the fields to extract
+     * @return a future with the extraction result
+     */
+    public CompletableFuture<ExtractionResult> extract(URI uri, Set<ExtractionField> fields) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+        Objects.requireNonNull(fields, "Fields cannot be null");
+
+        if (flights == null)
+            return extractAndClose(newPageContext(uri), fields, null);
+
+        EnumSet<ExtractionField> requested = EnumSet.noneOf(ExtractionField.class);
+        requested.addAll(fields);
+        return compose(submit(() -> new FlightKey(flightUri(uri), requested)),
+                key -> flights.run(key, () -> extractAndClose(newPageContext(uri), requested, null)));
+    }
+
+    /**
+     * Extracts the requested fields for a URI within a time budget.
+     * <p>
+     * When the budget expires, the running field extractions are cancelled and the future completes with
+     * the fields that have been extracted in time. The result is {@link ExtractionResult#isPartial() partial}
+     * and names the fields that have timed out, and a {@link TimeoutException} is passed to the exception handler
+     * with {@link Level#WARNING} for each of them. Extractions with a budget are not coalesced, as every
+     * caller has its own deadline.
+     * </p>
+     *
+     * @param uri    the URI to extract from
+     * @param fields the fields to extract
+     * @param budget the time after which the extraction is cut short
+     * @return a future with the extraction result, which completes within the budget
+     */
+    public CompletableFuture<ExtractionResult> extract(URI uri, Set<ExtractionField> fields, Duration budget) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+        Objects.requireNonNull(fields, "Fields cannot be null");
+
+        return extractAndClose(newPageContext(uri), fields, Deadline.after(budget));
+    }
+
+    /**
+     * Extracts the requested fields for a page asynchronously.
+     * <p>
+     * If no site can process the page URI, the future completes with an empty result.
+     * </p>
+     *
+     * @param page   the context of the page to extract from
+     * @param fields the fields to extract
+     * @return a future with the extraction result
+     */
+    public CompletableFuture<ExtractionResult> extract(PageContext page, Set<ExtractionField> fields) {
+        Objects.requireNonNull(page, "Page cannot be null");
+        Objects.requireNonNull(fields, "Fields cannot be null");
+
+        return extract(page, fields, (Deadline) null);
+    }
+
+    /**
+     * Extracts the requested fields for a page within a time budget, see {@link #extract(URI, Set, Duration)}.
+     *
+     * @param page   the context of the page to extract from
+     * @param fields the fields to extract
+     * @param budget the time after which the extraction is cut short
+     * @return a future with the extraction result, which completes within the budget
+     */
+    public CompletableFuture<ExtractionResult> extract(PageContext page, Set<ExtractionField> fields,
+                                                       Duration budget) {
+        Objects.requireNonNull(page, "Page cannot be null");
+        Objects.requireNonNull(fields, "Fields cannot be null");
+
+        return extract(page, fields, Deadline.after(budget));
+    }
+
+    private CompletableFuture<ExtractionResult> extractAndClose(PageContext page, Set<ExtractionField> fields,
+                                                                Deadline deadline) {
+        CompletableFuture<ExtractionResult> result = extract(page, fields, deadline);
+        // Releases a response that the extractors have only read up to the head
+        result.whenComplete((r, t) -> page.close());
+        return result;
+    }
+
+    private CompletableFuture<ExtractionResult> extract(PageContext page, Set<ExtractionField> fields,
+                                                        Deadline deadline) {
+        CompletableFuture<Optional<Site>> resolving = submit(() -> registry.resolve(page.getUri()));
+        CompletableFuture<Optional<Site>> site = resolving;
+        if (deadline != null) {
+            // A null site marks that the deadline has expired before the site has been resolved
+            site = resolving.copy().completeOnTimeout(null, deadline.remaining(), TimeUnit.NANOSECONDS);
+            // Interrupts the resolution if it is still running on timeout or cancellation
+            site.whenComplete((s, t) -> resolving.cancel(true));
+        }
+
+        return compose(site, resolved -> {
+            if (resolved == null)
+                return CompletableFuture.completedFuture(timeOut(fields, page, deadline, exceptionHandler));
+            return resolved
+                    .map(s -> extract(s, page, fields, deadline))
+                    .orElseGet(() -> CompletableFuture.completedFuture(new ExtractionResult.Builder().build()));
+        });
+    }
+
+    /**
+     * Extracts the requested fields with the given site asynchronously.
+     *
+     * @param site   the site that processes the page
+     * @param page   the context of the page to extract from
+     * @param fields the fields to extract
+     * @return a future with the extraction result, cancelling it interrupts all field extractions
+     */
+    public CompletableFuture<ExtractionResult> extract(Site site, PageContext page, Set<ExtractionField> fields) {
+        Objects.requireNonNull(site, "Site cannot be null");
+        Objects.requireNonNull(page, "Page cannot be null");
+
+        return extract(site, page, fields, (Deadline) null);
+    }
+
+    /**
+     * Extracts the requested fields with the given site within a time budget,
+     * see {@link #extract(URI, Set, Duration)}.
+     *
+     * @param site   the site that processes the page
+     * @param page   the context of the page to extract from
+     * @param fields the fields to extract
+     * @param budget the time after which the extraction is cut short
+     * @return a future with the extraction result, which completes within the budget,
+     * cancelling it interrupts all field extractions
+     */
+    public CompletableFuture<ExtractionResult> extract(Site site, PageContext page, Set<ExtractionField> fields,
+                                                       Duration budget) {
+        Objects.requireNonNull(site, "Site cannot be null");
+        Objects.requireNonNull(page, "Page cannot be null");
+
+        return extract(site, page, fields, Deadline.after(budget));
+    }
+
+    private CompletableFuture<ExtractionResult> extract(Site site, PageContext page, Set<ExtractionField> fields,
+                                                        Deadline deadline) {
+        BiConsumer<Level, Throwable> handler = exceptionHandler;
+        ExtractionResult.Builder builder = new ExtractionResult.Builder();
+        // Guarded by builder
+        Set<ExtractionField> finished = EnumSet.noneOf(ExtractionField.class);
+        CompletableFuture<Void> joined = schedule(page.getUri(), () -> {
+            TaskScope scope = new TaskScope(executor);
+            for (ExtractionField field : fields)
+                scope.fork(() -> {
+                    try {
+                        site.newExtractor(page).ifPresent(extractor -> {
+                            extractor.withExceptionHandler(handler);
+                            extractField(extractor, field, builder);
+                        });
+                    } catch (RuntimeException e) {
+                        handler.accept(Level.WARNING, e);
+                    } finally {
+                        synchronized (builder) {
+                            finished.add(field);
+                        }
+                    }
+                });
+            return scope.join();
+        });
+        CompletableFuture<ExtractionResult> result = joined.thenApply(v -> {
+            synchronized (builder) {
+                return builder.build();
+            }
+        });
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled())
+                joined.cancel(true);
+        });
+
+        if (deadline != null)
+            CompletableFuture.delayedExecutor(deadline.remaining(), TimeUnit.NANOSECONDS, executor).execute(() -> {
+                if (result.isDone())
+                    return;
+                Set<ExtractionField> timedOut;
+                ExtractionResult partial;
+                synchronized (builder) {
+                    timedOut = timedOutFields(fields, finished);
+                    timedOut.forEach(builder::addTimedOutField);
+                    partial = builder.build();
+                }
+                if (result.complete(partial)) {
+                    joined.cancel(true);
+                    timedOut.forEach(field -> handler.accept(Level.WARNING, timeoutException(field, page, deadline)));
+                }
+            });
+        return result;
+    }
+
+    /**
+     * Returns a result in which all requested fields have timed out, and reports them.
+     */
+    private static ExtractionResult timeOut(Set<ExtractionField> fields, PageContext page, Deadline deadline,
+                                            BiConsumer<Level, Throwable> handler) {
+        ExtractionResult.Builder builder = new ExtractionResult.Builder();
+        for (ExtractionField field : fields) {
+            builder.addTimedOutField(field);
+            handler.accept(Level.WARNING, timeoutException(field, page, deadline));
+        }
+        return builder.build();
+    }
+
+    private static Set<ExtractionField> timedOutFields(Set<ExtractionField> fields, Set<ExtractionField> finished) {
+        Set<ExtractionField> timedOut = EnumSet.noneOf(ExtractionField.class);
+        timedOut.addAll(fields);
+        timedOut.removeAll(finished);
+        return timedOut;
+    }
+
+    private static TimeoutException timeoutException(ExtractionField field, PageContext page, Deadline deadline) {
+        return new TimeoutException("Extraction of " + field + " for " + page.getUri()
+                + " exceeded the budget of " + deadline.budget().toMillis() + " ms");
+    }
+
+    /**
+     * Closes the engine. An executor created by the engine is shut down after running tasks have finished.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor)
+            executor.close();
+    }
+
+    private static void extractField(Extractor extractor, ExtractionField field, ExtractionResult.Builder builder) {
+        switch (field) {
+            case TITLE -> extractor.extractDocumentTitle().ifPresent(title -> {
+                synchronized (builder) {
+                    builder.setTitle(title);
+                }
+            });
+            case PRODUCT_DESCRIPTION -> extractor.extractProductDescription().ifPresent(description -> {
+                synchronized (builder) {
+                    builder.setProductDescription(description);
+                }
+            });
+            case PRICING -> extractor.extractPricing().ifPresent(pricing -> {
+                synchronized (builder) {
+                    builder.setPricing(pricing);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the canonical form of a URI as key for coalescing, or the URI itself if it cannot be canonized.
+     */
+    private CanonicalUri flightUri(URI uri) {
+        try {
+            return canonizationService.canonicalUri(uri).orElseGet(() -> CanonicalUri.of(uri));
+        } catch (RuntimeException e) {
+            exceptionHandler.accept(Level.WARNING, e);
+            return CanonicalUri.of(uri);
+        }
+    }
+
+    /**
+     * Runs two asynchronous steps after each other. Cancelling the returned future cancels the running step.
+     */
+    private static <T, R> CompletableFuture<R> compose(CompletableFuture<T> first,
+                                                       Function<T, CompletableFuture<R>> next) {
+        AtomicReference<CompletableFuture<R>> second = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<R> result = first.thenCompose(value -> {
+            CompletableFuture<R> future = next.apply(value);
+            second.set(future);
+            if (cancelled.get())
+                future.cancel(true);
+            return future;
+        });
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) {
+                cancelled.set(true);
+                first.cancel(true);
+                // The second step may have started before the cancellation
+                CompletableFuture<R> future = second.get();
+                if (future != null)
+                    future.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Starts a task through the scheduler for the host of a URI, or immediately if there is no scheduler.
+     */
+    private <T> CompletableFuture<T> schedule(URI uri, Supplier<CompletableFuture<T>> task) {
+        return scheduler != null ? scheduler.schedule(uri, task) : task.get();
+    }
+
+    /**
+     * Runs a task on the executor. Cancelling the returned future interrupts the task.
+     */
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> future = executor.submit(() -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled())
+                future.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Builds AsyncExtractionEngine instances.
+     */
+    public static class Builder {
+        private final SiteRegistry registry;
+        private CanonizationService canonizationService;
+        private ExecutorService executor;
+        private PageFetcher pageFetcher;
+        private boolean coalesceRequests = true;
+        private HostScheduler scheduler;
+
+        public Builder(SiteRegistry registry) {
+            this.registry = Objects.requireNonNull(registry, "Registry cannot be null");
+        }
+
+        /**
+         * Sets the canonization service. Defaults to a service without cache for the registry.
+         *
+         * @param canonizationService the canonization service
+         * @return the builder
+         */
+        public Builder canonizationService(CanonizationService canonizationService) {
+            this.canonizationService = canonizationService;
+            return this;
+        }
+
+        /**
+         * Sets the executor. Defaults to a virtual thread per task, which is shut down with the engine.
+         * An executor set here is not shut down by the engine.
+         *
+         * @param executor the executor
+         * @return the builder
+         */
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the fetcher for pages. Defaults to an {@link HttpPageFetcher}.
+         *
+         * @param pageFetcher the page fetcher
+         * @return the builder
+         */
+        public Builder pageFetcher(PageFetcher pageFetcher) {
+            this.pageFetcher = pageFetcher;
+            return this;
+        }
+
+        /**
+         * Sets whether concurrent extractions for the same canonical URI are coalesced.
+         *
+         * @param coalesceRequests true to share concurrent extractions, defaults to true
+         * @return the builder
+         */
+        public Builder coalesceRequests(boolean coalesceRequests) {
+            this.coalesceRequests = coalesceRequests;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler that limits the extractions per host. Defaults to none, which starts
+         * every extraction immediately.
+         *
+         * @param scheduler the host scheduler, or null
+         * @return the builder
+         */
+        public Builder scheduler(HostScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public AsyncExtractionEngine build() {
+            return new AsyncExtractionEngine(this);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.penguineering.cleanuri.site.async;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Schedules asynchronous tasks politely per host: with a rate limit, a concurrency limit and fair interleaving.
+ * <p>
+ * Tasks are queued per host and started in submission order. A task for a host only starts if the host has fewer
+ * than {@link Limits#maxConcurrency()} running tasks and a token in its token bucket, which is refilled at
+ * {@link Limits#permitsPerSecond()} up to {@link Limits#burst()} tokens. Tasks hold their host slot until the
+ * future they return has completed.
+ * </p>
+ * <p>
+ * At most {@link Builder#maxConcurrency(int)} tasks run at the same time over all hosts. Free slots are
+ * handed to the hosts with pending tasks in round-robin order, one task per host and turn, so that a batch
+ * of thousands of URIs of one shop neither starves the other hosts nor is stalled by them: while one host
+ * waits for its next token, the slots are used by others.
+ * </p>
+ * <p>
+ * The task supplier is called on the thread that submits a task or completes another one,
+ * and should only start the asynchronous work, e.g. by submitting it to an executor.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * HostScheduler scheduler = new HostScheduler.Builder()
+ *     .defaultLimits(new HostScheduler.Limits(2, 4, 2))
+ *     .limits("www.example.com", new HostScheduler.Limits(0.5, 1, 1))
+ *     .build();
+ * CompletableFuture&lt;FetchedPage&gt; page = scheduler.schedule(uri,
+ *     () -&gt; CompletableFuture.supplyAsync(() -&gt; fetch(uri), executor));
+ * </pre>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class HostScheduler {
+    /**
+     * The limits for the tasks of one host.
+     *
+     * @param permitsPerSecond the rate at which tasks may start, may be {@link Double#POSITIVE_INFINITY}
+     * @param burst            the number of tasks that may start at once after an idle period
+     * @param maxConcurrency   the maximum number of running tasks
+     */
+    public record Limits(double permitsPerSecond, int burst, int maxConcurrency) {
+        public Limits {
+            if (!(permitsPerSecond > 0))
+                throw new IllegalArgumentException("Permits per second must be positive: " + permitsPerSecond);
+            if (burst <= 0)
+                throw new IllegalArgumentException("Burst must be positive: " + burst);
+            if (maxConcurrency <= 0)
+                throw new IllegalArgumentException("Maximum concurrency must be positive: " + maxConcurrency);
+        }
+    }
+
+    /**
+     * The queue and token bucket of a host. Guarded by the scheduler lock.
+     */
+    private static final class HostQueue {
+        private final Limits limits;
+        private final ArrayDeque<Task<?>> pending = new ArrayDeque<>();
+        private int running;
+        private boolean inRing;
+        private double tokens;
+        private long refilledAt;
+
+        HostQueue(Limits limits, long now) {
+            this.limits = limits;
+            this.tokens = limits.burst();
+            this.refilledAt = now;
+        }
+
+        /**
+         * Takes a token.
+         *
+         * @return 0 if a token has been taken, or the nanoseconds until the next token is available
+         */
+        long acquire(long now) {
+            refill(now);
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - tokens) * 1e9 / limits.permitsPerSecond()));
+        }
+
+        boolean isIdle(long now) {
+            if (running > 0 || !pending.isEmpty())
+                return false;
+            refill(now);
+            return tokens >= limits.burst();
+        }
+
+        private void refill(long now) {
+            if (Double.isInfinite(limits.permitsPerSecond()))
+                tokens = limits.burst();
+            else
+                tokens = Math.min(limits.burst(), tokens + (now - refilledAt) * limits.permitsPerSecond() / 1e9);
+            refilledAt = now;
+        }
+    }
+
+    /**
+     * A scheduled task with the future returned to the caller.
+     */
+    private final class Task<T> {
+        private final HostQueue queue;
+        private final Supplier<CompletableFuture<T>> call;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile CompletableFuture<T> source;
+
+        Task(HostQueue queue, Supplier<CompletableFuture<T>> call) {
+            this.queue = queue;
+            this.call = call;
+            result.whenComplete((value, throwable) -> {
+                if (result.isCancelled() && !dequeue(this)) {
+                    CompletableFuture<T> running = source;
+                    if (running != null)
+                        running.cancel(true);
+                }
+            });
+        }
+
+        void start() {
+            CompletableFuture<T> started;
+            try {
+                started = Objects.requireNonNull(call.get(), "Task returned null");
+            } catch (Throwable t) {
+                started = CompletableFuture.failedFuture(t);
+            }
+            source = started;
+            started.whenComplete((value, throwable) -> {
+                finished(queue);
+                if (throwable != null)
+                    result.completeExceptionally(throwable);
+                else
+                    result.complete(value);
+            });
+            // The caller may have cancelled before the task was started
+            if (result.isCancelled())
+                started.cancel(true);
+        }
+    }
+
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    private final Limits defaultLimits;
+    private final Map<String, Limits> hostLimits;
+    private final int maxConcurrency;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private final Map<String, HostQueue> hosts = new HashMap<>();
+    private final ArrayDeque<HostQueue> ring = new ArrayDeque<>();
+    private int running;
+    private int pending;
+    private long wakeUpAt;
+    private int sweepAt = SWEEP_THRESHOLD;
+
+    private final AtomicInteger dispatchRequests = new AtomicInteger();
+
+    private HostScheduler(Builder builder) {
+        this.defaultLimits = builder.defaultLimits;
+        this.hostLimits = Map.copyOf(builder.hostLimits);
+        this.maxConcurrency = builder.maxConcurrency;
+    }
+
+    /**
+     * Schedules a task for the host of a URI.
+     *
+     * @param uri  the URI whose host the task accesses
+     * @param task starts the task
+     * @return a future with the result of the task. Cancelling it removes a queued task, or cancels a running one.
+     */
+    public <T> CompletableFuture<T> schedule(URI uri, Supplier<CompletableFuture<T>> task) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+
+        return schedule(uri.getHost() != null ? uri.getHost() : "", task);
+    }
+
+    /**
+     * Schedules a task for a host.
+     * <p>
+     * The host is compared case-insensitively. It can be any key that groups the tasks, e.g. a site label.
+     * </p>
+     *
+     * @param host the host the task accesses
+     * @param task starts the task
+     * @return a future with the result of the task. Cancelling it removes a queued task, or cancels a running one.
+     */
+    public <T> CompletableFuture<T> schedule(String host, Supplier<CompletableFuture<T>> task) {
+        Objects.requireNonNull(host, "Host cannot be null");
+        Objects.requireNonNull(task, "Task cannot be null");
+
+        String key = host.toLowerCase(Locale.ROOT);
+        Task<T> scheduled;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (hosts.size() >= sweepAt)
+                sweep(now);
+            HostQueue queue = hosts.computeIfAbsent(key,
+                    k -> new HostQueue(hostLimits.getOrDefault(k, defaultLimits), now));
+            scheduled = new Task<>(queue, task);
+            queue.pending.addLast(scheduled);
+            pending++;
+            if (!queue.inRing) {
+                queue.inRing = true;
+                ring.addLast(queue);
+            }
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+        return scheduled.result;
+    }
+
+    /**
+     * Returns the number of tasks that wait to be started.
+     *
+     * @return the number of queued tasks over all hosts
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of tasks that wait to be started for a host.
+     *
+     * @param host the host
+     * @return the number of queued tasks of the host
+     */
+    public int getPendingCount(String host) {
+        lock.lock();
+        try {
+            HostQueue queue = hosts.get(host.toLowerCase(Locale.ROOT));
+            return queue != null ? queue.pending.size() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of running tasks.
+     *
+     * @return the number of running tasks over all hosts
+     */
+    public int getRunningCount() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts the tasks that may run. Concurrent and nested calls are merged into the running call,
+     * which repeats until no call has been missed.
+     */
+    private void dispatch() {
+        if (dispatchRequests.getAndIncrement() != 0)
+            return;
+        int missed = 1;
+        do {
+            startAll(nextTasks());
+            missed = dispatchRequests.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Takes the tasks that may start, one per host and turn in round-robin order.
+     */
+    private List<Task<?>> nextTasks() {
+        List<Task<?>> next = new ArrayList<>();
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            long wait = Long.MAX_VALUE;
+            boolean progress = true;
+            while (progress && running < maxConcurrency && !ring.isEmpty()) {
+                progress = false;
+                for (int turns = ring.size(); turns > 0 && running < maxConcurrency; turns--) {
+                    HostQueue queue = ring.pollFirst();
+                    if (queue.running < queue.limits.maxConcurrency()) {
+                        long tokenWait = queue.acquire(now);
+                        if (tokenWait == 0) {
+                            next.add(queue.pending.pollFirst());
+                            pending--;
+                            queue.running++;
+                            running++;
+                            progress = true;
+                        } else {
+                            wait = Math.min(wait, tokenWait);
+                        }
+                    }
+                    if (queue.pending.isEmpty())
+                        queue.inRing = false;
+                    else
+                        ring.addLast(queue);
+                }
+            }
+            // Running tasks dispatch when they finish, a host waiting for a token needs a timer
+            if (wait != Long.MAX_VALUE && running < maxConcurrency)
+                wakeUp(now + wait, wait);
+        } finally {
+            lock.unlock();
+        }
+        return next;
+    }
+
+    private static void startAll(List<Task<?>> tasks) {
+        for (Task<?> task : tasks)
+            task.start();
+    }
+
+    /**
+     * Schedules a dispatch, unless an earlier one is scheduled. Must be called with the lock held.
+     */
+    private void wakeUp(long at, long delay) {
+        if (wakeUpAt != 0 && wakeUpAt - at <= 0)
+            return;
+        wakeUpAt = at;
+        CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+            lock.lock();
+            try {
+                if (wakeUpAt == at)
+                    wakeUpAt = 0;
+            } finally {
+                lock.unlock();
+            }
+            dispatch();
+        });
+    }
+
+    private void finished(HostQueue queue) {
+        lock.lock();
+        try {
+            queue.running--;
+            running--;
+        } finally {
+            lock.unlock();
+        }
+        dispatch();
+    }
+
+    /**
+     * Removes a task that has not been started.
+     *
+     * @return true if the task has been removed, false if it has been started
+     */
+    private boolean dequeue(Task<?> task) {
+        lock.lock();
+        try {
+            HostQueue queue = task.queue;
+            if (!queue.pending.remove(task))
+                return false;
+            pending--;
+            if (queue.pending.isEmpty() && queue.inRing) {
+                queue.inRing = false;
+                ring.remove(queue);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the hosts that are idle and whose token bucket is full, as they would be created in the same state.
+     * Must be called with the lock held.
+     */
+    private void sweep(long now) {
+        hosts.values().removeIf(queue -> queue.isIdle(now));
+        sweepAt = Math.max(SWEEP_THRESHOLD, hosts.size() * 2);
+    }
+
+    /**
+     * Builds HostScheduler instances.
+     */
+    public static class Builder {
+        private Limits defaultLimits = new Limits(2, 4, 2);
+        private final Map<String, Limits> hostLimits = new HashMap<>();
+        private int maxConcurrency = 64;
+
+        /**
+         * Sets the limits of hosts without specific limits.
+         *
+         * @param limits the limits, defaults to 2 tasks per second with a burst of 4 and 2 concurrent tasks
+         * @return the builder
+         */
+        public Builder defaultLimits(Limits limits) {
+            this.defaultLimits = Objects.requireNonNull(limits, "Limits cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the limits of a host.
+         *
+         * @param host   the host, compared case-insensitively
+         * @param limits the limits
+         * @return the builder
+         */
+        public Builder limits(String host, Limits limits) {
+            hostLimits.put(Objects.requireNonNull(host, "Host cannot be null").toLowerCase(Locale.ROOT),
+                    Objects.requireNonNull(limits, "Limits cannot be null"));
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of running tasks over all hosts.
+         *
+         * @param maxConcurrency the maximum number of tasks, defaults to 64
+         * @return the builder
+         * @throws IllegalArgumentException if the number is not positive
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0)
+                throw new IllegalArgumentException("Maximum concurrency must be positive");
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public HostScheduler build() {
+            return new HostScheduler(this);
+        }
+    }
+}
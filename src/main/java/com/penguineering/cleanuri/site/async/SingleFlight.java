@@ -0,0 +1,144 @@
+package com.penguineering.cleanuri.site.async;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent asynchronous calls with the same key into one call.
+ * <p>
+ * The first caller for a key starts the call. Callers that arrive while it is in flight share it
+ * and receive the same result or failure. Once the call has completed, the next caller starts a new one,
+ * so results are never served after their call has finished.
+ * </p>
+ * <p>
+ * Every caller gets its own future. Cancelling it only detaches this caller, and the shared call
+ * is cancelled when all of its callers have cancelled their futures.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * SingleFlight&lt;URI, ExtractionResult&gt; flights = new SingleFlight&lt;&gt;();
+ * CompletableFuture&lt;ExtractionResult&gt; result = flights.run(canonicalUri, () -&gt; engine.extract(canonicalUri));
+ * </pre>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the results
+ */
+public class SingleFlight<K, V> {
+    /**
+     * A call in flight with the number of callers that wait for it.
+     */
+    private final class Flight {
+        private final K key;
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private volatile CompletableFuture<V> source;
+        // Guarded by this
+        private int callers;
+        private boolean cancelled;
+
+        Flight(K key) {
+            this.key = key;
+        }
+
+        /**
+         * Adds a caller, unless all previous callers have cancelled.
+         */
+        synchronized boolean join() {
+            if (cancelled)
+                return false;
+            callers++;
+            return true;
+        }
+
+        void leave() {
+            synchronized (this) {
+                if (--callers > 0 || result.isDone())
+                    return;
+                cancelled = true;
+            }
+            flights.remove(key, this);
+            result.cancel(true);
+            CompletableFuture<V> running = source;
+            if (running != null)
+                running.cancel(true);
+        }
+
+        void start(Supplier<CompletableFuture<V>> call) {
+            CompletableFuture<V> started;
+            try {
+                started = Objects.requireNonNull(call.get(), "Call returned null");
+            } catch (Throwable t) {
+                started = CompletableFuture.failedFuture(t);
+            }
+            source = started;
+            started.whenComplete((value, throwable) -> {
+                flights.remove(key, this);
+                if (throwable != null)
+                    result.completeExceptionally(throwable);
+                else
+                    result.complete(value);
+            });
+            // The callers may have cancelled before the call was started
+            if (result.isCancelled())
+                started.cancel(true);
+        }
+
+        CompletableFuture<V> subscribe() {
+            CompletableFuture<V> view = new CompletableFuture<>();
+            result.whenComplete((value, throwable) -> {
+                if (throwable != null)
+                    view.completeExceptionally(throwable);
+                else
+                    view.complete(value);
+            });
+            view.whenComplete((value, throwable) -> {
+                if (view.isCancelled())
+                    leave();
+            });
+            return view;
+        }
+    }
+
+    private final ConcurrentMap<K, Flight> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Runs a call, or joins the call in flight for the same key.
+     *
+     * @param key  the key of the call
+     * @param call starts the call, only invoked if no call for the key is in flight
+     * @return a future with the result of the shared call
+     */
+    public CompletableFuture<V> run(K key, Supplier<CompletableFuture<V>> call) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(call, "Call cannot be null");
+
+        while (true) {
+            Flight flight = new Flight(key);
+            flight.join();
+            Flight existing = flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                CompletableFuture<V> view = flight.subscribe();
+                flight.start(call);
+                return view;
+            }
+            if (existing.join())
+                return existing.subscribe();
+            // The existing call has been cancelled and is being removed
+            flights.remove(key, existing);
+        }
+    }
+
+    /**
+     * Returns the number of calls in flight.
+     *
+     * @return the number of keys with a call in flight
+     */
+    public int getInFlightCount() {
+        return flights.size();
+    }
+}
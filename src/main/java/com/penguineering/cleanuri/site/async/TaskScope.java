@@ -0,0 +1,69 @@
+package com.penguineering.cleanuri.site.async;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal structured scope for a group of subtasks that belong to one request.
+ * <p>
+ * All subtasks are forked before {@link #join()} is called. The future returned by {@link #join()}
+ * completes when all subtasks have finished, and cancelling it interrupts all subtasks that are
+ * still running, so the subtasks never outlive their request.
+ * </p>
+ * <p>
+ * This mirrors the semantics of {@code StructuredTaskScope}, which is a preview API in Java 21.
+ * </p>
+ */
+class TaskScope {
+    private final ExecutorService executor;
+    private final List<Future<?>> subtasks = new CopyOnWriteArrayList<>();
+    private final AtomicInteger running = new AtomicInteger(1);
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    TaskScope(ExecutorService executor) {
+        this.executor = executor;
+        completion.whenComplete((result, throwable) -> {
+            if (completion.isCancelled())
+                subtasks.forEach(subtask -> subtask.cancel(true));
+        });
+    }
+
+    /**
+     * Starts a subtask in this scope.
+     *
+     * @param task the subtask, which should handle its own exceptions
+     */
+    void fork(Runnable task) {
+        running.incrementAndGet();
+        try {
+            subtasks.add(executor.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    finished();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            finished();
+            throw e;
+        }
+        if (completion.isCancelled())
+            subtasks.forEach(subtask -> subtask.cancel(true));
+    }
+
+    /**
+     * Closes the scope for new subtasks.
+     *
+     * @return a future that completes when all subtasks have finished, and cancels them when cancelled
+     */
+    CompletableFuture<Void> join() {
+        finished();
+        return completion;
+    }
+
+    private void finished() {
+        if (running.decrementAndGet() == 0)
+            completion.complete(null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.penguineering.cleanuri.site.cache;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Interface for a bounded key-value cache.
+ * <p>
+ * Implementations decide which entries are kept when the cache is full. They must be safe
+ * for concurrent use and must not store null keys or values. Negative results can be cached
+ * by using {@link Optional} as the value type.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @see TinyLfuCache
+ */
+public interface Cache<K, V> {
+    /**
+     * Returns the value for the given key, if present.
+     *
+     * @param key the key to look up
+     * @return an Optional containing the cached value, or an empty Optional on a cache miss
+     */
+    Optional<V> getIfPresent(K key);
+
+    /**
+     * Returns the value for the given key, loading it on a cache miss.
+     * <p>
+     * Concurrent misses for the same key may invoke the loader more than once.
+     * Exceptions thrown by the loader are passed to the caller and nothing is cached.
+     * </p>
+     *
+     * @param key    the key to look up
+     * @param loader the function to compute the value on a cache miss, must not return null
+     * @return the cached or loaded value
+     */
+    V get(K key, Function<? super K, ? extends V> loader);
+
+    /**
+     * Stores a value for the given key.
+     * <p>
+     * The cache may decide to not retain the value if it is full.
+     * </p>
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    void put(K key, V value);
+
+    /**
+     * Removes the value for the given key.
+     *
+     * @param key the key to remove
+     */
+    void invalidate(K key);
+
+    /**
+     * Removes all values.
+     */
+    void invalidateAll();
+
+    /**
+     * Returns the number of cached entries.
+     *
+     * @return the number of entries
+     */
+    long size();
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return the statistics
+     */
+    CacheStats stats();
+}
@@ -0,0 +1,29 @@
+package com.penguineering.cleanuri.site.cache;
+
+/**
+ * A snapshot of cache statistics.
+ *
+ * @param hitCount      the number of lookups that found a cached value
+ * @param missCount     the number of lookups that did not find a cached value
+ * @param evictionCount the number of entries removed or rejected because the cache was full
+ */
+public record CacheStats(long hitCount, long missCount, long evictionCount) {
+    /**
+     * Returns the number of lookups.
+     *
+     * @return the sum of hits and misses
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the ratio of lookups that found a cached value.
+     *
+     * @return the hit rate between 0 and 1, or 1 if there have been no lookups
+     */
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
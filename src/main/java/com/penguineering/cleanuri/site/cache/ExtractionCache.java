@@ -0,0 +1,377 @@
+package com.penguineering.cleanuri.site.cache;
+
+import com.penguineering.cleanuri.site.ExceptionPassing;
+import com.penguineering.cleanuri.site.ExtractionField;
+import com.penguineering.cleanuri.site.ExtractionResult;
+import com.penguineering.cleanuri.site.Extractor;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Caches extraction results per canonical URI.
+ * <p>
+ * Each {@link ExtractionField} has its own time to live, so that fast-changing information like
+ * pricing can expire earlier than the document title. After the time to live, a value is still
+ * served for the stale-while-revalidate period, while a fresh value is extracted in the background.
+ * Afterwards the value is extracted again on the next request.
+ * </p>
+ * <p>
+ * The entries are held in a {@link TinyLfuCache} bounded by their estimated memory footprint.
+ * Empty results are cached as well, except for fields that have timed out in a partial result.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * ExtractionCache cache = new ExtractionCache.Builder()
+ *     .timeToLive(ExtractionField.PRICING, Duration.ofMinutes(5))
+ *     .staleWhileRevalidate(Duration.ofMinutes(1))
+ *     .build();
+ * Extractor extractor = cache.wrap(canonicalUri, () -&gt; site.newExtractor(canonicalUri));
+ * Optional&lt;Pricing&gt; pricing = extractor.extractPricing();
+ * </pre>
+ */
+public class ExtractionCache {
+    private static final Duration DEFAULT_TITLE_TTL = Duration.ofHours(1);
+    private static final Duration DEFAULT_PRODUCT_DESCRIPTION_TTL = Duration.ofMinutes(30);
+    private static final Duration DEFAULT_PRICING_TTL = Duration.ofMinutes(5);
+
+    private record Key(URI uri, ExtractionField field) {
+    }
+
+    private record Stamped(Optional<?> value, long loadedAt) {
+    }
+
+    private final Cache<Key, Stamped> cache;
+    private final EnumMap<ExtractionField, Long> timeToLive;
+    private final long staleWhileRevalidate;
+    private final Executor refreshExecutor;
+    private final LongSupplier ticker;
+    private final Set<Key> refreshing = ConcurrentHashMap.newKeySet();
+
+    private ExtractionCache(Builder builder) {
+        this.cache = new TinyLfuCache.Builder<Key, Stamped>()
+                .maximumWeight(builder.maximumWeight, (key, stamped) -> estimateWeight(key, stamped.value()))
+                .build();
+        this.timeToLive = new EnumMap<>(ExtractionField.class);
+        builder.timeToLive.forEach((field, ttl) -> timeToLive.put(field, ttl.toNanos()));
+        this.staleWhileRevalidate = builder.staleWhileRevalidate.toNanos();
+        this.refreshExecutor = builder.refreshExecutor;
+        this.ticker = builder.ticker;
+    }
+
+    /**
+     * Wraps the extractor for a canonical URI so that results are served from the cache.
+     * <p>
+     * The extractor factory is called at most once for the returned extractor when a value needs
+     * to be extracted, and once for every background refresh. The returned extractor is meant to be used
+     * by a single request.
+     * </p>
+     *
+     * @param canonicalUri     the canonical URI that is used as cache key
+     * @param extractorFactory supplies the extractor for the URI
+     * @return an extractor backed by the cache
+     */
+    public Extractor wrap(URI canonicalUri, Supplier<Optional<Extractor>> extractorFactory) {
+        Objects.requireNonNull(canonicalUri, "URI cannot be null");
+        Objects.requireNonNull(extractorFactory, "Extractor factory cannot be null");
+
+        return new CachedExtractor(canonicalUri, extractorFactory);
+    }
+
+    /**
+     * Removes all cached fields of a canonical URI.
+     *
+     * @param canonicalUri the canonical URI
+     */
+    public void invalidate(URI canonicalUri) {
+        for (ExtractionField field : ExtractionField.values())
+            cache.invalidate(new Key(canonicalUri, field));
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return the statistics
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private class CachedExtractor implements Extractor {
+        private final URI uri;
+        private final Supplier<Optional<Extractor>> extractorFactory;
+        private BiConsumer<Level, Throwable> exceptionHandler = (level, throwable) -> {};
+        private Optional<Extractor> delegate = null;
+
+        CachedExtractor(URI uri, Supplier<Optional<Extractor>> extractorFactory) {
+            this.uri = uri;
+            this.extractorFactory = extractorFactory;
+        }
+
+        @Override
+        public Optional<String> extractDocumentTitle() {
+            return lookup(ExtractionField.TITLE, Extractor::extractDocumentTitle);
+        }
+
+        @Override
+        public Optional<ProductDescription> extractProductDescription() {
+            return lookup(ExtractionField.PRODUCT_DESCRIPTION, Extractor::extractProductDescription);
+        }
+
+        @Override
+        public Optional<Pricing> extractPricing() {
+            return lookup(ExtractionField.PRICING, Extractor::extractPricing);
+        }
+
+        @Override
+        public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+            this.exceptionHandler = Objects.requireNonNull(exceptionHandler, "Exception handler cannot be null");
+            // Applied when the extractor is created, so that cache hits do not create it
+            if (delegate != null)
+                delegate.ifPresent(extractor -> extractor.withExceptionHandler(exceptionHandler));
+            return this;
+        }
+
+        @Override
+        public ExtractionResult extractAll(Set<ExtractionField> fields) {
+            ExtractionResult.Builder builder = new ExtractionResult.Builder();
+            EnumSet<ExtractionField> missing = EnumSet.noneOf(ExtractionField.class);
+            long now = ticker.getAsLong();
+
+            for (ExtractionField field : fields) {
+                Optional<Optional<?>> cached = cached(new Key(uri, field), now, extraction(field));
+                if (cached.isPresent())
+                    cached.get().ifPresent(value -> set(builder, field, value));
+                else
+                    missing.add(field);
+            }
+
+            if (!missing.isEmpty()) {
+                // Extract all missing fields in one pass
+                ExtractionResult result = delegate()
+                        .map(extractor -> extractor.extractAll(missing))
+                        .orElseGet(() -> new ExtractionResult.Builder().build());
+                for (ExtractionField field : missing) {
+                    // Fields that have timed out are not known to be empty
+                    if (result.getTimedOutFields().contains(field)) {
+                        builder.addTimedOutField(field);
+                        continue;
+                    }
+                    Optional<?> value = extraction(field, result);
+                    cache.put(new Key(uri, field), new Stamped(value, now));
+                    value.ifPresent(v -> set(builder, field, v));
+                }
+            }
+
+            return builder.build();
+        }
+
+        @SuppressWarnings("unchecked")
+        private <T> Optional<T> lookup(ExtractionField field, Function<Extractor, Optional<T>> extraction) {
+            Key key = new Key(uri, field);
+            long now = ticker.getAsLong();
+
+            Optional<Optional<?>> cached = cached(key, now, extraction);
+            if (cached.isPresent())
+                return (Optional<T>) cached.get();
+
+            Optional<T> value = delegate().flatMap(extraction);
+            cache.put(key, new Stamped(value, now));
+            return value;
+        }
+
+        /**
+         * Returns the cached value if it is fresh or may be served while it is refreshed.
+         */
+        private Optional<Optional<?>> cached(Key key, long now, Function<Extractor, ? extends Optional<?>> extraction) {
+            Optional<Stamped> cached = cache.getIfPresent(key);
+            if (cached.isEmpty())
+                return Optional.empty();
+
+            long age = now - cached.get().loadedAt();
+            long ttl = timeToLive.get(key.field());
+            if (age < ttl)
+                return Optional.of(cached.get().value());
+            if (age < ttl + staleWhileRevalidate) {
+                refresh(key, extraction);
+                return Optional.of(cached.get().value());
+            }
+            return Optional.empty();
+        }
+
+        private void refresh(Key key, Function<Extractor, ? extends Optional<?>> extraction) {
+            if (!refreshing.add(key))
+                return;
+
+            BiConsumer<Level, Throwable> handler = exceptionHandler;
+            try {
+                refreshExecutor.execute(() -> {
+                    try {
+                        long now = ticker.getAsLong();
+                        Optional<?> value = extractorFactory.get()
+                                .map(extractor -> {
+                                    extractor.withExceptionHandler(handler);
+                                    return extractor;
+                                })
+                                .flatMap(extraction);
+                        cache.put(key, new Stamped(value, now));
+                    } catch (RuntimeException e) {
+                        handler.accept(Level.WARNING, e);
+                    } finally {
+                        refreshing.remove(key);
+                    }
+                });
+            } catch (RuntimeException e) {
+                refreshing.remove(key);
+                handler.accept(Level.WARNING, e);
+            }
+        }
+
+        private Optional<Extractor> delegate() {
+            if (delegate == null) {
+                delegate = extractorFactory.get();
+                delegate.ifPresent(extractor -> extractor.withExceptionHandler(exceptionHandler));
+            }
+            return delegate;
+        }
+    }
+
+    private static Function<Extractor, ? extends Optional<?>> extraction(ExtractionField field) {
+        return switch (field) {
+            case TITLE -> Extractor::extractDocumentTitle;
+            case PRODUCT_DESCRIPTION -> Extractor::extractProductDescription;
+            case PRICING -> Extractor::extractPricing;
+        };
+    }
+
+    private static Optional<?> extraction(ExtractionField field, ExtractionResult result) {
+        return switch (field) {
+            case TITLE -> result.getTitle();
+            case PRODUCT_DESCRIPTION -> result.getProductDescription();
+            case PRICING -> result.getPricing();
+        };
+    }
+
+    private static void set(ExtractionResult.Builder builder, ExtractionField field, Object value) {
+        switch (field) {
+            case TITLE -> builder.setTitle((String) value);
+            case PRODUCT_DESCRIPTION -> builder.setProductDescription((ProductDescription) value);
+            case PRICING -> builder.setPricing((Pricing) value);
+        }
+    }
+
+    /**
+     * Estimates the memory footprint of a cache entry in bytes.
+     */
+    private static int estimateWeight(Key key, Optional<?> value) {
+        int weight = 96 + 2 * key.uri().toString().length();
+        if (value.isEmpty())
+            return weight;
+
+        Object v = value.get();
+        if (v instanceof String title)
+            weight += 40 + 2 * title.length();
+        else if (v instanceof ProductDescription description)
+            weight += 64
+                    + 2 * description.getId().map(String::length).orElse(0)
+                    + 2 * description.getName().map(String::length).orElse(0)
+                    + 2 * description.getImage().map(image -> image.toString().length()).orElse(0);
+        else if (v instanceof Pricing pricing)
+            weight += 96 + 64 * (int) pricing.streamDiscounts().count();
+        else
+            weight += 64;
+        return weight;
+    }
+
+    /**
+     * Builds ExtractionCache instances.
+     */
+    public static class Builder {
+        private final EnumMap<ExtractionField, Duration> timeToLive = new EnumMap<>(Map.of(
+                ExtractionField.TITLE, DEFAULT_TITLE_TTL,
+                ExtractionField.PRODUCT_DESCRIPTION, DEFAULT_PRODUCT_DESCRIPTION_TTL,
+                ExtractionField.PRICING, DEFAULT_PRICING_TTL));
+        private Duration staleWhileRevalidate = Duration.ZERO;
+        private long maximumWeight = 64L * 1024 * 1024;
+        private Executor refreshExecutor = runnable -> Thread.ofVirtual().start(runnable);
+        private LongSupplier ticker = System::nanoTime;
+
+        /**
+         * Sets the time after which a field is considered stale.
+         *
+         * @param field the extraction field
+         * @param ttl   the time to live
+         * @return the builder
+         */
+        public Builder timeToLive(ExtractionField field, Duration ttl) {
+            Objects.requireNonNull(field, "Field cannot be null");
+            if (ttl.isNegative())
+                throw new IllegalArgumentException("Time to live cannot be negative");
+            timeToLive.put(field, ttl);
+            return this;
+        }
+
+        /**
+         * Sets the period after the time to live in which a stale value is served while it is refreshed in the background.
+         *
+         * @param staleWhileRevalidate the period, zero to disable background refresh
+         * @return the builder
+         */
+        public Builder staleWhileRevalidate(Duration staleWhileRevalidate) {
+            if (staleWhileRevalidate.isNegative())
+                throw new IllegalArgumentException("Stale-while-revalidate period cannot be negative");
+            this.staleWhileRevalidate = staleWhileRevalidate;
+            return this;
+        }
+
+        /**
+         * Sets the maximum estimated memory footprint of the cache.
+         *
+         * @param maximumBytes the maximum number of bytes
+         * @return the builder
+         */
+        public Builder maximumWeight(long maximumBytes) {
+            if (maximumBytes <= 0)
+                throw new IllegalArgumentException("Maximum weight must be greater than zero");
+            this.maximumWeight = maximumBytes;
+            return this;
+        }
+
+        /**
+         * Sets the executor for background refreshes. Defaults to one virtual thread per refresh.
+         *
+         * @param refreshExecutor the executor
+         * @return the builder
+         */
+        public Builder refreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = Objects.requireNonNull(refreshExecutor, "Executor cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the time source in nanoseconds, for testing.
+         *
+         * @param ticker the time source
+         * @return the builder
+         */
+        Builder ticker(LongSupplier ticker) {
+            this.ticker = ticker;
+            return this;
+        }
+
+        public ExtractionCache build() {
+            return new ExtractionCache(this);
+        }
+    }
+}
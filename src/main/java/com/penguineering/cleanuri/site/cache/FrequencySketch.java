@@ -0,0 +1,116 @@
+package com.penguineering.cleanuri.site.cache;
+
+/**
+ * A Count-Min sketch with 4-bit counters to estimate the access frequency of keys.
+ * <p>
+ * Sixteen counters are packed into each {@code long}, and each key is counted in four of them.
+ * The counters are halved periodically so that the sketch follows changes in popularity.
+ * </p>
+ * <p>
+ * The table is sized from the number of entries that are actually tracked: it starts small and is
+ * grown with {@link #ensureCapacity(long)} as the cache fills up, so that a weight-bounded cache
+ * does not allocate a table for its whole weight budget.
+ * </p>
+ *
+ * <p>This class is not thread-safe, callers must synchronize access.</p>
+ */
+class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final int MINIMUM_LENGTH = 16;
+    private static final int MAXIMUM_LENGTH = 1 << 24;
+
+    private long[] table;
+    private int mask;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * Creates a sketch for the given number of entries.
+     *
+     * @param capacity the initially expected number of cached entries
+     */
+    FrequencySketch(long capacity) {
+        allocate(tableLength(capacity));
+    }
+
+    /**
+     * Grows the sketch if it is too small for the given number of entries.
+     * <p>
+     * Growing the table discards the collected frequencies, as with any periodic reset the sketch
+     * recovers them from the following accesses.
+     * </p>
+     *
+     * @param capacity the current number of cached entries
+     */
+    void ensureCapacity(long capacity) {
+        int length = tableLength(capacity);
+        if (length > table.length)
+            allocate(length);
+    }
+
+    private void allocate(int length) {
+        this.table = new long[length];
+        this.mask = length - 1;
+        this.sampleSize = 10 * length;
+        this.size = 0;
+    }
+
+    private static int tableLength(long capacity) {
+        if (capacity <= MINIMUM_LENGTH)
+            return MINIMUM_LENGTH;
+        return (int) Math.min(MAXIMUM_LENGTH, Long.highestOneBit(capacity - 1) << 1);
+    }
+
+    /**
+     * Returns the estimated frequency of a key.
+     *
+     * @param hash the hash code of the key
+     * @return the estimated frequency between 0 and 15
+     */
+    int frequency(int hash) {
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            long h = indexHash(hash, i);
+            int index = (int) h & mask;
+            int offset = (int) ((h >>> 32) & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[index] >>> offset) & 15));
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments the frequency of a key, aging all counters once enough samples have been taken.
+     *
+     * @param hash the hash code of the key
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            long h = indexHash(hash, i);
+            int index = (int) h & mask;
+            int offset = (int) ((h >>> 32) & 15) << 2;
+            long counter = (table[index] >>> offset) & 15;
+            if (counter < 15) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+
+        if (added && ++size >= sampleSize)
+            reset();
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++)
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        size /= 2;
+    }
+
+    private static long indexHash(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[(row + 1) & 3];
+        return h ^ (h >>> 29);
+    }
+}
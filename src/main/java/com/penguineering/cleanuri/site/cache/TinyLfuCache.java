@@ -0,0 +1,330 @@
+package com.penguineering.cleanuri.site.cache;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A size-bounded cache with W-TinyLFU admission.
+ * <p>
+ * New entries are placed in a small LRU window. When the window overflows, its least recently
+ * used entry competes with the least recently used entry of the main area, and the entry with the
+ * higher estimated access frequency is kept. The frequencies are estimated with a compact
+ * {@link FrequencySketch}, so a burst of one-off keys cannot flush popular entries from the cache.
+ * </p>
+ * <p>
+ * The cache is split into independently locked segments by key hash, so concurrent access
+ * does not contend on a global lock.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * Cache&lt;String, Optional&lt;URI&gt;&gt; cache = new TinyLfuCache.Builder&lt;String, Optional&lt;URI&gt;&gt;()
+ *     .maximumSize(100_000)
+ *     .build();
+ * </pre>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class TinyLfuCache<K, V> implements Cache<K, V> {
+    private static final int MIN_SEGMENT_WEIGHT = 64;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Entry<V>(V value, int weight) {
+    }
+
+    /**
+     * A part of the cache, guarded by its own lock.
+     */
+    private static class Segment<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<K, Entry<V>> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, Entry<V>> main = new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch sketch;
+        private final long maximumWeight;
+        private final long maximumWindowWeight;
+        private long windowWeight;
+        private long mainWeight;
+
+        Segment(long maximumWeight) {
+            this.maximumWeight = maximumWeight;
+            this.maximumWindowWeight = Math.max(1, maximumWeight / 100);
+            // The weight may be a byte budget, so the sketch grows with the number of entries instead
+            this.sketch = new FrequencySketch(0);
+        }
+    }
+
+    private TinyLfuCache(Builder<K, V> builder) {
+        this.weigher = builder.weigher;
+
+        int count = Math.max(1, builder.concurrencyLevel);
+        while (count > 1 && builder.maximumWeight / count < MIN_SEGMENT_WEIGHT)
+            count >>>= 1;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment<K, V>[] segments = new Segment[count];
+        this.segments = segments;
+        this.segmentMask = count - 1;
+        for (int i = 0; i < count; i++)
+            segments[i] = new Segment<>(Math.max(1, builder.maximumWeight / count));
+    }
+
+    @Override
+    public Optional<V> getIfPresent(K key) {
+        Objects.requireNonNull(key, "Key cannot be null");
+
+        int hash = spread(key.hashCode());
+        Segment<K, V> segment = segmentFor(hash);
+
+        segment.lock.lock();
+        try {
+            segment.sketch.increment(hash);
+            Entry<V> entry = segment.window.get(key);
+            if (entry == null)
+                entry = segment.main.get(key);
+
+            if (entry == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            return Optional.of(entry.value());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Optional<V> cached = getIfPresent(key);
+        if (cached.isPresent())
+            return cached.get();
+
+        // Load without holding the lock, so that slow loaders do not block the segment
+        V value = Objects.requireNonNull(loader.apply(key), "Loader returned null");
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(value, "Value cannot be null");
+
+        int hash = spread(key.hashCode());
+        Segment<K, V> segment = segmentFor(hash);
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0)
+            throw new IllegalArgumentException("Weight cannot be negative");
+
+        segment.lock.lock();
+        try {
+            Entry<V> entry = new Entry<>(value, weight);
+            Entry<V> previous = segment.main.get(key);
+            if (previous != null) {
+                // Updates keep their place in the main area
+                segment.main.put(key, entry);
+                segment.mainWeight += weight - previous.weight();
+            } else {
+                previous = segment.window.put(key, entry);
+                segment.windowWeight += weight - (previous != null ? previous.weight() : 0);
+                if (previous == null)
+                    segment.sketch.ensureCapacity(segment.window.size() + segment.main.size());
+            }
+            evict(segment);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(K key) {
+        Objects.requireNonNull(key, "Key cannot be null");
+
+        Segment<K, V> segment = segmentFor(spread(key.hashCode()));
+        segment.lock.lock();
+        try {
+            Entry<V> entry = segment.window.remove(key);
+            if (entry != null)
+                segment.windowWeight -= entry.weight();
+            entry = segment.main.remove(key);
+            if (entry != null)
+                segment.mainWeight -= entry.weight();
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.window.clear();
+                segment.main.clear();
+                segment.windowWeight = 0;
+                segment.mainWeight = 0;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.window.size() + segment.main.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    /**
+     * Moves entries from the window into the main area and evicts until the segment fits.
+     * Must be called with the segment lock held.
+     */
+    private void evict(Segment<K, V> segment) {
+        while (segment.windowWeight > segment.maximumWindowWeight && !segment.window.isEmpty()) {
+            Map.Entry<K, Entry<V>> candidate = segment.window.entrySet().iterator().next();
+            segment.window.remove(candidate.getKey());
+            segment.windowWeight -= candidate.getValue().weight();
+
+            segment.main.put(candidate.getKey(), candidate.getValue());
+            segment.mainWeight += candidate.getValue().weight();
+            admit(segment, candidate.getKey());
+        }
+
+        // Heavy entries or updates may still exceed the limit
+        while (segment.windowWeight + segment.mainWeight > segment.maximumWeight) {
+            LinkedHashMap<K, Entry<V>> area = segment.window.isEmpty() ? segment.main : segment.window;
+            Iterator<Map.Entry<K, Entry<V>>> it = area.entrySet().iterator();
+            if (!it.hasNext())
+                break;
+            Map.Entry<K, Entry<V>> victim = it.next();
+            it.remove();
+            if (area == segment.window)
+                segment.windowWeight -= victim.getValue().weight();
+            else
+                segment.mainWeight -= victim.getValue().weight();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Lets the candidate that has just been moved to the main area compete against the main
+     * area's least recently used entries until the segment fits.
+     */
+    private void admit(Segment<K, V> segment, K candidate) {
+        int candidateFrequency = segment.sketch.frequency(spread(candidate.hashCode()));
+
+        while (segment.windowWeight + segment.mainWeight > segment.maximumWeight) {
+            Iterator<Map.Entry<K, Entry<V>>> it = segment.main.entrySet().iterator();
+            Map.Entry<K, Entry<V>> victim = it.next();
+            if (victim.getKey().equals(candidate)) {
+                // Only the candidate is left to evict
+                it.remove();
+                segment.mainWeight -= victim.getValue().weight();
+                evictions.increment();
+                return;
+            }
+
+            int victimFrequency = segment.sketch.frequency(spread(victim.getKey().hashCode()));
+            evictions.increment();
+            if (candidateFrequency > victimFrequency) {
+                it.remove();
+                segment.mainWeight -= victim.getValue().weight();
+            } else {
+                Entry<V> rejected = segment.main.remove(candidate);
+                segment.mainWeight -= rejected.weight();
+                return;
+            }
+        }
+    }
+
+    private Segment<K, V> segmentFor(int hash) {
+        return segments[(hash >>> 16) & segmentMask];
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Builds TinyLfuCache instances.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     */
+    public static class Builder<K, V> {
+        private long maximumWeight = 10_000;
+        private ToIntBiFunction<? super K, ? super V> weigher = (k, v) -> 1;
+        private int concurrencyLevel = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2));
+
+        /**
+         * Sets the maximum number of entries, each entry having a weight of one.
+         *
+         * @param maximumSize the maximum number of entries
+         * @return the builder
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            if (maximumSize <= 0)
+                throw new IllegalArgumentException("Maximum size must be greater than zero");
+            this.maximumWeight = maximumSize;
+            this.weigher = (k, v) -> 1;
+            return this;
+        }
+
+        /**
+         * Sets the maximum total weight of the entries and the function to determine an entry's weight.
+         *
+         * @param maximumWeight the maximum total weight
+         * @param weigher       the function returning the weight of an entry
+         * @return the builder
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+            if (maximumWeight <= 0)
+                throw new IllegalArgumentException("Maximum weight must be greater than zero");
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher, "Weigher cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the number of independently locked segments, rounded down to a power of two.
+         *
+         * @param concurrencyLevel the expected number of concurrently accessing threads
+         * @return the builder
+         */
+        public Builder<K, V> concurrencyLevel(int concurrencyLevel) {
+            if (concurrencyLevel <= 0)
+                throw new IllegalArgumentException("Concurrency level must be greater than zero");
+            this.concurrencyLevel = Integer.highestOneBit(concurrencyLevel);
+            return this;
+        }
+
+        public TinyLfuCache<K, V> build() {
+            return new TinyLfuCache<>(this);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.penguineering.cleanuri.site.canon;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The compact string form of a canonical URI, to be used as key of caches, sets and database rows.
+ * <p>
+ * The characters are stored as Latin-1 bytes, which take one byte per character, if all characters fit,
+ * and as UTF-16 otherwise. A 64-bit fingerprint of the characters is computed once with XXH64 and serves
+ * as the hash code. Equality checks compare the fingerprints first and only compare the characters
+ * if they match, so that unequal URIs are usually told apart with a single comparison. The fingerprint
+ * is strong enough to stand in for the URI in dedup structures, see {@link #getFingerprint()}.
+ * </p>
+ * <p>
+ * The natural ordering is the lexicographic order of the characters, consistent with {@link String#compareTo}.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * CanonicalUri key = CanonicalUri.of(URI.create("https://www.example.com/item/42"));
+ * long fingerprint = key.getFingerprint();
+ * URI uri = key.toUri();
+ * </pre>
+ *
+ * <p>This class is immutable and thread-safe.</p>
+ */
+public final class CanonicalUri implements CharSequence, Comparable<CanonicalUri> {
+    private static final byte LATIN1 = 0;
+    private static final byte UTF16 = 1;
+
+    private final byte[] value;
+    private final byte coder;
+    private final long fingerprint;
+
+    private CanonicalUri(byte[] value, byte coder) {
+        this.value = value;
+        this.coder = coder;
+        // Seeded with the coder, so that the same bytes in different encodings have different fingerprints
+        this.fingerprint = XxHash64.hash(value, coder);
+    }
+
+    /**
+     * Creates a canonical URI from the string form of a URI.
+     * <p>
+     * The string is not validated, so it should be the result of a canonizer.
+     * </p>
+     *
+     * @param uri the string form of the URI
+     * @return the canonical URI
+     * @throws NullPointerException if the URI is null
+     */
+    public static CanonicalUri of(CharSequence uri) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+        if (uri instanceof CanonicalUri canonical)
+            return canonical;
+
+        int length = uri.length();
+        byte[] latin1 = new byte[length];
+        for (int i = 0; i < length; i++) {
+            char c = uri.charAt(i);
+            if (c > 0xFF)
+                return new CanonicalUri(utf16(uri), UTF16);
+            latin1[i] = (byte) c;
+        }
+        return new CanonicalUri(latin1, LATIN1);
+    }
+
+    /**
+     * Encodes the characters as UTF-16, keeping unpaired surrogates unlike {@link String#getBytes}.
+     */
+    private static byte[] utf16(CharSequence uri) {
+        byte[] utf16 = new byte[uri.length() << 1];
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            utf16[i << 1] = (byte) (c >> 8);
+            utf16[(i << 1) + 1] = (byte) c;
+        }
+        return utf16;
+    }
+
+    /**
+     * Creates a canonical URI from a URI.
+     *
+     * @param uri the URI
+     * @return the canonical URI
+     * @throws NullPointerException if the URI is null
+     */
+    public static CanonicalUri of(URI uri) {
+        return of(Objects.requireNonNull(uri, "URI cannot be null").toString());
+    }
+
+    /**
+     * Returns the 64-bit fingerprint of this URI.
+     * <p>
+     * Equal URIs have equal fingerprints. Unequal URIs have the same fingerprint with a probability of
+     * about 2<sup>-64</sup>, so that a set of a billion distinct URIs contains two with the same
+     * fingerprint with a probability of about 3%.
+     * </p>
+     *
+     * @return the fingerprint
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Checks if the URI is stored with one byte per character.
+     *
+     * @return true if all characters are Latin-1, false otherwise
+     */
+    public boolean isLatin1() {
+        return coder == LATIN1;
+    }
+
+    /**
+     * Parses this canonical URI into a URI.
+     *
+     * @return the URI
+     * @throws IllegalArgumentException if the string form is not a valid URI
+     */
+    public URI toUri() {
+        return URI.create(toString());
+    }
+
+    @Override
+    public int length() {
+        return value.length >> coder;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (coder == LATIN1)
+            return (char) (value[index] & 0xFF);
+        Objects.checkIndex(index, length());
+        return (char) ((value[index << 1] & 0xFF) << 8 | (value[(index << 1) + 1] & 0xFF));
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public int compareTo(CanonicalUri other) {
+        if (coder == LATIN1 && other.coder == LATIN1)
+            return Arrays.compareUnsigned(value, other.value);
+
+        int length = length();
+        int otherLength = other.length();
+        for (int i = 0, n = Math.min(length, otherLength); i < n; i++) {
+            int c = charAt(i) - other.charAt(i);
+            if (c != 0)
+                return c;
+        }
+        return length - otherLength;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        return o instanceof CanonicalUri other
+                && fingerprint == other.fingerprint
+                && coder == other.coder
+                && Arrays.equals(value, other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    @Override
+    public String toString() {
+        if (coder == LATIN1)
+            return new String(value, StandardCharsets.ISO_8859_1);
+        char[] chars = new char[length()];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = charAt(i);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,226 @@
+package com.penguineering.cleanuri.site.canon;
+
+import com.penguineering.cleanuri.site.Canonizer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+/**
+ * A sequence of {@link CanonizationStage}s that is declared once and shared by sites.
+ * <p>
+ * The stages work on the string form of a URI, which is parsed into a {@link URI} only once at the end,
+ * and only if a stage has changed it. Requirements added with {@link Builder#require(Predicate)} short-circuit
+ * the pipeline: if a requirement does not hold, the remaining stages are skipped and the URI is rejected.
+ * </p>
+ * <p>
+ * When the pipeline is built, stages that can share a pass over the URI are fused: adjacent
+ * {@link TrackingParameterFilter}s are merged into one filter, and a {@link UriNormalizer} is skipped
+ * if the same normalizer has already been applied and only tracking parameters have been removed since.
+ * Pipelines can be appended to other pipelines with {@link Builder#pipeline(CanonizationPipeline)},
+ * which fuses the stages across the boundary.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * private static final CanonizationPipeline PIPELINE = new CanonizationPipeline.Builder()
+ *     .stage(UriNormalizer.defaults())
+ *     .require(uri -&gt; uri.toString().startsWith("https://www.mysite.com/item/"))
+ *     .stage(new TrackingParameterFilter.Builder().exact("ref").build())
+ *     .build();
+ *
+ * {@code @Override}
+ * public Optional&lt;Canonizer&gt; newCanonizer(URI uri) {
+ *     return Optional.of(PIPELINE.newCanonizer(uri));
+ * }
+ * </pre>
+ *
+ * <p>This class is immutable and thread-safe, if its stages and requirements are.</p>
+ */
+public class CanonizationPipeline {
+    private static final CanonizationPipeline EMPTY = new Builder().build();
+
+    /**
+     * A stage that rejects URIs for which the condition does not hold, signaled by a null result.
+     */
+    private record Requirement(Predicate<CharSequence> condition) implements CanonizationStage {
+        @Override
+        public CharSequence apply(CharSequence uri) {
+            return condition.test(uri) ? uri : null;
+        }
+    }
+
+    private final List<CanonizationStage> stages;
+    private final CanonizationStage[] fused;
+
+    private CanonizationPipeline(List<CanonizationStage> stages) {
+        this.stages = List.copyOf(stages);
+        this.fused = fuse(this.stages).toArray(CanonizationStage[]::new);
+    }
+
+    /**
+     * Returns a pipeline without stages, which returns all URIs unchanged.
+     *
+     * @return the shared empty pipeline
+     */
+    public static CanonizationPipeline empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a pipeline from a list of stages.
+     *
+     * @param stages the stages in order
+     * @return the pipeline
+     */
+    public static CanonizationPipeline of(List<CanonizationStage> stages) {
+        return new Builder().stages(stages).build();
+    }
+
+    /**
+     * Returns the number of passes over a URI after fusing the stages.
+     *
+     * @return the number of fused stages and requirements
+     */
+    public int getPassCount() {
+        return fused.length;
+    }
+
+    /**
+     * Applies the stages to the string form of a URI.
+     *
+     * @param uri the URI to transform
+     * @return an Optional containing the transformed URI, or the given instance if no stage has changed it,
+     * or an empty Optional if a requirement does not hold
+     */
+    public Optional<CharSequence> apply(CharSequence uri) {
+        CharSequence result = Objects.requireNonNull(uri, "URI cannot be null");
+        for (CanonizationStage stage : fused) {
+            result = stage.apply(result);
+            if (result == null)
+                return Optional.empty();
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * Applies the stages to a URI.
+     *
+     * @param uri the URI to transform
+     * @return an Optional containing the transformed URI, or the given instance if no stage has changed it,
+     * or an empty Optional if a requirement does not hold
+     * @throws IllegalArgumentException if a stage produces an invalid URI
+     */
+    public Optional<URI> canonize(URI uri) {
+        if (fused.length == 0)
+            return Optional.of(uri);
+
+        String original = uri.toString();
+        // Stages return the same instance if nothing has changed
+        return apply(original).map(result -> result == original ? uri : URI.create(result.toString()));
+    }
+
+    /**
+     * Creates a canonizer that applies this pipeline to the given URI.
+     *
+     * @param uri the URI to canonize
+     * @return the canonizer
+     */
+    public Canonizer newCanonizer(URI uri) {
+        Objects.requireNonNull(uri, "URI cannot be null");
+        return new Canonizer() {
+            @Override
+            public Canonizer withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                // Stages report errors by throwing, so there is nothing to pass on
+                return this;
+            }
+
+            @Override
+            public Optional<URI> canonize() {
+                return CanonizationPipeline.this.canonize(uri);
+            }
+        };
+    }
+
+    private static List<CanonizationStage> fuse(List<CanonizationStage> stages) {
+        List<CanonizationStage> fused = new ArrayList<>(stages.size());
+        // The last normalizer whose result has not been changed by anything but removing parameters
+        UriNormalizer normalized = null;
+        for (CanonizationStage stage : stages) {
+            if (stage instanceof UriNormalizer normalizer) {
+                if (normalizer == normalized)
+                    continue;
+                normalized = normalizer;
+            } else if (!(stage instanceof TrackingParameterFilter)) {
+                normalized = null;
+            }
+
+            if (stage instanceof TrackingParameterFilter filter
+                    && !fused.isEmpty() && fused.get(fused.size() - 1) instanceof TrackingParameterFilter previous)
+                fused.set(fused.size() - 1, previous.union(filter));
+            else
+                fused.add(stage);
+        }
+        return fused;
+    }
+
+    /**
+     * Builds CanonizationPipeline instances.
+     */
+    public static class Builder {
+        private final List<CanonizationStage> stages = new ArrayList<>();
+
+        /**
+         * Appends a stage.
+         *
+         * @param stage the stage
+         * @return the builder
+         */
+        public Builder stage(CanonizationStage stage) {
+            stages.add(Objects.requireNonNull(stage, "Stage cannot be null"));
+            return this;
+        }
+
+        /**
+         * Appends a list of stages.
+         *
+         * @param stages the stages in order
+         * @return the builder
+         */
+        public Builder stages(List<CanonizationStage> stages) {
+            stages.forEach(this::stage);
+            return this;
+        }
+
+        /**
+         * Appends a requirement, which rejects the URI and skips the remaining stages if it does not hold.
+         *
+         * @param condition the condition on the string form of the URI
+         * @return the builder
+         */
+        public Builder require(Predicate<CharSequence> condition) {
+            stages.add(new Requirement(Objects.requireNonNull(condition, "Condition cannot be null")));
+            return this;
+        }
+
+        /**
+         * Appends the stages and requirements of another pipeline.
+         *
+         * @param pipeline the pipeline
+         * @return the builder
+         */
+        public Builder pipeline(CanonizationPipeline pipeline) {
+            stages.addAll(pipeline.stages);
+            return this;
+        }
+
+        public CanonizationPipeline build() {
+            return new CanonizationPipeline(stages);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.penguineering.cleanuri.site.canon;
+
+/**
+ * A site-independent transformation of a canonical URI.
+ * <p>
+ * Stages work on the string form of a URI, so that a chain of stages does not parse the URI repeatedly.
+ * A stage that does not change the URI must return the same instance, which allows the caller to skip
+ * creating a new URI.
+ * </p>
+ *
+ * @see com.penguineering.cleanuri.site.CanonizationService.Builder#stages(java.util.List)
+ */
+@FunctionalInterface
+public interface CanonizationStage {
+    /**
+     * Transforms the string form of a URI.
+     *
+     * @param uri the URI to transform
+     * @return the transformed URI, or the given instance if the URI has not been changed
+     */
+    CharSequence apply(CharSequence uri);
+}
@@ -0,0 +1,250 @@
+package com.penguineering.cleanuri.site.canon;
+
+import java.util.Objects;
+
+/**
+ * Removes tracking parameters, e.g. {@code utm_source} or {@code fbclid}, from the query of a URI.
+ * <p>
+ * Parameter names are matched by exact name or by prefix against a trie that is compiled once, and compared
+ * case-insensitively. The query is scanned in place: if no parameter has to be removed, the URI is returned
+ * without any allocation, otherwise it is rebuilt once without the removed parameters. The order of the
+ * remaining parameters and the fragment are kept.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * TrackingParameterFilter filter = TrackingParameterFilter.defaults();
+ * filter.apply("https://example.com/item?id=1&amp;utm_source=news"); // "https://example.com/item?id=1"
+ *
+ * TrackingParameterFilter custom = new TrackingParameterFilter.Builder()
+ *     .exact("ref", "session")
+ *     .prefix("utm_")
+ *     .build();
+ * </pre>
+ *
+ * <p>This class is immutable and thread-safe.</p>
+ */
+public class TrackingParameterFilter implements CanonizationStage {
+    /**
+     * Parameter names of common tracking services.
+     */
+    private static final String[] DEFAULT_EXACT = {
+            "fbclid", "gclid", "gclsrc", "dclid", "gbraid", "wbraid", "msclkid", "yclid", "twclid", "ttclid",
+            "li_fat_id", "igshid", "mc_cid", "mc_eid", "_ga", "_gl", "_hsenc", "_hsmi", "mkt_tok",
+            "oly_anon_id", "oly_enc_id", "vero_id", "vero_conv", "rb_clickid", "s_cid", "spm", "scid"};
+
+    /**
+     * Parameter name prefixes of common tracking services.
+     */
+    private static final String[] DEFAULT_PREFIX = {"utm_", "pk_", "mtm_", "hsa_"};
+
+    private static final TrackingParameterFilter DEFAULTS = new Builder()
+            .exact(DEFAULT_EXACT)
+            .prefix(DEFAULT_PREFIX)
+            .build();
+
+    /**
+     * A trie node over lower case ASCII characters.
+     */
+    private static class Node {
+        private final Node[] children = new Node[128];
+        private boolean exact;
+        private boolean prefix;
+    }
+
+    private final Node root;
+
+    private TrackingParameterFilter(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns a filter for the parameters of common tracking services.
+     *
+     * @return the shared default filter
+     */
+    public static TrackingParameterFilter defaults() {
+        return DEFAULTS;
+    }
+
+    @Override
+    public CharSequence apply(CharSequence uri) {
+        int length = uri.length();
+        int queryStart = -1;
+        int queryEnd = length;
+        for (int i = 0; i < length; i++) {
+            char c = uri.charAt(i);
+            if (c == '#') {
+                queryEnd = i;
+                break;
+            }
+            if (c == '?' && queryStart < 0)
+                queryStart = i + 1;
+        }
+        if (queryStart < 0)
+            return uri;
+
+        // First pass without allocation: is there anything to remove?
+        int start = queryStart;
+        boolean found = false;
+        while (start < queryEnd && !found) {
+            int end = parameterEnd(uri, start, queryEnd);
+            found = isTracking(uri, start, end);
+            start = end + 1;
+        }
+        if (!found)
+            return uri;
+
+        StringBuilder result = new StringBuilder(length);
+        result.append(uri, 0, queryStart - 1);
+        char separator = '?';
+        start = queryStart;
+        while (start < queryEnd) {
+            int end = parameterEnd(uri, start, queryEnd);
+            if (end > start && !isTracking(uri, start, end)) {
+                result.append(separator).append(uri, start, end);
+                separator = '&';
+            }
+            start = end + 1;
+        }
+        result.append(uri, queryEnd, length);
+        return result;
+    }
+
+    /**
+     * Checks if a parameter name is filtered.
+     *
+     * @param name the parameter name
+     * @return true if the parameter is removed by this filter, false otherwise
+     */
+    public boolean isTrackingParameter(CharSequence name) {
+        return isTracking(name, 0, name.length());
+    }
+
+    /**
+     * Returns a filter that removes the parameters of this and the other filter in one pass.
+     */
+    TrackingParameterFilter union(TrackingParameterFilter other) {
+        Node merged = Builder.copy(root);
+        merge(merged, other.root);
+        return new TrackingParameterFilter(merged);
+    }
+
+    private static void merge(Node target, Node source) {
+        target.exact |= source.exact;
+        target.prefix |= source.prefix;
+        for (int i = 0; i < source.children.length; i++) {
+            if (source.children[i] == null)
+                continue;
+            if (target.children[i] == null)
+                target.children[i] = Builder.copy(source.children[i]);
+            else
+                merge(target.children[i], source.children[i]);
+        }
+    }
+
+    private static int parameterEnd(CharSequence uri, int start, int queryEnd) {
+        for (int i = start; i < queryEnd; i++)
+            if (uri.charAt(i) == '&')
+                return i;
+        return queryEnd;
+    }
+
+    /**
+     * Checks the name of the parameter in the given range against the trie.
+     */
+    private boolean isTracking(CharSequence uri, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end; i++) {
+            char c = uri.charAt(i);
+            if (c == '=')
+                return node.exact;
+            if (c >= 128)
+                return false;
+            node = node.children[toLower(c)];
+            if (node == null)
+                return false;
+            if (node.prefix)
+                return true;
+        }
+        return node.exact;
+    }
+
+    private static char toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Builds TrackingParameterFilter instances.
+     */
+    public static class Builder {
+        private final Node root = new Node();
+
+        /**
+         * Starts with the parameters of the {@link #defaults()} filter.
+         *
+         * @return the builder
+         */
+        public Builder withDefaults() {
+            return exact(DEFAULT_EXACT).prefix(DEFAULT_PREFIX);
+        }
+
+        /**
+         * Adds parameter names to remove.
+         *
+         * @param names the exact parameter names
+         * @return the builder
+         * @throws IllegalArgumentException if a name is empty or contains non-ASCII characters
+         */
+        public Builder exact(String... names) {
+            for (String name : names)
+                insert(name).exact = true;
+            return this;
+        }
+
+        /**
+         * Adds prefixes of parameter names to remove.
+         *
+         * @param prefixes the parameter name prefixes
+         * @return the builder
+         * @throws IllegalArgumentException if a prefix is empty or contains non-ASCII characters
+         */
+        public Builder prefix(String... prefixes) {
+            for (String prefix : prefixes)
+                insert(prefix).prefix = true;
+            return this;
+        }
+
+        private Node insert(String name) {
+            Objects.requireNonNull(name, "Parameter name cannot be null");
+            if (name.isEmpty())
+                throw new IllegalArgumentException("Parameter name cannot be empty");
+
+            Node node = root;
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c >= 128 || c == '=' || c == '&')
+                    throw new IllegalArgumentException("Invalid parameter name: " + name);
+                int index = toLower(c);
+                if (node.children[index] == null)
+                    node.children[index] = new Node();
+                node = node.children[index];
+            }
+            return node;
+        }
+
+        public TrackingParameterFilter build() {
+            return new TrackingParameterFilter(copy(root));
+        }
+
+        private static Node copy(Node node) {
+            Node copy = new Node();
+            copy.exact = node.exact;
+            copy.prefix = node.prefix;
+            for (int i = 0; i < node.children.length; i++)
+                if (node.children[i] != null)
+                    copy.children[i] = copy(node.children[i]);
+            return copy;
+        }
+    }
+}
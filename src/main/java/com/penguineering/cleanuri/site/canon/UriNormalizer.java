@@ -0,0 +1,334 @@
+package com.penguineering.cleanuri.site.canon;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Normalizes absolute URIs according to RFC 3986, section 6.2.2 and 6.2.3.
+ * <p>
+ * The normalizer applies the syntax-based normalizations
+ * </p>
+ * <ul>
+ *     <li>lower case scheme and host,</li>
+ *     <li>upper case hexadecimal digits in percent-encodings,</li>
+ *     <li>decoding of percent-encoded unreserved characters,</li>
+ *     <li>removal of the dot-segments {@code .} and {@code ..} from absolute paths,</li>
+ * </ul>
+ * <p>
+ * and the scheme-based normalizations
+ * </p>
+ * <ul>
+ *     <li>removal of empty and default ports, e.g. {@code :80} for {@code http},</li>
+ *     <li>an empty path as {@code /} if the URI has an authority.</li>
+ * </ul>
+ * <p>
+ * Optionally, a trailing slash is removed from non-root paths. This is not an RFC 3986 normalization,
+ * as these paths may address different resources, but it is a common canonicalization for web sites.
+ * </p>
+ * <p>
+ * The URI is normalized in a single pass over its characters, without parsing it into a
+ * {@link java.net.URI}. Until the first change, no output is written, so that a URI that is already
+ * normalized is returned as the same instance without allocation.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * UriNormalizer.defaults().apply("HTTP://Example.COM:80/a/./b/../c/%7euser?q=%3f");
+ * // "http://example.com/a/c/~user?q=%3F"
+ * </pre>
+ *
+ * <p>This class is immutable and thread-safe.</p>
+ */
+public class UriNormalizer implements CanonizationStage {
+    private static final UriNormalizer DEFAULTS = new Builder().build();
+
+    private final Map<String, Integer> defaultPorts;
+    private final boolean removeTrailingSlash;
+
+    private UriNormalizer(Builder builder) {
+        this.defaultPorts = Map.copyOf(builder.defaultPorts);
+        this.removeTrailingSlash = builder.removeTrailingSlash;
+    }
+
+    /**
+     * Returns a normalizer with the RFC 3986 normalizations and the default ports of common schemes.
+     *
+     * @return the shared default normalizer
+     */
+    public static UriNormalizer defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * The output of the normalization, which is only materialized on the first change.
+     * <p>
+     * While nothing has changed, the output is the prefix of the input with the current length,
+     * which also holds after truncation.
+     * </p>
+     */
+    private static final class Output {
+        private final CharSequence in;
+        private char[] out;
+        private int length;
+
+        Output(CharSequence in) {
+            this.in = in;
+        }
+
+        void put(char c) {
+            if (out == null) {
+                if (length < in.length() && in.charAt(length) == c) {
+                    length++;
+                    return;
+                }
+                out = new char[in.length() + 1];
+                for (int i = 0; i < length; i++)
+                    out[i] = in.charAt(i);
+            } else if (length == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            out[length++] = c;
+        }
+
+        char charAt(int index) {
+            return out != null ? out[index] : in.charAt(index);
+        }
+
+        void truncate(int newLength) {
+            length = newLength;
+        }
+
+        CharSequence result() {
+            if (out != null)
+                return new String(out, 0, length);
+            return length == in.length() ? in : in.subSequence(0, length).toString();
+        }
+    }
+
+    @Override
+    public CharSequence apply(CharSequence uri) {
+        int length = uri.length();
+        Output out = new Output(uri);
+
+        // Scheme
+        int schemeEnd = schemeEnd(uri);
+        if (schemeEnd < 0)
+            return uri;
+        for (int i = 0; i < schemeEnd; i++)
+            out.put(toLower(uri.charAt(i)));
+        out.put(':');
+        int pos = schemeEnd + 1;
+
+        // Authority
+        boolean hasAuthority = pos + 1 < length && uri.charAt(pos) == '/' && uri.charAt(pos + 1) == '/';
+        if (hasAuthority) {
+            out.put('/');
+            out.put('/');
+            pos = authority(uri, pos + 2, schemeEnd, out);
+        }
+
+        // Path
+        int pathEnd = pos;
+        while (pathEnd < length && uri.charAt(pathEnd) != '?' && uri.charAt(pathEnd) != '#')
+            pathEnd++;
+        path(uri, pos, pathEnd, hasAuthority, out);
+        pos = pathEnd;
+
+        // Query and fragment
+        while (pos < length)
+            pos = percentEncoded(uri, pos, out, false);
+
+        return out.result();
+    }
+
+    private static int schemeEnd(CharSequence uri) {
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c == ':')
+                return i > 0 ? i : -1;
+            boolean valid = isAlpha(c) || (i > 0 && (isDigit(c) || c == '+' || c == '-' || c == '.'));
+            if (!valid)
+                return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the normalized authority and returns the position after it.
+     */
+    private int authority(CharSequence uri, int start, int schemeEnd, Output out) {
+        int length = uri.length();
+        int end = start;
+        while (end < length && uri.charAt(end) != '/' && uri.charAt(end) != '?' && uri.charAt(end) != '#')
+            end++;
+
+        // User information is case-sensitive
+        int hostStart = start;
+        for (int i = start; i < end; i++) {
+            if (uri.charAt(i) == '@') {
+                hostStart = i + 1;
+                break;
+            }
+        }
+        for (int i = start; i < hostStart; )
+            i = percentEncoded(uri, i, out, false);
+
+        // The port separator is the last colon outside of an IP literal
+        int portStart = -1;
+        for (int i = end - 1; i >= hostStart; i--) {
+            char c = uri.charAt(i);
+            if (c == ':') {
+                portStart = i;
+                break;
+            }
+            if (c == ']' || !isDigit(c))
+                break;
+        }
+        int hostEnd = portStart >= 0 ? portStart : end;
+        for (int i = hostStart; i < hostEnd; )
+            i = percentEncoded(uri, i, out, true);
+
+        if (portStart >= 0 && !isDefaultPort(uri, schemeEnd, portStart + 1, end))
+            for (int i = portStart; i < end; i++)
+                out.put(uri.charAt(i));
+
+        return end;
+    }
+
+    private boolean isDefaultPort(CharSequence uri, int schemeEnd, int start, int end) {
+        if (start == end)
+            return true;
+        if (end - start > 5)
+            return false;
+
+        int port = 0;
+        for (int i = start; i < end; i++)
+            port = port * 10 + (uri.charAt(i) - '0');
+        Integer defaultPort = defaultPorts.get(uri.subSequence(0, schemeEnd).toString().toLowerCase(Locale.ROOT));
+        return defaultPort != null && defaultPort == port;
+    }
+
+    private void path(CharSequence uri, int start, int end, boolean hasAuthority, Output out) {
+        if (start == end) {
+            if (hasAuthority)
+                out.put('/');
+            return;
+        }
+        if (uri.charAt(start) != '/') {
+            // Rootless paths have no dot-segments to remove
+            for (int i = start; i < end; )
+                i = percentEncoded(uri, i, out, false);
+            return;
+        }
+
+        int pathStart = out.length;
+        int pos = start;
+        while (pos < end) {
+            // Write the next segment with its leading slash
+            int segmentStart = out.length;
+            out.put('/');
+            pos++;
+            while (pos < end && uri.charAt(pos) != '/')
+                pos = percentEncoded(uri, pos, out, false);
+            boolean last = pos >= end;
+
+            int segmentLength = out.length - segmentStart - 1;
+            boolean dot = segmentLength == 1 && out.charAt(segmentStart + 1) == '.';
+            boolean dotDot = segmentLength == 2
+                    && out.charAt(segmentStart + 1) == '.' && out.charAt(segmentStart + 2) == '.';
+            if (dot || dotDot) {
+                out.truncate(segmentStart);
+                if (dotDot) {
+                    int previous = out.length - 1;
+                    while (previous >= pathStart && out.charAt(previous) != '/')
+                        previous--;
+                    out.truncate(Math.max(previous, pathStart));
+                }
+                if (last)
+                    out.put('/');
+            }
+        }
+
+        if (removeTrailingSlash && out.length - pathStart > 1 && out.charAt(out.length - 1) == '/')
+            out.truncate(out.length - 1);
+    }
+
+    /**
+     * Writes the character at the given position, normalizing a percent-encoding, and returns the next position.
+     */
+    private static int percentEncoded(CharSequence uri, int pos, Output out, boolean lowerCase) {
+        char c = uri.charAt(pos);
+        if (c == '%' && pos + 2 < uri.length()) {
+            int high = Character.digit(uri.charAt(pos + 1), 16);
+            int low = Character.digit(uri.charAt(pos + 2), 16);
+            if (high >= 0 && low >= 0) {
+                char decoded = (char) (high << 4 | low);
+                if (isUnreserved(decoded)) {
+                    out.put(lowerCase ? toLower(decoded) : decoded);
+                } else {
+                    out.put('%');
+                    out.put(Character.toUpperCase(uri.charAt(pos + 1)));
+                    out.put(Character.toUpperCase(uri.charAt(pos + 2)));
+                }
+                return pos + 3;
+            }
+        }
+        out.put(lowerCase ? toLower(c) : c);
+        return pos + 1;
+    }
+
+    private static boolean isUnreserved(char c) {
+        return isAlpha(c) || isDigit(c) || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static boolean isAlpha(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static char toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Builds UriNormalizer instances.
+     */
+    public static class Builder {
+        private final Map<String, Integer> defaultPorts = new HashMap<>(Map.of(
+                "http", 80, "https", 443, "ws", 80, "wss", 443, "ftp", 21));
+        private boolean removeTrailingSlash = false;
+
+        /**
+         * Sets the default port of a scheme, which is removed from URIs of this scheme.
+         *
+         * @param scheme the scheme
+         * @param port   the default port
+         * @return the builder
+         */
+        public Builder defaultPort(String scheme, int port) {
+            defaultPorts.put(Objects.requireNonNull(scheme, "Scheme cannot be null").toLowerCase(Locale.ROOT), port);
+            return this;
+        }
+
+        /**
+         * Sets whether a trailing slash is removed from paths other than the root path.
+         *
+         * @param removeTrailingSlash true to remove trailing slashes, defaults to false
+         * @return the builder
+         */
+        public Builder removeTrailingSlash(boolean removeTrailingSlash) {
+            this.removeTrailingSlash = removeTrailingSlash;
+            return this;
+        }
+
+        public UriNormalizer build() {
+            return new UriNormalizer(this);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.penguineering.cleanuri.site.canon;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The 64-bit xxHash function XXH64.
+ * <p>
+ * See <a href="https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md">the xxHash specification</a>.
+ * </p>
+ */
+final class XxHash64 {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private XxHash64() {
+    }
+
+    /**
+     * Hashes a byte array.
+     *
+     * @param data the data to hash
+     * @param seed the seed
+     * @return the 64-bit hash
+     */
+    static long hash(byte[] data, long seed) {
+        int length = data.length;
+        int pos = 0;
+        long h;
+
+        if (length >= 32) {
+            long v1 = seed + PRIME_1 + PRIME_2;
+            long v2 = seed + PRIME_2;
+            long v3 = seed;
+            long v4 = seed - PRIME_1;
+            int limit = length - 32;
+            do {
+                v1 = round(v1, (long) LONG.get(data, pos));
+                v2 = round(v2, (long) LONG.get(data, pos + 8));
+                v3 = round(v3, (long) LONG.get(data, pos + 16));
+                v4 = round(v4, (long) LONG.get(data, pos + 24));
+                pos += 32;
+            } while (pos <= limit);
+
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + PRIME_5;
+        }
+        h += length;
+
+        for (; pos + 8 <= length; pos += 8) {
+            h ^= round(0, (long) LONG.get(data, pos));
+            h = Long.rotateLeft(h, 27) * PRIME_1 + PRIME_4;
+        }
+        if (pos + 4 <= length) {
+            h ^= ((int) INT.get(data, pos) & 0xFFFFFFFFL) * PRIME_1;
+            h = Long.rotateLeft(h, 23) * PRIME_2 + PRIME_3;
+            pos += 4;
+        }
+        for (; pos < length; pos++) {
+            h ^= (data[pos] & 0xFFL) * PRIME_5;
+            h = Long.rotateLeft(h, 11) * PRIME_1;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME_2;
+        h ^= h >>> 29;
+        h *= PRIME_3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * PRIME_2, 31) * PRIME_1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        return (acc ^ round(0, value)) * PRIME_1 + PRIME_4;
+    }
+}
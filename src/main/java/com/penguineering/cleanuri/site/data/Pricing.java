@@ -57,6 +57,26 @@ public class Pricing {
      */
     private final BigDecimal unitPrice;
 
+    /**
+     * The quantities of the discounts in ascending order, for a binary search of the applicable tier.
+     */
+    private final int[] quantities;
+
+    /**
+     * The unit prices of the discounts, in the same order as the quantities.
+     */
+    private final BigDecimal[] prices;
+
+    /**
+     * The unit prices wrapped for the lookup results, so that lookups do not allocate.
+     */
+    private final Optional<BigDecimal>[] lookupResults;
+
+    /**
+     * Whether the unit price decreases with every discount, computed once on construction.
+     */
+    private final boolean discountsSane;
+
     private Pricing(Builder builder) {
         this.discounts = builder.discounts.values().stream()
                 .sorted(Comparator.comparing(Discount::quantity))
@@ -64,6 +84,23 @@ public class Pricing {
 
         Discount unitPriceDiscount = builder.discounts.get(1);
         this.unitPrice = unitPriceDiscount != null ? unitPriceDiscount.unitPrice() : null;
+
+        int tiers = discounts.size();
+        this.quantities = new int[tiers];
+        this.prices = new BigDecimal[tiers];
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Optional<BigDecimal>[] lookupResults = new Optional[tiers];
+        this.lookupResults = lookupResults;
+        boolean sane = true;
+        for (int i = 0; i < tiers; i++) {
+            Discount discount = discounts.get(i);
+            quantities[i] = discount.quantity();
+            prices[i] = discount.unitPrice();
+            lookupResults[i] = Optional.of(discount.unitPrice());
+            if (i > 0 && prices[i].compareTo(prices[i - 1]) >= 0)
+                sane = false;
+        }
+        this.discountsSane = sane;
     }
 
     /**
@@ -96,10 +133,21 @@ public class Pricing {
      * @return an Optional<BigDecimal> containing the discounted unit price, if available.
      */
     public Optional<BigDecimal> findDiscountedUnitPrice(Integer quantity) {
-        return discounts.stream()
-                .filter(discount -> discount.quantity().compareTo(quantity) <= 0)
-                .reduce((first, second) -> second)
-                .map(Discount::unitPrice);
+        return findDiscountedUnitPrice(quantity.intValue());
+    }
+
+    /**
+     * Calculates the discounted unit price for a specified quantity, see {@link #findDiscountedUnitPrice(Integer)}.
+     * <p>
+     * The applicable discount is found with a binary search and the lookup does not allocate.
+     * </p>
+     *
+     * @param quantity the quantity for which to calculate the discounted unit price
+     * @return an Optional<BigDecimal> containing the discounted unit price, if available.
+     */
+    public Optional<BigDecimal> findDiscountedUnitPrice(int quantity) {
+        int tier = findTier(quantity);
+        return tier >= 0 ? lookupResults[tier] : Optional.empty();
     }
 
     /**
@@ -111,8 +159,21 @@ public class Pricing {
      * the given quantity, an empty Optional is returned.
      */
     public Optional<BigDecimal> calculateTotalPrice(Integer quantity) {
-        return findDiscountedUnitPrice(quantity)
-                .map(reducedPrice -> reducedPrice.multiply(BigDecimal.valueOf(quantity)));
+        return calculateTotalPrice(quantity.intValue());
+    }
+
+    /**
+     * Computes the total cost for a specified quantity, see {@link #calculateTotalPrice(Integer)}.
+     *
+     * @param quantity the quantity for which the total cost is to be calculated
+     * @return an Optional<BigDecimal> containing the total cost. If no price can be determined for
+     * the given quantity, an empty Optional is returned.
+     */
+    public Optional<BigDecimal> calculateTotalPrice(int quantity) {
+        int tier = findTier(quantity);
+        return tier >= 0
+                ? Optional.of(prices[tier].multiply(BigDecimal.valueOf(quantity)))
+                : Optional.empty();
     }
 
     /**
@@ -121,12 +182,17 @@ public class Pricing {
      * @return true if the discounts are sane, false otherwise
      */
     public boolean areDiscountsSane() {
-        return discounts.stream()
-                .map(Discount::unitPrice)
-                .reduce((previousPrice, currentPrice) ->
-                        currentPrice.compareTo(previousPrice) < 0 ? currentPrice : BigDecimal.valueOf(-1))
-                .orElse(BigDecimal.ZERO)
-                .compareTo(BigDecimal.valueOf(-1)) != 0;
+        return discountsSane;
+    }
+
+    /**
+     * Finds the index of the largest discount quantity that is less than or equal to the given quantity.
+     *
+     * @return the index of the tier, or -1 if the quantity is below all discounts
+     */
+    private int findTier(int quantity) {
+        int index = Arrays.binarySearch(quantities, quantity);
+        return index >= 0 ? index : -index - 2;
     }
 
     @JsonPOJOBuilder(withPrefix = "", buildMethodName = "buildForDeserialization")
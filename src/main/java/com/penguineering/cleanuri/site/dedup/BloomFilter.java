@@ -0,0 +1,56 @@
+package com.penguineering.cleanuri.site.dedup;
+
+/**
+ * A Bloom filter over 64-bit fingerprints, stored in {@link LongSegments}.
+ * <p>
+ * The bit positions are derived from two hashes of the fingerprint by double hashing, see Kirsch and
+ * Mitzenmacher, "Less Hashing, Same Performance: Building a Better Bloom Filter". The number of bits is
+ * a power of two and the second hash is odd, so that the positions of a fingerprint are distinct.
+ * </p>
+ */
+final class BloomFilter {
+    private final LongSegments words;
+    private final long mask;
+    private final int hashes;
+
+    /**
+     * @param words  the bits, the length must be a power of two
+     * @param hashes the number of bits per fingerprint
+     */
+    BloomFilter(LongSegments words, int hashes) {
+        this.words = words;
+        this.mask = (words.length() << 6) - 1;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Returns the number of hash functions that minimizes the false positive rate.
+     */
+    static int optimalHashes(int bitsPerEntry) {
+        return Math.max(1, (int) Math.round(bitsPerEntry * Math.log(2)));
+    }
+
+    void add(long fingerprint) {
+        long h1 = FingerprintSet.mix(fingerprint);
+        long h2 = FingerprintSet.mix(~fingerprint) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            words.or(bit >>> 6, 1L << bit);
+        }
+    }
+
+    boolean mightContain(long fingerprint) {
+        long h1 = FingerprintSet.mix(fingerprint);
+        long h2 = FingerprintSet.mix(~fingerprint) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if ((words.get(bit >>> 6) & 1L << bit) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    void clear() {
+        words.clear();
+    }
+}
@@ -0,0 +1,436 @@
+package com.penguineering.cleanuri.site.dedup;
+
+import com.penguineering.cleanuri.site.canon.CanonicalUri;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A set of 64-bit fingerprints of canonical URIs, stored off-heap, to tell new URIs from URIs that have been seen.
+ * <p>
+ * The fingerprints are stored in an open-addressing hash table with linear probing, which takes 8 bytes per slot
+ * and is sized for the expected number of entries at a load factor of 0.75. The table is memory-mapped from a file
+ * if {@link Builder#file(Path)} is set, or allocated as direct buffers of at most 1 GiB otherwise, so that hundreds
+ * of millions of fingerprints do not slow down garbage collection. The table does not grow: if it is filled to
+ * 90% of its capacity, adding a new fingerprint throws an {@link IllegalStateException}.
+ * </p>
+ * <p>
+ * Large sets should be file-backed. Direct buffers are limited by {@code -XX:MaxDirectMemorySize}, which defaults to
+ * the maximum heap size, so an in-memory set of 200 million fingerprints, with a table of 2 GiB and a Bloom filter of
+ * 256 MiB, only fits if that limit is raised. A mapped file is not subject to the limit, and the operating system pages it in as needed.
+ * </p>
+ * <p>
+ * A Bloom filter in front of the table answers most lookups of unknown fingerprints without touching the table,
+ * which saves page faults if the table is mapped from a file. With the default of 8 bits per expected entry,
+ * about 2% of unknown fingerprints pass the filter.
+ * </p>
+ * <p>
+ * A file-backed set keeps its content when it is closed and reopened. The file is marked as in use while the
+ * set is open. If a set has not been closed, e.g. because the process crashed, the entry count and the Bloom
+ * filter are rebuilt from the table when the file is opened again. Fingerprints added after the last
+ * {@link #flush()} may be lost if the operating system crashes.
+ * </p>
+ * <p>
+ * Fingerprints are compared as values, so two URIs with the same fingerprint are considered the same, see
+ * {@link CanonicalUri#getFingerprint()}. The fingerprint 0 is stored as a reserved value, which slightly
+ * increases the chance of a collision for these two fingerprints.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * try (FingerprintSet seen = new FingerprintSet.Builder()
+ *         .expectedSize(200_000_000)
+ *         .file(Path.of("seen-links.fps"))
+ *         .build()) {
+ *     if (seen.add(CanonicalUri.of(uri)))
+ *         crawl(uri);
+ * }
+ * </pre>
+ *
+ * <p>All operations except {@link #close()} are thread-safe and lock-free.</p>
+ */
+public class FingerprintSet implements AutoCloseable {
+    private static final long EMPTY = 0;
+    /**
+     * The value stored for the fingerprint 0, which marks empty slots.
+     */
+    private static final long ZERO = 0x9E3779B97F4A7C15L;
+    private static final double MAX_LOAD = 0.9;
+
+    // The file header, followed by the table and the Bloom filter
+    private static final int HEADER_SIZE = 4096;
+    private static final long MAGIC = 0x53464952_554E4C43L; // "CLNURIFS" in little-endian byte order
+    private static final int VERSION = 1;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int IN_USE_OFFSET = 12;
+    private static final int TABLE_LENGTH_OFFSET = 16;
+    private static final int BLOOM_LENGTH_OFFSET = 24;
+    private static final int BLOOM_HASHES_OFFSET = 32;
+    private static final int SIZE_OFFSET = 40;
+
+    private final LongSegments table;
+    private final long mask;
+    private final long maxSize;
+    private final LongSegments bloomWords;
+    private final BloomFilter bloom;
+    private final AtomicLong size;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final MappedByteBuffer header;
+    private volatile boolean closed;
+
+    private FingerprintSet(LongSegments table, LongSegments bloomWords, int bloomHashes, long size,
+                           FileChannel channel, FileLock fileLock, MappedByteBuffer header) {
+        this.table = table;
+        this.mask = table.length() - 1;
+        this.maxSize = (long) (table.length() * MAX_LOAD);
+        this.bloomWords = bloomWords;
+        this.bloom = bloomWords != null ? new BloomFilter(bloomWords, bloomHashes) : null;
+        this.size = new AtomicLong(size);
+        this.channel = channel;
+        this.fileLock = fileLock;
+        this.header = header;
+    }
+
+    /**
+     * Spreads the bits of a fingerprint, so that sequential values are distributed over the table.
+     */
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * Adds the fingerprint of a canonical URI.
+     *
+     * @param uri the canonical URI
+     * @return true if the URI is new, false if it has been added before
+     * @throws IllegalStateException if the set is full or closed
+     */
+    public boolean add(CanonicalUri uri) {
+        return add(uri.getFingerprint());
+    }
+
+    /**
+     * Adds a fingerprint.
+     *
+     * @param fingerprint the fingerprint
+     * @return true if the fingerprint is new, false if it has been added before
+     * @throws IllegalStateException if the set is full or closed
+     */
+    public boolean add(long fingerprint) {
+        checkOpen();
+        long value = fingerprint != EMPTY ? fingerprint : ZERO;
+        long index = mix(value) & mask;
+        for (long probes = 0; probes <= mask; ) {
+            long current = table.get(index);
+            if (current == value)
+                return false;
+            if (current == EMPTY) {
+                if (size.get() >= maxSize)
+                    throw new IllegalStateException("Fingerprint set is full: " + size.get() + " entries");
+                // Before the table, so that a reader who finds the fingerprint in the table also passes the filter
+                if (bloom != null)
+                    bloom.add(value);
+                if (table.compareAndSet(index, EMPTY, value)) {
+                    size.incrementAndGet();
+                    return true;
+                }
+                // The slot has been taken concurrently, check it again
+                continue;
+            }
+            index = (index + 1) & mask;
+            probes++;
+        }
+        throw new IllegalStateException("Fingerprint set is full: " + size.get() + " entries");
+    }
+
+    /**
+     * Checks if the fingerprint of a canonical URI has been added.
+     *
+     * @param uri the canonical URI
+     * @return true if the URI has been added, false otherwise
+     * @throws IllegalStateException if the set is closed
+     */
+    public boolean contains(CanonicalUri uri) {
+        return contains(uri.getFingerprint());
+    }
+
+    /**
+     * Checks if a fingerprint has been added.
+     *
+     * @param fingerprint the fingerprint
+     * @return true if the fingerprint has been added, false otherwise
+     * @throws IllegalStateException if the set is closed
+     */
+    public boolean contains(long fingerprint) {
+        checkOpen();
+        long value = fingerprint != EMPTY ? fingerprint : ZERO;
+        if (bloom != null && !bloom.mightContain(value))
+            return false;
+
+        long index = mix(value) & mask;
+        for (long probes = 0; probes <= mask; probes++) {
+            long current = table.get(index);
+            if (current == value)
+                return true;
+            if (current == EMPTY)
+                return false;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of fingerprints in this set.
+     *
+     * @return the number of fingerprints
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the maximum number of fingerprints in this set.
+     *
+     * @return the number of fingerprints after which {@link #add(long)} fails
+     */
+    public long capacity() {
+        return maxSize;
+    }
+
+    /**
+     * Writes the fingerprints of a file-backed set to the file. Does nothing for sets in memory.
+     *
+     * @throws IllegalStateException if the set is closed
+     */
+    public void flush() {
+        checkOpen();
+        if (header == null)
+            return;
+        table.force();
+        if (bloomWords != null)
+            bloomWords.force();
+        header.putLong(SIZE_OFFSET, size.get());
+        header.force();
+    }
+
+    /**
+     * Writes the fingerprints of a file-backed set to the file and closes it. The memory of the set is released
+     * when it is garbage collected.
+     *
+     * @throws UncheckedIOException if the file cannot be closed
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        if (header == null)
+            return;
+
+        table.force();
+        if (bloomWords != null)
+            bloomWords.force();
+        header.putLong(SIZE_OFFSET, size.get());
+        header.putInt(IN_USE_OFFSET, 0);
+        header.force();
+        try {
+            fileLock.release();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("Fingerprint set is closed");
+    }
+
+    /**
+     * Rebuilds the entry count and the Bloom filter from the table.
+     */
+    private void recover() {
+        long count = 0;
+        if (bloom != null)
+            bloom.clear();
+        for (long i = 0; i < table.length(); i++) {
+            long value = table.get(i);
+            if (value != EMPTY) {
+                count++;
+                if (bloom != null)
+                    bloom.add(value);
+            }
+        }
+        size.set(count);
+    }
+
+    /**
+     * Builds FingerprintSet instances.
+     */
+    public static class Builder {
+        private long expectedSize = 1 << 20;
+        private int bloomFilterBitsPerEntry = 8;
+        private Path file;
+
+        /**
+         * Sets the expected number of fingerprints, which determines the size of the table and the Bloom filter.
+         * <p>
+         * The set accepts up to 20% more fingerprints. For a file that already exists, the sizes in the file are used.
+         * </p>
+         *
+         * @param expectedSize the expected number of fingerprints, defaults to 2<sup>20</sup>
+         * @return the builder
+         * @throws IllegalArgumentException if the expected size is not positive
+         */
+        public Builder expectedSize(long expectedSize) {
+            if (expectedSize <= 0)
+                throw new IllegalArgumentException("Expected size must be positive");
+            this.expectedSize = expectedSize;
+            return this;
+        }
+
+        /**
+         * Sets the size of the Bloom filter in front of the table.
+         *
+         * @param bitsPerEntry the number of bits per expected fingerprint, defaults to 8, or 0 to disable the filter
+         * @return the builder
+         * @throws IllegalArgumentException if the number of bits is negative
+         */
+        public Builder bloomFilterBitsPerEntry(int bitsPerEntry) {
+            if (bitsPerEntry < 0)
+                throw new IllegalArgumentException("Bits per entry cannot be negative");
+            this.bloomFilterBitsPerEntry = bitsPerEntry;
+            return this;
+        }
+
+        /**
+         * Sets the file that stores the set. If the file exists, the fingerprints in it are loaded.
+         * <p>
+         * A set without a file is kept in direct memory, which is limited by {@code -XX:MaxDirectMemorySize}.
+         * </p>
+         *
+         * @param file the file, or null to keep the set in memory
+         * @return the builder
+         */
+        public Builder file(Path file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * Builds the set.
+         *
+         * @return the set
+         * @throws UncheckedIOException if the file cannot be opened, is not a fingerprint set file or is in use
+         * @throws OutOfMemoryError     if a set without a file exceeds the direct memory limit
+         */
+        public FingerprintSet build() {
+            long tableLength = Long.highestOneBit(Math.max(16, (long) Math.ceil(expectedSize / 0.75)) - 1) << 1;
+            long bloomLength = bloomFilterBitsPerEntry == 0 ? 0
+                    : Long.highestOneBit(Math.max(2, Math.ceilDiv(expectedSize * bloomFilterBitsPerEntry, 64)) - 1) << 1;
+            int bloomHashes = BloomFilter.optimalHashes(bloomFilterBitsPerEntry);
+
+            if (file == null) {
+                return new FingerprintSet(LongSegments.allocate(tableLength),
+                        bloomLength > 0 ? LongSegments.allocate(bloomLength) : null, bloomHashes,
+                        0, null, null, null);
+            }
+
+            try {
+                return open(tableLength, bloomLength, bloomHashes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private FingerprintSet open(long tableLength, long bloomLength, int bloomHashes) throws IOException {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                FileLock fileLock = lock(channel);
+
+                boolean exists = channel.size() > 0;
+                boolean inUse = false;
+                long size = 0;
+                if (exists) {
+                    // Validate before mapping, as mapping would grow a foreign file to the header size
+                    ByteBuffer stored = readHeader(channel);
+                    if (stored == null
+                            || stored.getLong(MAGIC_OFFSET) != MAGIC || stored.getInt(VERSION_OFFSET) != VERSION)
+                        throw new IOException("Not a fingerprint set file: " + file);
+                    inUse = stored.getInt(IN_USE_OFFSET) != 0;
+                    tableLength = stored.getLong(TABLE_LENGTH_OFFSET);
+                    bloomLength = stored.getLong(BLOOM_LENGTH_OFFSET);
+                    bloomHashes = stored.getInt(BLOOM_HASHES_OFFSET);
+                    size = stored.getLong(SIZE_OFFSET);
+                }
+
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                if (!exists) {
+                    header.putLong(MAGIC_OFFSET, MAGIC);
+                    header.putInt(VERSION_OFFSET, VERSION);
+                    header.putLong(TABLE_LENGTH_OFFSET, tableLength);
+                    header.putLong(BLOOM_LENGTH_OFFSET, bloomLength);
+                    header.putInt(BLOOM_HASHES_OFFSET, bloomHashes);
+                }
+
+                LongSegments table = LongSegments.map(channel, HEADER_SIZE, tableLength);
+                LongSegments bloomWords = bloomLength > 0
+                        ? LongSegments.map(channel, HEADER_SIZE + (tableLength << 3), bloomLength)
+                        : null;
+                FingerprintSet set = new FingerprintSet(
+                        table, bloomWords, bloomHashes, size, channel, fileLock, header);
+                if (inUse)
+                    set.recover();
+
+                header.putInt(IN_USE_OFFSET, 1);
+                header.force();
+                return set;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Reads the header of an existing file without changing it.
+         *
+         * @return the header, or null if the file is shorter than a header
+         */
+        private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining())
+                if (channel.read(header, header.position()) < 0)
+                    return null;
+            return header;
+        }
+
+        private FileLock lock(FileChannel channel) throws IOException {
+            try {
+                FileLock fileLock = channel.tryLock();
+                if (fileLock != null)
+                    return fileLock;
+            } catch (OverlappingFileLockException e) {
+                // Locked by this process
+            }
+            throw new IOException("Fingerprint set file is in use: " + file);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.penguineering.cleanuri.site.dedup;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An off-heap array of longs with atomic access, split into buffers of at most 1 GiB.
+ * <p>
+ * The buffers are either allocated directly or mapped from a file. Values are stored in little-endian
+ * byte order, so that mapped files can be moved between platforms.
+ * </p>
+ */
+final class LongSegments {
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final int SEGMENT_BITS = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final ByteBuffer[] segments;
+    private final long length;
+
+    private LongSegments(ByteBuffer[] segments, long length) {
+        this.segments = segments;
+        this.length = length;
+    }
+
+    /**
+     * Allocates zeroed direct buffers, which count against {@code -XX:MaxDirectMemorySize}.
+     */
+    static LongSegments allocate(long length) {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(length)];
+        for (int i = 0; i < segments.length; i++)
+            segments[i] = ByteBuffer.allocateDirect(Math.toIntExact(segmentLength(length, i) << 3));
+        return new LongSegments(segments, length);
+    }
+
+    /**
+     * Maps a region of a file, which is extended if necessary.
+     *
+     * @param offset the position of the first value in the file, must be a multiple of 8
+     */
+    static LongSegments map(FileChannel channel, long offset, long length) throws IOException {
+        ByteBuffer[] segments = new ByteBuffer[segmentCount(length)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = offset + ((long) i << SEGMENT_BITS << 3);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, segmentLength(length, i) << 3);
+        }
+        return new LongSegments(segments, length);
+    }
+
+    private static int segmentCount(long length) {
+        return Math.toIntExact((length + SEGMENT_MASK) >>> SEGMENT_BITS);
+    }
+
+    private static long segmentLength(long length, int segment) {
+        return Math.min(1L << SEGMENT_BITS, length - ((long) segment << SEGMENT_BITS));
+    }
+
+    long length() {
+        return length;
+    }
+
+    long get(long index) {
+        return (long) LONG.getAcquire(segments[(int) (index >>> SEGMENT_BITS)], (int) (index & SEGMENT_MASK) << 3);
+    }
+
+    void set(long index, long value) {
+        LONG.setRelease(segments[(int) (index >>> SEGMENT_BITS)], (int) (index & SEGMENT_MASK) << 3, value);
+    }
+
+    boolean compareAndSet(long index, long expected, long value) {
+        return LONG.compareAndSet(
+                segments[(int) (index >>> SEGMENT_BITS)], (int) (index & SEGMENT_MASK) << 3, expected, value);
+    }
+
+    void or(long index, long bits) {
+        LONG.getAndBitwiseOr(segments[(int) (index >>> SEGMENT_BITS)], (int) (index & SEGMENT_MASK) << 3, bits);
+    }
+
+    void clear() {
+        for (long i = 0; i < length; i++)
+            set(i, 0);
+    }
+
+    /**
+     * Writes the changes of mapped buffers to the file.
+     */
+    void force() {
+        for (ByteBuffer segment : segments)
+            if (segment instanceof MappedByteBuffer mapped)
+                mapped.force();
+    }
+}
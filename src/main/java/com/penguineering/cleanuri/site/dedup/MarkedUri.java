@@ -0,0 +1,13 @@
+package com.penguineering.cleanuri.site.dedup;
+
+import com.penguineering.cleanuri.site.canon.CanonicalUri;
+
+/**
+ * A canonical URI that has been marked as seen in a {@link FingerprintSet}.
+ *
+ * @param uri       the canonical URI
+ * @param firstSeen true if the URI has not been seen before, false otherwise
+ * @see com.penguineering.cleanuri.site.CanonizationService#canonizeAndMark(java.net.URI, FingerprintSet)
+ */
+public record MarkedUri(CanonicalUri uri, boolean firstSeen) {
+}
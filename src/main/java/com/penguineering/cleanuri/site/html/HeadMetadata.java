@@ -0,0 +1,76 @@
+package com.penguineering.cleanuri.site.html;
+
+import java.util.*;
+
+/**
+ * Collects the metadata found in the head of an HTML document.
+ * <p>
+ * For repeated meta keys and link relations, the first occurrence is kept.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * HeadMetadata metadata = new HeadMetadataScanner().scan(page.openBody(), page.getCharset());
+ * Optional&lt;String&gt; title = metadata.getTitle();
+ * Optional&lt;String&gt; image = metadata.getMeta("og:image");
+ * </pre>
+ */
+public class HeadMetadata implements HeadMetadataListener {
+    private String title;
+    private final Map<String, String> meta = new HashMap<>();
+    private final Map<String, String> links = new HashMap<>();
+
+    @Override
+    public void title(String title) {
+        if (this.title == null)
+            this.title = title;
+    }
+
+    @Override
+    public void meta(String key, String content) {
+        meta.putIfAbsent(key, content);
+    }
+
+    @Override
+    public void link(String rel, String href) {
+        links.putIfAbsent(rel, href);
+    }
+
+    /**
+     * Returns the document title.
+     *
+     * @return an Optional containing the title, or an empty Optional if the document has no title
+     */
+    public Optional<String> getTitle() {
+        return Optional.ofNullable(title);
+    }
+
+    /**
+     * Returns the content of a meta element.
+     *
+     * @param key the meta key, see {@link HeadMetadataListener#meta(String, String)}
+     * @return an Optional containing the content, or an empty Optional if the key is not present
+     */
+    public Optional<String> getMeta(String key) {
+        return Optional.ofNullable(meta.get(key.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Returns the target of a link relation.
+     *
+     * @param rel the link relation
+     * @return an Optional containing the link target, or an empty Optional if the relation is not present
+     */
+    public Optional<String> getLink(String rel) {
+        return Optional.ofNullable(links.get(rel.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * Returns the target of the canonical link.
+     *
+     * @return an Optional containing the canonical link target, or an empty Optional if not present
+     */
+    public Optional<String> getCanonical() {
+        return getLink("canonical");
+    }
+}
@@ -0,0 +1,78 @@
+package com.penguineering.cleanuri.site.html;
+
+import com.penguineering.cleanuri.site.ExceptionPassing;
+import com.penguineering.cleanuri.site.Extractor;
+import com.penguineering.cleanuri.site.PageContext;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * An extractor that takes the document title from the head of the page.
+ * <p>
+ * The title is read with {@link PageContext#getHeadMetadata()}, so only the head of the page is
+ * read if no other component needs the body. The {@code <title>} element is preferred,
+ * with the OpenGraph title as fallback. Product description and pricing are not extracted,
+ * subclasses may override these methods.
+ * </p>
+ * <p>
+ * Errors while fetching the page are passed to the exception handler with {@link Level#WARNING}.
+ * </p>
+ *
+ * <p>Example usage in a site implementation:</p>
+ * <pre>
+ * {@code @Override}
+ * public Optional&lt;Extractor&gt; newExtractor(PageContext page) {
+ *     return Optional.of(new HeadMetadataExtractor(page));
+ * }
+ * </pre>
+ */
+public class HeadMetadataExtractor implements Extractor {
+    protected final PageContext page;
+    protected BiConsumer<Level, Throwable> exceptionHandler = (level, throwable) -> {};
+
+    public HeadMetadataExtractor(PageContext page) {
+        this.page = Objects.requireNonNull(page, "Page cannot be null");
+    }
+
+    @Override
+    public Optional<String> extractDocumentTitle() {
+        return headMetadata().flatMap(metadata -> metadata.getTitle()
+                .or(() -> metadata.getMeta("og:title")));
+    }
+
+    @Override
+    public Optional<ProductDescription> extractProductDescription() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Pricing> extractPricing() {
+        return Optional.empty();
+    }
+
+    @Override
+    public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+        this.exceptionHandler = Objects.requireNonNull(exceptionHandler, "Exception handler cannot be null");
+        return this;
+    }
+
+    /**
+     * Returns the head metadata of the page.
+     *
+     * @return an Optional containing the metadata, or an empty Optional if the page cannot be fetched
+     */
+    protected Optional<HeadMetadata> headMetadata() {
+        try {
+            return Optional.of(page.getHeadMetadata());
+        } catch (UncheckedIOException e) {
+            exceptionHandler.accept(Level.WARNING, e);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.penguineering.cleanuri.site.html;
+
+/**
+ * Receives the metadata found in the head of an HTML document.
+ *
+ * @see HeadMetadataScanner
+ */
+public interface HeadMetadataListener {
+    /**
+     * Called for the document title, with whitespace collapsed.
+     *
+     * @param title the title
+     */
+    default void title(String title) {
+    }
+
+    /**
+     * Called for a {@code meta} element with content.
+     * <p>
+     * The key is the lower-case value of the {@code name}, {@code property}, {@code itemprop} or
+     * {@code http-equiv} attribute, e.g. {@code description} or {@code og:title}. A {@code charset}
+     * declaration is reported with the key {@code charset}.
+     * </p>
+     *
+     * @param key     the meta key
+     * @param content the meta content
+     */
+    default void meta(String key, String content) {
+    }
+
+    /**
+     * Called for each relation of a {@code link} element with a target.
+     *
+     * @param rel  the lower-case relation, e.g. {@code canonical}
+     * @param href the link target as written in the document
+     */
+    default void link(String rel, String href) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.penguineering.cleanuri.site.html;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Scans the head of an HTML document for the title, meta elements and links.
+ * <p>
+ * The scanner reads the document as a stream and stops as soon as the head ends, which is at
+ * {@code </head>}, at the start of the body, or at the first element that is not allowed in
+ * the head. It also stops after a configurable number of characters, so large documents with
+ * a missing or broken head do not have to be read completely.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * HeadMetadata metadata = new HeadMetadataScanner().scan(inputStream, StandardCharsets.UTF_8);
+ * </pre>
+ *
+ * <p>Instances are immutable and can be shared between threads.</p>
+ */
+public class HeadMetadataScanner {
+    /**
+     * The default maximum number of characters to read.
+     */
+    public static final long DEFAULT_LIMIT = 512 * 1024;
+
+    private static final Set<String> HEAD_ELEMENTS = Set.of(
+            "html", "head", "title", "meta", "link", "base", "script", "style", "noscript", "template");
+    private static final String[] META_KEY_ATTRIBUTES = {"name", "property", "itemprop", "http-equiv"};
+
+    private final long limit;
+
+    /**
+     * Creates a scanner with the {@link #DEFAULT_LIMIT default limit}.
+     */
+    public HeadMetadataScanner() {
+        this(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Creates a scanner with the given limit.
+     *
+     * @param limit the maximum number of characters to read
+     */
+    public HeadMetadataScanner(long limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+        this.limit = limit;
+    }
+
+    /**
+     * Scans a byte stream. The stream is not closed.
+     *
+     * @param in      the document stream
+     * @param charset the document charset
+     * @return the collected metadata
+     * @throws IOException if reading fails
+     */
+    public HeadMetadata scan(InputStream in, Charset charset) throws IOException {
+        HeadMetadata metadata = new HeadMetadata();
+        scan(new InputStreamReader(in, charset), metadata);
+        return metadata;
+    }
+
+    /**
+     * Scans a character stream and reports the metadata to a listener. The reader is not closed.
+     *
+     * @param reader   the document source
+     * @param listener the listener for the metadata
+     * @throws IOException if reading fails
+     */
+    public void scan(Reader reader, HeadMetadataListener listener) throws IOException {
+        new HtmlTokenizer(reader, limit).tokenize(new HtmlTokenizer.Handler() {
+            private boolean inTitle = false;
+
+            @Override
+            public boolean startTag(String name, Map<String, String> attributes, boolean selfClosing) {
+                if (!HEAD_ELEMENTS.contains(name))
+                    return false;
+
+                switch (name) {
+                    case "title" -> inTitle = !selfClosing;
+                    case "meta" -> meta(attributes, listener);
+                    case "link" -> link(attributes, listener);
+                    default -> {
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean endTag(String name) {
+                if (name.equals("title"))
+                    inTitle = false;
+                return !name.equals("head");
+            }
+
+            @Override
+            public boolean text(CharSequence text) {
+                if (inTitle)
+                    listener.title(collapseWhitespace(text));
+                return true;
+            }
+        });
+    }
+
+    private static void meta(Map<String, String> attributes, HeadMetadataListener listener) {
+        String charset = attributes.get("charset");
+        if (charset != null)
+            listener.meta("charset", charset.trim());
+
+        String content = attributes.get("content");
+        if (content == null)
+            return;
+
+        for (String attribute : META_KEY_ATTRIBUTES) {
+            String key = attributes.get(attribute);
+            if (key != null && !key.isBlank()) {
+                listener.meta(key.trim().toLowerCase(Locale.ROOT), content);
+                return;
+            }
+        }
+    }
+
+    private static void link(Map<String, String> attributes, HeadMetadataListener listener) {
+        String rel = attributes.get("rel");
+        String href = attributes.get("href");
+        if (rel == null || href == null)
+            return;
+
+        for (String token : rel.trim().split("\\s+"))
+            if (!token.isEmpty())
+                listener.link(token.toLowerCase(Locale.ROOT), href.trim());
+    }
+
+    static String collapseWhitespace(CharSequence text) {
+        StringBuilder result = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || c == '\u00a0') {
+                space = !result.isEmpty();
+            } else {
+                if (space)
+                    result.append(' ');
+                result.append(c);
+                space = false;
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,368 @@
+package com.penguineering.cleanuri.site.html;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A lenient streaming HTML tokenizer.
+ * <p>
+ * The tokenizer reads the document from a {@link Reader} in small chunks and reports start tags,
+ * end tags and text to a {@link Handler}. It does not build a document tree and stops reading as
+ * soon as the handler asks it to, or when the configured character limit is reached, so only the
+ * part of the document that is actually needed is read.
+ * </p>
+ * <p>
+ * Comments, doctype declarations and processing instructions are skipped. The content of
+ * {@code script}, {@code style}, {@code title} and {@code textarea} elements is reported as a
+ * single text token, without looking for tags inside. Character references are decoded in
+ * attribute values and in text, except for the content of {@code script} and {@code style}.
+ * </p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class HtmlTokenizer {
+    /**
+     * Receives the tokens of a document.
+     * <p>
+     * Each method returns whether tokenizing should continue.
+     * </p>
+     */
+    public interface Handler {
+        /**
+         * Called for a start tag.
+         *
+         * @param name        the lower-case tag name
+         * @param attributes  the attributes with lower-case names, in document order
+         * @param selfClosing true if the tag ends with {@code />}
+         * @return true to continue, false to stop tokenizing
+         */
+        boolean startTag(String name, Map<String, String> attributes, boolean selfClosing);
+
+        /**
+         * Called for an end tag.
+         *
+         * @param name the lower-case tag name
+         * @return true to continue, false to stop tokenizing
+         */
+        boolean endTag(String name);
+
+        /**
+         * Called for text between tags.
+         *
+         * @param text the text, only valid during the call
+         * @return true to continue, false to stop tokenizing
+         */
+        boolean text(CharSequence text);
+    }
+
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style");
+    private static final Set<String> ESCAPABLE_RAW_TEXT_ELEMENTS = Set.of("title", "textarea");
+
+    private final Reader reader;
+    private final long limit;
+    private final char[] buffer = new char[4096];
+    private int position;
+    private int length;
+    private long consumed;
+    private final StringBuilder scratch = new StringBuilder();
+
+    /**
+     * Creates a tokenizer.
+     *
+     * @param reader the document source
+     * @param limit  the maximum number of characters to read
+     */
+    public HtmlTokenizer(Reader reader, long limit) {
+        this.reader = Objects.requireNonNull(reader, "Reader cannot be null");
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit cannot be negative");
+        this.limit = limit;
+    }
+
+    /**
+     * Tokenizes the document until the end, the limit or until the handler stops.
+     *
+     * @param handler the token handler
+     * @throws IOException if reading fails
+     */
+    public void tokenize(Handler handler) throws IOException {
+        StringBuilder text = new StringBuilder();
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '<') {
+                int next = peek();
+                if (next == '/' || next == '!' || next == '?' || isAsciiLetter(next)) {
+                    if (!flushText(handler, text) || !tag(handler))
+                        return;
+                    continue;
+                }
+            }
+            text.append((char) c);
+        }
+        flushText(handler, text);
+    }
+
+    /**
+     * Handles the markup after an opening angle bracket.
+     */
+    private boolean tag(Handler handler) throws IOException {
+        int c = read();
+        switch (c) {
+            case '!' -> {
+                if (peek() == '-') {
+                    read();
+                    if (peek() == '-') {
+                        read();
+                        skipComment();
+                        return true;
+                    }
+                }
+                skipPast('>');
+                return true;
+            }
+            case '?' -> {
+                skipPast('>');
+                return true;
+            }
+            case '/' -> {
+                String name = readTagName(-1);
+                skipPast('>');
+                return name.isEmpty() || handler.endTag(name);
+            }
+            default -> {
+                return startTag(handler, c);
+            }
+        }
+    }
+
+    private boolean startTag(Handler handler, int first) throws IOException {
+        String name = readTagName(first);
+        Map<String, String> attributes = Collections.emptyMap();
+        boolean selfClosing = false;
+
+        while (true) {
+            skipWhitespace();
+            int c = read();
+            if (c == -1 || c == '>')
+                break;
+            if (c == '/') {
+                if (peek() == '>') {
+                    read();
+                    selfClosing = true;
+                    break;
+                }
+                continue;
+            }
+
+            scratch.setLength(0);
+            scratch.append(Character.toLowerCase((char) c));
+            while ((c = peek()) != -1 && !isWhitespace(c) && c != '=' && c != '>' && c != '/')
+                scratch.append(Character.toLowerCase((char) read()));
+            String attributeName = scratch.toString();
+
+            String value = "";
+            skipWhitespace();
+            if (peek() == '=') {
+                read();
+                skipWhitespace();
+                value = readAttributeValue();
+            }
+
+            if (attributes.isEmpty())
+                attributes = new LinkedHashMap<>();
+            attributes.putIfAbsent(attributeName, value);
+        }
+
+        if (!handler.startTag(name, attributes, selfClosing))
+            return false;
+
+        if (!selfClosing && (RAW_TEXT_ELEMENTS.contains(name) || ESCAPABLE_RAW_TEXT_ELEMENTS.contains(name))) {
+            CharSequence content = readRawText(name);
+            if (ESCAPABLE_RAW_TEXT_ELEMENTS.contains(name))
+                content = decode(content);
+            if (content.length() > 0 && !handler.text(content))
+                return false;
+            return handler.endTag(name);
+        }
+        return true;
+    }
+
+    private String readTagName(int first) throws IOException {
+        scratch.setLength(0);
+        if (first != -1)
+            scratch.append(Character.toLowerCase((char) first));
+        int c;
+        while ((c = peek()) != -1 && !isWhitespace(c) && c != '>' && c != '/')
+            scratch.append(Character.toLowerCase((char) read()));
+        return scratch.toString();
+    }
+
+    private String readAttributeValue() throws IOException {
+        scratch.setLength(0);
+        int c = peek();
+        if (c == '"' || c == '\'') {
+            int quote = read();
+            while ((c = read()) != -1 && c != quote)
+                scratch.append((char) c);
+        } else {
+            while ((c = peek()) != -1 && !isWhitespace(c) && c != '>')
+                scratch.append((char) read());
+        }
+        return decode(scratch).toString();
+    }
+
+    /**
+     * Reads the content of a raw text element up to its end tag, which is consumed.
+     */
+    private CharSequence readRawText(String name) throws IOException {
+        StringBuilder content = new StringBuilder();
+        int endTagLength = name.length() + 2;
+        int c;
+        while ((c = read()) != -1) {
+            if ((c == '>' || c == '/' || isWhitespace(c)) && content.length() >= endTagLength) {
+                int start = content.length() - endTagLength;
+                if (content.charAt(start) == '<' && content.charAt(start + 1) == '/'
+                        && content.substring(start + 2).equalsIgnoreCase(name)) {
+                    content.setLength(start);
+                    if (c != '>')
+                        skipPast('>');
+                    return content;
+                }
+            }
+            content.append((char) c);
+        }
+        return content;
+    }
+
+    private void skipComment() throws IOException {
+        int dashes = 0;
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '>' && dashes >= 2)
+                return;
+            dashes = c == '-' ? dashes + 1 : 0;
+        }
+    }
+
+    private void skipPast(char end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) {
+            // skip
+        }
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (isWhitespace(peek()))
+            read();
+    }
+
+    private boolean flushText(Handler handler, StringBuilder text) {
+        if (text.isEmpty())
+            return true;
+        boolean proceed = handler.text(decode(text));
+        text.setLength(0);
+        return proceed;
+    }
+
+    private int peek() throws IOException {
+        if (position == length && !fill())
+            return -1;
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == length && !fill())
+            return -1;
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        long remaining = limit - consumed;
+        if (remaining <= 0)
+            return false;
+        int n = reader.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (n <= 0)
+            return false;
+        position = 0;
+        length = n;
+        consumed += n;
+        return true;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isAsciiLetter(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    /**
+     * Decodes the character references in the given text.
+     *
+     * @param text the text to decode
+     * @return the decoded text, or the text itself if it does not contain any references
+     */
+    static CharSequence decode(CharSequence text) {
+        int amp = indexOf(text, '&', 0);
+        if (amp < 0)
+            return text;
+
+        StringBuilder result = new StringBuilder(text.length());
+        int last = 0;
+        while (amp >= 0) {
+            int semicolon = indexOf(text, ';', amp + 1);
+            if (semicolon < 0)
+                break;
+            if (semicolon - amp > 10) {
+                // A bare ampersand, later ones may still start a reference
+                amp = indexOf(text, '&', amp + 1);
+                continue;
+            }
+
+            String replacement = reference(text.subSequence(amp + 1, semicolon).toString());
+            if (replacement != null) {
+                result.append(text, last, amp).append(replacement);
+                last = semicolon + 1;
+            }
+            amp = indexOf(text, '&', replacement != null ? semicolon + 1 : amp + 1);
+        }
+        result.append(text, last, text.length());
+        return result;
+    }
+
+    private static String reference(String name) {
+        if (name.startsWith("#")) {
+            try {
+                int codePoint = name.length() > 1 && (name.charAt(1) == 'x' || name.charAt(1) == 'X')
+                        ? Integer.parseInt(name.substring(2), 16)
+                        : Integer.parseInt(name.substring(1));
+                return Character.isValidCodePoint(codePoint) ? Character.toString(codePoint) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "amp" -> "&";
+            case "lt" -> "<";
+            case "gt" -> ">";
+            case "quot" -> "\"";
+            case "apos" -> "'";
+            case "nbsp" -> "\u00a0";
+            default -> null;
+        };
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++)
+            if (text.charAt(i) == c)
+                return i;
+        return -1;
+    }
+}
@@ -0,0 +1,129 @@
+package com.penguineering.cleanuri.site.html;
+
+import com.penguineering.cleanuri.site.ExtractionField;
+import com.penguineering.cleanuri.site.ExtractionResult;
+import com.penguineering.cleanuri.site.PageContext;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * An extractor for pages that embed schema.org {@code Product} data as JSON-LD.
+ * <p>
+ * The {@code <script type="application/ld+json">} blocks are collected with the streaming
+ * {@link HtmlTokenizer} and parsed with the {@link JsonLdProductParser} on first access, so that
+ * product description and pricing are extracted in one pass over the page. The document title is
+ * taken from the head, see {@link HeadMetadataExtractor}.
+ * </p>
+ * <p>
+ * Errors while fetching the page and malformed JSON-LD blocks are passed to the exception handler
+ * with {@link Level#WARNING}.
+ * </p>
+ *
+ * <p>Example usage in a site implementation:</p>
+ * <pre>
+ * {@code @Override}
+ * public Optional&lt;Extractor&gt; newExtractor(PageContext page) {
+ *     return Optional.of(new JsonLdExtractor(page));
+ * }
+ * </pre>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class JsonLdExtractor extends HeadMetadataExtractor {
+    private static final JsonLdProductParser PARSER = new JsonLdProductParser();
+    private static final long LIMIT = 16L * 1024 * 1024;
+
+    private ExtractionResult product = null;
+
+    public JsonLdExtractor(PageContext page) {
+        super(page);
+    }
+
+    @Override
+    public Optional<ProductDescription> extractProductDescription() {
+        return product().getProductDescription();
+    }
+
+    @Override
+    public Optional<Pricing> extractPricing() {
+        return product().getPricing();
+    }
+
+    @Override
+    public ExtractionResult extractAll(Set<ExtractionField> fields) {
+        ExtractionResult.Builder builder = new ExtractionResult.Builder();
+        if (fields.contains(ExtractionField.PRODUCT_DESCRIPTION))
+            extractProductDescription().ifPresent(builder::setProductDescription);
+        if (fields.contains(ExtractionField.PRICING))
+            extractPricing().ifPresent(builder::setPricing);
+        // The title is scanned from the fetched body if the product has been extracted before
+        if (fields.contains(ExtractionField.TITLE))
+            extractDocumentTitle().ifPresent(builder::setTitle);
+        return builder.build();
+    }
+
+    /**
+     * Returns the product data from the first JSON-LD block that describes a product.
+     */
+    private ExtractionResult product() {
+        if (product != null)
+            return product;
+
+        product = new ExtractionResult.Builder().build();
+        for (String block : jsonLdBlocks()) {
+            try {
+                ExtractionResult result = PARSER.parse(block);
+                if (result.getProductDescription().isPresent() || result.getPricing().isPresent()) {
+                    product = result;
+                    break;
+                }
+            } catch (IOException e) {
+                exceptionHandler.accept(Level.WARNING, e);
+            }
+        }
+        return product;
+    }
+
+    private List<String> jsonLdBlocks() {
+        List<String> blocks = new ArrayList<>();
+        try (InputStreamReader reader = new InputStreamReader(page.openBody(), page.getCharset())) {
+            new HtmlTokenizer(reader, LIMIT).tokenize(new HtmlTokenizer.Handler() {
+                private boolean inJsonLd = false;
+
+                @Override
+                public boolean startTag(String name, Map<String, String> attributes, boolean selfClosing) {
+                    inJsonLd = name.equals("script")
+                            && attributes.getOrDefault("type", "").toLowerCase(Locale.ROOT).contains("ld+json");
+                    return true;
+                }
+
+                @Override
+                public boolean endTag(String name) {
+                    inJsonLd = false;
+                    return true;
+                }
+
+                @Override
+                public boolean text(CharSequence text) {
+                    if (inJsonLd)
+                        blocks.add(text.toString());
+                    return true;
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            exceptionHandler.accept(Level.WARNING, e);
+        }
+        return blocks;
+    }
+}
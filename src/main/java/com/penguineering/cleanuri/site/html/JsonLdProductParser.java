@@ -0,0 +1,253 @@
+package com.penguineering.cleanuri.site.html;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.penguineering.cleanuri.site.ExtractionResult;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+
+/**
+ * Parses schema.org {@code Product} data from JSON-LD.
+ * <p>
+ * The JSON is read with Jackson's streaming {@link JsonParser}. Only the properties that are
+ * relevant for products and offers are kept, all other values are skipped without building a
+ * tree. The product is searched at the top level, in {@code @graph} and in {@code mainEntity}.
+ * </p>
+ * <p>
+ * The product properties are mapped as follows:
+ * </p>
+ * <ul>
+ *     <li>The product id is taken from {@code sku}, {@code productID}, the {@code gtin} variants or {@code mpn}.</li>
+ *     <li>The name is taken from {@code name}.</li>
+ *     <li>The image is taken from {@code image}, which may be a URL or an {@code ImageObject}.</li>
+ *     <li>Each {@code Offer} or {@code PriceSpecification} contributes its {@code price} for the
+ *     {@code minValue} of its {@code eligibleQuantity}, or as unit price without eligible quantity.
+ *     Offers nested in an {@code AggregateOffer} are considered as well.</li>
+ * </ul>
+ *
+ * <p>Instances are immutable and can be shared between threads.</p>
+ */
+public class JsonLdProductParser {
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .enable(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+            .build();
+
+    private static final Set<String> RELEVANT_PROPERTIES = Set.of(
+            "@type", "@graph", "mainEntity",
+            "sku", "productID", "gtin", "gtin8", "gtin12", "gtin13", "gtin14", "mpn",
+            "name", "image", "url", "contentUrl",
+            "offers", "price", "priceSpecification", "eligibleQuantity", "minValue", "value");
+    private static final List<String> ID_PROPERTIES = List.of(
+            "sku", "productID", "gtin13", "gtin", "gtin14", "gtin12", "gtin8", "mpn");
+
+    /**
+     * The relevant properties of a JSON object. Arrays are flattened into the value list.
+     */
+    private static class Node {
+        private final Map<String, List<Object>> properties = new HashMap<>();
+
+        List<Object> all(String name) {
+            return properties.getOrDefault(name, List.of());
+        }
+
+        Optional<Object> first(String name) {
+            List<Object> values = all(name);
+            return values.isEmpty() ? Optional.empty() : Optional.of(values.get(0));
+        }
+
+        Optional<String> text(String name) {
+            return first(name)
+                    .filter(value -> !(value instanceof Node))
+                    .map(Object::toString)
+                    .map(String::trim)
+                    .filter(value -> !value.isEmpty());
+        }
+
+        List<Node> nodes(String name) {
+            return all(name).stream()
+                    .filter(Node.class::isInstance)
+                    .map(Node.class::cast)
+                    .toList();
+        }
+
+        boolean hasType(String type) {
+            for (Object value : all("@type"))
+                if (value instanceof String t && simpleType(t).equals(type))
+                    return true;
+            return false;
+        }
+    }
+
+    /**
+     * Parses a JSON-LD document.
+     *
+     * @param json the JSON-LD document
+     * @return a result with the product description and pricing, where fields are empty if no product was found
+     * @throws IOException if the document is not valid JSON
+     */
+    public ExtractionResult parse(String json) throws IOException {
+        List<Object> roots = new ArrayList<>();
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null)
+                readValue(parser, token, roots);
+        }
+
+        ExtractionResult.Builder builder = new ExtractionResult.Builder();
+        findProduct(roots).ifPresent(product -> {
+            productDescription(product).ifPresent(builder::setProductDescription);
+            pricing(product).ifPresent(builder::setPricing);
+        });
+        return builder.build();
+    }
+
+    /**
+     * Reads the value at the current token and adds it to the list, flattening arrays.
+     */
+    private static void readValue(JsonParser parser, JsonToken token, List<Object> values) throws IOException {
+        switch (token) {
+            case START_OBJECT -> values.add(readObject(parser));
+            case START_ARRAY -> {
+                JsonToken t;
+                while ((t = parser.nextToken()) != JsonToken.END_ARRAY && t != null)
+                    readValue(parser, t, values);
+            }
+            case VALUE_STRING -> values.add(parser.getText());
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> values.add(parser.getDecimalValue());
+            default -> {
+                // null and booleans are not relevant
+            }
+        }
+    }
+
+    private static Node readObject(JsonParser parser) throws IOException {
+        Node node = new Node();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (RELEVANT_PROPERTIES.contains(simpleType(name))) {
+                List<Object> values = node.properties.computeIfAbsent(simpleType(name), n -> new ArrayList<>(1));
+                readValue(parser, value, values);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return node;
+    }
+
+    private static Optional<Node> findProduct(List<Object> values) {
+        for (Object value : values) {
+            if (!(value instanceof Node node))
+                continue;
+            if (node.hasType("Product"))
+                return Optional.of(node);
+
+            Optional<Node> nested = findProduct(node.all("@graph"))
+                    .or(() -> findProduct(node.all("mainEntity")));
+            if (nested.isPresent())
+                return nested;
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<ProductDescription> productDescription(Node product) {
+        ProductDescription.Builder builder = new ProductDescription.Builder();
+
+        ID_PROPERTIES.stream()
+                .map(product::text)
+                .flatMap(Optional::stream)
+                .findFirst()
+                .ifPresent(builder::setId);
+        product.text("name").ifPresent(builder::setName);
+        image(product).ifPresent(builder::setImage);
+
+        return builder.build();
+    }
+
+    private static Optional<URI> image(Node product) {
+        for (Object image : product.all("image")) {
+            Optional<String> url = image instanceof Node imageObject
+                    ? imageObject.text("contentUrl").or(() -> imageObject.text("url"))
+                    : Optional.of(image.toString().trim());
+            try {
+                if (url.isPresent() && !url.get().isEmpty())
+                    return Optional.of(new URI(url.get()));
+            } catch (URISyntaxException e) {
+                // try the next image
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<Pricing> pricing(Node product) {
+        Map<Integer, BigDecimal> prices = new LinkedHashMap<>();
+        for (Node offer : product.nodes("offers"))
+            collectPrices(offer, prices);
+
+        Pricing.Builder builder = new Pricing.Builder();
+        prices.forEach(builder::addDiscount);
+        return builder.build();
+    }
+
+    private static void collectPrices(Node offer, Map<Integer, BigDecimal> prices) {
+        // Offers nested in an AggregateOffer
+        for (Node nested : offer.nodes("offers"))
+            collectPrices(nested, prices);
+
+        List<Node> specifications = offer.nodes("priceSpecification");
+        if (specifications.isEmpty())
+            addPrice(offer, offer, prices);
+        else
+            for (Node specification : specifications)
+                addPrice(specification, offer, prices);
+    }
+
+    /**
+     * Adds the price of an offer or specification, where the eligible quantity may be declared on either.
+     */
+    private static void addPrice(Node priced, Node offer, Map<Integer, BigDecimal> prices) {
+        Optional<BigDecimal> price = priced.first("price").flatMap(JsonLdProductParser::decimal);
+        if (price.isEmpty() || price.get().signum() < 0)
+            return;
+
+        Optional<Node> eligibleQuantity = priced.nodes("eligibleQuantity").stream().findFirst()
+                .or(() -> offer.nodes("eligibleQuantity").stream().findFirst());
+        int quantity = eligibleQuantity
+                .flatMap(q -> q.first("minValue").or(() -> q.first("value")))
+                .flatMap(JsonLdProductParser::decimal)
+                .map(BigDecimal::intValue)
+                .orElse(1);
+        if (quantity > 0)
+            prices.putIfAbsent(quantity, price.get());
+    }
+
+    private static Optional<BigDecimal> decimal(Object value) {
+        if (value instanceof BigDecimal decimal)
+            return Optional.of(decimal);
+        if (value instanceof String text)
+            try {
+                return Optional.of(new BigDecimal(text.trim()));
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        return Optional.empty();
+    }
+
+    /**
+     * Removes the schema.org prefix from a type or property name.
+     */
+    private static String simpleType(String name) {
+        int separator = Math.max(name.lastIndexOf('/'), name.lastIndexOf(':'));
+        return separator >= 0 && !name.startsWith("@") ? name.substring(separator + 1) : name;
+    }
+}
@@ -0,0 +1,23 @@
+package com.penguineering.cleanuri.site.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded when a {@link com.penguineering.cleanuri.site.Canonizer} canonizes a URI.
+ */
+@Name("com.penguineering.cleanuri.site.Canonization")
+@Label("Canonization")
+@Category({"cleanURI", "Site"})
+@Description("Canonization of a URI by a site")
+@Threshold("10 ms")
+public final class CanonizationEvent extends Event {
+    @Label("Site")
+    public String siteLabel;
+
+    @Label("Host")
+    public String host;
+
+    @Label("Canonized")
+    @Description("Whether the canonizer returned a canonical URI")
+    public boolean canonized;
+}
@@ -0,0 +1,27 @@
+package com.penguineering.cleanuri.site.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded when an {@link com.penguineering.cleanuri.site.Extractor} method is called.
+ */
+@Name("com.penguineering.cleanuri.site.Extraction")
+@Label("Extraction")
+@Category({"cleanURI", "Site"})
+@Description("Extraction of information from a page by a site")
+@Threshold("10 ms")
+public final class ExtractionEvent extends Event {
+    @Label("Site")
+    public String siteLabel;
+
+    @Label("Host")
+    public String host;
+
+    @Label("Operation")
+    @Description("Extractor operation, see SiteMetrics.Operation")
+    public String operation;
+
+    @Label("Empty")
+    @Description("Whether the extractor returned an empty result")
+    public boolean empty;
+}
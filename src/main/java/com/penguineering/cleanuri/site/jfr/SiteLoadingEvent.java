@@ -0,0 +1,17 @@
+package com.penguineering.cleanuri.site.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded when a {@link com.penguineering.cleanuri.site.SiteLoader} loads the sites on the classpath.
+ */
+@Name("com.penguineering.cleanuri.site.SiteLoading")
+@Label("Site Loading")
+@Category({"cleanURI", "Site"})
+@Description("Loading of the site implementations on the classpath")
+@Threshold("0 ms")
+public final class SiteLoadingEvent extends Event {
+    @Label("Sites")
+    @Description("Number of loaded sites")
+    public int sites;
+}
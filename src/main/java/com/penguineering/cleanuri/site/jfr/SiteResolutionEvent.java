@@ -0,0 +1,25 @@
+package com.penguineering.cleanuri.site.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Recorded when a {@link com.penguineering.cleanuri.site.SiteRegistry} resolves the site for a URI.
+ */
+@Name("com.penguineering.cleanuri.site.SiteResolution")
+@Label("Site Resolution")
+@Category({"cleanURI", "Site"})
+@Description("Resolution of the site that processes a URI")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class SiteResolutionEvent extends Event {
+    @Label("Host")
+    public String host;
+
+    @Label("Site")
+    @Description("Label of the resolved site, or null if no site can process the URI")
+    public String siteLabel;
+
+    @Label("Candidates")
+    @Description("Number of candidate sites for the host")
+    public int candidates;
+}
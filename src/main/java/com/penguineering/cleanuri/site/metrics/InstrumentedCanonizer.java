@@ -0,0 +1,59 @@
+package com.penguineering.cleanuri.site.metrics;
+
+import com.penguineering.cleanuri.site.Canonizer;
+import com.penguineering.cleanuri.site.jfr.CanonizationEvent;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * A canonizer that records the metrics of a delegate canonizer.
+ */
+class InstrumentedCanonizer implements Canonizer {
+    private final Canonizer delegate;
+    private final SiteMetrics metrics;
+    private final String host;
+
+    InstrumentedCanonizer(Canonizer delegate, SiteMetrics metrics, String host) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.host = host;
+        delegate.withExceptionHandler((level, throwable) -> metrics.recordReportedException(level));
+    }
+
+    @Override
+    public InstrumentedCanonizer withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+        delegate.withExceptionHandler((level, throwable) -> {
+            metrics.recordReportedException(level);
+            exceptionHandler.accept(level, throwable);
+        });
+        return this;
+    }
+
+    @Override
+    public Optional<URI> canonize() {
+        OperationMetrics operation = metrics.get(SiteMetrics.Operation.CANONIZE);
+        CanonizationEvent event = new CanonizationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Optional<URI> result = Optional.empty();
+        try {
+            result = delegate.canonize();
+            operation.record(System.nanoTime() - start, result.isEmpty());
+            return result;
+        } catch (RuntimeException e) {
+            operation.recordFailure(System.nanoTime() - start);
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.siteLabel = metrics.getLabel();
+                event.host = host;
+                event.canonized = result.isPresent();
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.penguineering.cleanuri.site.metrics;
+
+import com.penguineering.cleanuri.site.ExtractionField;
+import com.penguineering.cleanuri.site.ExtractionResult;
+import com.penguineering.cleanuri.site.Extractor;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.jfr.ExtractionEvent;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * An extractor that records the metrics of a delegate extractor.
+ */
+class InstrumentedExtractor implements Extractor {
+    private final Extractor delegate;
+    private final SiteMetrics metrics;
+    private final String host;
+
+    InstrumentedExtractor(Extractor delegate, SiteMetrics metrics, String host) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.host = host;
+        delegate.withExceptionHandler((level, throwable) -> metrics.recordReportedException(level));
+    }
+
+    @Override
+    public InstrumentedExtractor withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+        delegate.withExceptionHandler((level, throwable) -> {
+            metrics.recordReportedException(level);
+            exceptionHandler.accept(level, throwable);
+        });
+        return this;
+    }
+
+    @Override
+    public Optional<String> extractDocumentTitle() {
+        return measure(SiteMetrics.Operation.EXTRACT_DOCUMENT_TITLE, delegate::extractDocumentTitle, Optional::isEmpty);
+    }
+
+    @Override
+    public Optional<ProductDescription> extractProductDescription() {
+        return measure(SiteMetrics.Operation.EXTRACT_PRODUCT_DESCRIPTION, delegate::extractProductDescription,
+                Optional::isEmpty);
+    }
+
+    @Override
+    public Optional<Pricing> extractPricing() {
+        return measure(SiteMetrics.Operation.EXTRACT_PRICING, delegate::extractPricing, Optional::isEmpty);
+    }
+
+    @Override
+    public ExtractionResult extractAll(Set<ExtractionField> fields) {
+        return measure(SiteMetrics.Operation.EXTRACT_ALL, () -> delegate.extractAll(fields),
+                result -> result.getTitle().isEmpty()
+                        && result.getProductDescription().isEmpty()
+                        && result.getPricing().isEmpty());
+    }
+
+    private <R> R measure(SiteMetrics.Operation op, Supplier<R> call, Predicate<R> isEmpty) {
+        OperationMetrics operation = metrics.get(op);
+        ExtractionEvent event = new ExtractionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        boolean empty = true;
+        try {
+            R result = call.get();
+            empty = isEmpty.test(result);
+            operation.record(System.nanoTime() - start, empty);
+            return result;
+        } catch (RuntimeException e) {
+            operation.recordFailure(System.nanoTime() - start);
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.siteLabel = metrics.getLabel();
+                event.host = host;
+                event.operation = op.name();
+                event.empty = empty;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.penguineering.cleanuri.site.metrics;
+
+import com.penguineering.cleanuri.site.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A site that records the metrics of a delegate site and of its canonizers and extractors.
+ * <p>
+ * Calls of the canonizers and extractors are also recorded as {@link com.penguineering.cleanuri.site.jfr.CanonizationEvent}
+ * and {@link com.penguineering.cleanuri.site.jfr.ExtractionEvent} Flight Recorder events.
+ * </p>
+ * <p>
+ * Instances are created with {@link SiteMetricsRegistry#instrument(Site)}.
+ * </p>
+ */
+public class InstrumentedSite implements Site {
+    private final Site delegate;
+    private final SiteMetrics metrics;
+
+    InstrumentedSite(Site delegate, SiteMetrics metrics) {
+        this.delegate = Objects.requireNonNull(delegate, "Site cannot be null");
+        this.metrics = Objects.requireNonNull(metrics, "Metrics cannot be null");
+    }
+
+    /**
+     * Returns the instrumented site.
+     *
+     * @return the delegate site
+     */
+    public Site getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the metrics of the instrumented site.
+     *
+     * @return the site metrics
+     */
+    public SiteMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public SiteDescriptor getSiteDescriptor() {
+        return delegate.getSiteDescriptor();
+    }
+
+    @Override
+    public List<String> getHostPatterns() {
+        return delegate.getHostPatterns();
+    }
+
+    @Override
+    public boolean canProcessURI(URI uri) {
+        OperationMetrics operation = metrics.get(SiteMetrics.Operation.CAN_PROCESS_URI);
+        long start = System.nanoTime();
+        try {
+            boolean result = delegate.canProcessURI(uri);
+            operation.record(System.nanoTime() - start, !result);
+            return result;
+        } catch (RuntimeException e) {
+            operation.recordFailure(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<Canonizer> newCanonizer(URI uri) {
+        return delegate.newCanonizer(uri).map(canonizer -> instrument(canonizer, uri));
+    }
+
+    @Override
+    public Optional<Extractor> newExtractor(URI uri) {
+        return delegate.newExtractor(uri).map(extractor -> instrument(extractor, uri));
+    }
+
+    @Override
+    public Optional<Canonizer> newCanonizer(PageContext page) {
+        return delegate.newCanonizer(page).map(canonizer -> instrument(canonizer, page.getUri()));
+    }
+
+    @Override
+    public Optional<Extractor> newExtractor(PageContext page) {
+        return delegate.newExtractor(page).map(extractor -> instrument(extractor, page.getUri()));
+    }
+
+    private Canonizer instrument(Canonizer canonizer, URI uri) {
+        return new InstrumentedCanonizer(canonizer, metrics, uri.getHost());
+    }
+
+    private Extractor instrument(Extractor extractor, URI uri) {
+        return new InstrumentedExtractor(extractor, metrics, uri.getHost());
+    }
+}
@@ -0,0 +1,72 @@
+package com.penguineering.cleanuri.site.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one operation of a site, e.g. canonization.
+ */
+public class OperationMetrics {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder emptyResults = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    void record(long nanos, boolean empty) {
+        calls.increment();
+        if (empty)
+            emptyResults.increment();
+        latency.record(nanos);
+    }
+
+    void recordFailure(long nanos) {
+        calls.increment();
+        failures.increment();
+        latency.record(nanos);
+    }
+
+    /**
+     * Returns the number of calls, including failed calls.
+     *
+     * @return the number of calls
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Returns the number of calls that returned an empty result.
+     *
+     * @return the number of empty results
+     */
+    public long getEmptyResults() {
+        return emptyResults.sum();
+    }
+
+    /**
+     * Returns the ratio of calls that returned an empty result.
+     *
+     * @return the empty result rate between 0 and 1, or 0 if there have been no calls
+     */
+    public double getEmptyResultRate() {
+        long n = calls.sum();
+        return n == 0 ? 0 : (double) emptyResults.sum() / n;
+    }
+
+    /**
+     * Returns the number of calls that threw an exception.
+     *
+     * @return the number of failures
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * Returns the latency histogram of all calls.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
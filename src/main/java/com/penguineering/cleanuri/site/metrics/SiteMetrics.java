@@ -0,0 +1,63 @@
+package com.penguineering.cleanuri.site.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * The metrics of one site.
+ */
+public class SiteMetrics {
+    /**
+     * The instrumented operations of a site.
+     */
+    public enum Operation {
+        CAN_PROCESS_URI,
+        CANONIZE,
+        EXTRACT_DOCUMENT_TITLE,
+        EXTRACT_PRODUCT_DESCRIPTION,
+        EXTRACT_PRICING,
+        EXTRACT_ALL
+    }
+
+    private final String label;
+    private final EnumMap<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+    private final Map<Level, LongAdder> reportedExceptions = new ConcurrentHashMap<>();
+
+    SiteMetrics(String label) {
+        this.label = label;
+        for (Operation operation : Operation.values())
+            operations.put(operation, new OperationMetrics());
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the metrics of an operation.
+     *
+     * @param operation the operation
+     * @return the operation metrics
+     */
+    public OperationMetrics get(Operation operation) {
+        return operations.get(operation);
+    }
+
+    /**
+     * Returns the number of exceptions passed to the exception handlers of the site's canonizers and extractors.
+     *
+     * @return a map of the reported exception count by level
+     */
+    public Map<Level, Long> getReportedExceptions() {
+        return reportedExceptions.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().sum()));
+    }
+
+    void recordReportedException(Level level) {
+        reportedExceptions.computeIfAbsent(level, l -> new LongAdder()).increment();
+    }
+}
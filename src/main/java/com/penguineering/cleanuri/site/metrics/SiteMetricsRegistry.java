@@ -0,0 +1,120 @@
+package com.penguineering.cleanuri.site.metrics;
+
+import com.penguineering.cleanuri.site.LazySite;
+import com.penguineering.cleanuri.site.Site;
+import com.penguineering.cleanuri.site.cache.CacheStats;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the metrics of instrumented sites, keyed by the label of their site descriptor.
+ * <p>
+ * Sites are instrumented by wrapping them with {@link #instrument(Site)}. The wrapper records
+ * the call count, latency, empty result rate and failures of every operation of the site and of the
+ * canonizers and extractors it creates, as well as the exceptions that are passed to their handlers.
+ * Recording uses {@link java.util.concurrent.atomic.LongAdder} counters and a lock-free
+ * {@link LatencyHistogram}, so the instrumentation can stay enabled in production.
+ * </p>
+ * <p>
+ * Caches are not tied to a single site, and are registered by name with {@link #registerCache(String, Supplier)}.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * SiteMetricsRegistry metrics = new SiteMetricsRegistry();
+ * SiteRegistry registry = new SiteRegistry(metrics.instrumentAll(new SiteLoader().findSitesOnClasspath()));
+ * CanonizationService service = new CanonizationService.Builder(registry).cache(cache).build();
+ * metrics.registerCache("canonization", () -&gt; service.getCacheStats().orElseThrow());
+ *
+ * metrics.get("Example").ifPresent(m -&gt;
+ *     m.get(SiteMetrics.Operation.CANONIZE).getLatency().getValueAtPercentile(99));
+ * </pre>
+ *
+ * <p>The registry is thread-safe.</p>
+ */
+public class SiteMetricsRegistry {
+    private final Map<String, SiteMetrics> metrics = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<CacheStats>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps a site to record its metrics.
+     * <p>
+     * Sites with the same label share their metrics. Already instrumented sites are returned as they are.
+     * A {@link LazySite} is not instantiated if its label is declared with a
+     * {@link com.penguineering.cleanuri.site.SiteProvider} annotation.
+     * </p>
+     *
+     * @param site the site to instrument
+     * @return the instrumented site
+     * @throws NullPointerException if the site is null
+     */
+    public Site instrument(Site site) {
+        Objects.requireNonNull(site, "Site cannot be null");
+        if (site instanceof InstrumentedSite)
+            return site;
+
+        String label = site instanceof LazySite lazy
+                ? lazy.getLabel()
+                : site.getSiteDescriptor().getLabel();
+        return new InstrumentedSite(site, metrics.computeIfAbsent(label, SiteMetrics::new));
+    }
+
+    /**
+     * Wraps all sites to record their metrics.
+     *
+     * @param sites the sites to instrument
+     * @return a list of the instrumented sites in the same order
+     * @throws NullPointerException if the collection or one of the sites is null
+     */
+    public List<Site> instrumentAll(Collection<? extends Site> sites) {
+        return sites.stream().map(this::instrument).toList();
+    }
+
+    /**
+     * Returns the metrics of a site.
+     *
+     * @param label the label of the site
+     * @return an Optional containing the site metrics, or an empty Optional if no site with this label
+     * has been instrumented
+     */
+    public Optional<SiteMetrics> get(String label) {
+        return Optional.ofNullable(metrics.get(label));
+    }
+
+    /**
+     * Returns the metrics of all instrumented sites.
+     *
+     * @return an unmodifiable map of the site metrics by label
+     */
+    public Map<String, SiteMetrics> getAll() {
+        return Map.copyOf(metrics);
+    }
+
+    /**
+     * Registers a cache whose statistics should be reported.
+     *
+     * @param name  the name of the cache
+     * @param stats the supplier of the current cache statistics
+     * @throws NullPointerException if the name or supplier is null
+     */
+    public void registerCache(String name, Supplier<CacheStats> stats) {
+        caches.put(Objects.requireNonNull(name, "Name cannot be null"),
+                Objects.requireNonNull(stats, "Statistics supplier cannot be null"));
+    }
+
+    /**
+     * Returns the current statistics of the registered caches.
+     * <p>
+     * The hit ratio of a cache is available via {@link CacheStats#hitRate()}.
+     * </p>
+     *
+     * @return an unmodifiable map of the cache statistics by name
+     */
+    public Map<String, CacheStats> getCacheStats() {
+        return caches.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().get()));
+    }
+}
@@ -0,0 +1,166 @@
+package com.penguineering.cleanuri.site.processor;
+
+import com.penguineering.cleanuri.site.HostIndex;
+import com.penguineering.cleanuri.site.Site;
+import com.penguineering.cleanuri.site.SiteIndex;
+import com.penguineering.cleanuri.site.SiteProvider;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Generates the services file and the {@link SiteIndex} for all classes annotated with {@link SiteProvider}.
+ * <p>
+ * The processor is registered as a service, so it runs automatically when this library is on the
+ * compile classpath of a site implementation. It checks that annotated classes are public, concrete
+ * implementations of {@link Site} with a public no-argument constructor and valid host patterns, and writes
+ * </p>
+ * <ul>
+ *     <li>{@code META-INF/services/com.penguineering.cleanuri.site.Site}, so that the sites can be found
+ *     by the {@link java.util.ServiceLoader}, and</li>
+ *     <li>{@value SiteIndex#RESOURCE}, so that a {@link com.penguineering.cleanuri.site.SiteLoader} can
+ *     dispatch to the sites without loading their classes.</li>
+ * </ul>
+ * <p>
+ * Entries of existing files in the class output, e.g. from a hand-written services file or an
+ * incremental build, are kept.
+ * </p>
+ */
+@SupportedAnnotationTypes("com.penguineering.cleanuri.site.SiteProvider")
+public class SiteProviderProcessor extends AbstractProcessor {
+    static final String SERVICES_RESOURCE = "META-INF/services/" + Site.class.getName();
+
+    private final Map<String, SiteIndex.Entry> entries = new LinkedHashMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!entries.isEmpty())
+                writeResources();
+            return false;
+        }
+
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(SiteProvider.class)))
+            if (isValidSite(type))
+                addEntry(type);
+        return false;
+    }
+
+    private boolean isValidSite(TypeElement type) {
+        Set<Modifier> modifiers = type.getModifiers();
+        if (type.getKind() != ElementKind.CLASS || modifiers.contains(Modifier.ABSTRACT))
+            return error(type, "@SiteProvider must be placed on a concrete class");
+        if (!modifiers.contains(Modifier.PUBLIC))
+            return error(type, "@SiteProvider class must be public");
+        if (type.getNestingKind().isNested() && !modifiers.contains(Modifier.STATIC))
+            return error(type, "@SiteProvider class must be a top-level or static nested class");
+
+        TypeMirror siteType = processingEnv.getElementUtils().getTypeElement(Site.class.getName()).asType();
+        if (!processingEnv.getTypeUtils().isAssignable(type.asType(), siteType))
+            return error(type, "@SiteProvider class must implement " + Site.class.getName());
+
+        boolean hasPublicDefaultConstructor = ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+                .anyMatch(c -> c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC));
+        if (!hasPublicDefaultConstructor)
+            return error(type, "@SiteProvider class must have a public no-argument constructor");
+
+        return true;
+    }
+
+    private void addEntry(TypeElement type) {
+        SiteProvider annotation = type.getAnnotation(SiteProvider.class);
+        List<String> hosts = List.of(annotation.hosts());
+
+        HostIndex<String> index = new HostIndex<>();
+        for (String host : hosts) {
+            try {
+                index.add(host, host);
+            } catch (IllegalArgumentException e) {
+                error(type, "@SiteProvider host pattern: " + e.getMessage());
+                return;
+            }
+        }
+
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        try {
+            SiteIndex.Entry entry = new SiteIndex.Entry(className, annotation.label(), hosts);
+            // Validate the fields before the last round
+            SiteIndex.write(OutputStream.nullOutputStream(), List.of(entry));
+            entries.put(className, entry);
+        } catch (IllegalArgumentException | IOException e) {
+            error(type, "@SiteProvider: " + e.getMessage());
+        }
+    }
+
+    private void writeResources() {
+        Filer filer = processingEnv.getFiler();
+        try {
+            Set<String> services = new LinkedHashSet<>(readServices(filer));
+            services.addAll(entries.keySet());
+
+            Map<String, SiteIndex.Entry> index = new LinkedHashMap<>();
+            readIndex(filer).forEach(entry -> index.put(entry.className(), entry));
+            index.putAll(entries);
+
+            FileObject servicesFile = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_RESOURCE);
+            try (Writer writer = new OutputStreamWriter(servicesFile.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String service : services)
+                    writer.write(service + "\n");
+            }
+
+            FileObject indexFile = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SiteIndex.RESOURCE);
+            try (OutputStream out = indexFile.openOutputStream()) {
+                SiteIndex.write(out, List.copyOf(index.values()));
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write site provider resources: " + e.getMessage());
+        }
+    }
+
+    private static List<String> readServices(Filer filer) {
+        List<String> services = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICES_RESOURCE).openInputStream(),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String service = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (!service.isEmpty())
+                    services.add(service);
+            }
+        } catch (IOException e) {
+            // No existing services file
+        }
+        return services;
+    }
+
+    private static List<SiteIndex.Entry> readIndex(Filer filer) {
+        try (InputStream in = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SiteIndex.RESOURCE).openInputStream()) {
+            return SiteIndex.read(in);
+        } catch (IOException e) {
+            // No existing or a malformed index, which is replaced
+            return List.of();
+        }
+    }
+
+    private boolean error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        return false;
+    }
+}
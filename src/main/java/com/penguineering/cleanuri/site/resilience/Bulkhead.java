@@ -0,0 +1,170 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of concurrent calls into a site.
+ * <p>
+ * Up to {@link Builder#maxConcurrentCalls(int)} calls run at the same time. Further callers wait in a queue of
+ * at most {@link Builder#maxQueuedCalls(int)} callers for up to {@link Builder#maxWait(Duration)}, and are rejected
+ * if the queue is full or the wait time expires. Waiting callers get their permits in arrival order.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * Bulkhead bulkhead = new Bulkhead.Builder().maxConcurrentCalls(8).maxQueuedCalls(16).build();
+ * if (bulkhead.tryAcquire()) {
+ *     try {
+ *         // call the site
+ *     } finally {
+ *         bulkhead.release();
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class Bulkhead {
+    private final int maxConcurrentCalls;
+    private final int maxQueuedCalls;
+    private final long maxWait;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private Bulkhead(Builder builder) {
+        this.maxConcurrentCalls = builder.maxConcurrentCalls;
+        this.maxQueuedCalls = builder.maxQueuedCalls;
+        this.maxWait = builder.maxWait.toNanos();
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    /**
+     * Acquires a permit for a call, waiting in the queue if necessary.
+     * <p>
+     * A caller does not take a free permit ahead of the queued callers. If the calling thread is
+     * interrupted before or while waiting, the call is rejected and the interrupt status is kept.
+     * </p>
+     *
+     * @return true if the call may proceed and must call {@link #release()} when it is done, false if it is rejected
+     */
+    public boolean tryAcquire() {
+        try {
+            // The untimed tryAcquire() would barge ahead of the waiting callers
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS))
+                return true;
+
+            if (maxQueuedCalls > 0 && maxWait > 0) {
+                if (queued.incrementAndGet() <= maxQueuedCalls) {
+                    try {
+                        if (permits.tryAcquire(maxWait, TimeUnit.NANOSECONDS))
+                            return true;
+                    } finally {
+                        queued.decrementAndGet();
+                    }
+                } else {
+                    queued.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Releases the permit of a call that has finished.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Returns the number of calls that are running.
+     *
+     * @return the number of acquired permits
+     */
+    public int getActiveCalls() {
+        return maxConcurrentCalls - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of callers that wait for a permit.
+     *
+     * @return the number of queued callers
+     */
+    public int getQueuedCalls() {
+        return Math.max(0, queued.get());
+    }
+
+    /**
+     * Returns the number of calls that have been rejected.
+     *
+     * @return the number of rejected calls
+     */
+    public long getRejectedCalls() {
+        return rejected.sum();
+    }
+
+    /**
+     * Builds Bulkhead instances.
+     */
+    public static class Builder {
+        private int maxConcurrentCalls = 16;
+        private int maxQueuedCalls = 16;
+        private Duration maxWait = Duration.ofMillis(100);
+
+        /**
+         * Sets the maximum number of concurrent calls.
+         *
+         * @param maxConcurrentCalls the maximum number of calls, defaults to 16
+         * @return the builder
+         * @throws IllegalArgumentException if the number is not positive
+         */
+        public Builder maxConcurrentCalls(int maxConcurrentCalls) {
+            if (maxConcurrentCalls <= 0)
+                throw new IllegalArgumentException("Maximum concurrent calls must be positive");
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of callers that wait for a permit.
+         *
+         * @param maxQueuedCalls the maximum number of waiting callers, defaults to 16, or 0 to reject immediately
+         * @return the builder
+         * @throws IllegalArgumentException if the number is negative
+         */
+        public Builder maxQueuedCalls(int maxQueuedCalls) {
+            if (maxQueuedCalls < 0)
+                throw new IllegalArgumentException("Maximum queued calls cannot be negative");
+            this.maxQueuedCalls = maxQueuedCalls;
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a caller waits for a permit.
+         *
+         * @param maxWait the maximum wait time, defaults to 100 ms
+         * @return the builder
+         * @throws IllegalArgumentException if the duration is negative
+         */
+        public Builder maxWait(Duration maxWait) {
+            if (Objects.requireNonNull(maxWait, "Maximum wait cannot be null").isNegative())
+                throw new IllegalArgumentException("Maximum wait cannot be negative");
+            this.maxWait = maxWait;
+            return this;
+        }
+
+        public Bulkhead build() {
+            return new Bulkhead(this);
+        }
+    }
+}
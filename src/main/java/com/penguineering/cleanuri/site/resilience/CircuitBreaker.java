@@ -0,0 +1,453 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls into a site that fails or is slow, until a probe call succeeds.
+ * <p>
+ * While the breaker is {@link State#CLOSED closed}, the outcomes of the last {@link Builder#windowSize(int)} calls
+ * are recorded. A call fails if it throws, and it is slow if it takes at least {@link Builder#slowCallDuration(Duration)}.
+ * Once at least {@link Builder#minimumCalls(int)} calls have been recorded and the rate of failed or slow calls
+ * reaches its threshold, the breaker {@link State#OPEN opens} and rejects all calls. After
+ * {@link Builder#openDuration(Duration)}, it becomes {@link State#HALF_OPEN half-open} and permits a single
+ * probe call: if the probe succeeds in time, the breaker closes, otherwise it opens again.
+ * </p>
+ * <p>
+ * Every permit belongs to the state in which it was acquired. Outcomes of calls that finish after the breaker has
+ * changed its state are ignored, so that a straggler from the closed state cannot decide the probe.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * CircuitBreaker breaker = new CircuitBreaker.Builder()
+ *     .failureRateThreshold(0.5)
+ *     .slowCallDuration(Duration.ofSeconds(1))
+ *     .openDuration(Duration.ofSeconds(30))
+ *     .build();
+ * long permit = breaker.tryAcquire();
+ * if (permit != CircuitBreaker.REJECTED) {
+ *     long start = System.nanoTime();
+ *     boolean failed = true;
+ *     try {
+ *         // call the site
+ *         failed = false;
+ *     } finally {
+ *         breaker.onResult(permit, System.nanoTime() - start, failed);
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class CircuitBreaker {
+    /**
+     * The result of {@link #tryAcquire()} if a call is rejected.
+     */
+    public static final long REJECTED = -1;
+
+    /**
+     * The state of a circuit breaker.
+     */
+    public enum State {
+        /**
+         * Calls are permitted and their outcomes are recorded.
+         */
+        CLOSED,
+        /**
+         * Calls are rejected.
+         */
+        OPEN,
+        /**
+         * A single probe call is permitted to decide whether the breaker closes.
+         */
+        HALF_OPEN
+    }
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallDuration;
+    private final double slowCallRateThreshold;
+    private final long openDuration;
+    private final LongSupplier ticker;
+    private final LongAdder rejected = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private final boolean[] failures;
+    private final boolean[] slowCalls;
+    private int position;
+    private int calls;
+    private int failureCount;
+    private int slowCallCount;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+    // Incremented on every change of the state, identifies the permits of the current state
+    private long generation;
+
+    private CircuitBreaker(Builder builder) {
+        this.failures = new boolean[builder.windowSize];
+        this.slowCalls = new boolean[builder.windowSize];
+        this.minimumCalls = Math.min(builder.minimumCalls, builder.windowSize);
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallDuration = builder.slowCallDuration.toNanos();
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.openDuration = builder.openDuration.toNanos();
+        this.ticker = builder.ticker;
+    }
+
+    /**
+     * Asks for permission to make a call.
+     *
+     * @return the permit of the call, which must report its outcome with {@link #onResult(long, long, boolean)}
+     * or {@link #release(long)}, or {@link #REJECTED} if it is rejected
+     */
+    public long tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && ticker.getAsLong() - openedAt >= openDuration) {
+                state = State.HALF_OPEN;
+                probing = false;
+                generation++;
+            }
+            boolean permitted = switch (state) {
+                case CLOSED -> true;
+                case OPEN -> false;
+                case HALF_OPEN -> !probing;
+            };
+            if (state == State.HALF_OPEN && permitted)
+                probing = true;
+            if (!permitted) {
+                rejected.increment();
+                return REJECTED;
+            }
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lets a call pass without acquiring a permit.
+     * <p>
+     * This is meant for cheap calls that lead up to the calls that are guarded by the breaker. Unlike
+     * {@link #tryAcquire()}, a call passes while the breaker is half-open, regardless of a running probe,
+     * and a rejected pass is not counted.
+     * </p>
+     *
+     * @return the pass of the call, whose outcome can be reported with {@link #onPassResult(long, long, boolean)},
+     * or {@link #REJECTED} if the breaker is open
+     */
+    public long tryPass() {
+        lock.lock();
+        try {
+            return getState() == State.OPEN ? REJECTED : generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the outcome of a permitted call.
+     * <p>
+     * The outcome is ignored if the breaker has changed its state since the permit was acquired.
+     * </p>
+     *
+     * @param permit the permit returned by {@link #tryAcquire()}
+     * @param nanos  the duration of the call in nanoseconds
+     * @param failed true if the call has failed
+     */
+    public void onResult(long permit, long nanos, boolean failed) {
+        boolean slow = nanos >= slowCallDuration;
+        lock.lock();
+        try {
+            // A call that was permitted in an earlier state
+            if (permit != generation)
+                return;
+            switch (state) {
+                case HALF_OPEN -> {
+                    if (failed || slow)
+                        open();
+                    else
+                        close();
+                }
+                case CLOSED -> recordClosed(failed, slow);
+                case OPEN -> {
+                    // Not reached, the breaker has changed its state since any permit was acquired
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the outcome of a call that has passed without a permit.
+     * <p>
+     * Only failed and slow outcomes are recorded, so that cheap calls that succeed do not dilute the rates of
+     * the guarded calls. They are recorded while the breaker is closed and has not changed its state since the
+     * call passed; a half-open breaker is decided by its probe alone.
+     * </p>
+     *
+     * @param pass   the pass returned by {@link #tryPass()}
+     * @param nanos  the duration of the call in nanoseconds
+     * @param failed true if the call has failed
+     */
+    public void onPassResult(long pass, long nanos, boolean failed) {
+        boolean slow = nanos >= slowCallDuration;
+        if (!failed && !slow)
+            return;
+
+        lock.lock();
+        try {
+            if (pass == generation && state == State.CLOSED)
+                recordClosed(failed, slow);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the permission of a call that has not been made, without recording an outcome.
+     *
+     * @param permit the permit returned by {@link #tryAcquire()}
+     */
+    public void release(long permit) {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && permit == generation)
+                probing = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current state.
+     *
+     * @return the state
+     */
+    public State getState() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && ticker.getAsLong() - openedAt >= openDuration)
+                return State.HALF_OPEN;
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the rate of failed calls in the current window.
+     *
+     * @return the failure rate between 0 and 1, or 0 if no calls have been recorded
+     */
+    public double getFailureRate() {
+        lock.lock();
+        try {
+            return calls == 0 ? 0 : (double) failureCount / calls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the rate of slow calls in the current window.
+     *
+     * @return the slow call rate between 0 and 1, or 0 if no calls have been recorded
+     */
+    public double getSlowCallRate() {
+        lock.lock();
+        try {
+            return calls == 0 ? 0 : (double) slowCallCount / calls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of calls that have been rejected.
+     *
+     * @return the number of rejected calls
+     */
+    public long getRejectedCalls() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the current time of the breaker's ticker, to measure call durations.
+     */
+    long now() {
+        return ticker.getAsLong();
+    }
+
+    private void recordClosed(boolean failed, boolean slow) {
+        record(failed, slow);
+        if (calls >= minimumCalls
+                && (failureCount >= failureRateThreshold * calls
+                || slowCallCount >= slowCallRateThreshold * calls))
+            open();
+    }
+
+    private void record(boolean failed, boolean slow) {
+        if (calls == failures.length) {
+            if (failures[position])
+                failureCount--;
+            if (slowCalls[position])
+                slowCallCount--;
+        } else {
+            calls++;
+        }
+        failures[position] = failed;
+        slowCalls[position] = slow;
+        if (failed)
+            failureCount++;
+        if (slow)
+            slowCallCount++;
+        position = (position + 1) % failures.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        generation++;
+        openedAt = ticker.getAsLong();
+        probing = false;
+        reset();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        generation++;
+        probing = false;
+        reset();
+    }
+
+    private void reset() {
+        position = 0;
+        calls = 0;
+        failureCount = 0;
+        slowCallCount = 0;
+    }
+
+    /**
+     * Builds CircuitBreaker instances.
+     */
+    public static class Builder {
+        private int windowSize = 50;
+        private int minimumCalls = 20;
+        private double failureRateThreshold = 0.5;
+        private Duration slowCallDuration = Duration.ofSeconds(2);
+        private double slowCallRateThreshold = 0.8;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private LongSupplier ticker = System::nanoTime;
+
+        /**
+         * Sets the number of recent calls whose outcomes are recorded.
+         *
+         * @param windowSize the number of calls, defaults to 50
+         * @return the builder
+         * @throws IllegalArgumentException if the size is not positive
+         */
+        public Builder windowSize(int windowSize) {
+            if (windowSize <= 0)
+                throw new IllegalArgumentException("Window size must be positive");
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of recorded calls before the breaker can open.
+         *
+         * @param minimumCalls the minimum number of calls, defaults to 20, at most the window size
+         * @return the builder
+         * @throws IllegalArgumentException if the number is not positive
+         */
+        public Builder minimumCalls(int minimumCalls) {
+            if (minimumCalls <= 0)
+                throw new IllegalArgumentException("Minimum calls must be positive");
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Sets the rate of failed calls at which the breaker opens.
+         *
+         * @param failureRateThreshold the rate between 0 (exclusive) and 1, defaults to 0.5
+         * @return the builder
+         * @throws IllegalArgumentException if the rate is out of range
+         */
+        public Builder failureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = checkRate(failureRateThreshold);
+            return this;
+        }
+
+        /**
+         * Sets the duration from which a call is slow.
+         *
+         * @param slowCallDuration the duration, defaults to 2 seconds
+         * @return the builder
+         * @throws IllegalArgumentException if the duration is not positive
+         */
+        public Builder slowCallDuration(Duration slowCallDuration) {
+            this.slowCallDuration = checkPositive(slowCallDuration);
+            return this;
+        }
+
+        /**
+         * Sets the rate of slow calls at which the breaker opens.
+         *
+         * @param slowCallRateThreshold the rate between 0 (exclusive) and 1, defaults to 0.8
+         * @return the builder
+         * @throws IllegalArgumentException if the rate is out of range
+         */
+        public Builder slowCallRateThreshold(double slowCallRateThreshold) {
+            this.slowCallRateThreshold = checkRate(slowCallRateThreshold);
+            return this;
+        }
+
+        /**
+         * Sets the time the breaker stays open before it permits a probe call.
+         *
+         * @param openDuration the duration, defaults to 30 seconds
+         * @return the builder
+         * @throws IllegalArgumentException if the duration is not positive
+         */
+        public Builder openDuration(Duration openDuration) {
+            this.openDuration = checkPositive(openDuration);
+            return this;
+        }
+
+        /**
+         * Sets the time source in nanoseconds. Defaults to {@link System#nanoTime()}.
+         *
+         * @param ticker the time source
+         * @return the builder
+         */
+        public Builder ticker(LongSupplier ticker) {
+            this.ticker = Objects.requireNonNull(ticker, "Ticker cannot be null");
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+
+        private static double checkRate(double rate) {
+            if (!(rate > 0 && rate <= 1))
+                throw new IllegalArgumentException("Rate must be between 0 (exclusive) and 1: " + rate);
+            return rate;
+        }
+
+        private static Duration checkPositive(Duration duration) {
+            Objects.requireNonNull(duration, "Duration cannot be null");
+            if (duration.isNegative() || duration.isZero())
+                throw new IllegalArgumentException("Duration must be positive: " + duration);
+            return duration;
+        }
+    }
+}
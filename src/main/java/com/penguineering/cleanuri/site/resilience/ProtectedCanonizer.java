@@ -0,0 +1,40 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import com.penguineering.cleanuri.site.Canonizer;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * A canonizer that calls a delegate canonizer through the guard of its site.
+ * <p>
+ * Exceptions that the delegate reports to its handler with {@link Level#WARNING} or above are recorded as
+ * failed calls, as the delegate returns an empty result instead of throwing them.
+ * </p>
+ */
+class ProtectedCanonizer implements Canonizer {
+    private final Canonizer delegate;
+    private final SiteGuard guard;
+
+    ProtectedCanonizer(Canonizer delegate, SiteGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+        delegate.withExceptionHandler((level, throwable) -> guard.reportException(level));
+    }
+
+    @Override
+    public ProtectedCanonizer withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+        delegate.withExceptionHandler((level, throwable) -> {
+            guard.reportException(level);
+            exceptionHandler.accept(level, throwable);
+        });
+        return this;
+    }
+
+    @Override
+    public Optional<URI> canonize() {
+        return guard.call(delegate::canonize, Optional.empty());
+    }
+}
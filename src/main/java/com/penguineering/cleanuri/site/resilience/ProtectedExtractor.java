@@ -0,0 +1,57 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import com.penguineering.cleanuri.site.ExtractionField;
+import com.penguineering.cleanuri.site.ExtractionResult;
+import com.penguineering.cleanuri.site.Extractor;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * An extractor that calls a delegate extractor through the guard of its site.
+ */
+class ProtectedExtractor implements Extractor {
+    private static final ExtractionResult EMPTY = new ExtractionResult.Builder().build();
+
+    private final Extractor delegate;
+    private final SiteGuard guard;
+
+    ProtectedExtractor(Extractor delegate, SiteGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+        delegate.withExceptionHandler((level, throwable) -> guard.reportException(level));
+    }
+
+    @Override
+    public ProtectedExtractor withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+        delegate.withExceptionHandler((level, throwable) -> {
+            guard.reportException(level);
+            exceptionHandler.accept(level, throwable);
+        });
+        return this;
+    }
+
+    @Override
+    public Optional<String> extractDocumentTitle() {
+        return guard.call(delegate::extractDocumentTitle, Optional.empty());
+    }
+
+    @Override
+    public Optional<ProductDescription> extractProductDescription() {
+        return guard.call(delegate::extractProductDescription, Optional.empty());
+    }
+
+    @Override
+    public Optional<Pricing> extractPricing() {
+        return guard.call(delegate::extractPricing, Optional.empty());
+    }
+
+    @Override
+    public ExtractionResult extractAll(Set<ExtractionField> fields) {
+        return guard.call(() -> delegate.extractAll(fields), EMPTY);
+    }
+}
@@ -0,0 +1,105 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import com.penguineering.cleanuri.site.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A site that calls a delegate site and its canonizers and extractors through a bulkhead and a circuit breaker.
+ * <p>
+ * If a call is rejected, because the circuit breaker is open or the bulkhead is full, it fails fast without
+ * calling the delegate: {@link #canProcessURI(URI)} returns false, the factory methods and the operations of the
+ * canonizers and extractors return an empty Optional, and {@link Extractor#extractAll(java.util.Set)} returns
+ * an empty result. The descriptor and host patterns are always returned, so that the site stays registered.
+ * </p>
+ * <p>
+ * All outcomes of the canonizer and extractor operations are recorded by the circuit breaker.
+ * {@link #canProcessURI(URI)} and the factory methods are rejected while the breaker is open, but only those calls
+ * that throw or are slow are recorded, and they do not take the probe of a half-open breaker.
+ * </p>
+ * <p>
+ * Instances are created with {@link SiteProtectionRegistry#protect(Site)}.
+ * </p>
+ */
+public class ProtectedSite implements Site {
+    private final Site delegate;
+    private final SiteGuard guard;
+
+    ProtectedSite(Site delegate, SiteGuard guard) {
+        this.delegate = Objects.requireNonNull(delegate, "Site cannot be null");
+        this.guard = Objects.requireNonNull(guard, "Guard cannot be null");
+    }
+
+    /**
+     * Returns the protected site.
+     *
+     * @return the delegate site
+     */
+    public Site getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Returns the bulkhead of the protected site.
+     *
+     * @return the bulkhead
+     */
+    public Bulkhead getBulkhead() {
+        return guard.getBulkhead();
+    }
+
+    /**
+     * Returns the circuit breaker of the protected site.
+     *
+     * @return the circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return guard.getCircuitBreaker();
+    }
+
+    @Override
+    public SiteDescriptor getSiteDescriptor() {
+        return delegate.getSiteDescriptor();
+    }
+
+    @Override
+    public List<String> getHostPatterns() {
+        return delegate.getHostPatterns();
+    }
+
+    @Override
+    public boolean canProcessURI(URI uri) {
+        return guard.dispatch(() -> delegate.canProcessURI(uri), false);
+    }
+
+    @Override
+    public Optional<Canonizer> newCanonizer(URI uri) {
+        return guard.dispatch(() -> delegate.newCanonizer(uri), Optional.<Canonizer>empty()).map(this::protect);
+    }
+
+    @Override
+    public Optional<Extractor> newExtractor(URI uri) {
+        return guard.dispatch(() -> delegate.newExtractor(uri), Optional.<Extractor>empty()).map(this::protect);
+    }
+
+    @Override
+    public Optional<Canonizer> newCanonizer(PageContext page) {
+        return guard.dispatch(() -> delegate.newCanonizer(page), Optional.<Canonizer>empty()).map(this::protect);
+    }
+
+    @Override
+    public Optional<Extractor> newExtractor(PageContext page) {
+        return guard.dispatch(() -> delegate.newExtractor(page), Optional.<Extractor>empty()).map(this::protect);
+    }
+
+    private Canonizer protect(Canonizer canonizer) {
+        return new ProtectedCanonizer(canonizer, guard);
+    }
+
+    private Extractor protect(Extractor extractor) {
+        return new ProtectedExtractor(extractor, guard);
+    }
+}
@@ -0,0 +1,109 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * The bulkhead and circuit breaker of a site, shared by all wrappers of the site.
+ */
+final class SiteGuard {
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    // The reported failure of the call running on the current thread, set per call so that
+    // concurrent calls through the same wrapper do not take each other's reports
+    private final ThreadLocal<boolean[]> reportedFailure = new ThreadLocal<>();
+
+    SiteGuard(Bulkhead bulkhead, CircuitBreaker circuitBreaker) {
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Records an exception that a canonizer or extractor has reported to its handler.
+     * <p>
+     * Exceptions reported with {@link Level#WARNING} or above mark the call running on the current thread
+     * as failed. Reports from other threads or outside of a call are not recorded.
+     * </p>
+     *
+     * @param level the level of the report
+     */
+    void reportException(Level level) {
+        boolean[] failure = reportedFailure.get();
+        if (failure != null && level.intValue() >= Level.WARNING.intValue())
+            failure[0] = true;
+    }
+
+    /**
+     * Makes a canonizer or extractor call if the circuit breaker and the bulkhead permit it, and records its outcome.
+     * <p>
+     * The circuit breaker is asked first, so that calls into a failing site do not wait in the bulkhead queue.
+     * Exceptions thrown by the call are recorded as failures and rethrown. A call that has reported an exception
+     * to its handler instead of throwing it, see {@link #reportException(Level)}, is recorded as failed as well.
+     * </p>
+     *
+     * @param call     the call
+     * @param rejected the result if the call is rejected
+     * @return the result of the call, or the rejected result
+     */
+    <R> R call(Supplier<R> call, R rejected) {
+        long permit = circuitBreaker.tryAcquire();
+        if (permit == CircuitBreaker.REJECTED)
+            return rejected;
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.release(permit);
+            return rejected;
+        }
+
+        boolean[] outer = reportedFailure.get();
+        boolean[] failure = new boolean[1];
+        reportedFailure.set(failure);
+        long start = circuitBreaker.now();
+        boolean failed = true;
+        try {
+            R result = call.get();
+            failed = failure[0];
+            return result;
+        } finally {
+            reportedFailure.set(outer);
+            bulkhead.release();
+            circuitBreaker.onResult(permit, circuitBreaker.now() - start, failed);
+        }
+    }
+
+    /**
+     * Makes a dispatch or factory call of the site.
+     * <p>
+     * These calls are cheap and almost always succeed. Recording their successes would dilute the rates of failed
+     * and slow operations, and would let them take the probe of a half-open breaker. They are rejected while the
+     * breaker is open and run through the bulkhead, and only calls that throw or are slow are recorded.
+     * </p>
+     *
+     * @param call     the call
+     * @param rejected the result if the call is rejected
+     * @return the result of the call, or the rejected result
+     */
+    <R> R dispatch(Supplier<R> call, R rejected) {
+        long pass = circuitBreaker.tryPass();
+        if (pass == CircuitBreaker.REJECTED || !bulkhead.tryAcquire())
+            return rejected;
+
+        long start = circuitBreaker.now();
+        boolean failed = true;
+        try {
+            R result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            bulkhead.release();
+            circuitBreaker.onPassResult(pass, circuitBreaker.now() - start, failed);
+        }
+    }
+}
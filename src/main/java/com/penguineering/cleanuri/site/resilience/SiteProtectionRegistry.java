@@ -0,0 +1,143 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import com.penguineering.cleanuri.site.LazySite;
+import com.penguineering.cleanuri.site.Site;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Protects sites with a bulkhead and a circuit breaker per site, keyed by the label of their site descriptor.
+ * <p>
+ * Site plugins are third-party code that may hang, fail or slow down, e.g. because a shop changed its markup.
+ * The {@link Bulkhead} bounds the number of threads that can be stuck in one site, so that a slow site cannot
+ * exhaust a shared executor. The {@link CircuitBreaker} stops calling a site whose calls fail or are slow, and
+ * probes it again after a while. Rejected calls fail fast with an empty result, see {@link ProtectedSite}.
+ * Both are created per label, so that the sites do not affect each other.
+ * </p>
+ *
+ * <p>Example usage:</p>
+ * <pre>
+ * SiteProtectionRegistry protection = new SiteProtectionRegistry.Builder()
+ *     .bulkhead(label -&gt; new Bulkhead.Builder().maxConcurrentCalls(8).build())
+ *     .circuitBreaker(label -&gt; new CircuitBreaker.Builder().slowCallDuration(Duration.ofSeconds(1)).build())
+ *     .build();
+ * SiteRegistry registry = new SiteRegistry(protection.protectAll(new SiteLoader().findSitesOnClasspath()));
+ *
+ * protection.getCircuitBreaker("Example").map(CircuitBreaker::getState);
+ * </pre>
+ *
+ * <p>The registry is thread-safe.</p>
+ */
+public class SiteProtectionRegistry {
+    private final Function<String, Bulkhead> bulkheadFactory;
+    private final Function<String, CircuitBreaker> circuitBreakerFactory;
+    private final Map<String, SiteGuard> guards = new ConcurrentHashMap<>();
+
+    private SiteProtectionRegistry(Builder builder) {
+        this.bulkheadFactory = builder.bulkheadFactory;
+        this.circuitBreakerFactory = builder.circuitBreakerFactory;
+    }
+
+    /**
+     * Wraps a site to protect it.
+     * <p>
+     * Sites with the same label share their bulkhead and circuit breaker. Already protected sites are returned
+     * as they are. A {@link LazySite} is not instantiated if its label is declared with a
+     * {@link com.penguineering.cleanuri.site.SiteProvider} annotation.
+     * </p>
+     *
+     * @param site the site to protect
+     * @return the protected site
+     * @throws NullPointerException if the site is null
+     */
+    public Site protect(Site site) {
+        Objects.requireNonNull(site, "Site cannot be null");
+        if (site instanceof ProtectedSite)
+            return site;
+
+        String label = site instanceof LazySite lazy
+                ? lazy.getLabel()
+                : site.getSiteDescriptor().getLabel();
+        return new ProtectedSite(site, guards.computeIfAbsent(label, this::newGuard));
+    }
+
+    /**
+     * Wraps all sites to protect them.
+     *
+     * @param sites the sites to protect
+     * @return a list of the protected sites in the same order
+     * @throws NullPointerException if the collection or one of the sites is null
+     */
+    public List<Site> protectAll(Collection<? extends Site> sites) {
+        return sites.stream().map(this::protect).toList();
+    }
+
+    /**
+     * Returns the bulkhead of a site.
+     *
+     * @param label the label of the site
+     * @return an Optional containing the bulkhead, or an empty Optional if no site with this label has been protected
+     */
+    public Optional<Bulkhead> getBulkhead(String label) {
+        return Optional.ofNullable(guards.get(label)).map(SiteGuard::getBulkhead);
+    }
+
+    /**
+     * Returns the circuit breaker of a site.
+     *
+     * @param label the label of the site
+     * @return an Optional containing the circuit breaker, or an empty Optional if no site with this label
+     * has been protected
+     */
+    public Optional<CircuitBreaker> getCircuitBreaker(String label) {
+        return Optional.ofNullable(guards.get(label)).map(SiteGuard::getCircuitBreaker);
+    }
+
+    private SiteGuard newGuard(String label) {
+        return new SiteGuard(
+                Objects.requireNonNull(bulkheadFactory.apply(label), "Bulkhead factory returned null"),
+                Objects.requireNonNull(circuitBreakerFactory.apply(label), "Circuit breaker factory returned null"));
+    }
+
+    /**
+     * Builds SiteProtectionRegistry instances.
+     */
+    public static class Builder {
+        private Function<String, Bulkhead> bulkheadFactory = label -> new Bulkhead.Builder().build();
+        private Function<String, CircuitBreaker> circuitBreakerFactory = label -> new CircuitBreaker.Builder().build();
+
+        /**
+         * Sets the factory of the bulkheads, which is called once per site label.
+         *
+         * @param bulkheadFactory creates the bulkhead for a site label, defaults to the {@link Bulkhead.Builder} defaults
+         * @return the builder
+         */
+        public Builder bulkhead(Function<String, Bulkhead> bulkheadFactory) {
+            this.bulkheadFactory = Objects.requireNonNull(bulkheadFactory, "Bulkhead factory cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the factory of the circuit breakers, which is called once per site label.
+         *
+         * @param circuitBreakerFactory creates the circuit breaker for a site label, defaults to the
+         *                              {@link CircuitBreaker.Builder} defaults
+         * @return the builder
+         */
+        public Builder circuitBreaker(Function<String, CircuitBreaker> circuitBreakerFactory) {
+            this.circuitBreakerFactory = Objects.requireNonNull(circuitBreakerFactory,
+                    "Circuit breaker factory cannot be null");
+            return this;
+        }
+
+        public SiteProtectionRegistry build() {
+            return new SiteProtectionRegistry(this);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.penguineering.cleanuri.site.rules;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.penguineering.cleanuri.site.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * A site that canonizes URIs with declarative {@link SiteRule}s instead of site-specific code.
+ * <p>
+ * One rule-based site can cover any number of hosts. All rules are compiled into one {@link RuleSet},
+ * and the site declares the host patterns of all rules, so that a {@link SiteRegistry} only asks it
+ * for URIs of these hosts.
+ * </p>
+ * <p>
+ * The rules can be read from a JSON document with a label, an optional description and the list of rules:
+ * </p>
+ * <pre>
+ * {
+ *   "label": "Shops",
+ *   "description": "Simple shop rules",
+ *   "rules": [
+ *     {"hosts": ["example.com", "*.example.com"], "keep_segments": 2, "allow_query": []}
+ *   ]
+ * }
+ * </pre>
+ *
+ * <p>To register rules for the ServiceLoader, extend this class with a no-argument constructor:</p>
+ * <pre>
+ * public class MyShops extends RuleBasedSite {
+ *     public MyShops() throws IOException {
+ *         super(MyShops.class.getResourceAsStream("/shops.json"));
+ *     }
+ * }
+ * </pre>
+ */
+public class RuleBasedSite extends AbstractSiteBase {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final RuleSet rules;
+
+    /**
+     * Creates a site for the given rules.
+     * <p>
+     * The host patterns of the descriptor are ignored, the site handles the host patterns of the rules.
+     * </p>
+     *
+     * @param descriptor the descriptor of the site
+     * @param rules      the compiled rules
+     */
+    public RuleBasedSite(SiteDescriptor descriptor, RuleSet rules) {
+        super(descriptor);
+        this.rules = Objects.requireNonNull(rules, "Rules cannot be null");
+    }
+
+    /**
+     * Creates a site from a JSON document.
+     *
+     * @param json the stream to read the JSON document from, which is closed afterwards
+     * @throws IOException              if the document cannot be read or is malformed
+     * @throws IllegalArgumentException if a rule is invalid
+     */
+    public RuleBasedSite(InputStream json) throws IOException {
+        this(read(json));
+    }
+
+    private RuleBasedSite(Document document) {
+        this(document.descriptor, RuleSet.compile(document.rules));
+    }
+
+    private record Document(SiteDescriptor descriptor, List<SiteRule> rules) {
+    }
+
+    private static Document read(InputStream json) throws IOException {
+        if (json == null)
+            throw new IOException("Rule document not found");
+
+        JsonNode root;
+        try (json) {
+            root = MAPPER.readTree(json);
+        }
+        if (root == null || !root.path("label").isTextual())
+            throw new IOException("Rule document must have a label");
+        if (!root.path("rules").isArray())
+            throw new IOException("Rule document must have a list of rules");
+
+        List<SiteRule> rules = new ArrayList<>();
+        for (JsonNode rule : root.get("rules"))
+            rules.add(MAPPER.treeToValue(rule, SiteRule.class));
+
+        SiteDescriptor.Builder descriptor = new SiteDescriptor.Builder(root.get("label").asText());
+        if (root.path("description").isTextual())
+            descriptor.description(root.get("description").asText());
+        rules.forEach(rule -> descriptor.hosts(rule.getHosts().toArray(String[]::new)));
+        return new Document(descriptor.build(), rules);
+    }
+
+    /**
+     * Returns the compiled rules of this site.
+     *
+     * @return the rule set
+     */
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    @Override
+    public List<String> getHostPatterns() {
+        return rules.getHostPatterns();
+    }
+
+    @Override
+    public boolean canProcessURI(URI uri) {
+        return rules.matches(uri);
+    }
+
+    @Override
+    public Optional<Canonizer> newCanonizer(URI uri) {
+        return Optional.of(new Canonizer() {
+            @Override
+            public Optional<URI> canonize() {
+                return rules.canonize(uri);
+            }
+
+            @Override
+            public Canonizer withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                // Rule canonization does not pass exceptions to a handler
+                return this;
+            }
+        });
+    }
+}
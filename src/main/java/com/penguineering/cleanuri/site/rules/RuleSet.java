@@ -0,0 +1,308 @@
+package com.penguineering.cleanuri.site.rules;
+
+import com.penguineering.cleanuri.site.HostIndex;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A set of {@link SiteRule}s compiled into one matcher.
+ * <p>
+ * The host patterns of all rules are compiled into a {@link HostIndex}. The path regexes of the rules
+ * for the same host pattern are combined into a single alternation, so that a URI is matched against
+ * all of these rules with one regex match instead of one match per rule. Lookup cost therefore does not
+ * grow with the number of rules for other hosts.
+ * </p>
+ * <p>
+ * If several rules apply to a URI, rules for an exact host take precedence over wildcard rules, more specific
+ * wildcards over less specific ones, and otherwise the first rule in the list wins.
+ * </p>
+ *
+ * <p>This class is immutable and thread-safe.</p>
+ */
+public class RuleSet {
+    private static final Pattern NAMED_GROUP = Pattern.compile("\\(\\?<[a-zA-Z]|\\\\k<");
+    private static final Pattern BACK_REFERENCE = Pattern.compile("(?<!\\\\)(?:\\\\\\\\)*\\\\[1-9]");
+
+    /**
+     * The rules for one host pattern with their combined path pattern.
+     */
+    private static class Group {
+        private final List<CompiledRule> rules = new ArrayList<>();
+        private Pattern pattern;
+        /**
+         * The index of the group enclosing the path regex of each rule in the combined pattern.
+         */
+        private int[] offsets;
+
+        private void compile() {
+            offsets = new int[rules.size()];
+            StringBuilder combined = new StringBuilder();
+            int group = 1;
+            for (int i = 0; i < rules.size(); i++) {
+                if (i > 0)
+                    combined.append('|');
+                offsets[i] = group;
+                combined.append('(').append(rules.get(i).regex).append(')');
+                group += rules.get(i).groupCount + 1;
+            }
+            pattern = Pattern.compile(combined.toString());
+        }
+
+        private Optional<URI> canonize(URI uri, String path) {
+            Matcher matcher = pattern.matcher(path);
+            if (!matcher.matches())
+                return Optional.empty();
+            for (int i = 0; i < offsets.length; i++)
+                if (matcher.start(offsets[i]) >= 0)
+                    return Optional.of(rules.get(i).canonize(uri, matcher, offsets[i]));
+            throw new IllegalStateException("No matching rule for " + path);
+        }
+
+        private boolean matches(String path) {
+            return pattern.matcher(path).matches();
+        }
+    }
+
+    private final List<SiteRule> rules;
+    private final List<String> hostPatterns;
+    private final HostIndex<Group> index = new HostIndex<>();
+
+    private RuleSet(List<SiteRule> rules) {
+        this.rules = List.copyOf(rules);
+
+        Map<String, Group> groups = new LinkedHashMap<>();
+        for (SiteRule rule : this.rules) {
+            CompiledRule compiled = new CompiledRule(rule);
+            for (String host : rule.getHosts())
+                groups.computeIfAbsent(normalize(host), h -> new Group()).rules.add(compiled);
+        }
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            entry.getValue().compile();
+            index.add(entry.getKey(), entry.getValue());
+        }
+        this.hostPatterns = List.copyOf(groups.keySet());
+    }
+
+    /**
+     * Compiles a list of rules.
+     *
+     * @param rules the rules in order of precedence
+     * @return the compiled rule set
+     * @throws IllegalArgumentException if a host pattern, path regex or path template is invalid
+     */
+    public static RuleSet compile(List<SiteRule> rules) {
+        return new RuleSet(rules);
+    }
+
+    /**
+     * Returns the rules of this set.
+     *
+     * @return an unmodifiable list of the rules
+     */
+    public List<SiteRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the distinct host patterns of all rules.
+     *
+     * @return an unmodifiable list of host patterns
+     */
+    public List<String> getHostPatterns() {
+        return hostPatterns;
+    }
+
+    /**
+     * Checks if a rule applies to the given URI.
+     *
+     * @param uri the URI to check
+     * @return true if a rule applies, false otherwise
+     */
+    public boolean matches(URI uri) {
+        String path = pathOf(uri);
+        for (Group group : index.lookup(uri.getHost()))
+            if (group.matches(path))
+                return true;
+        return false;
+    }
+
+    /**
+     * Canonizes a URI with the first rule that applies to it.
+     *
+     * @param uri the URI to canonize
+     * @return an Optional containing the canonical URI, or an empty Optional if no rule applies
+     * @throws IllegalArgumentException if the canonical URI is malformed
+     */
+    public Optional<URI> canonize(URI uri) {
+        String path = pathOf(uri);
+        for (Group group : index.lookup(uri.getHost())) {
+            Optional<URI> result = group.canonize(uri, path);
+            if (result.isPresent())
+                return result;
+        }
+        return Optional.empty();
+    }
+
+    private static String pathOf(URI uri) {
+        String path = uri.getRawPath();
+        return path != null ? path : "";
+    }
+
+    private static String normalize(String host) {
+        String h = host.toLowerCase(Locale.ROOT);
+        return h.endsWith(".") ? h.substring(0, h.length() - 1) : h;
+    }
+
+    /**
+     * A rule with its parsed path regex, path template and query filter.
+     */
+    private static class CompiledRule {
+        private final SiteRule rule;
+        private final String regex;
+        private final int groupCount;
+        /**
+         * The path template as alternating literals and group numbers, or null to keep the path.
+         */
+        private final List<Object> template;
+        private final Set<String> queryNames = new HashSet<>();
+        private final List<String> queryPrefixes = new ArrayList<>();
+        private final boolean allow;
+
+        CompiledRule(SiteRule rule) {
+            this.rule = rule;
+            this.regex = rule.getPath().orElse("(?s:.*)");
+            if (NAMED_GROUP.matcher(regex).find() || BACK_REFERENCE.matcher(regex).find())
+                throw new IllegalArgumentException("Named groups and back-references are not supported in " + rule);
+            try {
+                this.groupCount = Pattern.compile(regex).matcher("").groupCount();
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid path regex in " + rule + ": " + e.getMessage(), e);
+            }
+            this.template = rule.getPathTemplate().map(this::parseTemplate).orElse(null);
+
+            this.allow = rule.getAllowQuery().isPresent();
+            for (String entry : rule.getAllowQuery().or(rule::getDenyQuery).orElse(List.of())) {
+                if (entry.endsWith("*"))
+                    queryPrefixes.add(entry.substring(0, entry.length() - 1));
+                else
+                    queryNames.add(entry);
+            }
+        }
+
+        private List<Object> parseTemplate(String pathTemplate) {
+            List<Object> parts = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            for (int i = 0; i < pathTemplate.length(); i++) {
+                char c = pathTemplate.charAt(i);
+                if (c != '$') {
+                    literal.append(c);
+                    continue;
+                }
+                if (i + 1 < pathTemplate.length() && pathTemplate.charAt(i + 1) == '$') {
+                    literal.append('$');
+                    i++;
+                    continue;
+                }
+                int end = i + 1;
+                while (end < pathTemplate.length() && Character.isDigit(pathTemplate.charAt(end)))
+                    end++;
+                if (end == i + 1)
+                    throw new IllegalArgumentException("Invalid group reference in path template of " + rule);
+                int group = Integer.parseInt(pathTemplate.substring(i + 1, end));
+                if (group > groupCount)
+                    throw new IllegalArgumentException("No group " + group + " in path regex of " + rule);
+                if (!literal.isEmpty()) {
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
+                parts.add(group);
+                i = end - 1;
+            }
+            if (!literal.isEmpty())
+                parts.add(literal.toString());
+            return parts;
+        }
+
+        URI canonize(URI uri, Matcher matcher, int offset) {
+            StringBuilder result = new StringBuilder(64);
+            result.append(rule.getScheme().orElse(uri.getScheme())).append("://");
+            result.append(rule.getHost().orElseGet(() -> uri.getHost().toLowerCase(Locale.ROOT)));
+            if (uri.getPort() >= 0)
+                result.append(':').append(uri.getPort());
+
+            int pathStart = result.length();
+            if (template != null) {
+                for (Object part : template) {
+                    if (part instanceof Integer group) {
+                        String value = matcher.group(offset + group);
+                        if (value != null)
+                            result.append(value);
+                    } else {
+                        result.append((String) part);
+                    }
+                }
+            } else {
+                result.append(matcher.group(offset));
+            }
+            rule.getKeepSegments().ifPresent(n -> keepSegments(result, pathStart, n));
+
+            appendQuery(result, uri.getRawQuery());
+
+            try {
+                return new URI(result.toString());
+            } catch (URISyntaxException e) {
+                throw new IllegalArgumentException("Rule " + rule + " produced an invalid URI: " + e.getMessage(), e);
+            }
+        }
+
+        private static void keepSegments(StringBuilder uri, int pathStart, int segments) {
+            int count = 0;
+            for (int i = pathStart; i < uri.length(); i++) {
+                if (uri.charAt(i) == '/' && i > pathStart && uri.charAt(i - 1) != '/' && ++count == segments) {
+                    uri.setLength(i);
+                    return;
+                }
+            }
+        }
+
+        private void appendQuery(StringBuilder uri, String query) {
+            if (query == null || query.isEmpty())
+                return;
+            if (!allow && queryNames.isEmpty() && queryPrefixes.isEmpty()) {
+                uri.append('?').append(query);
+                return;
+            }
+
+            char separator = '?';
+            int start = 0;
+            while (start <= query.length()) {
+                int end = query.indexOf('&', start);
+                if (end < 0)
+                    end = query.length();
+                if (end > start) {
+                    int eq = query.indexOf('=', start);
+                    String name = query.substring(start, eq >= 0 && eq < end ? eq : end);
+                    if (isListed(name) == allow) {
+                        uri.append(separator).append(query, start, end);
+                        separator = '&';
+                    }
+                }
+                start = end + 1;
+            }
+        }
+
+        private boolean isListed(String name) {
+            if (queryNames.contains(name))
+                return true;
+            for (String prefix : queryPrefixes)
+                if (name.startsWith(prefix))
+                    return true;
+            return false;
+        }
+    }
+}
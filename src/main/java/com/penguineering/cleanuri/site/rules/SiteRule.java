@@ -0,0 +1,205 @@
+package com.penguineering.cleanuri.site.rules;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A declarative canonization rule for the URIs of a set of hosts.
+ * <p>
+ * A rule applies to a URI if the host matches one of the host patterns and the raw path matches
+ * the path regex, if any. The canonical URI is built from
+ * </p>
+ * <ul>
+ *     <li>the scheme of the rule, or the scheme of the URI,</li>
+ *     <li>the canonical host of the rule, or the host of the URI in lower case, and the port of the URI,</li>
+ *     <li>the path template of the rule with {@code $n} replaced by the groups of the path regex, or the
+ *     path of the URI, limited to the first path segments if {@code keep_segments} is set,</li>
+ *     <li>the query parameters of the URI that are allowed by the allow list, or not denied by the deny list.
+ *     List entries ending with {@code *} match parameter names by prefix.</li>
+ * </ul>
+ * <p>
+ * The fragment is always removed. Path regexes must not use named groups or back-references, as the regexes
+ * of all rules are combined into one pattern.
+ * </p>
+ *
+ * <p>Example rule in JSON:</p>
+ * <pre>
+ * {
+ *   "name": "Example Shop",
+ *   "hosts": ["example.com", "*.example.com"],
+ *   "path": "/item/([0-9]+)(/.*)?",
+ *   "path_template": "/item/$1",
+ *   "allow_query": ["variant"],
+ *   "scheme": "https",
+ *   "host": "www.example.com"
+ * }
+ * </pre>
+ */
+@JsonDeserialize(builder = SiteRule.Builder.class)
+public class SiteRule {
+    private final String name;
+    private final List<String> hosts;
+    private final String path;
+    private final String pathTemplate;
+    private final Integer keepSegments;
+    private final List<String> allowQuery;
+    private final List<String> denyQuery;
+    private final String scheme;
+    private final String host;
+
+    private SiteRule(Builder builder) {
+        this.name = builder.name;
+        this.hosts = List.copyOf(builder.hosts);
+        this.path = builder.path;
+        this.pathTemplate = builder.pathTemplate;
+        this.keepSegments = builder.keepSegments;
+        this.allowQuery = builder.allowQuery != null ? List.copyOf(builder.allowQuery) : null;
+        this.denyQuery = builder.denyQuery != null ? List.copyOf(builder.denyQuery) : null;
+        this.scheme = builder.scheme;
+        this.host = builder.host;
+    }
+
+    public Optional<String> getName() {
+        return Optional.ofNullable(name);
+    }
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    public Optional<String> getPath() {
+        return Optional.ofNullable(path);
+    }
+
+    public Optional<String> getPathTemplate() {
+        return Optional.ofNullable(pathTemplate);
+    }
+
+    public Optional<Integer> getKeepSegments() {
+        return Optional.ofNullable(keepSegments);
+    }
+
+    public Optional<List<String>> getAllowQuery() {
+        return Optional.ofNullable(allowQuery);
+    }
+
+    public Optional<List<String>> getDenyQuery() {
+        return Optional.ofNullable(denyQuery);
+    }
+
+    public Optional<String> getScheme() {
+        return Optional.ofNullable(scheme);
+    }
+
+    public Optional<String> getHost() {
+        return Optional.ofNullable(host);
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? name : "rule for " + hosts;
+    }
+
+    @JsonPOJOBuilder(withPrefix = "set")
+    public static class Builder {
+        private String name;
+        private List<String> hosts;
+        private String path;
+        private String pathTemplate;
+        private Integer keepSegments;
+        private List<String> allowQuery;
+        private List<String> denyQuery;
+        private String scheme;
+        private String host;
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder setHosts(List<String> hosts) {
+            this.hosts = hosts;
+            return this;
+        }
+
+        public Builder setPath(String path) {
+            this.path = path;
+            return this;
+        }
+
+        @JsonSetter("path_template")
+        public Builder setPathTemplate(String pathTemplate) {
+            this.pathTemplate = pathTemplate;
+            return this;
+        }
+
+        @JsonSetter("keep_segments")
+        public Builder setKeepSegments(Integer keepSegments) {
+            this.keepSegments = keepSegments;
+            return this;
+        }
+
+        /**
+         * Sets the query parameters to keep. An empty list removes the query.
+         *
+         * @param allowQuery the allowed parameter names or prefixes, or null to use the deny list
+         * @return the builder
+         */
+        @JsonSetter("allow_query")
+        public Builder setAllowQuery(List<String> allowQuery) {
+            this.allowQuery = allowQuery;
+            return this;
+        }
+
+        /**
+         * Sets the query parameters to remove.
+         *
+         * @param denyQuery the denied parameter names or prefixes, or null to keep all parameters
+         * @return the builder
+         */
+        @JsonSetter("deny_query")
+        public Builder setDenyQuery(List<String> denyQuery) {
+            this.denyQuery = denyQuery;
+            return this;
+        }
+
+        public Builder setScheme(String scheme) {
+            this.scheme = scheme;
+            return this;
+        }
+
+        /**
+         * Sets the canonical host.
+         *
+         * @param host the host of the canonical URI, or null to keep the host of the URI
+         * @return the builder
+         */
+        public Builder setHost(String host) {
+            this.host = host;
+            return this;
+        }
+
+        /**
+         * Builds the rule.
+         *
+         * @return the rule
+         * @throws IllegalArgumentException if no host is set, both query lists are set, or
+         *                                  the number of kept segments is not positive
+         */
+        public SiteRule build() {
+            if (hosts == null || hosts.isEmpty())
+                throw new IllegalArgumentException("Rule must have at least one host pattern");
+            hosts.forEach(h -> Objects.requireNonNull(h, "Host pattern cannot be null"));
+            if (allowQuery != null && denyQuery != null)
+                throw new IllegalArgumentException("Rule cannot have both an allow and a deny list");
+            if (keepSegments != null && keepSegments <= 0)
+                throw new IllegalArgumentException("Number of kept segments must be greater than zero");
+            return new SiteRule(this);
+        }
+    }
+}
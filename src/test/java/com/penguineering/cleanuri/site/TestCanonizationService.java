@@ -0,0 +1,135 @@
+package com.penguineering.cleanuri.site;
+
+import com.penguineering.cleanuri.site.cache.TinyLfuCache;
+import com.penguineering.cleanuri.site.canon.CanonicalUri;
+import com.penguineering.cleanuri.site.canon.CanonizationStage;
+import com.penguineering.cleanuri.site.canon.TrackingParameterFilter;
+import com.penguineering.cleanuri.site.dedup.FingerprintSet;
+import com.penguineering.cleanuri.site.dedup.MarkedUri;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCanonizationService {
+    private static class TestSite extends AbstractSiteBase {
+        private final AtomicInteger canonizers = new AtomicInteger();
+
+        public TestSite() {
+            super(new SiteDescriptor.Builder("Test Site").hosts("example.com").build());
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            return true;
+        }
+
+        @Override
+        public Optional<Canonizer> newCanonizer(URI uri) {
+            canonizers.incrementAndGet();
+            return Optional.of(new Canonizer() {
+                @Override
+                public Optional<URI> canonize() {
+                    return uri.getPath().startsWith("/item")
+                            ? Optional.of(URI.create("https://example.com" + uri.getPath()))
+                            : Optional.empty();
+                }
+
+                @Override
+                public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                    return this;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testCanonizeWithoutCache() {
+        TestSite site = new TestSite();
+        CanonizationService service = new CanonizationService.Builder(new SiteRegistry(List.of(site))).build();
+
+        URI uri = URI.create("https://example.com/item/42?ref=abc");
+        assertEquals(Optional.of(URI.create("https://example.com/item/42")), service.canonize(uri));
+        assertEquals(Optional.of(URI.create("https://example.com/item/42")), service.canonize(uri));
+        assertEquals(2, site.canonizers.get());
+        assertTrue(service.getCacheStats().isEmpty());
+    }
+
+    @Test
+    public void testCanonizeWithCache() {
+        TestSite site = new TestSite();
+        CanonizationService service = new CanonizationService.Builder(new SiteRegistry(List.of(site)))
+                .cache(new TinyLfuCache.Builder<String, Optional<URI>>().maximumSize(100).build())
+                .build();
+
+        URI uri = URI.create("https://example.com/item/42?ref=abc");
+        URI other = URI.create("https://example.com/about");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Optional.of(URI.create("https://example.com/item/42")), service.canonize(uri));
+            assertTrue(service.canonize(other).isEmpty());
+        }
+
+        // Negative results are cached as well
+        assertEquals(2, site.canonizers.get());
+        assertEquals(4, service.getCacheStats().orElseThrow().hitCount());
+    }
+
+    @Test
+    public void testUnknownSite() {
+        CanonizationService service = new CanonizationService.Builder(new SiteRegistry(List.of(new TestSite()))).build();
+
+        assertTrue(service.canonize(URI.create("https://unknown.org/item/1")).isEmpty());
+    }
+
+    @Test
+    public void testStages() {
+        SiteRegistry registry = new SiteRegistry(List.of(new TestSite()));
+        URI uri = URI.create("https://example.com/item/42");
+        CanonizationStage addTracking = u -> u + "?utm_source=feed&page=2";
+
+        CanonizationService withoutFilter = new CanonizationService.Builder(registry)
+                .stages(List.of(addTracking))
+                .build();
+        assertEquals(Optional.of(URI.create("https://example.com/item/42?utm_source=feed&page=2")),
+                withoutFilter.canonize(uri));
+
+        CanonizationService withFilter = new CanonizationService.Builder(registry)
+                .stages(List.of(addTracking, TrackingParameterFilter.defaults()))
+                .build();
+        assertEquals(Optional.of(URI.create("https://example.com/item/42?page=2")), withFilter.canonize(uri));
+    }
+
+    @Test
+    public void testCanonicalUri() {
+        CanonizationService service = new CanonizationService.Builder(new SiteRegistry(List.of(new TestSite()))).build();
+
+        CanonicalUri canonical = service.canonicalUri(URI.create("https://example.com/item/42")).orElseThrow();
+        assertEquals(CanonicalUri.of(service.canonize(URI.create("https://example.com/item/42")).orElseThrow()), canonical);
+        assertTrue(service.canonicalUri(URI.create("https://unknown.org/item/1")).isEmpty());
+    }
+
+    @Test
+    public void testCanonizeAndMark() {
+        CanonizationService service = new CanonizationService.Builder(new SiteRegistry(List.of(new TestSite()))).build();
+
+        try (FingerprintSet seen = new FingerprintSet.Builder().expectedSize(100).build()) {
+            MarkedUri first = service.canonizeAndMark(URI.create("https://example.com/item/42"), seen).orElseThrow();
+            assertTrue(first.firstSeen());
+            assertEquals(CanonicalUri.of("https://example.com/item/42"), first.uri());
+
+            MarkedUri second = service.canonizeAndMark(
+                    URI.create("https://example.com/item/42?utm_source=feed"), seen).orElseThrow();
+            assertFalse(second.firstSeen());
+            assertEquals(first.uri(), second.uri());
+
+            assertTrue(service.canonizeAndMark(URI.create("https://unknown.org/item/1"), seen).isEmpty());
+            assertEquals(1, seen.size());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.penguineering.cleanuri.site;
+
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.EnumSet;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TestExtractor {
+    private Extractor createExtractor() {
+        Extractor extractor = mock(Extractor.class);
+        when(extractor.extractDocumentTitle()).thenReturn(Optional.of("Title"));
+        when(extractor.extractProductDescription()).thenReturn(new ProductDescription.Builder().setId("42").build());
+        when(extractor.extractPricing()).thenReturn(new Pricing.Builder().setUnitPrice(BigDecimal.TEN).build());
+        when(extractor.extractAll(any())).thenCallRealMethod();
+        when(extractor.extractAll()).thenCallRealMethod();
+        return extractor;
+    }
+
+    @Test
+    public void testExtractAll() {
+        Extractor extractor = createExtractor();
+
+        ExtractionResult result = extractor.extractAll();
+
+        assertEquals(Optional.of("Title"), result.getTitle());
+        assertEquals(Optional.of("42"), result.getProductDescription().flatMap(ProductDescription::getId));
+        assertEquals(Optional.of(BigDecimal.TEN), result.getPricing().flatMap(Pricing::getUnitPrice));
+    }
+
+    @Test
+    public void testExtractAllWithFieldSelection() {
+        Extractor extractor = createExtractor();
+
+        ExtractionResult result = extractor.extractAll(EnumSet.of(ExtractionField.PRICING));
+
+        assertTrue(result.getTitle().isEmpty());
+        assertTrue(result.getProductDescription().isEmpty());
+        assertTrue(result.getPricing().isPresent());
+
+        verify(extractor, never()).extractDocumentTitle();
+        verify(extractor, never()).extractProductDescription();
+    }
+}
@@ -0,0 +1,61 @@
+package com.penguineering.cleanuri.site;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestHostIndex {
+    @Test
+    public void testExactMatch() {
+        HostIndex<String> index = new HostIndex<>();
+        index.add("example.com", "apex");
+
+        assertEquals(List.of("apex"), index.lookup("example.com"));
+        assertEquals(List.of("apex"), index.lookup("EXAMPLE.com."));
+        assertTrue(index.lookup("www.example.com").isEmpty());
+        assertTrue(index.lookup("com").isEmpty());
+    }
+
+    @Test
+    public void testWildcardMatch() {
+        HostIndex<String> index = new HostIndex<>();
+        index.add("*.example.com", "sub");
+
+        assertEquals(List.of("sub"), index.lookup("www.example.com"));
+        assertEquals(List.of("sub"), index.lookup("a.b.example.com"));
+        assertTrue(index.lookup("example.com").isEmpty());
+        assertTrue(index.lookup("notexample.com").isEmpty());
+    }
+
+    @Test
+    public void testOrderBySpecificity() {
+        HostIndex<String> index = new HostIndex<>();
+        index.add("*.example.com", "wide");
+        index.add("*.shop.example.com", "narrow");
+        index.add("de.shop.example.com", "exact");
+
+        assertEquals(List.of("exact", "narrow", "wide"), index.lookup("de.shop.example.com"));
+        assertEquals(List.of("narrow", "wide"), index.lookup("fr.shop.example.com"));
+        assertEquals(List.of("wide"), index.lookup("shop.example.com"));
+    }
+
+    @Test
+    public void testNoHost() {
+        HostIndex<String> index = new HostIndex<>();
+        index.add("example.com", "apex");
+
+        assertTrue(index.lookup(null).isEmpty());
+        assertTrue(index.lookup("").isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"*", "*.com", "*.co.uk", "", "a..com", "www.*.com"})
+    public void testInvalidPatterns(String pattern) {
+        HostIndex<String> index = new HostIndex<>();
+        assertThrows(IllegalArgumentException.class, () -> index.add(pattern, "value"));
+    }
+}
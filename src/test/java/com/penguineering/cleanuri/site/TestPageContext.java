@@ -0,0 +1,207 @@
+package com.penguineering.cleanuri.site;
+
+import com.penguineering.cleanuri.site.html.HeadMetadataExtractor;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPageContext {
+    private static final String PAGE = """
+            <html><head><title>Grüne Äpfel</title>
+            <link rel="canonical" href="https://example.com/item/42"></head>
+            <body></body></html>
+            """;
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private static class PageSite extends AbstractSiteBase {
+        public PageSite() {
+            super(new SiteDescriptor.Builder("Page Site").build());
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            return true;
+        }
+
+        @Override
+        public Optional<Canonizer> newCanonizer(PageContext page) {
+            return Optional.of(new Canonizer() {
+                @Override
+                public Optional<URI> canonize() {
+                    Matcher m = Pattern.compile("rel=\"canonical\" href=\"([^\"]+)\"").matcher(page.getText());
+                    return m.find() ? Optional.of(URI.create(m.group(1))) : Optional.empty();
+                }
+
+                @Override
+                public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                    return this;
+                }
+            });
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = PAGE.getBytes(StandardCharsets.ISO_8859_1);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=ISO-8859-1");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private URI serverUri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    @Test
+    public void testPageIsFetchedOnce() {
+        PageContext page = new PageContext(serverUri("/item/42?ref=abc"), new HttpPageFetcher());
+        CanonizationService service = new CanonizationService.Builder(new SiteRegistry(List.of(new PageSite()))).build();
+
+        assertFalse(page.isFetched());
+        assertEquals(Optional.of(URI.create("https://example.com/item/42")), service.canonize(page));
+        assertTrue(page.getText().contains("<title>Grüne Äpfel</title>"));
+        assertEquals(200, page.getStatusCode());
+        assertEquals(StandardCharsets.ISO_8859_1, page.getCharset());
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testDefaultOverloads() {
+        Site site = new AbstractSiteBase(new SiteDescriptor.Builder("Plain Site").build()) {
+            @Override
+            public boolean canProcessURI(URI uri) {
+                return true;
+            }
+        };
+        PageContext page = new PageContext(serverUri("/"), new HttpPageFetcher());
+
+        assertTrue(site.newCanonizer(page).isEmpty());
+        assertTrue(site.newExtractor(page).isEmpty());
+        assertFalse(page.isFetched());
+    }
+
+    @Test
+    public void testHeadMetadataSharesFetch() throws IOException {
+        PageContext page = new PageContext(serverUri("/item/42"), new HttpPageFetcher());
+
+        assertEquals(Optional.of("Grüne Äpfel"), page.getHeadMetadata().getTitle());
+        assertEquals(Optional.of("https://example.com/item/42"), page.getHeadMetadata().getCanonical());
+
+        assertFalse(page.isFetched());
+
+        // The head extractor works on the same metadata, and the body is read from the same response
+        assertEquals(Optional.of("Grüne Äpfel"), new HeadMetadataExtractor(page).extractDocumentTitle());
+        assertEquals(PAGE, page.getText());
+        assertTrue(page.isFetched());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testHeadMetadataStopsAtHead() {
+        byte[] body = (PAGE + "<p>filler</p>".repeat(100_000)).getBytes(StandardCharsets.UTF_8);
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        PageFetcher fetcher = new PageFetcher() {
+            @Override
+            public FetchedPage fetch(URI uri) {
+                throw new AssertionError("The page must be streamed");
+            }
+
+            @Override
+            public StreamedPage stream(URI uri) {
+                return new StreamedPage(200, Map.of(), new ByteArrayInputStream(body) {
+                    @Override
+                    public synchronized int read(byte[] b, int off, int len) {
+                        int n = super.read(b, off, len);
+                        read.addAndGet(Math.max(n, 0));
+                        return n;
+                    }
+
+                    @Override
+                    public void close() {
+                        closed.incrementAndGet();
+                    }
+                });
+            }
+        };
+
+        PageContext head = new PageContext(URI.create("https://example.com/"), fetcher);
+        assertEquals(Optional.of("Grüne Äpfel"), head.getHeadMetadata().getTitle());
+        assertTrue(read.get() < body.length / 10, "Read " + read.get() + " bytes");
+        head.close();
+        assertEquals(1, closed.get());
+
+        // The body is completed from the bytes read for the head and the rest of the stream
+        PageContext full = new PageContext(URI.create("https://example.com/"), fetcher);
+        full.getHeadMetadata();
+        assertEquals(new String(body, StandardCharsets.UTF_8), full.getText());
+        assertEquals(2, closed.get());
+    }
+
+    @Test
+    public void testHeadMetadataOfFetchedPage() {
+        PageContext page = new PageContext(serverUri("/item/42"), new HttpPageFetcher());
+        page.getText();
+
+        assertEquals(Optional.of("Grüne Äpfel"), page.getHeadMetadata().getTitle());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void testFetchFailureIsRemembered() {
+        AtomicInteger attempts = new AtomicInteger();
+        PageContext page = new PageContext(URI.create("https://example.com/"), uri -> {
+            attempts.incrementAndGet();
+            throw new IOException("Connection refused");
+        });
+
+        assertThrows(UncheckedIOException.class, page::getText);
+        assertThrows(UncheckedIOException.class, page::getStatusCode);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testPrefetchedPage() {
+        PageContext page = new PageContext(URI.create("https://example.com/"),
+                new PageFetcher.FetchedPage(200, Map.of("content-type", List.of("text/html")), PAGE.getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(page.isFetched());
+        assertEquals(Optional.of("text/html"), page.getHeader("Content-Type"));
+        assertEquals(StandardCharsets.UTF_8, page.getCharset());
+        assertEquals(PAGE, page.getText());
+    }
+}
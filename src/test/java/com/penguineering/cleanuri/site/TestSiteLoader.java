@@ -4,13 +4,16 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.ServiceLoader;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class TestSiteLoader {
@@ -18,6 +21,38 @@ public class TestSiteLoader {
     private ServiceLoader<Site> mockLoader;
     private Consumer<SiteDescriptor> mockConsumer;
 
+    @SiteProvider(label = "Site A", hosts = "a.example.com")
+    public static class SiteA extends AbstractSiteBase {
+        public SiteA() {
+            super(new SiteDescriptor.Builder("Site A").hosts("a.example.com").build());
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            return true;
+        }
+    }
+
+    @SiteProvider(label = "Site B", hosts = "b.example.com")
+    public static class SiteB extends AbstractSiteBase {
+        public SiteB() {
+            super(new SiteDescriptor.Builder("Site B").hosts("b.example.com").build());
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            return true;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServiceLoader.Provider<Site> createMockProvider(Class<? extends Site> type, Site site) {
+        ServiceLoader.Provider<Site> provider = Mockito.mock(ServiceLoader.Provider.class);
+        doReturn(type).when(provider).type();
+        when(provider.get()).thenReturn(site);
+        return provider;
+    }
+
     @BeforeEach
     public void setUp() {
         mockLoader = createMockServiceLoader();
@@ -89,4 +124,92 @@ public class TestSiteLoader {
 
         verify(mockLoader, times(2)).spliterator();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFindSitesLazily() {
+        ServiceLoader.Provider<Site> providerA = createMockProvider(SiteA.class, new SiteA());
+        ServiceLoader.Provider<Site> providerB = createMockProvider(SiteB.class, new SiteB());
+        when(mockLoader.stream()).thenReturn(Stream.of(providerA, providerB));
+
+        List<Site> sites = siteLoader.findSitesLazily();
+        SiteRegistry registry = new SiteRegistry(sites);
+
+        assertEquals(2, sites.size());
+        assertEquals("Site A", ((LazySite) sites.get(0)).getLabel());
+        verify(providerA, never()).get();
+        verify(providerB, never()).get();
+
+        Optional<Site> site = registry.resolve(URI.create("https://b.example.com/item"));
+        assertTrue(site.isPresent());
+        assertEquals("Site B", site.get().getSiteDescriptor().getLabel());
+        assertFalse(((LazySite) sites.get(0)).isInstantiated());
+        assertTrue(((LazySite) sites.get(1)).isInstantiated());
+        verify(providerA, never()).get();
+        verify(providerB, times(1)).get();
+        verify(mockConsumer, times(1)).accept(any());
+
+        assertSame(sites, siteLoader.findSitesLazily());
+    }
+
+    @Test
+    public void testLazySiteWithoutAnnotation() {
+        Site mockSite = Mockito.mock(Site.class);
+        when(mockSite.getSiteDescriptor()).thenReturn(new SiteDescriptor.Builder("Plain").build());
+        when(mockSite.getHostPatterns()).thenReturn(List.of("plain.example.com"));
+        ServiceLoader.Provider<Site> provider = createMockProvider(mockSite.getClass(), mockSite);
+        when(mockLoader.stream()).thenReturn(Stream.of(provider));
+
+        LazySite site = (LazySite) siteLoader.findSitesLazily().get(0);
+        assertFalse(site.isInstantiated());
+        assertEquals(List.of("plain.example.com"), site.getHostPatterns());
+        assertTrue(site.isInstantiated());
+        assertEquals("Plain", site.getLabel());
+        verify(provider, times(1)).get();
+    }
+
+    @Test
+    public void testFindSitesInParallel() {
+        SiteA siteA = new SiteA();
+        SiteB siteB = new SiteB();
+        ServiceLoader.Provider<Site> providerA = createMockProvider(SiteA.class, siteA);
+        ServiceLoader.Provider<Site> providerB = createMockProvider(SiteB.class, siteB);
+        when(mockLoader.stream()).thenReturn(Stream.of(providerA, providerB));
+
+        List<SiteDescriptor> reported = new ArrayList<>();
+        List<Thread> reportingThreads = new ArrayList<>();
+        SiteLoader siteLoader = new SiteLoader(mockLoader, descriptor -> {
+            reported.add(descriptor);
+            reportingThreads.add(Thread.currentThread());
+        });
+
+        List<Site> sites = siteLoader.findSitesOnClasspath(true);
+
+        assertEquals(List.of(siteA, siteB), sites);
+        // The sites are reported in order from the calling thread
+        assertEquals(List.of(siteA.getSiteDescriptor(), siteB.getSiteDescriptor()), reported);
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), reportingThreads);
+        assertSame(sites, siteLoader.findSitesOnClasspath());
+    }
+
+    @Test
+    public void testFindSitesFromIndex() {
+        // The index is generated by the annotation processor for SiteA and SiteB during test compilation
+        SiteLoader siteLoader = new SiteLoader(mockLoader, getClass().getClassLoader(), mockConsumer);
+        List<Site> sites = siteLoader.findSitesFromIndex();
+
+        LazySite siteA = (LazySite) sites.stream()
+                .filter(site -> ((LazySite) site).getClassName().equals(SiteA.class.getName()))
+                .findFirst().orElseThrow();
+        assertEquals("Site A", siteA.getLabel());
+        assertEquals(List.of("a.example.com"), siteA.getHostPatterns());
+        assertFalse(siteA.isInstantiated());
+
+        Optional<Site> resolved = new SiteRegistry(sites).resolve(URI.create("https://a.example.com/item"));
+        assertSame(siteA, resolved.orElseThrow());
+        assertInstanceOf(SiteA.class, siteA.getSite());
+        verify(mockConsumer).accept(siteA.getSiteDescriptor());
+        verifyNoInteractions(mockLoader);
+
+        assertSame(sites, siteLoader.findSitesFromIndex());
+    }
+}
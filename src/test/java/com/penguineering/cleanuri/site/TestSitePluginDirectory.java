@@ -0,0 +1,225 @@
+package com.penguineering.cleanuri.site;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSitePluginDirectory {
+    @TempDir
+    Path tmp;
+
+    /**
+     * Compiles a site class into a JAR file with a services file.
+     */
+    private Path createPluginJar(String className, String label) throws IOException {
+        Path src = Files.createDirectories(tmp.resolve("src-" + className));
+        Path classes = Files.createDirectories(tmp.resolve("classes-" + className));
+        Path source = src.resolve(className + ".java");
+        Files.writeString(source, """
+                package plugin;
+
+                import com.penguineering.cleanuri.site.*;
+                import java.net.URI;
+
+                public class %s extends AbstractSiteBase {
+                    // Loaded lazily on the first call
+                    private static class Matcher {
+                        static boolean matches(URI uri) {
+                            return true;
+                        }
+                    }
+
+                    public %s() {
+                        super(new SiteDescriptor.Builder("%s").hosts("%s.example.com").build());
+                    }
+
+                    @Override
+                    public boolean canProcessURI(URI uri) {
+                        return Matcher.matches(uri);
+                    }
+                }
+                """.formatted(className, className, label, className.toLowerCase()));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int status = compiler.run(null, null, null,
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", classes.toString(), source.toString());
+        assertEquals(0, status, "Plugin compilation failed");
+
+        Path jar = tmp.resolve(className + ".jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            for (String name : List.of(className, className + "$Matcher")) {
+                out.putNextEntry(new JarEntry("plugin/" + name + ".class"));
+                Files.copy(classes.resolve("plugin").resolve(name + ".class"), out);
+            }
+            out.putNextEntry(new JarEntry("META-INF/services/" + Site.class.getName()));
+            writeString(out, "plugin." + className + "\n");
+        }
+        return jar;
+    }
+
+    private static void writeString(OutputStream out, String s) throws IOException {
+        out.write(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> labels(List<Site> sites) {
+        return sites.stream().map(site -> site.getSiteDescriptor().getLabel()).toList();
+    }
+
+    @Test
+    public void testReload() throws IOException {
+        Path plugins = Files.createDirectories(tmp.resolve("plugins"));
+        Path jarA = createPluginJar("Alpha", "Alpha Site");
+        Path jarB = createPluginJar("Beta", "Beta Site");
+
+        List<List<Site>> notifications = new CopyOnWriteArrayList<>();
+        try (SitePluginDirectory directory = new SitePluginDirectory.Builder(plugins).build()) {
+            directory.addListener(notifications::add);
+
+            assertFalse(directory.reload());
+            assertTrue(directory.getSites().isEmpty());
+
+            Files.copy(jarA, plugins.resolve("alpha.jar"));
+            assertTrue(directory.reload());
+            assertEquals(List.of("Alpha Site"), labels(directory.getSites()));
+            Site alpha = directory.getSites().get(0);
+            assertNotSame(getClass().getClassLoader(), alpha.getClass().getClassLoader());
+
+            // Unchanged files are not reloaded
+            assertFalse(directory.reload());
+            assertSame(alpha, directory.getSites().get(0));
+
+            Files.copy(jarB, plugins.resolve("beta.jar"));
+            assertTrue(directory.reload());
+            assertEquals(List.of("Alpha Site", "Beta Site"), labels(directory.getSites()));
+            assertSame(alpha, directory.getSites().get(0));
+
+            Files.delete(plugins.resolve("alpha.jar"));
+            assertTrue(directory.reload());
+            assertEquals(List.of("Beta Site"), labels(directory.getSites()));
+
+            assertEquals(3, notifications.size());
+        }
+    }
+
+    @Test
+    public void testRemovedPluginIsUnloadedLater() throws IOException {
+        Path plugins = Files.createDirectories(tmp.resolve("plugins"));
+        Files.copy(createPluginJar("Alpha", "Alpha Site"), plugins.resolve("alpha.jar"));
+        Files.copy(createPluginJar("Beta", "Beta Site"), plugins.resolve("beta.jar"));
+        URI uri = URI.create("https://example.com/");
+
+        Site alpha;
+        Site beta;
+        try (SitePluginDirectory directory = new SitePluginDirectory.Builder(plugins).build()) {
+            directory.reload();
+            alpha = directory.getSites().get(0);
+            beta = directory.getSites().get(1);
+
+            Files.delete(plugins.resolve("alpha.jar"));
+            Files.delete(plugins.resolve("beta.jar"));
+            assertTrue(directory.reload());
+
+            // A request that is still running on a removed site can load its classes
+            assertTrue(alpha.canProcessURI(uri));
+        }
+
+        // The class loaders of removed plugins are closed with the directory
+        assertThrows(NoClassDefFoundError.class, () -> beta.canProcessURI(uri));
+    }
+
+    @Test
+    public void testListenersReceiveLatestSites() throws Exception {
+        Path plugins = Files.createDirectories(tmp.resolve("plugins"));
+        Path jar = createPluginJar("Alpha", "Alpha Site");
+
+        CountDownLatch notifying = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        List<List<Site>> notifications = new CopyOnWriteArrayList<>();
+        try (SitePluginDirectory directory = new SitePluginDirectory.Builder(plugins).build()) {
+            directory.addListener(sites -> {
+                if (notifying.getCount() > 0) {
+                    notifying.countDown();
+                    try {
+                        proceed.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                notifications.add(sites);
+            });
+
+            // The first reload is still notifying when the second one has swapped the sites
+            Files.copy(jar, plugins.resolve("alpha.jar"));
+            Thread first = Thread.ofVirtual().start(directory::reload);
+            assertTrue(notifying.await(5, TimeUnit.SECONDS));
+            Files.delete(plugins.resolve("alpha.jar"));
+            Thread second = Thread.ofVirtual().start(directory::reload);
+            second.join(100);
+            proceed.countDown();
+            first.join();
+            second.join();
+
+            assertTrue(directory.getSites().isEmpty());
+            assertEquals(directory.getSites(), notifications.get(notifications.size() - 1));
+        }
+    }
+
+    @Test
+    public void testBrokenJarKeepsPreviousVersion() throws IOException {
+        Path plugins = Files.createDirectories(tmp.resolve("plugins"));
+        Path jar = plugins.resolve("alpha.jar");
+        Files.copy(createPluginJar("Alpha", "Alpha Site"), jar);
+
+        List<Throwable> exceptions = new CopyOnWriteArrayList<>();
+        try (SitePluginDirectory directory = new SitePluginDirectory.Builder(plugins).build()
+                .withExceptionHandler((level, throwable) -> exceptions.add(throwable))) {
+            directory.reload();
+            Site alpha = directory.getSites().get(0);
+
+            Files.writeString(jar, "not a jar file");
+            directory.reload();
+
+            assertEquals(1, exceptions.size());
+            assertEquals(List.of(alpha), directory.getSites());
+        }
+    }
+
+    @Test
+    public void testWatchDirectory() throws Exception {
+        Path plugins = Files.createDirectories(tmp.resolve("plugins"));
+        Path jar = createPluginJar("Gamma", "Gamma Site");
+
+        try (SitePluginDirectory directory = new SitePluginDirectory.Builder(plugins).build()) {
+            directory.start();
+            assertThrows(IllegalStateException.class, directory::start);
+
+            Files.copy(jar, plugins.resolve("gamma.jar.tmp"));
+            Files.move(plugins.resolve("gamma.jar.tmp"), plugins.resolve("gamma.jar"),
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (directory.getSites().isEmpty() && System.nanoTime() < deadline)
+                Thread.sleep(20);
+
+            assertEquals(List.of("Gamma Site"), labels(directory.getSites()));
+        }
+    }
+}
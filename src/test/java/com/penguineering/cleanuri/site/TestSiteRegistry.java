@@ -0,0 +1,62 @@
+package com.penguineering.cleanuri.site;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TestSiteRegistry {
+    private static class TestSite extends AbstractSiteBase {
+        private final boolean accept;
+
+        public TestSite(String label, boolean accept, String... hosts) {
+            super(new SiteDescriptor.Builder(label).hosts(hosts).build());
+            this.accept = accept;
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            return accept;
+        }
+    }
+
+    @Test
+    public void testResolveByHost() {
+        Site shop = new TestSite("shop", true, "shop.example.com");
+        Site other = new TestSite("other", true, "other.example.com");
+        SiteRegistry registry = new SiteRegistry(List.of(shop, other));
+
+        assertEquals(Optional.of(other), registry.resolve(URI.create("https://other.example.com/item")));
+        assertEquals(Optional.of(shop), registry.resolve(URI.create("https://shop.example.com/item")));
+        assertTrue(registry.resolve(URI.create("https://unknown.example.com/")).isEmpty());
+    }
+
+    @Test
+    public void testOnlyCandidatesAreAsked() {
+        Site target = spy(new TestSite("target", true, "*.target.com"));
+        Site bystander = spy(new TestSite("bystander", true, "bystander.com"));
+        SiteRegistry registry = new SiteRegistry(List.of(bystander, target));
+
+        URI uri = URI.create("https://www.target.com/");
+        assertEquals(Optional.of(target), registry.resolve(uri));
+
+        verify(target).canProcessURI(uri);
+        verify(bystander, never()).canProcessURI(any());
+    }
+
+    @Test
+    public void testFallbackToCanProcessURI() {
+        Site declined = new TestSite("declined", false, "example.com");
+        Site unindexed = new TestSite("unindexed", true);
+        SiteRegistry registry = new SiteRegistry(List.of(unindexed, declined));
+
+        URI uri = URI.create("https://example.com/");
+        assertEquals(List.of(declined, unindexed), registry.candidates(uri));
+        assertEquals(Optional.of(unindexed), registry.resolve(uri));
+        assertEquals(Optional.of(unindexed), registry.resolve(URI.create("urn:isbn:0451450523")));
+    }
+}
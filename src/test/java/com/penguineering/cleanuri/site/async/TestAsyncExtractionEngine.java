@@ -0,0 +1,250 @@
+package com.penguineering.cleanuri.site.async;
+
+import com.penguineering.cleanuri.site.*;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAsyncExtractionEngine {
+    private static final URI URI_1 = URI.create("https://example.com/item/1");
+
+    private final CountDownLatch started = new CountDownLatch(2);
+    private final CountDownLatch interrupted = new CountDownLatch(2);
+    private final AtomicInteger extractors = new AtomicInteger();
+    private volatile long delayMillis = 200;
+    private volatile long pricingDelayMillis = 200;
+
+    private class SlowExtractor implements Extractor {
+        private <T> Optional<T> slow(T value, long delayMillis) {
+            started.countDown();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return Optional.empty();
+            }
+            return Optional.of(value);
+        }
+
+        @Override
+        public Optional<String> extractDocumentTitle() {
+            return slow("Title", delayMillis);
+        }
+
+        @Override
+        public Optional<ProductDescription> extractProductDescription() {
+            throw new IllegalStateException("Broken page");
+        }
+
+        @Override
+        public Optional<Pricing> extractPricing() {
+            return slow(new Pricing.Builder().setUnitPrice(BigDecimal.TEN).build().orElseThrow(), pricingDelayMillis);
+        }
+
+        @Override
+        public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+            return this;
+        }
+    }
+
+    private class TestSite extends AbstractSiteBase {
+        public TestSite() {
+            super(new SiteDescriptor.Builder("Test Site").hosts("example.com").build());
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            return true;
+        }
+
+        @Override
+        public Optional<Extractor> newExtractor(URI uri) {
+            extractors.incrementAndGet();
+            return Optional.of(new SlowExtractor());
+        }
+    }
+
+    private final AsyncExtractionEngine engine = new AsyncExtractionEngine.Builder(new SiteRegistry(List.of(new TestSite()))).build();
+
+    @AfterEach
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Test
+    public void testFieldsAreExtractedConcurrently() throws Exception {
+        AtomicReference<Throwable> reported = new AtomicReference<>();
+        engine.withExceptionHandler((level, throwable) -> reported.set(throwable));
+
+        long start = System.nanoTime();
+        ExtractionResult result = engine.extract(URI_1).get(5, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(Optional.of("Title"), result.getTitle());
+        assertEquals(Optional.of(BigDecimal.TEN), result.getPricing().flatMap(Pricing::getUnitPrice));
+        assertTrue(result.getProductDescription().isEmpty());
+        assertInstanceOf(IllegalStateException.class, reported.get());
+        assertTrue(elapsed < 2 * delayMillis, "Extraction took " + elapsed + " ms");
+    }
+
+    @Test
+    public void testCancellationInterruptsAllFields() throws Exception {
+        delayMillis = 60_000;
+        pricingDelayMillis = 60_000;
+
+        var result = engine.extract(URI_1, EnumSet.of(ExtractionField.TITLE, ExtractionField.PRICING));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        result.cancel(true);
+
+        // Both running field extractions are interrupted
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUnknownSite() throws Exception {
+        ExtractionResult result = engine.extract(URI.create("https://unknown.org/")).get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.getTitle().isEmpty());
+        assertTrue(engine.canonize(URI.create("https://unknown.org/")).get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentRequestsAreCoalesced() throws Exception {
+        Set<ExtractionField> fields = EnumSet.of(ExtractionField.TITLE, ExtractionField.PRICING);
+        var first = engine.extract(URI_1, fields);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        var second = engine.extract(URI_1, fields);
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, extractors.get());
+
+        // Without coalescing, every request runs its own extractors
+        try (AsyncExtractionEngine uncoalesced = new AsyncExtractionEngine.Builder(
+                new SiteRegistry(List.of(new TestSite()))).coalesceRequests(false).build()) {
+            var a = uncoalesced.extract(URI_1, fields);
+            var b = uncoalesced.extract(URI_1, fields);
+            a.get(5, TimeUnit.SECONDS);
+            b.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(6, extractors.get());
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        delayMillis = 0;
+        pricingDelayMillis = 60_000;
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        engine.withExceptionHandler((level, throwable) -> reported.add(throwable));
+
+        long start = System.nanoTime();
+        ExtractionResult result = engine.extract(URI_1, EnumSet.of(ExtractionField.TITLE, ExtractionField.PRICING),
+                Duration.ofMillis(300)).get(5, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(Optional.of("Title"), result.getTitle());
+        assertTrue(result.getPricing().isEmpty());
+        assertTrue(result.isPartial());
+        assertEquals(Set.of(ExtractionField.PRICING), result.getTimedOutFields());
+        assertTrue(elapsed < 2_000, "Extraction took " + elapsed + " ms");
+
+        // The pricing extraction is interrupted and the timeout is reported
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (interrupted.getCount() > 1 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(1, interrupted.getCount());
+        assertEquals(1, reported.size());
+        assertInstanceOf(TimeoutException.class, reported.get(0));
+
+        // Extractions that finish in time are complete
+        ExtractionResult complete = engine.extract(URI_1, EnumSet.of(ExtractionField.TITLE), Duration.ofSeconds(5))
+                .get(5, TimeUnit.SECONDS);
+        assertFalse(complete.isPartial());
+        assertEquals(Optional.of("Title"), complete.getTitle());
+    }
+
+    @Test
+    public void testDeadlineInterruptsSiteResolution() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch resolutionInterrupted = new CountDownLatch(1);
+        Site hanging = new AbstractSiteBase(new SiteDescriptor.Builder("Hanging Site").build()) {
+            @Override
+            public boolean canProcessURI(URI uri) {
+                resolving.countDown();
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    resolutionInterrupted.countDown();
+                }
+                return false;
+            }
+        };
+
+        try (AsyncExtractionEngine hangingEngine = new AsyncExtractionEngine.Builder(
+                new SiteRegistry(List.of(hanging))).build()) {
+            ExtractionResult result = hangingEngine.extract(URI_1, EnumSet.of(ExtractionField.TITLE),
+                    Duration.ofMillis(100)).get(5, TimeUnit.SECONDS);
+
+            assertTrue(resolving.await(5, TimeUnit.SECONDS));
+            assertEquals(Set.of(ExtractionField.TITLE), result.getTimedOutFields());
+            // The resolution does not keep its thread after the budget has expired
+            assertTrue(resolutionInterrupted.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testHostScheduler() throws Exception {
+        HostScheduler scheduler = new HostScheduler.Builder()
+                .defaultLimits(new HostScheduler.Limits(Double.POSITIVE_INFINITY, 1, 1))
+                .build();
+        Set<ExtractionField> fields = EnumSet.of(ExtractionField.TITLE);
+
+        try (AsyncExtractionEngine scheduled = new AsyncExtractionEngine.Builder(
+                new SiteRegistry(List.of(new TestSite()))).scheduler(scheduler).build()) {
+            long start = System.nanoTime();
+            var first = scheduled.extract(URI_1, fields);
+            awaitCount(scheduler::getRunningCount, 1);
+            var second = scheduled.extract(URI.create("https://example.com/item/2"), fields);
+            awaitCount(scheduler::getPendingCount, 1);
+
+            // Queued behind the others, the budget expires before the extraction starts
+            ExtractionResult late = scheduled.extract(URI.create("https://example.com/item/3"), fields,
+                    Duration.ofMillis(100)).get(5, TimeUnit.SECONDS);
+            assertEquals(Set.of(ExtractionField.TITLE), late.getTimedOutFields());
+
+            // The extractions of the same host run one after the other
+            assertEquals(Optional.of("Title"), first.get(5, TimeUnit.SECONDS).getTitle());
+            assertEquals(Optional.of("Title"), second.get(5, TimeUnit.SECONDS).getTitle());
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed >= 2 * delayMillis, "Extractions took " + elapsed + " ms");
+            assertEquals(2, extractors.get());
+            assertEquals(0, scheduler.getPendingCount());
+        }
+    }
+
+    private static void awaitCount(IntSupplier count, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsInt() != expected && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(expected, count.getAsInt());
+    }
+}
@@ -0,0 +1,199 @@
+package com.penguineering.cleanuri.site.async;
+
+import com.penguineering.cleanuri.site.HttpPageFetcher;
+import com.penguineering.cleanuri.site.PageFetcher;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestHostScheduler {
+    private static final HostScheduler.Limits UNLIMITED = new HostScheduler.Limits(Double.POSITIVE_INFINITY, 1, 100);
+
+    private record Request(String host, long nanoTime) {
+    }
+
+    private HttpServer server;
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private volatile long responseDelayMillis;
+
+    private final PageFetcher fetcher = new HttpPageFetcher();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", exchange -> {
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            requests.add(new Request(host.substring(0, host.lastIndexOf(':')), System.nanoTime()));
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(responseDelayMillis);
+                byte[] body = "<html></html>".getBytes();
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private URI uri(String host, int item) {
+        return URI.create("http://" + host + ":" + server.getAddress().getPort() + "/item/" + item);
+    }
+
+    private CompletableFuture<Integer> fetch(HostScheduler scheduler, URI uri) {
+        return scheduler.schedule(uri, () -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return fetcher.fetch(uri).statusCode();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor));
+    }
+
+    private static void awaitAll(List<CompletableFuture<Integer>> results) throws Exception {
+        for (CompletableFuture<Integer> result : results)
+            assertEquals(200, result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        HostScheduler scheduler = new HostScheduler.Builder()
+                .defaultLimits(new HostScheduler.Limits(20, 2, 10))
+                .build();
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+            results.add(fetch(scheduler, uri("127.0.0.1", i)));
+        awaitAll(results);
+
+        // The burst of 2 starts at once, the other 4 requests follow at intervals of 50 ms
+        assertEquals(6, requests.size());
+        long span = requests.get(5).nanoTime() - requests.get(0).nanoTime();
+        assertTrue(span >= TimeUnit.MILLISECONDS.toNanos(190), "Requests took " + span / 1_000_000 + " ms");
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(0, scheduler.getRunningCount());
+    }
+
+    @Test
+    public void testConcurrencyPerHost() throws Exception {
+        responseDelayMillis = 50;
+        HostScheduler scheduler = new HostScheduler.Builder()
+                .defaultLimits(new HostScheduler.Limits(Double.POSITIVE_INFINITY, 1, 2))
+                .build();
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            results.add(fetch(scheduler, uri("127.0.0.1", i)));
+        assertEquals(2, scheduler.getRunningCount());
+        assertEquals(6, scheduler.getPendingCount("127.0.0.1"));
+        awaitAll(results);
+
+        assertEquals(2, maxActive.get());
+    }
+
+    @Test
+    public void testHostsAreInterleaved() throws Exception {
+        // "localhost" and "127.0.0.1" reach the same server, but are scheduled as different hosts
+        HostScheduler scheduler = new HostScheduler.Builder()
+                .defaultLimits(UNLIMITED)
+                .maxConcurrency(1)
+                .build();
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++)
+            results.add(fetch(scheduler, uri("localhost", i)));
+        for (int i = 0; i < 2; i++)
+            results.add(fetch(scheduler, uri("127.0.0.1", i)));
+        awaitAll(results);
+
+        List<String> order = requests.stream().map(Request::host).toList();
+        assertEquals(List.of("localhost", "localhost", "127.0.0.1", "localhost", "127.0.0.1",
+                "localhost", "localhost", "localhost"), order);
+    }
+
+    @Test
+    public void testSlowHostDoesNotStallOthers() throws Exception {
+        HostScheduler scheduler = new HostScheduler.Builder()
+                .limits("localhost", new HostScheduler.Limits(2, 1, 1))
+                .defaultLimits(UNLIMITED)
+                .maxConcurrency(2)
+                .build();
+
+        List<CompletableFuture<Integer>> throttled = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            throttled.add(fetch(scheduler, uri("localhost", i)));
+        List<CompletableFuture<Integer>> others = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            others.add(fetch(scheduler, uri("127.0.0.1", i)));
+
+        // The other host is served while the throttled one waits for its tokens
+        awaitAll(others);
+        assertFalse(throttled.get(2).isDone());
+        awaitAll(throttled);
+    }
+
+    @Test
+    public void testCancelQueuedTask() throws Exception {
+        HostScheduler scheduler = new HostScheduler.Builder()
+                .defaultLimits(new HostScheduler.Limits(1, 1, 1))
+                .build();
+
+        CompletableFuture<Integer> first = fetch(scheduler, uri("127.0.0.1", 1));
+        CompletableFuture<Integer> second = fetch(scheduler, uri("127.0.0.1", 2));
+        assertEquals(1, scheduler.getPendingCount());
+        second.cancel(true);
+        assertEquals(0, scheduler.getPendingCount());
+
+        assertEquals(200, first.get(10, TimeUnit.SECONDS));
+        Thread.sleep(1200);
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void testFailedTaskReleasesSlot() throws Exception {
+        HostScheduler scheduler = new HostScheduler.Builder()
+                .defaultLimits(new HostScheduler.Limits(Double.POSITIVE_INFINITY, 1, 1))
+                .build();
+
+        CompletableFuture<Integer> failed = scheduler.schedule("example.com", () -> {
+            throw new IllegalStateException("Cannot start");
+        });
+        CompletableFuture<Integer> next = scheduler.schedule("EXAMPLE.com", () -> CompletableFuture.completedFuture(1));
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(1, next.get(10, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getRunningCount());
+    }
+}
@@ -0,0 +1,78 @@
+package com.penguineering.cleanuri.site.async;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSingleFlight {
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private CompletableFuture<String> run(String key, CompletableFuture<String> source) {
+        return flights.run(key, () -> {
+            calls.incrementAndGet();
+            return source;
+        });
+    }
+
+    @Test
+    public void testConcurrentCallsShareResult() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> a = run("a", source);
+        CompletableFuture<String> b = run("a", new CompletableFuture<>());
+        CompletableFuture<String> other = run("b", CompletableFuture.completedFuture("other"));
+
+        assertEquals(2, calls.get());
+        assertEquals(1, flights.getInFlightCount());
+        assertEquals("other", other.get());
+
+        source.complete("result");
+        assertEquals("result", a.get());
+        assertEquals("result", b.get());
+        assertEquals(0, flights.getInFlightCount());
+
+        // A completed call is not reused
+        assertEquals("again", run("a", CompletableFuture.completedFuture("again")).get());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testFailureIsShared() {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> a = run("a", source);
+        CompletableFuture<String> b = run("a", source);
+
+        source.completeExceptionally(new IllegalStateException("Broken page"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, a::get);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertThrows(ExecutionException.class, b::get);
+
+        CompletableFuture<String> thrown = flights.run("c", () -> {
+            throw new IllegalArgumentException("Invalid URI");
+        });
+        assertInstanceOf(IllegalArgumentException.class, assertThrows(ExecutionException.class, thrown::get).getCause());
+    }
+
+    @Test
+    public void testCancellation() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> a = run("a", source);
+        CompletableFuture<String> b = run("a", source);
+
+        // The call keeps running while a caller waits for it
+        a.cancel(true);
+        assertFalse(source.isCancelled());
+
+        b.cancel(true);
+        assertTrue(source.isCancelled());
+        assertEquals(0, flights.getInFlightCount());
+
+        // The next caller starts a new call
+        assertEquals("new", run("a", CompletableFuture.completedFuture("new")).get());
+    }
+}
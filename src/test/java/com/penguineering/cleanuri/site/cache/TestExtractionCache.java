@@ -0,0 +1,192 @@
+package com.penguineering.cleanuri.site.cache;
+
+import com.penguineering.cleanuri.site.ExceptionPassing;
+import com.penguineering.cleanuri.site.ExtractionField;
+import com.penguineering.cleanuri.site.ExtractionResult;
+import com.penguineering.cleanuri.site.Extractor;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestExtractionCache {
+    private static final URI URI_1 = URI.create("https://example.com/item/1");
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger titleCalls = new AtomicInteger();
+    private final AtomicInteger pricingCalls = new AtomicInteger();
+    private final AtomicInteger factoryCalls = new AtomicInteger();
+    private ExtractionCache cache;
+
+    private class CountingExtractor implements Extractor {
+        @Override
+        public Optional<String> extractDocumentTitle() {
+            return Optional.of("Title " + titleCalls.incrementAndGet());
+        }
+
+        @Override
+        public Optional<ProductDescription> extractProductDescription() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Optional<Pricing> extractPricing() {
+            return new Pricing.Builder()
+                    .setUnitPrice(BigDecimal.valueOf(pricingCalls.incrementAndGet()))
+                    .build();
+        }
+
+        @Override
+        public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+            return this;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        cache = new ExtractionCache.Builder()
+                .timeToLive(ExtractionField.TITLE, Duration.ofMinutes(60))
+                .timeToLive(ExtractionField.PRICING, Duration.ofMinutes(5))
+                .staleWhileRevalidate(Duration.ofMinutes(1))
+                .refreshExecutor(Runnable::run)
+                .ticker(clock::get)
+                .build();
+    }
+
+    private Extractor wrap() {
+        return cache.wrap(URI_1, () -> {
+            factoryCalls.incrementAndGet();
+            return Optional.of(new CountingExtractor());
+        });
+    }
+
+    @Test
+    public void testFreshValuesAreCached() {
+        assertEquals(Optional.of("Title 1"), wrap().extractDocumentTitle());
+        assertEquals(Optional.of("Title 1"), wrap().extractDocumentTitle());
+        assertTrue(wrap().extractProductDescription().isEmpty());
+        assertTrue(wrap().extractProductDescription().isEmpty());
+
+        assertEquals(1, titleCalls.get());
+        assertEquals(2, factoryCalls.get());
+    }
+
+    @Test
+    public void testFieldsExpireIndependently() {
+        wrap().extractDocumentTitle();
+        wrap().extractPricing();
+
+        // Beyond the pricing TTL and stale period, but within the title TTL
+        clock.addAndGet(Duration.ofMinutes(10).toNanos());
+
+        assertEquals(Optional.of("Title 1"), wrap().extractDocumentTitle());
+        assertEquals(new BigDecimal(2), wrap().extractPricing().flatMap(Pricing::getUnitPrice).orElseThrow());
+    }
+
+    @Test
+    public void testStaleWhileRevalidate() {
+        wrap().extractPricing();
+
+        // Within the stale period the old value is served and refreshed
+        clock.addAndGet(Duration.ofSeconds(5 * 60 + 30).toNanos());
+        assertEquals(BigDecimal.ONE, wrap().extractPricing().flatMap(Pricing::getUnitPrice).orElseThrow());
+        assertEquals(2, pricingCalls.get());
+
+        // The refreshed value is now fresh
+        assertEquals(new BigDecimal(2), wrap().extractPricing().flatMap(Pricing::getUnitPrice).orElseThrow());
+        assertEquals(2, pricingCalls.get());
+    }
+
+    @Test
+    public void testExtractAllLoadsMissingFieldsOnly() {
+        wrap().extractDocumentTitle();
+
+        ExtractionResult result = wrap().extractAll(EnumSet.of(ExtractionField.TITLE, ExtractionField.PRICING));
+        assertEquals(Optional.of("Title 1"), result.getTitle());
+        assertEquals(Optional.of(BigDecimal.ONE), result.getPricing().flatMap(Pricing::getUnitPrice));
+        assertTrue(result.getProductDescription().isEmpty());
+
+        assertEquals(1, titleCalls.get());
+        assertEquals(1, pricingCalls.get());
+
+        // Everything is cached now
+        wrap().extractAll(EnumSet.of(ExtractionField.TITLE, ExtractionField.PRICING));
+        assertEquals(1, pricingCalls.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        wrap().extractDocumentTitle();
+        cache.invalidate(URI_1);
+
+        assertEquals(Optional.of("Title 2"), wrap().extractDocumentTitle());
+    }
+
+    @Test
+    public void testMissingExtractor() {
+        Extractor extractor = cache.wrap(URI_1, Optional::empty);
+
+        assertTrue(extractor.extractDocumentTitle().isEmpty());
+        assertTrue(extractor.extractPricing().isEmpty());
+    }
+
+    @Test
+    public void testTimedOutFieldsAreNotCached() {
+        Extractor partial = new CountingExtractor() {
+            @Override
+            public ExtractionResult extractAll(Set<ExtractionField> fields) {
+                return new ExtractionResult.Builder()
+                        .setTitle(extractDocumentTitle().orElseThrow())
+                        .addTimedOutField(ExtractionField.PRICING)
+                        .build();
+            }
+        };
+        ExtractionResult result = cache.wrap(URI_1, () -> Optional.of(partial))
+                .extractAll(EnumSet.of(ExtractionField.TITLE, ExtractionField.PRICING));
+
+        assertTrue(result.isPartial());
+        assertEquals(Optional.of("Title 1"), result.getTitle());
+        // The title is cached, the pricing is extracted again
+        assertEquals(Optional.of("Title 1"), wrap().extractDocumentTitle());
+        assertTrue(wrap().extractPricing().isPresent());
+        assertEquals(1, pricingCalls.get());
+    }
+
+    @Test
+    public void testExceptionHandlerDoesNotCreateExtractor() {
+        wrap().extractDocumentTitle();
+
+        Extractor extractor = wrap();
+        extractor.withExceptionHandler((level, throwable) -> {});
+        assertEquals(Optional.of("Title 1"), extractor.extractDocumentTitle());
+        assertEquals(1, factoryCalls.get());
+    }
+
+    @Test
+    public void testDefaultCacheIsNotPreallocated() {
+        // The default weight is a byte budget, which must not size any structure up front
+        List<ExtractionCache> caches = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ExtractionCache defaultCache = new ExtractionCache.Builder().build();
+            Extractor extractor = defaultCache.wrap(URI_1, () -> Optional.of(new CountingExtractor()));
+            assertTrue(extractor.extractDocumentTitle().isPresent());
+            caches.add(defaultCache);
+        }
+        assertEquals(1000, caches.size());
+    }
+}
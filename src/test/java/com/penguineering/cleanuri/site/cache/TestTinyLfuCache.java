@@ -0,0 +1,131 @@
+package com.penguineering.cleanuri.site.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTinyLfuCache {
+    @Test
+    public void testGetLoadsOnce() {
+        Cache<String, Integer> cache = new TinyLfuCache.Builder<String, Integer>().maximumSize(10).build();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(3, cache.get("abc", key -> { loads.incrementAndGet(); return key.length(); }));
+        assertEquals(3, cache.get("abc", key -> { loads.incrementAndGet(); return key.length(); }));
+
+        assertEquals(1, loads.get());
+        assertEquals(new CacheStats(1, 1, 0), cache.stats());
+    }
+
+    @Test
+    public void testNegativeResults() {
+        Cache<String, Optional<String>> cache = new TinyLfuCache.Builder<String, Optional<String>>().maximumSize(10).build();
+        cache.put("missing", Optional.empty());
+
+        assertEquals(Optional.of(Optional.empty()), cache.getIfPresent("missing"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        Cache<String, Integer> cache = new TinyLfuCache.Builder<String, Integer>().maximumSize(10).build();
+        cache.put("a", 1);
+        cache.put("b", 2);
+
+        cache.invalidate("a");
+        assertTrue(cache.getIfPresent("a").isEmpty());
+        assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        Cache<Integer, Integer> cache = new TinyLfuCache.Builder<Integer, Integer>().maximumSize(100).build();
+        for (int i = 0; i < 10_000; i++)
+            cache.put(i, i);
+
+        assertTrue(cache.size() <= 100);
+        assertTrue(cache.stats().evictionCount() >= 9_900);
+    }
+
+    @Test
+    public void testWeightIsBounded() {
+        Cache<Integer, String> cache = new TinyLfuCache.Builder<Integer, String>()
+                .maximumWeight(1_000, (key, value) -> value.length())
+                .build();
+        for (int i = 0; i < 1_000; i++)
+            cache.put(i, "x".repeat(i % 50 + 1));
+
+        // Entries weigh 25 on average, so far less than 1000 entries fit
+        assertTrue(cache.size() < 200);
+    }
+
+    @Test
+    public void testLargeWeightBudgetIsNotPreallocated() {
+        // The weight is a byte budget here, sizing any structure from it would exhaust the heap
+        for (int i = 0; i < 100; i++) {
+            Cache<Integer, String> cache = new TinyLfuCache.Builder<Integer, String>()
+                    .maximumWeight(1L << 40, (key, value) -> value.length())
+                    .concurrencyLevel(16)
+                    .build();
+            cache.put(i, "value");
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveScan() {
+        Cache<Integer, Integer> cache = new TinyLfuCache.Builder<Integer, Integer>()
+                .maximumSize(100)
+                .concurrencyLevel(1)
+                .build();
+
+        // Make a set of hot keys popular
+        for (int round = 0; round < 10; round++)
+            for (int i = 0; i < 50; i++)
+                cache.get(i, key -> key);
+
+        // A scan of one-off keys must not flush the hot keys, which are still in use,
+        // although an LRU cache would have dropped them between two accesses
+        for (int i = 0; i < 10_000; i++) {
+            cache.get(1_000 + i, key -> key);
+            if (i % 4 == 0)
+                cache.get(i / 4 % 50, key -> key);
+        }
+
+        long retained = 0;
+        for (int i = 0; i < 50; i++)
+            if (cache.getIfPresent(i).isPresent())
+                retained++;
+        assertTrue(retained >= 45, "Only " + retained + " hot entries retained");
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        Cache<Integer, Integer> cache = new TinyLfuCache.Builder<Integer, Integer>().maximumSize(1_000).build();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        int key = (i * 31 + offset) % 5_000;
+                        assertEquals(key * 2, cache.get(key, k -> k * 2));
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        assertTrue(cache.size() <= 1_000);
+        assertEquals(160_000, cache.stats().requestCount());
+    }
+}
@@ -0,0 +1,87 @@
+package com.penguineering.cleanuri.site.canon;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCanonicalUri {
+    @Test
+    public void testXxHash64() {
+        assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte[0], 0));
+        assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hash("a".getBytes(StandardCharsets.US_ASCII), 0));
+        assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc".getBytes(StandardCharsets.US_ASCII), 0));
+        assertEquals(0xFBCEA83C8A378BF1L, XxHash64.hash(
+                "Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII), 0));
+    }
+
+    @Test
+    public void testLatin1() {
+        String s = "https://www.example.com/café?q=1";
+        CanonicalUri uri = CanonicalUri.of(URI.create(s));
+
+        assertTrue(uri.isLatin1());
+        assertEquals(s, uri.toString());
+        assertEquals(s.length(), uri.length());
+        assertEquals('é', uri.charAt(s.indexOf('é')));
+        assertEquals("www.example.com", uri.subSequence(8, 23));
+        assertEquals(URI.create(s), uri.toUri());
+    }
+
+    @Test
+    public void testUtf16() {
+        String s = "https://example.com/日本/😀/\ud800";
+        CanonicalUri uri = CanonicalUri.of(s);
+
+        assertFalse(uri.isLatin1());
+        assertEquals(s, uri.toString());
+        assertEquals(s.length(), uri.length());
+        assertEquals('日', uri.charAt(20));
+        assertThrows(IndexOutOfBoundsException.class, () -> uri.charAt(s.length()));
+    }
+
+    @Test
+    public void testEquality() {
+        CanonicalUri a = CanonicalUri.of("https://example.com/a");
+        CanonicalUri b = CanonicalUri.of(new StringBuilder("https://example.com/a"));
+        CanonicalUri c = CanonicalUri.of("https://example.com/b");
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.getFingerprint(), b.getFingerprint());
+        assertNotEquals(a, c);
+        assertNotEquals(a.getFingerprint(), c.getFingerprint());
+        assertNotEquals(a, "https://example.com/a");
+        assertSame(a, CanonicalUri.of(a));
+
+        // The same bytes in another encoding are a different URI
+        assertNotEquals(CanonicalUri.of("ĀA").getFingerprint(), CanonicalUri.of("\u0001\u0000\u0000A").getFingerprint());
+    }
+
+    @Test
+    public void testOrderingMatchesString() {
+        Random random = new Random(42);
+        char[] alphabet = {'a', 'b', '/', 'é', 'ÿ', 'Ā', '日'};
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder s = new StringBuilder();
+            for (int n = random.nextInt(6); n > 0; n--)
+                s.append(alphabet[random.nextInt(alphabet.length)]);
+            strings.add(s.toString());
+        }
+
+        List<String> expected = strings.stream().sorted().toList();
+        List<String> actual = strings.stream()
+                .map(CanonicalUri::of)
+                .sorted(Comparator.naturalOrder())
+                .map(CanonicalUri::toString)
+                .toList();
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,90 @@
+package com.penguineering.cleanuri.site.canon;
+
+import com.penguineering.cleanuri.site.Canonizer;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCanonizationPipeline {
+    @Test
+    public void testStagesInOrder() {
+        CanonizationPipeline pipeline = new CanonizationPipeline.Builder()
+                .stage(UriNormalizer.defaults())
+                .stage(uri -> uri.toString().replace("/p/", "/product/"))
+                .stage(TrackingParameterFilter.defaults())
+                .build();
+
+        assertEquals(Optional.of(URI.create("https://shop.example.com/product/42?id=1")),
+                pipeline.canonize(URI.create("HTTPS://Shop.Example.com:443/p/42?id=1&utm_source=x")));
+    }
+
+    @Test
+    public void testUnchangedUriIsSameInstance() {
+        CanonizationPipeline pipeline = CanonizationPipeline.of(
+                List.of(UriNormalizer.defaults(), TrackingParameterFilter.defaults()));
+        URI uri = URI.create("https://www.example.com/item/42?variant=red");
+
+        assertSame(uri, pipeline.canonize(uri).orElseThrow());
+        assertSame(uri, CanonizationPipeline.empty().canonize(uri).orElseThrow());
+    }
+
+    @Test
+    public void testRequirementShortCircuits() {
+        AtomicInteger calls = new AtomicInteger();
+        CanonizationPipeline pipeline = new CanonizationPipeline.Builder()
+                .stage(UriNormalizer.defaults())
+                .require(uri -> uri.toString().startsWith("https://www.example.com/item/"))
+                .stage(uri -> {
+                    calls.incrementAndGet();
+                    return uri;
+                })
+                .build();
+
+        assertTrue(pipeline.canonize(URI.create("https://WWW.example.com/item/42")).isPresent());
+        assertEquals(1, calls.get());
+
+        assertTrue(pipeline.canonize(URI.create("https://www.example.com/cart")).isEmpty());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testFusesStages() {
+        TrackingParameterFilter ref = new TrackingParameterFilter.Builder().exact("ref").build();
+        CanonizationPipeline shared = CanonizationPipeline.of(
+                List.of(UriNormalizer.defaults(), TrackingParameterFilter.defaults()));
+        CanonizationPipeline pipeline = new CanonizationPipeline.Builder()
+                .pipeline(shared)
+                .stage(ref)
+                .pipeline(shared)
+                .build();
+
+        // The filters are merged and the normalizer is applied once
+        assertEquals(2, pipeline.getPassCount());
+        assertEquals(Optional.of("http://example.com/a?id=1#top"),
+                pipeline.apply("HTTP://Example.com/a?id=1&ref=x&utm_medium=y#top").map(CharSequence::toString));
+
+        // Another stage in between prevents fusion
+        CanonizationPipeline separated = new CanonizationPipeline.Builder()
+                .pipeline(shared)
+                .stage(uri -> uri)
+                .pipeline(shared)
+                .build();
+        assertEquals(5, separated.getPassCount());
+    }
+
+    @Test
+    public void testNewCanonizer() {
+        CanonizationPipeline pipeline = new CanonizationPipeline.Builder()
+                .stage(uri -> uri + " invalid")
+                .build();
+        Canonizer canonizer = pipeline.newCanonizer(URI.create("https://example.com/"));
+
+        assertSame(canonizer, canonizer.withExceptionHandler((level, throwable) -> {}));
+        assertThrows(IllegalArgumentException.class, canonizer::canonize);
+    }
+}
@@ -0,0 +1,65 @@
+package com.penguineering.cleanuri.site.canon;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTrackingParameterFilter {
+    private final TrackingParameterFilter filter = TrackingParameterFilter.defaults();
+
+    @Test
+    public void testUnchangedUriIsSameInstance() {
+        String uri = "https://example.com/item?id=1&variant=red#top";
+        assertSame(uri, filter.apply(uri));
+
+        String noQuery = "https://example.com/item";
+        assertSame(noQuery, filter.apply(noQuery));
+
+        // Only parameters in the query are filtered, not in the fragment
+        String fragment = "https://example.com/item#?utm_source=x";
+        assertSame(fragment, filter.apply(fragment));
+    }
+
+    @Test
+    public void testRemoveParameters() {
+        assertEquals("https://example.com/item?id=1",
+                filter.apply("https://example.com/item?id=1&utm_source=news&utm_medium=mail").toString());
+        assertEquals("https://example.com/item?id=1&b=2",
+                filter.apply("https://example.com/item?fbclid=abc&id=1&gclid=x&b=2").toString());
+        assertEquals("https://example.com/item#reviews",
+                filter.apply("https://example.com/item?UTM_Source=x&fbclid#reviews").toString());
+    }
+
+    @Test
+    public void testSimilarNamesAreKept() {
+        String uri = "https://example.com/?utm=1&fbclidx=2&xfbclid=3&gcl=4";
+        assertSame(uri, filter.apply(uri));
+    }
+
+    @Test
+    public void testCustomFilter() {
+        TrackingParameterFilter.Builder builder = new TrackingParameterFilter.Builder()
+                .exact("ref")
+                .prefix("sess");
+        TrackingParameterFilter custom = builder.build();
+        builder.exact("id");
+
+        assertTrue(custom.isTrackingParameter("ref"));
+        assertTrue(custom.isTrackingParameter("session_id"));
+        assertFalse(custom.isTrackingParameter("id"));
+        assertFalse(custom.isTrackingParameter("utm_source"));
+        assertEquals("https://example.com/?id=1",
+                custom.apply("https://example.com/?ref=a&id=1&sessionid=2").toString());
+
+        TrackingParameterFilter extended = new TrackingParameterFilter.Builder().withDefaults().exact("ref").build();
+        assertTrue(extended.isTrackingParameter("utm_campaign"));
+        assertTrue(extended.isTrackingParameter("ref"));
+    }
+
+    @Test
+    public void testInvalidNames() {
+        assertThrows(IllegalArgumentException.class, () -> new TrackingParameterFilter.Builder().exact(""));
+        assertThrows(IllegalArgumentException.class, () -> new TrackingParameterFilter.Builder().prefix("a=b"));
+        assertThrows(IllegalArgumentException.class, () -> new TrackingParameterFilter.Builder().exact("ä"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.penguineering.cleanuri.site.canon;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestUriNormalizer {
+    private final UriNormalizer normalizer = UriNormalizer.defaults();
+
+    @ParameterizedTest
+    @CsvSource({
+            "HTTP://Example.COM/Path, http://example.com/Path",
+            "http://example.com:80/a, http://example.com/a",
+            "https://example.com:443/a, https://example.com/a",
+            "https://example.com:/a, https://example.com/a",
+            "https://example.com:8443/a, https://example.com:8443/a",
+            "http://example.com, http://example.com/",
+            "http://example.com?q=1, http://example.com/?q=1",
+            "http://example.com/%7euser/%2Fa%2fb, http://example.com/~user/%2Fa%2Fb",
+            "http://example.com/a?q=%3f%41#%5b, http://example.com/a?q=%3FA#%5B",
+            "http://Us%65R@EXAMPLE.com/, http://UseR@example.com/",
+            "http://[2001:DB8::1]:80/, http://[2001:db8::1]/",
+            "http://[2001:db8::1]:8080/, http://[2001:db8::1]:8080/",
+            "http://example.com/a/./b/../c, http://example.com/a/c",
+            "http://example.com/a/b/.., http://example.com/a/",
+            "http://example.com/a/b/., http://example.com/a/b/",
+            "http://example.com/../../a, http://example.com/a",
+            "http://example.com/.., http://example.com/",
+            "http://example.com/a/%2E%2E/b, http://example.com/b",
+            "http://example.com/a/..b/.c, http://example.com/a/..b/.c",
+            "mailto:John.Doe@Example.com, mailto:John.Doe@Example.com",
+            "urn:ISBN:%7e, urn:ISBN:~",
+    })
+    public void testNormalize(String input, String expected) {
+        assertEquals(expected, normalizer.apply(input).toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "https://www.example.com/item/42?variant=red#top",
+            "http://example.com/",
+            "https://example.com:8443/a/b/?q=%3F",
+            "not a uri",
+            "/relative/path"})
+    public void testNormalizedUriIsSameInstance(String uri) {
+        assertSame(uri, normalizer.apply(uri));
+    }
+
+    @Test
+    public void testRemoveTrailingSlash() {
+        UriNormalizer slashes = new UriNormalizer.Builder().removeTrailingSlash(true).build();
+
+        assertEquals("https://example.com/a/b", slashes.apply("https://example.com/a/b/").toString());
+        assertEquals("https://example.com/a?x=/", slashes.apply("https://example.com/a/?x=/").toString());
+        assertEquals("https://example.com/", slashes.apply("https://example.com/").toString());
+    }
+
+    @Test
+    public void testCustomDefaultPort() {
+        UriNormalizer normalizer = new UriNormalizer.Builder().defaultPort("gopher", 70).build();
+        assertEquals("gopher://example.com/", normalizer.apply("gopher://example.com:70/").toString());
+    }
+
+    @Test
+    public void testAgreesWithJavaNetUri() {
+        String[] uris = {
+                "http://example.com/a/b/c/./../../g",
+                "http://example.com/mid/content=5/../6",
+                "https://example.com/a/./b/./c/../d?x=1#y"};
+        for (String uri : uris)
+            assertEquals(URI.create(uri).normalize().toString(), normalizer.apply(uri).toString());
+    }
+}
@@ -262,4 +262,36 @@ public class TestPricing {
         );
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testEqualPricesAreNotSane() {
+        Optional<Pricing> optionalPricing = new Pricing.Builder()
+                .addDiscount(5, new BigDecimal("9.00"))
+                .addDiscount(10, new BigDecimal("9.00"))
+                .build();
+
+        assertTrue(optionalPricing.isPresent());
+        assertFalse(optionalPricing.get().areDiscountsSane());
+    }
+
+    @Test
+    public void testTierLookupMatchesLinearScan() {
+        Pricing.Builder builder = new Pricing.Builder();
+        for (int quantity = 3; quantity <= 3000; quantity += 7)
+            builder.addDiscount(quantity, BigDecimal.valueOf(10_000 - quantity, 2));
+        Pricing pricing = builder.build().orElseThrow();
+        List<Pricing.Discount> discounts = pricing.streamDiscounts().toList();
+
+        assertTrue(pricing.areDiscountsSane());
+        for (int quantity = 1; quantity <= 3100; quantity++) {
+            int q = quantity;
+            Optional<BigDecimal> expected = discounts.stream()
+                    .filter(discount -> discount.quantity() <= q)
+                    .reduce((first, second) -> second)
+                    .map(Pricing.Discount::unitPrice);
+
+            assertEquals(expected, pricing.findDiscountedUnitPrice(quantity));
+            assertEquals(expected, pricing.findDiscountedUnitPrice(Integer.valueOf(quantity)));
+            assertEquals(expected.map(price -> price.multiply(BigDecimal.valueOf(q))), pricing.calculateTotalPrice(quantity));
+        }
+    }
+}
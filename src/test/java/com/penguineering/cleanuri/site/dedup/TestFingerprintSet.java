@@ -0,0 +1,153 @@
+package com.penguineering.cleanuri.site.dedup;
+
+import com.penguineering.cleanuri.site.canon.CanonicalUri;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFingerprintSet {
+    @TempDir
+    Path tmp;
+
+    @Test
+    public void testAddAndContains() {
+        try (FingerprintSet set = new FingerprintSet.Builder().expectedSize(1000).build()) {
+            CanonicalUri uri = CanonicalUri.of("https://example.com/item/42");
+
+            assertFalse(set.contains(uri));
+            assertTrue(set.add(uri));
+            assertFalse(set.add(CanonicalUri.of("https://example.com/item/42")));
+            assertTrue(set.contains(uri));
+            assertFalse(set.contains(CanonicalUri.of("https://example.com/item/43")));
+
+            // The fingerprint of empty slots is stored as another value
+            assertFalse(set.contains(0));
+            assertTrue(set.add(0));
+            assertFalse(set.add(0));
+            assertTrue(set.contains(0));
+
+            assertEquals(2, set.size());
+        }
+    }
+
+    @Test
+    public void testWithoutBloomFilter() {
+        try (FingerprintSet set = new FingerprintSet.Builder().expectedSize(1000).bloomFilterBitsPerEntry(0).build()) {
+            for (long i = 1; i <= 1000; i++)
+                assertTrue(set.add(i));
+            for (long i = 1; i <= 2000; i++)
+                assertEquals(i <= 1000, set.contains(i));
+        }
+    }
+
+    @Test
+    public void testFull() {
+        try (FingerprintSet set = new FingerprintSet.Builder().expectedSize(10).build()) {
+            for (long i = 0; i < set.capacity(); i++)
+                set.add(i);
+
+            assertThrows(IllegalStateException.class, () -> set.add(-1));
+            // Known fingerprints are still found
+            assertFalse(set.add(0));
+        }
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        AtomicLong added = new AtomicLong();
+        try (FingerprintSet set = new FingerprintSet.Builder().expectedSize(100_000).build();
+             ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            Future<?>[] futures = new Future<?>[4];
+            for (int t = 0; t < futures.length; t++) {
+                // Every thread adds the same fingerprints in a different order
+                long offset = t * 10_000L;
+                futures[t] = executor.submit(() -> {
+                    for (long i = 0; i < 50_000; i++)
+                        if (set.add((i + offset) % 50_000))
+                            added.incrementAndGet();
+                });
+            }
+            for (Future<?> future : futures)
+                future.get();
+
+            assertEquals(50_000, added.get());
+            assertEquals(50_000, set.size());
+        }
+    }
+
+    @Test
+    public void testPersistence() {
+        Path file = tmp.resolve("seen.fps");
+        try (FingerprintSet set = new FingerprintSet.Builder().expectedSize(1000).file(file).build()) {
+            for (long i = 0; i < 500; i++)
+                set.add(i * 31);
+            set.flush();
+
+            // The file is locked while the set is open
+            assertThrows(UncheckedIOException.class, () -> new FingerprintSet.Builder().file(file).build());
+        }
+
+        // The sizes are taken from the file
+        try (FingerprintSet set = new FingerprintSet.Builder().expectedSize(1_000_000).file(file).build()) {
+            assertEquals(500, set.size());
+            assertTrue(set.capacity() < 2000);
+            for (long i = 0; i < 1000; i++)
+                assertEquals(i < 500, set.contains(i * 31));
+        }
+    }
+
+    @Test
+    public void testRecovery() throws Exception {
+        Path file = tmp.resolve("seen.fps");
+        try (FingerprintSet set = new FingerprintSet.Builder().expectedSize(1000).file(file).build()) {
+            for (long i = 0; i < 500; i++)
+                set.add(i);
+        }
+
+        // Simulate a crash: the file is still marked as in use, and the count and Bloom filter are lost
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(48).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.putInt(12, 1).putLong(40, 0).flip();
+            channel.write(header, 0);
+            long bloomStart = 4096 + header.getLong(16) * 8;
+            channel.write(ByteBuffer.allocate((int) (channel.size() - bloomStart)), bloomStart);
+        }
+
+        try (FingerprintSet set = new FingerprintSet.Builder().file(file).build()) {
+            assertEquals(500, set.size());
+            for (long i = 0; i < 500; i++)
+                assertTrue(set.contains(i));
+        }
+    }
+
+    @Test
+    public void testInvalidFile() throws Exception {
+        Path file = Files.writeString(tmp.resolve("other.fps"), "not a fingerprint set");
+        assertThrows(UncheckedIOException.class, () -> new FingerprintSet.Builder().file(file).build());
+        // The foreign file is left unchanged
+        assertEquals("not a fingerprint set", Files.readString(file));
+    }
+
+    @Test
+    public void testClosed() {
+        FingerprintSet set = new FingerprintSet.Builder().build();
+        set.close();
+
+        assertThrows(IllegalStateException.class, () -> set.add(1));
+        assertThrows(IllegalStateException.class, () -> set.contains(1));
+    }
+}
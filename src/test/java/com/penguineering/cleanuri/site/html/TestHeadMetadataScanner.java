@@ -0,0 +1,132 @@
+package com.penguineering.cleanuri.site.html;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestHeadMetadataScanner {
+    private static final String DOCUMENT = """
+            <!DOCTYPE html>
+            <html lang="en">
+            <head>
+              <meta charset="utf-8">
+              <!-- <title>Commented out</title> -->
+              <title>
+                Fish &amp; Chips   &#8211; Menu
+              </title>
+              <META NAME="Description" CONTENT='Crispy &quot;fish&quot;'>
+              <meta property="og:image" content="https://example.com/fish.jpg" />
+              <link rel="canonical" href="https://example.com/menu">
+              <link rel="alternate icon" href="/favicon.ico">
+              <script>var s = "</head><title>Not a title</title>";</script>
+            </head>
+            <body>
+              <meta name="late" content="ignored">
+            </body>
+            </html>
+            """;
+
+    private static HeadMetadata scan(String document) throws IOException {
+        HeadMetadata metadata = new HeadMetadata();
+        new HeadMetadataScanner().scan(new StringReader(document), metadata);
+        return metadata;
+    }
+
+    @Test
+    public void testScan() throws IOException {
+        HeadMetadata metadata = scan(DOCUMENT);
+
+        assertEquals(Optional.of("Fish & Chips – Menu"), metadata.getTitle());
+        assertEquals(Optional.of("Crispy \"fish\""), metadata.getMeta("description"));
+        assertEquals(Optional.of("https://example.com/fish.jpg"), metadata.getMeta("og:image"));
+        assertEquals(Optional.of("utf-8"), metadata.getMeta("charset"));
+        assertEquals(Optional.of("https://example.com/menu"), metadata.getCanonical());
+        assertEquals(Optional.of("/favicon.ico"), metadata.getLink("icon"));
+        assertEquals(Optional.of("/favicon.ico"), metadata.getLink("alternate"));
+        assertTrue(metadata.getMeta("late").isEmpty());
+    }
+
+    @Test
+    public void testBareAmpersandBeforeReference() throws IOException {
+        HeadMetadata metadata = scan("<head><title>Fish & Chips and more &amp; fine</title>"
+                + "<meta name=\"description\" content=\"A & B; C &lt; D\"></head>");
+
+        assertEquals(Optional.of("Fish & Chips and more & fine"), metadata.getTitle());
+        assertEquals(Optional.of("A & B; C < D"), metadata.getMeta("description"));
+    }
+
+    @Test
+    public void testStopsAfterHead() throws IOException {
+        CountingReader reader = new CountingReader(new StringReader(
+                "<html><head><title>T</title></head>" + "<p>body</p>".repeat(100_000)));
+        new HeadMetadataScanner().scan(reader, new HeadMetadata());
+
+        assertTrue(reader.count < 10_000, "Read " + reader.count + " characters");
+    }
+
+    @Test
+    public void testStopsAtBodyContentWithoutHead() throws IOException {
+        List<String> events = new ArrayList<>();
+        new HeadMetadataScanner().scan(new StringReader("<title>T</title><div><link rel=canonical href=/x></div>"),
+                new HeadMetadataListener() {
+                    @Override
+                    public void title(String title) {
+                        events.add("title:" + title);
+                    }
+
+                    @Override
+                    public void link(String rel, String href) {
+                        events.add("link:" + rel);
+                    }
+                });
+
+        assertEquals(List.of("title:T"), events);
+    }
+
+    @Test
+    public void testLimit() throws IOException {
+        HeadMetadata metadata = new HeadMetadata();
+        new HeadMetadataScanner(40).scan(new StringReader(
+                "<head>" + " ".repeat(100) + "<title>Too late</title></head>"), metadata);
+
+        assertTrue(metadata.getTitle().isEmpty());
+    }
+
+    @Test
+    public void testUnquotedAndMalformedMarkup() throws IOException {
+        HeadMetadata metadata = scan("<head><meta name=keywords content=a,b><title>A < B</title><link rel=canonical href=/c");
+
+        assertEquals(Optional.of("a,b"), metadata.getMeta("keywords"));
+        assertEquals(Optional.of("A < B"), metadata.getTitle());
+        assertEquals(Optional.of("/c"), metadata.getCanonical());
+    }
+
+    private static class CountingReader extends Reader {
+        private final Reader delegate;
+        private long count;
+
+        CountingReader(Reader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int n = delegate.read(buffer, offset, length);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
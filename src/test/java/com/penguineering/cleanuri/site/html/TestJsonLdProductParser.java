@@ -0,0 +1,114 @@
+package com.penguineering.cleanuri.site.html;
+
+import com.penguineering.cleanuri.site.ExtractionResult;
+import com.penguineering.cleanuri.site.PageContext;
+import com.penguineering.cleanuri.site.PageFetcher;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJsonLdProductParser {
+    private static final String PRODUCT = """
+            {
+              "@context": "https://schema.org/",
+              "@type": "Product",
+              "name": "Resistor 10k",
+              "sku": "R-10K",
+              "review": {"@type": "Review", "author": {"name": "Someone"}, "reviewBody": "Great"},
+              "image": [{"@type": "ImageObject", "url": "https://example.com/r10k.jpg"}],
+              "offers": {
+                "@type": "Offer",
+                "price": "0.10",
+                "priceCurrency": "EUR",
+                "priceSpecification": [
+                  {"@type": "UnitPriceSpecification", "price": 0.10},
+                  {"@type": "UnitPriceSpecification", "price": "0.08",
+                   "eligibleQuantity": {"@type": "QuantitativeValue", "minValue": 100}},
+                  {"@type": "UnitPriceSpecification", "price": 0.05,
+                   "eligibleQuantity": {"@type": "QuantitativeValue", "minValue": 1000}}
+                ]
+              }
+            }
+            """;
+
+    private final JsonLdProductParser parser = new JsonLdProductParser();
+
+    @Test
+    public void testProduct() throws IOException {
+        ExtractionResult result = parser.parse(PRODUCT);
+
+        ProductDescription description = result.getProductDescription().orElseThrow();
+        assertEquals(Optional.of("R-10K"), description.getId());
+        assertEquals(Optional.of("Resistor 10k"), description.getName());
+        assertEquals(Optional.of(URI.create("https://example.com/r10k.jpg")), description.getImage());
+
+        Pricing pricing = result.getPricing().orElseThrow();
+        assertEquals(Optional.of(new BigDecimal("0.10")), pricing.getUnitPrice());
+        assertEquals(Optional.of(new BigDecimal("0.08")), pricing.findDiscountedUnitPrice(500));
+        assertEquals(Optional.of(new BigDecimal("0.05")), pricing.findDiscountedUnitPrice(1000));
+    }
+
+    @Test
+    public void testProductInGraph() throws IOException {
+        String json = """
+                {"@context": "https://schema.org", "@graph": [
+                  {"@type": "BreadcrumbList", "name": "Shop"},
+                  {"@type": ["schema:Product"], "gtin13": "4006381333931", "image": "https://example.com/a.png",
+                   "offers": {"@type": "AggregateOffer", "lowPrice": 1.0, "offers": [
+                     {"@type": "Offer", "price": 2.50},
+                     {"@type": "Offer", "price": 2.00, "eligibleQuantity": {"value": 10}}
+                   ]}}
+                ]}
+                """;
+
+        ExtractionResult result = parser.parse(json);
+
+        assertEquals(Optional.of("4006381333931"), result.getProductDescription().flatMap(ProductDescription::getId));
+        assertEquals(Optional.of(URI.create("https://example.com/a.png")), result.getProductDescription().flatMap(ProductDescription::getImage));
+        assertEquals(Optional.of(new BigDecimal("2.50")), result.getPricing().flatMap(Pricing::getUnitPrice));
+        assertEquals(Optional.of(new BigDecimal("2.00")), result.getPricing().flatMap(p -> p.findDiscountedUnitPrice(10)));
+    }
+
+    @Test
+    public void testNoProduct() throws IOException {
+        ExtractionResult result = parser.parse("{\"@type\": \"Organization\", \"name\": \"Shop\"}");
+
+        assertTrue(result.getProductDescription().isEmpty());
+        assertTrue(result.getPricing().isEmpty());
+    }
+
+    @Test
+    public void testMalformedJson() {
+        assertThrows(IOException.class, () -> parser.parse("{\"@type\": \"Product\", "));
+    }
+
+    @Test
+    public void testExtractor() {
+        String html = "<html><head><title>Resistors</title></head><body>"
+                + "<script type=\"application/ld+json\">{ broken </script>"
+                + "<script type=\"application/ld+json\">" + PRODUCT + "</script>"
+                + "</body></html>";
+        PageContext page = new PageContext(URI.create("https://example.com/r10k"),
+                new PageFetcher.FetchedPage(200, Map.of(), html.getBytes(StandardCharsets.UTF_8)));
+        AtomicReference<Throwable> reported = new AtomicReference<>();
+
+        JsonLdExtractor extractor = new JsonLdExtractor(page);
+        extractor.withExceptionHandler((level, throwable) -> reported.set(throwable));
+        ExtractionResult result = extractor.extractAll();
+
+        assertEquals(Optional.of("Resistors"), result.getTitle());
+        assertEquals(Optional.of("R-10K"), result.getProductDescription().flatMap(ProductDescription::getId));
+        assertEquals(3, result.getPricing().map(p -> p.streamDiscounts().count() + 1).orElse(0L));
+        assertInstanceOf(IOException.class, reported.get());
+    }
+}
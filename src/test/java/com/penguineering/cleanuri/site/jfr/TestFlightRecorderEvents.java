@@ -0,0 +1,82 @@
+package com.penguineering.cleanuri.site.jfr;
+
+import com.penguineering.cleanuri.site.*;
+import com.penguineering.cleanuri.site.metrics.SiteMetricsRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFlightRecorderEvents {
+    private static class TestSite extends AbstractSiteBase {
+        public TestSite() {
+            super(new SiteDescriptor.Builder("Test Site").hosts("example.com").build());
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            return true;
+        }
+
+        @Override
+        public Optional<Canonizer> newCanonizer(URI uri) {
+            return Optional.of(new Canonizer() {
+                @Override
+                public Optional<URI> canonize() {
+                    return Optional.of(URI.create("https://example.com" + uri.getPath()));
+                }
+
+                @Override
+                public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                    return this;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testEventsAreRecorded(@TempDir Path dir) throws IOException {
+        SiteRegistry registry = new SiteRegistry(new SiteMetricsRegistry().instrumentAll(List.of(new TestSite())));
+        CanonizationService service = new CanonizationService.Builder(registry).build();
+
+        Path file = dir.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(SiteResolutionEvent.class).withoutThreshold();
+            recording.enable(CanonizationEvent.class).withoutThreshold();
+            recording.start();
+            service.canonize(URI.create("https://example.com/item/42?ref=abc"));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+        RecordedEvent resolution = find(events, "com.penguineering.cleanuri.site.SiteResolution");
+        assertEquals("example.com", resolution.getString("host"));
+        assertEquals("Test Site", resolution.getString("siteLabel"));
+        assertEquals(1, resolution.getInt("candidates"));
+
+        RecordedEvent canonization = find(events, "com.penguineering.cleanuri.site.Canonization");
+        assertEquals("example.com", canonization.getString("host"));
+        assertEquals("Test Site", canonization.getString("siteLabel"));
+        assertTrue(canonization.getBoolean("canonized"));
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(e -> e.getEventType().getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No event " + name));
+    }
+}
@@ -0,0 +1,45 @@
+package com.penguineering.cleanuri.site.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLatencyHistogram {
+    @Test
+    public void testBucketBoundsContainValue() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 33, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.bucketUpperBound(index) >= value, "Upper bound below " + value);
+            if (index > 0)
+                assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value, "Previous bound above " + value);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMean());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(i * 1000L);
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_500, histogram.getMean(), 1e-6);
+        assertEquals(500_000, histogram.getValueAtPercentile(50), 500_000 * 0.07);
+        assertEquals(990_000, histogram.getValueAtPercentile(99), 990_000 * 0.07);
+        assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testInvalidPercentile() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().getValueAtPercentile(101));
+    }
+}
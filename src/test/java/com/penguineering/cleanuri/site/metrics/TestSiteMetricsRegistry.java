@@ -0,0 +1,169 @@
+package com.penguineering.cleanuri.site.metrics;
+
+import com.penguineering.cleanuri.site.*;
+import com.penguineering.cleanuri.site.cache.CacheStats;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSiteMetricsRegistry {
+    private static class TestSite extends AbstractSiteBase {
+        public TestSite() {
+            super(new SiteDescriptor.Builder("Test Site").hosts("example.com").build());
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            return "example.com".equals(uri.getHost());
+        }
+
+        @Override
+        public Optional<Canonizer> newCanonizer(URI uri) {
+            return Optional.of(new Canonizer() {
+                private BiConsumer<Level, Throwable> handler = (level, throwable) -> {};
+
+                @Override
+                public Optional<URI> canonize() {
+                    if (uri.getPath().startsWith("/fail"))
+                        throw new IllegalArgumentException("Cannot canonize " + uri);
+                    if (uri.getPath().startsWith("/warn"))
+                        handler.accept(Level.WARNING, new IllegalStateException("Warning"));
+                    return uri.getPath().startsWith("/item")
+                            ? Optional.of(URI.create("https://example.com" + uri.getPath()))
+                            : Optional.empty();
+                }
+
+                @Override
+                public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                    this.handler = exceptionHandler;
+                    return this;
+                }
+            });
+        }
+
+        @Override
+        public Optional<Extractor> newExtractor(URI uri) {
+            return Optional.of(new Extractor() {
+                @Override
+                public Optional<String> extractDocumentTitle() {
+                    return Optional.of("Title");
+                }
+
+                @Override
+                public Optional<ProductDescription> extractProductDescription() {
+                    return Optional.empty();
+                }
+
+                @Override
+                public Optional<Pricing> extractPricing() {
+                    return Optional.empty();
+                }
+
+                @Override
+                public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                    return this;
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testInstrumentKeepsDescriptor() {
+        SiteMetricsRegistry registry = new SiteMetricsRegistry();
+        TestSite site = new TestSite();
+        Site instrumented = registry.instrument(site);
+
+        assertSame(site.getSiteDescriptor(), instrumented.getSiteDescriptor());
+        assertEquals(List.of("example.com"), instrumented.getHostPatterns());
+        assertSame(instrumented, registry.instrument(instrumented));
+        assertTrue(registry.get("Test Site").isPresent());
+        assertTrue(registry.get("Other Site").isEmpty());
+    }
+
+    @Test
+    public void testCanonizeMetrics() {
+        SiteMetricsRegistry registry = new SiteMetricsRegistry();
+        Site site = registry.instrument(new TestSite());
+
+        assertTrue(site.canProcessURI(URI.create("https://example.com/item/1")));
+        assertFalse(site.canProcessURI(URI.create("https://example.org/item/1")));
+        site.newCanonizer(URI.create("https://example.com/item/1")).orElseThrow().canonize();
+        site.newCanonizer(URI.create("https://example.com/other")).orElseThrow().canonize();
+        Canonizer failing = site.newCanonizer(URI.create("https://example.com/fail")).orElseThrow();
+        assertThrows(IllegalArgumentException.class, failing::canonize);
+
+        SiteMetrics metrics = registry.get("Test Site").orElseThrow();
+        OperationMetrics canProcess = metrics.get(SiteMetrics.Operation.CAN_PROCESS_URI);
+        assertEquals(2, canProcess.getCalls());
+        assertEquals(1, canProcess.getEmptyResults());
+
+        OperationMetrics canonize = metrics.get(SiteMetrics.Operation.CANONIZE);
+        assertEquals(3, canonize.getCalls());
+        assertEquals(1, canonize.getEmptyResults());
+        assertEquals(1, canonize.getFailures());
+        assertEquals(1.0 / 3, canonize.getEmptyResultRate(), 1e-9);
+        assertEquals(3, canonize.getLatency().getCount());
+    }
+
+    @Test
+    public void testReportedExceptionsAreCountedAndForwarded() {
+        SiteMetricsRegistry registry = new SiteMetricsRegistry();
+        Site site = registry.instrument(new TestSite());
+
+        AtomicReference<Level> forwarded = new AtomicReference<>();
+        Canonizer canonizer = site.newCanonizer(URI.create("https://example.com/warn")).orElseThrow();
+        canonizer.withExceptionHandler((level, throwable) -> forwarded.set(level));
+        canonizer.canonize();
+
+        assertEquals(Level.WARNING, forwarded.get());
+        assertEquals(Map.of(Level.WARNING, 1L), registry.get("Test Site").orElseThrow().getReportedExceptions());
+    }
+
+    @Test
+    public void testExtractMetrics() {
+        SiteMetricsRegistry registry = new SiteMetricsRegistry();
+        Site site = registry.instrument(new TestSite());
+
+        Extractor extractor = site.newExtractor(URI.create("https://example.com/item/1")).orElseThrow();
+        assertEquals(Optional.of("Title"), extractor.extractDocumentTitle());
+        assertTrue(extractor.extractPricing().isEmpty());
+        assertEquals(Optional.of("Title"), extractor.extractAll().getTitle());
+
+        SiteMetrics metrics = registry.get("Test Site").orElseThrow();
+        assertEquals(1, metrics.get(SiteMetrics.Operation.EXTRACT_DOCUMENT_TITLE).getCalls());
+        assertEquals(0, metrics.get(SiteMetrics.Operation.EXTRACT_DOCUMENT_TITLE).getEmptyResults());
+        assertEquals(1, metrics.get(SiteMetrics.Operation.EXTRACT_PRICING).getEmptyResults());
+        assertEquals(1, metrics.get(SiteMetrics.Operation.EXTRACT_ALL).getCalls());
+        assertEquals(0, metrics.get(SiteMetrics.Operation.EXTRACT_ALL).getEmptyResults());
+    }
+
+    @Test
+    public void testCacheStats() {
+        SiteMetricsRegistry registry = new SiteMetricsRegistry();
+        registry.registerCache("canonization", () -> new CacheStats(3, 1, 0));
+
+        CacheStats stats = registry.getCacheStats().get("canonization");
+        assertEquals(0.75, stats.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void testRegistryDispatchesToInstrumentedSite() {
+        SiteMetricsRegistry metrics = new SiteMetricsRegistry();
+        SiteRegistry registry = new SiteRegistry(metrics.instrumentAll(List.of(new TestSite())));
+        CanonizationService service = new CanonizationService.Builder(registry).build();
+
+        assertEquals(Optional.of(URI.create("https://example.com/item/7")),
+                service.canonize(URI.create("https://example.com/item/7?ref=x")));
+        assertEquals(1, metrics.get("Test Site").orElseThrow().get(SiteMetrics.Operation.CANONIZE).getCalls());
+    }
+}
@@ -0,0 +1,107 @@
+package com.penguineering.cleanuri.site.processor;
+
+import com.penguineering.cleanuri.site.SiteIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSiteProviderProcessor {
+    @TempDir
+    Path tmp;
+
+    private record Result(int status, String diagnostics, Path classes) {
+    }
+
+    private Result compile(String className, String source) throws IOException {
+        Path src = Files.createDirectories(tmp.resolve("src"));
+        Path classes = Files.createDirectories(tmp.resolve("classes"));
+        Path file = src.resolve(className + ".java");
+        Files.writeString(file, source);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = compiler.run(null, null, err,
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", SiteProviderProcessor.class.getName(),
+                "-d", classes.toString(), file.toString());
+        return new Result(status, err.toString(), classes);
+    }
+
+    @Test
+    public void testGeneratesServicesAndIndex() throws IOException {
+        Result result = compile("MySite", """
+                package plugin;
+
+                import com.penguineering.cleanuri.site.*;
+                import java.net.URI;
+
+                @SiteProvider(label = "My Site", hosts = {"mysite.com", "*.mysite.com"})
+                public class MySite extends AbstractSiteBase {
+                    public MySite() {
+                        super(new SiteDescriptor.Builder("My Site").hosts("mysite.com", "*.mysite.com").build());
+                    }
+
+                    @Override
+                    public boolean canProcessURI(URI uri) {
+                        return true;
+                    }
+                }
+                """);
+        assertEquals(0, result.status(), result.diagnostics());
+
+        Path services = result.classes().resolve(SiteProviderProcessor.SERVICES_RESOURCE);
+        assertEquals(List.of("plugin.MySite"), Files.readAllLines(services));
+
+        try (InputStream in = Files.newInputStream(result.classes().resolve(SiteIndex.RESOURCE))) {
+            assertEquals(List.of(new SiteIndex.Entry("plugin.MySite", "My Site", List.of("mysite.com", "*.mysite.com"))),
+                    SiteIndex.read(in));
+        }
+    }
+
+    @Test
+    public void testRejectsClassNotImplementingSite() throws IOException {
+        Result result = compile("NotASite", """
+                package plugin;
+
+                @com.penguineering.cleanuri.site.SiteProvider(label = "Not a Site")
+                public class NotASite {
+                }
+                """);
+        assertNotEquals(0, result.status());
+        assertTrue(result.diagnostics().contains("must implement"), result.diagnostics());
+    }
+
+    @Test
+    public void testRejectsInvalidHostPattern() throws IOException {
+        Result result = compile("WildSite", """
+                package plugin;
+
+                import com.penguineering.cleanuri.site.*;
+                import java.net.URI;
+
+                @SiteProvider(label = "Wild Site", hosts = "*.com")
+                public class WildSite extends AbstractSiteBase {
+                    public WildSite() {
+                        super(new SiteDescriptor.Builder("Wild Site").build());
+                    }
+
+                    @Override
+                    public boolean canProcessURI(URI uri) {
+                        return true;
+                    }
+                }
+                """);
+        assertNotEquals(0, result.status());
+        assertTrue(result.diagnostics().contains("Wildcard on public suffix"), result.diagnostics());
+    }
+}
@@ -0,0 +1,167 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCircuitBreaker {
+    private final AtomicLong time = new AtomicLong();
+
+    private CircuitBreaker.Builder builder() {
+        return new CircuitBreaker.Builder()
+                .windowSize(10)
+                .minimumCalls(4)
+                .failureRateThreshold(0.5)
+                .slowCallDuration(Duration.ofMillis(100))
+                .slowCallRateThreshold(0.5)
+                .openDuration(Duration.ofSeconds(10))
+                .ticker(time::get);
+    }
+
+    private static void call(CircuitBreaker breaker, long millis, boolean failed) {
+        long permit = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.REJECTED, permit);
+        breaker.onResult(permit, Duration.ofMillis(millis).toNanos(), failed);
+    }
+
+    @Test
+    public void testOpensOnFailureRate() {
+        CircuitBreaker breaker = builder().build();
+
+        call(breaker, 1, true);
+        call(breaker, 1, true);
+        call(breaker, 1, false);
+        // Not enough calls yet
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2.0 / 3, breaker.getFailureRate(), 1e-9);
+
+        call(breaker, 1, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+        assertEquals(1, breaker.getRejectedCalls());
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() {
+        CircuitBreaker breaker = builder().build();
+
+        call(breaker, 150, false);
+        call(breaker, 10, false);
+        call(breaker, 100, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        call(breaker, 10, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        CircuitBreaker breaker = builder().build();
+
+        call(breaker, 1, true);
+        for (int i = 0; i < 10; i++)
+            call(breaker, 1, false);
+        // The failure has left the window
+        assertEquals(0, breaker.getFailureRate());
+
+        for (int i = 0; i < 4; i++)
+            call(breaker, 1, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        call(breaker, 1, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenProbe() {
+        CircuitBreaker breaker = builder().minimumCalls(1).build();
+        call(breaker, 1, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        time.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        long probe = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.REJECTED, probe);
+        // Only one probe at a time
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        // A slow probe opens the breaker again
+        breaker.onResult(probe, Duration.ofMillis(200).toNanos(), false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        time.addAndGet(Duration.ofSeconds(10).toNanos());
+        probe = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.REJECTED, probe);
+        // A released probe is not counted
+        breaker.release(probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        call(breaker, 1, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate());
+        assertNotEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+    }
+
+    @Test
+    public void testStragglersDoNotDecideProbe() {
+        CircuitBreaker breaker = builder().minimumCalls(1).build();
+        long straggler = breaker.tryAcquire();
+        call(breaker, 1, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        time.addAndGet(Duration.ofSeconds(10).toNanos());
+        long probe = breaker.tryAcquire();
+        assertNotEquals(CircuitBreaker.REJECTED, probe);
+
+        // The call admitted while closed finishes slowly during the probe and is ignored
+        breaker.onResult(straggler, Duration.ofSeconds(5).toNanos(), true);
+        breaker.release(straggler);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+        // The probe decides
+        breaker.onResult(probe, Duration.ofMillis(1).toNanos(), false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        // The outcome of the straggler is not recorded in the new window either
+        breaker.onResult(straggler, Duration.ofSeconds(5).toNanos(), true);
+        assertEquals(0, breaker.getFailureRate());
+    }
+
+    @Test
+    public void testPassResults() {
+        CircuitBreaker breaker = builder().minimumCalls(1).build();
+
+        // Fast successful passes are not recorded, failed ones are
+        long pass = breaker.tryPass();
+        breaker.onPassResult(pass, Duration.ofMillis(1).toNanos(), false);
+        assertEquals(0, breaker.getFailureRate());
+        breaker.onPassResult(breaker.tryPass(), Duration.ofMillis(1).toNanos(), true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(CircuitBreaker.REJECTED, breaker.tryPass());
+        assertEquals(0, breaker.getRejectedCalls());
+
+        // Passes do not take the probe, and do not decide it
+        time.addAndGet(Duration.ofSeconds(10).toNanos());
+        long probe = breaker.tryAcquire();
+        pass = breaker.tryPass();
+        assertNotEquals(CircuitBreaker.REJECTED, pass);
+        breaker.onPassResult(pass, Duration.ofMillis(1).toNanos(), true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onResult(probe, Duration.ofMillis(1).toNanos(), false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // A pass from the half-open state is not recorded in the new window
+        breaker.onPassResult(pass, Duration.ofMillis(1).toNanos(), true);
+        assertEquals(0, breaker.getFailureRate());
+    }
+
+    @Test
+    public void testBuilderValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker.Builder().windowSize(0));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker.Builder().failureRateThreshold(0));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker.Builder().slowCallRateThreshold(1.5));
+        assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker.Builder().openDuration(Duration.ZERO));
+    }
+}
@@ -0,0 +1,325 @@
+package com.penguineering.cleanuri.site.resilience;
+
+import com.penguineering.cleanuri.site.*;
+import com.penguineering.cleanuri.site.async.AsyncExtractionEngine;
+import com.penguineering.cleanuri.site.data.Pricing;
+import com.penguineering.cleanuri.site.data.ProductDescription;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSiteProtectionRegistry {
+    private static class TestSite extends AbstractSiteBase {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile boolean failing;
+        private volatile boolean reporting;
+        private volatile CountDownLatch blocked;
+        private volatile CountDownLatch pricingBlocked;
+        private volatile Runnable dispatching = () -> {
+        };
+
+        public TestSite(String label) {
+            super(new SiteDescriptor.Builder(label).hosts("example.com").build());
+        }
+
+        @Override
+        public boolean canProcessURI(URI uri) {
+            calls.incrementAndGet();
+            dispatching.run();
+            return "example.com".equals(uri.getHost());
+        }
+
+        @Override
+        public Optional<Canonizer> newCanonizer(URI uri) {
+            return Optional.of(new Canonizer() {
+                @Override
+                public Optional<URI> canonize() {
+                    calls.incrementAndGet();
+                    if (failing)
+                        throw new IllegalStateException("Site is broken");
+                    return Optional.of(URI.create("https://example.com" + uri.getPath()));
+                }
+
+                @Override
+                public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                    return this;
+                }
+            });
+        }
+
+        @Override
+        public Optional<Extractor> newExtractor(URI uri) {
+            return Optional.of(new Extractor() {
+                private BiConsumer<Level, Throwable> exceptionHandler = (level, throwable) -> {
+                };
+
+                @Override
+                public Optional<String> extractDocumentTitle() {
+                    calls.incrementAndGet();
+                    if (failing)
+                        throw new IllegalStateException("Site is broken");
+                    await(blocked);
+                    return Optional.of("Title");
+                }
+
+                @Override
+                public Optional<ProductDescription> extractProductDescription() {
+                    calls.incrementAndGet();
+                    if (failing)
+                        throw new IllegalStateException("Site is broken");
+                    return Optional.empty();
+                }
+
+                @Override
+                public Optional<Pricing> extractPricing() {
+                    calls.incrementAndGet();
+                    if (failing)
+                        throw new IllegalStateException("Site is broken");
+                    // Like the extractors of the library, report the error and return an empty result
+                    if (reporting)
+                        exceptionHandler.accept(Level.WARNING, new IllegalStateException("Shop is down"));
+                    await(pricingBlocked);
+                    return Optional.empty();
+                }
+
+                @Override
+                public ExceptionPassing withExceptionHandler(BiConsumer<Level, Throwable> exceptionHandler) {
+                    this.exceptionHandler = exceptionHandler;
+                    return this;
+                }
+            });
+        }
+
+        private static void await(CountDownLatch latch) {
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static final URI ITEM = URI.create("https://example.com/item/1");
+
+    @Test
+    public void testCircuitBreakerFailsFast() {
+        AtomicLong time = new AtomicLong();
+        SiteProtectionRegistry protection = new SiteProtectionRegistry.Builder()
+                .circuitBreaker(label -> new CircuitBreaker.Builder()
+                        .windowSize(4)
+                        .minimumCalls(4)
+                        .openDuration(Duration.ofSeconds(30))
+                        .ticker(time::get)
+                        .build())
+                .build();
+        TestSite site = new TestSite("Broken");
+        Site protectedSite = protection.protect(site);
+        Canonizer canonizer = protectedSite.newCanonizer(ITEM).orElseThrow();
+
+        site.failing = true;
+        // Four failures fill the window, the creation of the canonizer is not recorded
+        for (int i = 0; i < 4; i++)
+            assertThrows(IllegalStateException.class, canonizer::canonize);
+        CircuitBreaker breaker = protection.getCircuitBreaker("Broken").orElseThrow();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        int calls = site.calls.get();
+        assertEquals(Optional.empty(), canonizer.canonize());
+        assertEquals(Optional.empty(), protectedSite.newCanonizer(ITEM));
+        assertFalse(protectedSite.canProcessURI(ITEM));
+        assertEquals(calls, site.calls.get());
+        // The descriptor stays available
+        assertEquals("Broken", protectedSite.getSiteDescriptor().getLabel());
+
+        // A successful probe closes the breaker
+        site.failing = false;
+        time.addAndGet(Duration.ofSeconds(30).toNanos());
+        assertEquals(Optional.of(URI.create("https://example.com/item/1")), canonizer.canonize());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(protectedSite.canProcessURI(ITEM));
+    }
+
+    @Test
+    public void testBrokenExtractorsOpenBreakerThroughEngine() throws Exception {
+        AtomicLong time = new AtomicLong();
+        SiteProtectionRegistry protection = new SiteProtectionRegistry.Builder()
+                .circuitBreaker(label -> new CircuitBreaker.Builder()
+                        .windowSize(6)
+                        .minimumCalls(6)
+                        .openDuration(Duration.ofSeconds(30))
+                        .ticker(time::get)
+                        .build())
+                .build();
+        TestSite site = new TestSite("Broken");
+        site.failing = true;
+        SiteRegistry registry = new SiteRegistry(protection.protectAll(List.of(site)));
+        CircuitBreaker breaker = protection.getCircuitBreaker("Broken").orElseThrow();
+
+        try (AsyncExtractionEngine engine = new AsyncExtractionEngine.Builder(registry)
+                .coalesceRequests(false)
+                .build()) {
+            // Each request fails all three fields, dispatch and extractor creation are not recorded
+            for (int i = 0; i < 2; i++) {
+                assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+                assertTrue(engine.extract(ITEM).get(5, TimeUnit.SECONDS).getTitle().isEmpty());
+            }
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+            // The probe of the half-open breaker is one of the field extractions, which fails again
+            time.addAndGet(Duration.ofSeconds(30).toNanos());
+            int calls = site.calls.get();
+            engine.extract(ITEM).get(5, TimeUnit.SECONDS);
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            assertEquals(calls + 2, site.calls.get());
+        }
+    }
+
+    @Test
+    public void testReportedExceptionsAreFailures() {
+        SiteProtectionRegistry protection = new SiteProtectionRegistry.Builder()
+                .circuitBreaker(label -> new CircuitBreaker.Builder().windowSize(4).minimumCalls(4).build())
+                .build();
+        TestSite site = new TestSite("Reporting");
+        List<Level> reported = new ArrayList<>();
+        Extractor extractor = protection.protect(site).newExtractor(ITEM).orElseThrow();
+        extractor.withExceptionHandler((level, throwable) -> reported.add(level));
+        CircuitBreaker breaker = protection.getCircuitBreaker("Reporting").orElseThrow();
+
+        // Empty results without a reported exception are successful calls
+        for (int i = 0; i < 4; i++)
+            assertEquals(Optional.empty(), extractor.extractPricing());
+        assertEquals(0.0, breaker.getFailureRate());
+
+        // Two reported failures make up half of the window
+        site.reporting = true;
+        for (int i = 0; i < 2; i++)
+            assertEquals(Optional.empty(), extractor.extractPricing());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        // The caller's handler still receives the exceptions
+        assertEquals(List.of(Level.WARNING, Level.WARNING), reported);
+
+        int calls = site.calls.get();
+        assertEquals(Optional.empty(), extractor.extractPricing());
+        assertEquals(calls, site.calls.get());
+    }
+
+    @Test
+    public void testConcurrentReportsAreAssignedToTheirCall() throws Exception {
+        SiteProtectionRegistry protection = new SiteProtectionRegistry.Builder()
+                .circuitBreaker(label -> new CircuitBreaker.Builder().windowSize(4).minimumCalls(4).build())
+                .build();
+        TestSite site = new TestSite("Reporting");
+        CountDownLatch reported = new CountDownLatch(1);
+        Extractor extractor = protection.protect(site).newExtractor(ITEM).orElseThrow();
+        extractor.withExceptionHandler((level, throwable) -> reported.countDown());
+        CircuitBreaker breaker = protection.getCircuitBreaker("Reporting").orElseThrow();
+
+        // The pricing call reports its failure and is still running while a title call on the same extractor succeeds
+        site.reporting = true;
+        site.pricingBlocked = new CountDownLatch(1);
+        Thread pricing = Thread.ofVirtual().start(extractor::extractPricing);
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+        assertEquals(Optional.of("Title"), extractor.extractDocumentTitle());
+        site.pricingBlocked.countDown();
+        pricing.join();
+
+        assertEquals(0.5, breaker.getFailureRate());
+    }
+
+    @Test
+    public void testFailedDispatchIsRecorded() {
+        AtomicLong time = new AtomicLong();
+        SiteProtectionRegistry protection = new SiteProtectionRegistry.Builder()
+                .circuitBreaker(label -> new CircuitBreaker.Builder()
+                        .windowSize(4)
+                        .minimumCalls(4)
+                        .slowCallDuration(Duration.ofSeconds(1))
+                        .ticker(time::get)
+                        .build())
+                .build();
+        TestSite site = new TestSite("Dispatch");
+        Site protectedSite = protection.protect(site);
+        CircuitBreaker breaker = protection.getCircuitBreaker("Dispatch").orElseThrow();
+
+        // Fast successful dispatch calls are not recorded
+        for (int i = 0; i < 10; i++)
+            assertTrue(protectedSite.canProcessURI(ITEM));
+        assertEquals(0.0, breaker.getFailureRate());
+        assertEquals(0.0, breaker.getSlowCallRate());
+
+        // Slow and throwing ones are
+        site.dispatching = () -> time.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertTrue(protectedSite.canProcessURI(ITEM));
+        assertEquals(1.0, breaker.getSlowCallRate());
+        site.dispatching = () -> {
+            throw new IllegalStateException("Site is broken");
+        };
+        for (int i = 0; i < 3; i++)
+            assertThrows(IllegalStateException.class, () -> protectedSite.canProcessURI(ITEM));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        int calls = site.calls.get();
+        assertFalse(protectedSite.canProcessURI(ITEM));
+        assertEquals(calls, site.calls.get());
+    }
+
+    @Test
+    public void testBulkheadIsolatesSites() throws Exception {
+        SiteProtectionRegistry protection = new SiteProtectionRegistry.Builder()
+                .bulkhead(label -> new Bulkhead.Builder().maxConcurrentCalls(1).maxQueuedCalls(0).build())
+                .build();
+        TestSite slow = new TestSite("Slow");
+        TestSite healthy = new TestSite("Healthy");
+        List<Site> sites = protection.protectAll(List.of(slow, healthy));
+
+        slow.blocked = new CountDownLatch(1);
+        Extractor extractor = sites.get(0).newExtractor(ITEM).orElseThrow();
+        Thread stuck = Thread.ofVirtual().start(extractor::extractDocumentTitle);
+        Bulkhead bulkhead = protection.getBulkhead("Slow").orElseThrow();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (bulkhead.getActiveCalls() == 0 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertEquals(1, bulkhead.getActiveCalls());
+
+        // The slow site rejects further calls, the healthy one is not affected
+        assertEquals(Optional.empty(), extractor.extractDocumentTitle());
+        assertTrue(extractor.extractAll().getTitle().isEmpty());
+        assertFalse(sites.get(0).canProcessURI(ITEM));
+        assertEquals(3, bulkhead.getRejectedCalls());
+        assertTrue(sites.get(1).canProcessURI(ITEM));
+        assertEquals(Optional.of("Title"), sites.get(1).newExtractor(ITEM).orElseThrow().extractDocumentTitle());
+
+        slow.blocked.countDown();
+        stuck.join();
+        assertEquals(0, bulkhead.getActiveCalls());
+        assertEquals(Optional.of("Title"), extractor.extractDocumentTitle());
+    }
+
+    @Test
+    public void testProtect() {
+        SiteProtectionRegistry protection = new SiteProtectionRegistry.Builder().build();
+        Site first = protection.protect(new TestSite("Shared"));
+        Site second = protection.protect(new TestSite("Shared"));
+
+        assertInstanceOf(ProtectedSite.class, first);
+        assertSame(first, protection.protect(first));
+        assertSame(((ProtectedSite) first).getCircuitBreaker(), ((ProtectedSite) second).getCircuitBreaker());
+        assertSame(((ProtectedSite) first).getBulkhead(), protection.getBulkhead("Shared").orElseThrow());
+        assertTrue(protection.getCircuitBreaker("Unknown").isEmpty());
+        assertThrows(NullPointerException.class, () -> protection.protect(null));
+    }
+}
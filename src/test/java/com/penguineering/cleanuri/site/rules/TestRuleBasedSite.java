@@ -0,0 +1,158 @@
+package com.penguineering.cleanuri.site.rules;
+
+import com.penguineering.cleanuri.site.SiteDescriptor;
+import com.penguineering.cleanuri.site.SiteRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRuleBasedSite {
+    private static final String RULES = """
+            {
+              "label": "Shops",
+              "description": "Test shops",
+              "rules": [
+                {
+                  "name": "Example items",
+                  "hosts": ["example.com", "*.example.com"],
+                  "path": "/item/([0-9]+)(/.*)?",
+                  "path_template": "/item/$1",
+                  "allow_query": ["variant"],
+                  "scheme": "https",
+                  "host": "www.example.com"
+                },
+                {
+                  "name": "Example categories",
+                  "hosts": ["example.com"],
+                  "path": "/category/.*",
+                  "keep_segments": 2,
+                  "deny_query": ["utm_*", "ref"]
+                },
+                {
+                  "hosts": ["shop.example.org"],
+                  "keep_segments": 1,
+                  "allow_query": []
+                }
+              ]
+            }
+            """;
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Optional<URI> canonize(RuleBasedSite site, String uri) {
+        return site.newCanonizer(URI.create(uri)).orElseThrow().canonize();
+    }
+
+    @Test
+    public void testReadDocument() throws IOException {
+        RuleBasedSite site = new RuleBasedSite(stream(RULES));
+
+        assertEquals("Shops", site.getSiteDescriptor().getLabel());
+        assertEquals(Optional.of("Test shops"), site.getSiteDescriptor().getDescription());
+        assertEquals(List.of("example.com", "*.example.com", "shop.example.org"), site.getHostPatterns());
+        assertEquals(3, site.getRules().getRules().size());
+    }
+
+    @Test
+    public void testCanonize() throws IOException {
+        RuleBasedSite site = new RuleBasedSite(stream(RULES));
+
+        assertEquals(Optional.of(URI.create("https://www.example.com/item/42?variant=red")),
+                canonize(site, "http://shop.example.com/item/42/some-title?ref=abc&variant=red#reviews"));
+        assertEquals(Optional.of(URI.create("https://example.com/category/shoes?page=2")),
+                canonize(site, "https://example.com/category/shoes/sneakers?utm_source=x&page=2&ref=y"));
+        assertEquals(Optional.of(URI.create("https://shop.example.org/p")),
+                canonize(site, "https://SHOP.example.org/p/123?session=1"));
+        assertEquals(Optional.empty(), canonize(site, "https://example.com/about"));
+    }
+
+    @Test
+    public void testCanProcessURI() throws IOException {
+        RuleBasedSite site = new RuleBasedSite(stream(RULES));
+
+        assertTrue(site.canProcessURI(URI.create("https://www.example.com/item/1")));
+        assertTrue(site.canProcessURI(URI.create("https://example.com/category/a")));
+        // The category rule only applies to the apex domain
+        assertFalse(site.canProcessURI(URI.create("https://www.example.com/category/a")));
+        assertFalse(site.canProcessURI(URI.create("https://example.net/item/1")));
+    }
+
+    @Test
+    public void testDispatchWithRegistry() throws IOException {
+        SiteRegistry registry = new SiteRegistry(List.of(new RuleBasedSite(stream(RULES))));
+
+        assertTrue(registry.resolve(URI.create("https://shop.example.org/")).isPresent());
+        assertTrue(registry.resolve(URI.create("https://other.example.org/")).isEmpty());
+    }
+
+    @Test
+    public void testFirstRuleWins() {
+        SiteRule first = new SiteRule.Builder().setHosts(List.of("example.com")).setPath("/a/.*")
+                .setPathTemplate("/first").build();
+        SiteRule second = new SiteRule.Builder().setHosts(List.of("example.com")).setPath("/(a)/(b)")
+                .setPathTemplate("/second/$2$1").build();
+
+        assertEquals(Optional.of(URI.create("https://example.com/first")),
+                RuleSet.compile(List.of(first, second)).canonize(URI.create("https://example.com/a/b")));
+        assertEquals(Optional.of(URI.create("https://example.com/second/ba")),
+                RuleSet.compile(List.of(second, first)).canonize(URI.create("https://example.com/a/b")));
+    }
+
+    @Test
+    public void testManyRulesShareOneMatcher() {
+        List<SiteRule> list = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+            list.add(new SiteRule.Builder()
+                    .setHosts(List.of("shop" + i + ".example.com", "example.net"))
+                    .setPath("/p" + i + "/([a-z]+)/.*")
+                    .setPathTemplate("/p" + i + "/$1")
+                    .build());
+        RuleSet rules = RuleSet.compile(list);
+
+        assertEquals(Optional.of(URI.create("https://shop4711.example.com/p4711/abc")),
+                rules.canonize(URI.create("https://shop4711.example.com/p4711/abc/def")));
+        assertEquals(Optional.of(URI.create("https://example.net/p4999/xyz")),
+                rules.canonize(URI.create("https://example.net/p4999/xyz/1")));
+        assertEquals(Optional.empty(), rules.canonize(URI.create("https://shop1.example.com/p2/abc/def")));
+    }
+
+    @Test
+    public void testInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> new SiteRule.Builder().build());
+        assertThrows(IllegalArgumentException.class, () -> new SiteRule.Builder().setHosts(List.of("example.com"))
+                .setAllowQuery(List.of("a")).setDenyQuery(List.of("b")).build());
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.compile(List.of(
+                new SiteRule.Builder().setHosts(List.of("*.com")).build())));
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.compile(List.of(
+                new SiteRule.Builder().setHosts(List.of("example.com")).setPath("/(?<id>[0-9]+)").build())));
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.compile(List.of(
+                new SiteRule.Builder().setHosts(List.of("example.com")).setPath("/(a)\\1").build())));
+        assertThrows(IllegalArgumentException.class, () -> RuleSet.compile(List.of(
+                new SiteRule.Builder().setHosts(List.of("example.com")).setPath("/(a)").setPathTemplate("/$2").build())));
+        assertThrows(IOException.class, () -> new RuleBasedSite(stream("{\"rules\": []}")));
+        assertThrows(IOException.class, () -> new RuleBasedSite(stream("{\"label\": \"x\", \"rules\": [{\"hosts\": []}]}")));
+    }
+
+    @Test
+    public void testProgrammaticSite() {
+        RuleSet rules = RuleSet.compile(List.of(new SiteRule.Builder()
+                .setHosts(List.of("example.com"))
+                .setAllowQuery(List.of())
+                .build()));
+        RuleBasedSite site = new RuleBasedSite(new SiteDescriptor.Builder("Example").build(), rules);
+
+        assertEquals(List.of("example.com"), site.getHostPatterns());
+        assertEquals(Optional.of(URI.create("https://example.com/x")), canonize(site, "https://example.com/x?a=1"));
+    }
+}